@@ -0,0 +1,58 @@
+package com.example.todolist.config;
+
+import org.springframework.boot.autoconfigure.cache.CacheProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.StringUtils;
+
+/**
+ * 缓存配置类
+ * 缓存实现与淘汰策略见 application.yml 中的 spring.cache 配置
+ * order = 0 使缓存拦截器位于事务拦截器外层：缓存命中时不会开启事务、占用数据库连接
+ * 缓存管理器使用GuardedCaffeineCacheManager：加载期间被失效的key不会写入加载时读到的旧值
+ */
+@Configuration
+@EnableCaching(order = 0)
+@EnableConfigurationProperties(CacheProperties.class)
+public class CacheConfig {
+
+    /**
+     * 待办事项分页结果缓存
+     */
+    public static final String TODO_PAGES = "todoPages";
+
+    /**
+     * 子任务列表缓存，key为 父任务ID:是否按优先级排序
+     */
+    public static final String SUBTASKS = "subtasks";
+
+    /**
+     * 子任务统计缓存，key为父任务ID
+     */
+    public static final String SUBTASK_STATS = "subtaskStats";
+
+    /**
+     * 缓存条件：处于写后读一致窗口的请求（只读主库）不读也不写缓存，
+     * 避免读到在复制追上之前由副本数据填充的旧缓存（见ReplicaContext）；未启用只读副本时始终成立
+     */
+    public static final String UNLESS_PRIMARY_REQUIRED = "!T(com.example.todolist.replica.ReplicaContext).isPrimaryRequired()";
+
+    /**
+     * 按spring.cache配置（缓存名称、Caffeine规格）创建缓存管理器
+     */
+    @Bean
+    public CacheManager cacheManager(CacheProperties cacheProperties) {
+        GuardedCaffeineCacheManager cacheManager = new GuardedCaffeineCacheManager();
+        String spec = cacheProperties.getCaffeine().getSpec();
+        if (StringUtils.hasText(spec)) {
+            cacheManager.setCacheSpecification(spec);
+        }
+        if (!cacheProperties.getCacheNames().isEmpty()) {
+            cacheManager.setCacheNames(cacheProperties.getCacheNames());
+        }
+        return cacheManager;
+    }
+}
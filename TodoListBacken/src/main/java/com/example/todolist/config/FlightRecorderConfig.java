@@ -0,0 +1,22 @@
+package com.example.todolist.config;
+
+import com.example.todolist.jfr.FlightRecorderAspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * JFR事件配置类
+ * 在运行时JDK支持JFR（JDK 11及以上）且未关闭 todo.jfr.enabled 时，为控制器、服务和仓库方法生成自定义JFR事件
+ */
+@Configuration
+@ConditionalOnClass(name = "jdk.jfr.Event")
+@ConditionalOnProperty(name = "todo.jfr.enabled", havingValue = "true", matchIfMissing = true)
+public class FlightRecorderConfig {
+
+    @Bean
+    public FlightRecorderAspect flightRecorderAspect() {
+        return new FlightRecorderAspect();
+    }
+}
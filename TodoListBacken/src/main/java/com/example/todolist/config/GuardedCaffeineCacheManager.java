@@ -0,0 +1,123 @@
+package com.example.todolist.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 防止旧值回填的Caffeine缓存管理器
+ * @Cacheable未命中后，从加载数据到写入缓存之间若有写操作提交并失效了该key，
+ * 普通缓存仍会把加载时读到的旧值写入，并一直保留到过期（expireAfterWrite）；
+ * 这里为key维护失效代数：未命中时记下代数，写入前后各检查一次，期间发生过失效则放弃写入（或立即移除）
+ * 代数按key的哈希分段记录，不随key的数量增长；不同key落在同一段时只会多放弃一次写入
+ */
+public class GuardedCaffeineCacheManager extends CaffeineCacheManager {
+
+    @Override
+    protected org.springframework.cache.Cache adaptCaffeineCache(String name, Cache<Object, Object> cache) {
+        return new GuardedCaffeineCache(name, cache, isAllowNullValues());
+    }
+
+    /**
+     * 带失效代数检查的缓存；仍是CaffeineCache，命中统计和指标导出不受影响
+     */
+    static class GuardedCaffeineCache extends CaffeineCache {
+
+        private static final int STRIPES = 1024;
+
+        /**
+         * 按key分段的失效代数，evict时递增
+         */
+        private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+        /**
+         * 整体失效（clear）的次数
+         */
+        private final AtomicLong clears = new AtomicLong();
+
+        /**
+         * 当前线程最近一次未命中的key及当时的代数；@Cacheable的查询、加载和写入在同一线程中依次执行
+         */
+        private final ThreadLocal<Miss> lastMiss = new ThreadLocal<>();
+
+        GuardedCaffeineCache(String name, Cache<Object, Object> cache, boolean allowNullValues) {
+            super(name, cache, allowNullValues);
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            // 先读代数再查缓存：未命中之后发生的失效一定会使代数变化
+            long generation = generationOf(key);
+            ValueWrapper value = super.get(key);
+            if (value == null) {
+                lastMiss.set(new Miss(key, generation));
+            }
+            return value;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            Miss miss = lastMiss.get();
+            if (miss == null || !Objects.equals(miss.key, key)) {
+                super.put(key, value);
+                return;
+            }
+            lastMiss.remove();
+            if (generationOf(key) != miss.generation) {
+                return;
+            }
+            super.put(key, value);
+            // 检查与写入之间发生的失效可能早于写入完成，再检查一次
+            if (generationOf(key) != miss.generation) {
+                super.evict(key);
+            }
+        }
+
+        @Override
+        public void evict(Object key) {
+            generations.incrementAndGet(stripeOf(key));
+            super.evict(key);
+        }
+
+        @Override
+        public boolean evictIfPresent(Object key) {
+            generations.incrementAndGet(stripeOf(key));
+            return super.evictIfPresent(key);
+        }
+
+        @Override
+        public void clear() {
+            clears.incrementAndGet();
+            super.clear();
+        }
+
+        @Override
+        public boolean invalidate() {
+            clears.incrementAndGet();
+            return super.invalidate();
+        }
+
+        private long generationOf(Object key) {
+            return clears.get() + generations.get(stripeOf(key));
+        }
+
+        private static int stripeOf(Object key) {
+            int hash = Objects.hashCode(key);
+            return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+        }
+
+        private static final class Miss {
+            private final Object key;
+            private final long generation;
+
+            private Miss(Object key, long generation) {
+                this.key = key;
+                this.generation = generation;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.todolist.config;
+
+import com.example.todolist.filter.ContentLengthFilter;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+
+/**
+ * Jackson配置类
+ * 除JSON外，按请求的Accept头提供两种二进制格式，字段、日期和枚举的编码方式与JSON相同：
+ * application/x-jackson-smile：字段名和短字符串值（如优先级）在同一响应中只写一次，之后用引用代替，列表越长越紧凑
+ * application/cbor：标准格式（RFC 8949），各语言都有现成的解码库
+ * 三种格式共用同一套ObjectMapper配置（由Spring Boot的Jackson2ObjectMapperBuilder构建），
+ * 并注册Blackbird模块，用LambdaMetafactory生成的访问器代替反射读写字段
+ * 开启响应压缩时，接口响应经ContentLengthFilter带上长度，低于压缩阈值的小响应不再被压缩
+ */
+@Configuration
+public class JacksonConfig {
+
+    /**
+     * Spring Boot会把Module类型的Bean注册到所有由Jackson2ObjectMapperBuilder构建的ObjectMapper上
+     */
+    @Bean
+    public Module blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    @Bean
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(builder.factory(newSmileFactory()).build());
+    }
+
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
+    /**
+     * 导出（NDJSON）和变更推送（SSE）是流式响应，不缓存
+     */
+    @Bean
+    @ConditionalOnProperty("server.compression.enabled")
+    public FilterRegistrationBean<ContentLengthFilter> contentLengthFilter() {
+        FilterRegistrationBean<ContentLengthFilter> registration =
+                new FilterRegistrationBean<>(new ContentLengthFilter("/api/export", "/api/changes/stream"));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 20);
+        return registration;
+    }
+
+    /**
+     * Smile默认只共享字段名，这里同时共享短字符串值（优先级、重复的内容等）
+     * @return Smile工厂
+     */
+    public static SmileFactory newSmileFactory() {
+        return SmileFactory.builder()
+                .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                .build();
+    }
+}
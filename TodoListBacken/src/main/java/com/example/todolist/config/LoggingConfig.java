@@ -0,0 +1,18 @@
+package com.example.todolist.config;
+
+import com.example.todolist.logging.LogSamplingEndpoint;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 日志配置类
+ * 采样与异步输出见 logback-spring.xml，这里注册运行时修改采样比例的端点
+ */
+@Configuration
+public class LoggingConfig {
+
+    @Bean
+    public LogSamplingEndpoint logSamplingEndpoint() {
+        return new LogSamplingEndpoint();
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.todolist.config;
+
+import com.example.todolist.metrics.QueryBudgetInterceptor;
+import com.example.todolist.metrics.QueryCounter;
+import com.example.todolist.sharding.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * 指标配置类
+ * 接口延迟直方图、Hikari连接池和Hibernate统计由Actuator自动注册（见 application.yml 中的 management 配置），
+ * 这里额外注册按请求统计SQL语句数的查询预算检查
+ */
+@Configuration
+public class MetricsConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    /**
+     * 未标注@QueryBudget的接口允许的最大SQL语句数
+     */
+    @Value("${todo.query-budget.default:10}")
+    private int defaultBudget;
+
+    /**
+     * 超出预算时的处理方式：off、warn 或 fail
+     */
+    @Value("${todo.query-budget.mode:warn}")
+    private QueryBudgetInterceptor.Mode mode;
+
+    @Bean
+    public HibernatePropertiesCustomizer queryCounterCustomizer() {
+        return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, new QueryCounter());
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 分片模式下扇出查询在每个分片上各执行一次（扇出线程的语句同样计入请求），预算按分片数放大
+        int budgetMultiplier = shardRouter.isSharded() ? shardRouter.getShardNames().size() : 1;
+        registry.addInterceptor(new QueryBudgetInterceptor(meterRegistry, defaultBudget, budgetMultiplier, mode))
+                .addPathPatterns("/api/**");
+    }
+}
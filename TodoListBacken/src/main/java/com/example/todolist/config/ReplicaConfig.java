@@ -0,0 +1,155 @@
+package com.example.todolist.config;
+
+import com.example.todolist.filter.ReadYourWritesFilter;
+import com.example.todolist.replica.ReadWriteRoutingDataSource;
+import com.example.todolist.replica.ReplicaNode;
+import com.example.todolist.replica.ReplicaProperties;
+import com.example.todolist.replica.ReplicaRouter;
+import com.example.todolist.sharding.ShardContext;
+import com.example.todolist.sharding.ShardRouter;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 读写分离配置类（todo.replicas.enabled=true时生效）
+ * 把容器中的主数据源（单库的连接池，或启用分片时的分片路由数据源）包装为读写分离数据源：
+ * 只读事务的查询发往当前数据源的健康副本，写事务和事务外的查询仍走主库；
+ * 同时注册写后读一致过滤器和副本指标（todo.replica.*、各副本连接池的hikaricp.*）
+ */
+@Configuration
+@EnableConfigurationProperties(ReplicaProperties.class)
+@ConditionalOnProperty(name = "todo.replicas.enabled", havingValue = "true")
+public class ReplicaConfig {
+
+    private static final String DATA_SOURCE_BEAN = "dataSource";
+
+    @Bean
+    public ReplicaRouter replicaRouter(ReplicaProperties properties, ShardRouter shardRouter) {
+        if (properties.getServers().isEmpty()) {
+            throw new IllegalStateException("已启用读写分离但没有配置副本（todo.replicas.servers）");
+        }
+        // 延迟不超过max-lag-seconds的副本才会被使用，写后读窗口不小于该上限时，窗口结束后读到的副本已包含本次写入
+        if (properties.getReadYourWritesMs() < properties.getMaxLagSeconds() * 1000) {
+            throw new IllegalStateException("写后读一致窗口（todo.replicas.read-your-writes-ms=" + properties.getReadYourWritesMs()
+                    + "）小于副本允许的最大复制延迟（todo.replicas.max-lag-seconds=" + properties.getMaxLagSeconds()
+                    + "），客户端写入后可能从副本读到旧数据");
+        }
+        List<ReplicaNode> nodes = new ArrayList<>();
+        properties.getServers().forEach((name, replica) -> {
+            String source = sourceOf(name, replica, shardRouter);
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("replica-" + name);
+            config.setJdbcUrl(replica.getUrl());
+            config.setUsername(replica.getUsername());
+            config.setPassword(replica.getPassword());
+            if (replica.getDriverClassName() != null) {
+                config.setDriverClassName(replica.getDriverClassName());
+            }
+            config.setMaximumPoolSize(replica.getMaximumPoolSize());
+            config.setMinimumIdle(replica.getMinimumIdle());
+            config.setReadOnly(true);
+            // 取连接超时即视为副本不可用并回退主库，不让读请求长时间等待
+            config.setConnectionTimeout(Math.max(250L, properties.getHealthCheckTimeoutSeconds() * 1000L));
+            // 副本暂时不可用时不影响启动，由健康检查标记并在恢复后重新加入
+            config.setInitializationFailTimeout(-1);
+            nodes.add(new ReplicaNode(name, source, new HikariDataSource(config), replica.getWeight()));
+        });
+        return new ReplicaRouter(nodes, properties.getLagQuery(), properties.getMaxLagSeconds(),
+                properties.getHealthCheckIntervalMs(), properties.getHealthCheckTimeoutSeconds());
+    }
+
+    /**
+     * 副本所复制的数据源：未启用分片时为主库，启用分片时为配置的分片（未配置时为主分片）
+     */
+    private static String sourceOf(String name, ReplicaProperties.Replica replica, ShardRouter shardRouter) {
+        if (!shardRouter.isSharded()) {
+            if (replica.getSource() != null) {
+                throw new IllegalStateException("未启用分片，副本" + name + "不需要配置source");
+            }
+            return ReplicaRouter.PRIMARY;
+        }
+        if (replica.getSource() == null) {
+            return shardRouter.getHome();
+        }
+        if (!shardRouter.getShardNames().contains(replica.getSource())) {
+            throw new IllegalStateException("副本" + name + "的source不是已配置的分片: " + replica.getSource());
+        }
+        return replica.getSource();
+    }
+
+    /**
+     * 包装主数据源；在BeanPostProcessor中完成，单库和分片两种主数据源都适用
+     * 依赖延迟获取，避免这些Bean过早创建
+     */
+    @Bean
+    public static BeanPostProcessor replicaDataSourcePostProcessor(ObjectProvider<ReplicaRouter> replicaRouter,
+                                                                   ObjectProvider<ShardRouter> shardRouter) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!DATA_SOURCE_BEAN.equals(beanName) || !(bean instanceof DataSource)
+                        || bean instanceof LazyConnectionDataSourceProxy) {
+                    return bean;
+                }
+                ShardRouter router = shardRouter.getObject();
+                return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource((DataSource) bean,
+                        replicaRouter.getObject(), () -> currentSource(router)));
+            }
+        };
+    }
+
+    /**
+     * 当前连接所属的数据源：未启用分片时为主库，否则为当前线程绑定的分片（未绑定时为主分片）
+     */
+    private static String currentSource(ShardRouter shardRouter) {
+        if (!shardRouter.isSharded()) {
+            return ReplicaRouter.PRIMARY;
+        }
+        String shard = ShardContext.current();
+        return shard == null ? shardRouter.getHome() : shard;
+    }
+
+    @Bean
+    public FilterRegistrationBean<ReadYourWritesFilter> readYourWritesFilter(ReplicaProperties properties) {
+        FilterRegistrationBean<ReadYourWritesFilter> registration =
+                new FilterRegistrationBean<>(new ReadYourWritesFilter(properties.getReadYourWritesMs()));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return registration;
+    }
+
+    @Bean
+    public MeterBinder replicaMetrics(ReplicaRouter replicaRouter) {
+        return registry -> {
+            FunctionCounter.builder("todo.replica.reads", replicaRouter, ReplicaRouter::getReplicaReads)
+                    .description("分配到副本的只读连接数")
+                    .register(registry);
+            FunctionCounter.builder("todo.replica.primary.fallbacks", replicaRouter, ReplicaRouter::getPrimaryFallbacks)
+                    .description("没有可用副本、回退到主库的只读连接数")
+                    .register(registry);
+            replicaRouter.getNodes().forEach(node -> {
+                Gauge.builder("todo.replica.healthy", node, replica -> replica.isHealthy() ? 1 : 0)
+                        .description("副本是否可用")
+                        .tag("replica", node.getName())
+                        .register(registry);
+                node.getDataSource().setMetricRegistry(registry);
+            });
+        };
+    }
+}
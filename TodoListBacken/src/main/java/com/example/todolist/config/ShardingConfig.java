@@ -0,0 +1,155 @@
+package com.example.todolist.config;
+
+import com.example.todolist.sharding.ConsistentHashRing;
+import com.example.todolist.sharding.Resharder;
+import com.example.todolist.sharding.ShardIdGenerator;
+import com.example.todolist.sharding.ShardRouter;
+import com.example.todolist.sharding.ShardRoutingAspect;
+import com.example.todolist.sharding.ShardRoutingDataSource;
+import com.example.todolist.sharding.ShardingEndpoint;
+import com.example.todolist.sharding.ShardingProperties;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.flywaydb.core.Flyway;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片配置类
+ * 未启用分片（todo.sharding.enabled=false，默认）时只注册一个不做任何路由的ShardRouter；
+ * 启用后为每个分片创建连接池，以按分片路由的数据源代替 spring.datasource，
+ * 并对每个分片执行Flyway迁移、替换主键生成器、注册路由切面和 /actuator/shards 端点
+ * 本地可使用 application-sharding.yml（多个进程内H2数据库）试用
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties) {
+        if (!properties.isEnabled()) {
+            return ShardRouter.single();
+        }
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("已启用分片但没有配置分片数据源（todo.sharding.shards）");
+        }
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        properties.getShards().forEach((name, shard) -> {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("shard-" + name);
+            config.setJdbcUrl(shard.getUrl());
+            config.setUsername(shard.getUsername());
+            config.setPassword(shard.getPassword());
+            if (shard.getDriverClassName() != null) {
+                config.setDriverClassName(shard.getDriverClassName());
+            }
+            config.setMaximumPoolSize(shard.getMaximumPoolSize());
+            config.setMinimumIdle(shard.getMinimumIdle());
+            dataSources.put(name, new HikariDataSource(config));
+        });
+        return new ShardRouter(dataSources, configuredRing(properties), properties.getFanOutThreads());
+    }
+
+    private static ConsistentHashRing configuredRing(ShardingProperties properties) {
+        List<String> members = properties.getMembers().isEmpty()
+                ? new ArrayList<>(properties.getShards().keySet())
+                : properties.getMembers();
+        return new ConsistentHashRing(members, properties.getVirtualNodes());
+    }
+
+    /**
+     * 启用分片时的组件
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "todo.sharding.enabled", havingValue = "true")
+    static class EnabledShardingConfig {
+
+        @Bean
+        @Primary
+        public DataSource dataSource(ShardRouter shardRouter) {
+            Map<String, DataSource> dataSources = new LinkedHashMap<>();
+            for (String shard : shardRouter.getShardNames()) {
+                dataSources.put(shard, shardDataSource(shardRouter, shard));
+            }
+            return new ShardRoutingDataSource(dataSources, shardRouter.getHome());
+        }
+
+        /**
+         * 迁移每个分片（沿用 spring.flyway 的配置），然后恢复主分片中记录的分片成员
+         */
+        @Bean
+        public FlywayMigrationStrategy shardFlywayMigrationStrategy(ShardRouter shardRouter, Resharder resharder,
+                                                                    ShardingProperties properties) {
+            return flyway -> {
+                for (String shard : shardRouter.getShardNames()) {
+                    Flyway.configure()
+                            .configuration(flyway.getConfiguration())
+                            .dataSource(shardDataSource(shardRouter, shard))
+                            .load()
+                            .migrate();
+                }
+                resharder.restoreMembers(configuredRing(properties));
+            };
+        }
+
+        /**
+         * 只在分片模式下替换主键生成器，实体映射保持不变
+         * Hibernate 5.6中该设置已标记为过时，但尚无替代：不修改实体注解就替换生成器的新机制
+         * （@IdGeneratorType）在Hibernate 6才提供，升级到Hibernate 6时一并迁移
+         */
+        @Bean
+        @SuppressWarnings("deprecation")
+        public HibernatePropertiesCustomizer shardIdGeneratorCustomizer() {
+            return hibernateProperties -> hibernateProperties.put(
+                    AvailableSettings.IDENTIFIER_GENERATOR_STRATEGY_PROVIDER, ShardIdGenerator.STRATEGY_PROVIDER);
+        }
+
+        /**
+         * 各分片连接池的指标（hikaricp.connections.*，按pool=shard-<名称>区分）
+         * 连接池不是容器中的DataSource，不会被自动绑定，在指标注册表创建后再设置，避免与数据源互相依赖
+         */
+        @Bean
+        public MeterBinder shardPoolMetrics(ShardRouter shardRouter) {
+            return registry -> {
+                for (String shard : shardRouter.getShardNames()) {
+                    DataSource dataSource = shardDataSource(shardRouter, shard);
+                    if (dataSource instanceof HikariDataSource) {
+                        ((HikariDataSource) dataSource).setMetricRegistry(registry);
+                    }
+                }
+            };
+        }
+
+        @Bean
+        public ShardRoutingAspect shardRoutingAspect(ShardRouter shardRouter) {
+            return new ShardRoutingAspect(shardRouter);
+        }
+
+        @Bean
+        public Resharder resharder(ShardRouter shardRouter, ShardingProperties properties) {
+            return new Resharder(shardRouter, properties.getReshardChunkSize());
+        }
+
+        @Bean
+        public ShardingEndpoint shardingEndpoint(ShardRouter shardRouter, Resharder resharder) {
+            return new ShardingEndpoint(shardRouter, resharder);
+        }
+
+        private static DataSource shardDataSource(ShardRouter shardRouter, String shard) {
+            return shardRouter.getDataSource(shard);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.todolist.config;
+
+import com.example.todolist.filter.ConcurrencyLimitFilter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程执行模式（可选，todo.execution.virtual-threads=true 时启用）
+ * 每个请求在独立的虚拟线程上执行，阻塞在JDBC上时不占用平台线程，负载突增时不会因Tomcat线程耗尽而排队
+ * 请求并发不再受线程数限制，因此同时通过ConcurrencyLimitFilter按连接池大小限制并发，
+ * 避免大量请求同时阻塞在获取数据库连接上直至超时
+ * 虚拟线程需要JDK 21及以上；在较低版本的JDK上运行时保持原有的线程池模式并打印警告，
+ * 此时并发已由Tomcat线程数限制，不再注册ConcurrencyLimitFilter
+ * 虚拟线程在synchronized块内阻塞时会钉住载体线程（载体线程数默认等于CPU核数），
+ * 因此连接池和JDBC驱动使用以ReentrantLock加锁的版本（HikariCP 5.1.0、MySQL Connector/J 9.x，见pom.xml），
+ * 否则同时阻塞在数据库上的请求数实际被限制为CPU核数；可用 -Djdk.tracePinnedThreads=short 检查是否仍有钉住
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(name = "todo.execution.virtual-threads", havingValue = "true")
+public class VirtualThreadConfig {
+
+    /**
+     * 同时处理的最大请求数，默认等于Hikari连接池大小
+     */
+    @Value("${todo.execution.max-concurrent-requests:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int maxConcurrentRequests;
+
+    /**
+     * 请求等待执行许可的最长时间，超时返回503
+     */
+    @Value("${todo.execution.acquire-timeout-ms:1000}")
+    private long acquireTimeoutMs;
+
+    /**
+     * 虚拟线程执行器，JDK不支持虚拟线程时为null
+     */
+    private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandlerCustomizer() {
+        if (executor == null) {
+            log.warn("当前JDK({})不支持虚拟线程（需要JDK 21及以上），继续使用Tomcat线程池",
+                    System.getProperty("java.version"));
+            return protocolHandler -> { };
+        }
+        log.info("请求处理使用虚拟线程，最大并发请求数: {}", maxConcurrentRequests);
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter() {
+        FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+                new FilterRegistrationBean<>(new ConcurrencyLimitFilter(maxConcurrentRequests, acquireTimeoutMs));
+        registration.addUrlPatterns("/api/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        // 回退到Tomcat线程池时不限制：线程数本身就是并发上限，再加一层许可只会让请求额外排队和被拒绝
+        registration.setEnabled(executor != null);
+        return registration;
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器，使代码在JDK 8/17上也能编译运行
+     * @return 执行器，JDK不支持虚拟线程时返回null
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -3,14 +3,32 @@ package com.example.todolist.controller;
 import com.example.todolist.entity.Subtask;
 import com.example.todolist.entity.Todo;
 import com.example.todolist.enums.Priority;
+import com.example.todolist.metrics.QueryBudget;
+import com.example.todolist.search.InvertedIndex;
+import com.example.todolist.service.CacheService;
+import com.example.todolist.service.ChangeFeedService;
+import com.example.todolist.service.SearchService;
+import com.example.todolist.service.StatsRollupService;
 import com.example.todolist.service.SubtaskService;
+import com.example.todolist.service.SubtaskWriteBehindService;
+import com.example.todolist.service.SyncService;
 import com.example.todolist.service.TodoService;
+import com.example.todolist.service.TransferService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Todo REST API控制器
@@ -18,6 +36,8 @@ import java.util.List;
  * @RestController 标记这是一个REST控制器
  * @RequestMapping("/api") 所有接口都以/api开头
  * @CrossOrigin 允许跨域访问（使用全局配置）
+ * @QueryBudget 声明接口单次请求最多执行的SQL语句数，未标注的接口使用默认预算
+ * 响应格式按Accept头协商：JSON（默认）、Smile或CBOR（见JacksonConfig）
  */
 @Slf4j
 @RestController
@@ -31,15 +51,118 @@ public class TodoController {
     @Autowired
     private SubtaskService subtaskService;
 
+    /**
+     * 切换状态、修改优先级经由写缓冲（未启用时直接调用SubtaskService）
+     */
+    @Autowired
+    private SubtaskWriteBehindService subtaskWriteBehindService;
+
+    @Autowired
+    private StatsRollupService statsRollupService;
+
+    @Autowired
+    private CacheService cacheService;
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private ChangeFeedService changeFeedService;
+
+    @Autowired
+    private SearchService searchService;
+
+    @Autowired
+    private TransferService transferService;
+
     // ==================== Todo 相关接口 ====================
 
     /**
-     * 获取所有待办事项
+     * 获取所有待办事项（兼容旧接口，最多返回todo.list.legacy-limit条）
+     * 支持ETag/If-None-Match，数据未变化时返回304
      * @return 待办事项列表的ResponseEntity
      */
+    @QueryBudget(2)
     @GetMapping("/get-todo")
-    public ResponseEntity<List<Todo>> getAllTodos() {
-        return ResponseEntity.ok(todoService.getAllTodos());
+    public ResponseEntity<List<Todo>> getAllTodos(WebRequest webRequest) {
+        // ETag取自与数据一起缓存的版本号：缓存项在事务提交后才失效，此时读取当前版本号可能配上旧数据
+        SyncService.Versioned<List<Todo>> todos = todoService.getAllTodos();
+        // 弱ETag：同一版本的数据可能以不同格式（JSON/Smile/CBOR）和压缩编码返回，且Tomcat不压缩带强ETag的响应
+        String etag = "W/\"todos-" + todos.getVersion() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(todos.getValue());
+    }
+
+    /**
+     * 游标分页获取待办事项
+     * GET /api/todos?cursor=100&limit=50&completed=false&prefix=买
+     * 支持ETag/If-None-Match，数据未变化时返回304
+     * @param cursor 上一页返回的nextCursor，首页不传
+     * @param limit 页大小（默认50，最大200）
+     * @param completed 完成状态过滤，不传则返回全部
+     * @param prefix 内容前缀过滤
+     * @return 当前页数据及下一页游标
+     */
+    @QueryBudget(2)
+    @GetMapping("/todos")
+    public ResponseEntity<TodoService.TodoPage> listTodos(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Boolean completed,
+            @RequestParam(required = false) String prefix,
+            WebRequest webRequest) {
+        SyncService.Versioned<TodoService.TodoPage> page = todoService.listTodos(cursor, limit, completed, prefix);
+        String etag = "W/\"todos-" + page.getVersion() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(page.getValue());
+    }
+
+    /**
+     * 游标分页获取待办事项树（内嵌子任务和子任务统计），一次请求代替逐个任务请求子任务和统计
+     * GET /api/todos/tree?cursor=&limit=50&completed=false&prefix=买&subtasks=true
+     * 支持ETag/If-None-Match，任何待办事项或子任务变更前返回304
+     * @param cursor 上一页返回的nextCursor，首页不传
+     * @param limit 页大小（默认50，最大200）
+     * @param completed 完成状态过滤，不传时不过滤
+     * @param prefix 内容前缀过滤，不传时不过滤
+     * @param subtasks 是否内嵌子任务明细（默认true），为false时只返回统计
+     * @return 当前页数据及下一页游标
+     */
+    @QueryBudget(3)
+    @GetMapping("/todos/tree")
+    public ResponseEntity<TodoService.TodoTreePage> getTodoTree(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Boolean completed,
+            @RequestParam(required = false) String prefix,
+            @RequestParam(defaultValue = "true") boolean subtasks,
+            WebRequest webRequest) {
+        String etag = "W/\"tree-" + syncService.getTreeVersion() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT)
+                .body(todoService.getTodoTree(cursor, limit, completed, prefix, subtasks));
+    }
+
+    /**
+     * 增量同步：获取令牌之后新建、修改和删除的待办事项与子任务
+     * GET /api/sync?since=0&limit=500
+     * @param since 上次同步返回的token，首次同步传0
+     * @param limit 最多处理的变更条数（默认500，最大2000）
+     * 分片模式下各分片的版本号相互独立，不提供增量同步，返回501，客户端应改用分页接口和ETag
+     * @return 变更数据、删除的ID及新的token；resetRequired为true时需先重新全量加载
+     */
+    @QueryBudget(4)
+    @GetMapping("/sync")
+    public ResponseEntity<SyncService.SyncResult> sync(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(syncService.getChangesSince(since, limit));
     }
 
     /**
@@ -47,23 +170,36 @@ public class TodoController {
      * @param todo 待添加的待办事项
      * @return 添加后的待办事项ResponseEntity
      */
+    @QueryBudget(4)
     @PostMapping("/add-todo")
     public ResponseEntity<Todo> addTodo(@RequestBody Todo todo) {
         return ResponseEntity.ok(todoService.addTodo(todo));
     }
 
+    /**
+     * 批量添加待办事项（单个事务）
+     * POST /api/add-todos
+     * @param todos 待添加的待办事项列表
+     * @return 新建待办事项的ID列表
+     */
+    @PostMapping("/add-todos")
+    public ResponseEntity<List<Long>> addTodos(@RequestBody List<Todo> todos) {
+        return ResponseEntity.ok(todoService.addTodos(todos));
+    }
+
     /**
      * 更新待办事项状态
      * @param id 待更新的待办事项ID
      * @return 更新后的待办事项ResponseEntity
      */
+    @QueryBudget(5)
     @PostMapping("/update-todo/{id}")
     public ResponseEntity<Todo> updateTodoStatus(@PathVariable Long id) {
         return ResponseEntity.ok(todoService.updateTodoStatus(id));
     }
 
     /**
-     * 删除待办事项
+     * 删除待办事项（连同其子任务）
      * @param id 待删除的待办事项ID
      * @return 空的ResponseEntity
      */
@@ -73,22 +209,115 @@ public class TodoController {
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * 批量删除待办事项（连同其子任务），单次最多500条
+     * @param ids 待删除的待办事项ID列表
+     * @return 实际删除的数量
+     */
+    @PostMapping("/del-todos")
+    public ResponseEntity<Integer> deleteTodos(@RequestBody List<Long> ids) {
+        return ResponseEntity.ok(todoService.deleteTodos(ids));
+    }
+
+    /**
+     * 清理所有已完成的待办事项（连同其子任务），分块执行
+     * @return 删除的数量
+     */
+    @PostMapping("/del-completed-todos")
+    public ResponseEntity<Integer> purgeCompletedTodos() {
+        return ResponseEntity.ok(todoService.purgeCompletedTodos());
+    }
+
+    // ==================== 导出/导入接口 ====================
+
+    /**
+     * 导出全部待办事项及其子任务（NDJSON，每行一个待办事项，子任务内嵌在subtasks中）
+     * GET /api/export
+     * 边查询边写出，内存占用与数据量无关；SQL语句数与数据量成正比，不设预算
+     * @param response HTTP响应
+     */
+    @QueryBudget(Integer.MAX_VALUE)
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportTodos(HttpServletResponse response) throws IOException {
+        log.info("导出全部待办事项");
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"todos.ndjson\"");
+        transferService.exportTo(response.getOutputStream());
+    }
+
+    /**
+     * 导入待办事项及其子任务（格式与导出相同，全部新建）
+     * POST /api/import，Content-Type: application/x-ndjson
+     * 边解析边分块写入，每块单独提交；导入过程中可通过 /api/import/progress 查看进度
+     * @param request HTTP请求（请求体为NDJSON）
+     * @return 导入的数量和耗时
+     */
+    @QueryBudget(Integer.MAX_VALUE)
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<TransferService.ImportProgress> importTodos(HttpServletRequest request) throws IOException {
+        log.info("导入待办事项");
+        return ResponseEntity.ok(transferService.importFrom(request.getInputStream()));
+    }
+
+    /**
+     * 获取正在进行的导入的进度
+     * GET /api/import/progress
+     * @return 各导入已提交的待办事项数、子任务数和已用时间
+     */
+    @QueryBudget(0)
+    @GetMapping("/import/progress")
+    public ResponseEntity<List<TransferService.ImportProgress>> getImportProgress() {
+        return ResponseEntity.ok(transferService.getRunningImports());
+    }
+
+    /**
+     * 订阅变更推送（Server-Sent Events）
+     * GET /api/changes/stream
+     * 事件名为变更类型（TODO_CREATED、TODO_UPDATED、TODO_DELETED、SUBTASK_CREATED、SUBTASK_UPDATED、SUBTASK_DELETED、SUBTASKS_CLEARED）
+     * 连接断开后客户端应通过 /api/sync 补齐错过的变更
+     * @return SSE连接
+     */
+    @QueryBudget(0)
+    @GetMapping(value = "/changes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges() {
+        return changeFeedService.subscribe();
+    }
+
+    /**
+     * 获取变更推送状态
+     * GET /api/changes/stats
+     * @return 当前订阅数及被断开的慢订阅者数量
+     */
+    @QueryBudget(0)
+    @GetMapping("/changes/stats")
+    public ResponseEntity<ChangeFeedService.FeedStats> getChangeFeedStats() {
+        return ResponseEntity.ok(changeFeedService.getStats());
+    }
+
     // ==================== Subtask 相关接口 ====================
 
     /**
      * 获取指定任务的所有子任务（按优先级排序）
      * GET /api/tasks/{id}/subtasks?sortByPriority=true
+     * 支持ETag/If-None-Match，任务及其子任务未变化时返回304
      * @param id 父任务ID
      * @param sortByPriority 是否按优先级排序（默认true）
      * @return 子任务列表
      */
+    @QueryBudget(3)
     @GetMapping("/tasks/{id}/subtasks")
     public ResponseEntity<List<Subtask>> getSubtasks(
             @PathVariable Long id,
-            @RequestParam(defaultValue = "true") boolean sortByPriority) {
-        log.info("获取任务ID{}的子任务列表，优先级排序: {}", id, sortByPriority);
-        List<Subtask> subtasks = subtaskService.getSubtasksByParentId(id, sortByPriority);
-        return ResponseEntity.ok(subtasks);
+            @RequestParam(defaultValue = "true") boolean sortByPriority,
+            WebRequest webRequest) {
+        log.debug("获取任务ID{}的子任务列表，优先级排序: {}", id, sortByPriority);
+        SyncService.Versioned<List<Subtask>> subtasks = subtaskService.getSubtasksByParentId(id, sortByPriority);
+        String etag = "W/\"subtasks-" + id + "-" + subtasks.getVersion() + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return ResponseEntity.ok().eTag(etag).varyBy(HttpHeaders.ACCEPT).body(subtasks.getValue());
     }
 
     /**
@@ -102,7 +331,7 @@ public class TodoController {
     public ResponseEntity<List<Subtask>> getSubtasksByStatus(
             @PathVariable Long id,
             @RequestParam boolean completed) {
-        log.info("获取任务ID{}的子任务，完成状态: {}", id, completed);
+        log.debug("获取任务ID{}的子任务，完成状态: {}", id, completed);
         List<Subtask> subtasks = subtaskService.getSubtasksByParentIdAndCompleted(id, completed);
         return ResponseEntity.ok(subtasks);
     }
@@ -118,7 +347,7 @@ public class TodoController {
     public ResponseEntity<List<Subtask>> getSubtasksByPriority(
             @PathVariable Long id,
             @RequestParam Priority priority) {
-        log.info("获取任务ID{}的{}优先级子任务", id, priority);
+        log.debug("获取任务ID{}的{}优先级子任务", id, priority);
         List<Subtask> subtasks = subtaskService.getSubtasksByPriority(id, priority);
         return ResponseEntity.ok(subtasks);
     }
@@ -130,9 +359,10 @@ public class TodoController {
      * @param subtask 子任务信息（包含优先级）
      * @return 创建的子任务
      */
+    @QueryBudget(5)
     @PostMapping("/tasks/{id}/subtasks")
     public ResponseEntity<Subtask> addSubtask(@PathVariable Long id, @RequestBody Subtask subtask) {
-        log.info("为任务ID{}添加子任务: {}，优先级: {}", id, subtask.getValue(), subtask.getPriority());
+        log.debug("为任务ID{}添加子任务: {}，优先级: {}", id, subtask.getValue(), subtask.getPriority());
         Subtask createdSubtask = subtaskService.addSubtask(id, subtask);
         return ResponseEntity.ok(createdSubtask);
     }
@@ -146,8 +376,8 @@ public class TodoController {
      */
     @PutMapping("/subtasks/{id}")
     public ResponseEntity<Subtask> updateSubtask(@PathVariable Long id, @RequestBody Subtask subtask) {
-        log.info("更新子任务ID{}: {}，优先级: {}", id, subtask.getValue(), subtask.getPriority());
-        Subtask updatedSubtask = subtaskService.updateSubtask(id, subtask);
+        log.debug("更新子任务ID{}: {}，优先级: {}", id, subtask.getValue(), subtask.getPriority());
+        Subtask updatedSubtask = subtaskWriteBehindService.updateSubtask(id, subtask);
         return ResponseEntity.ok(updatedSubtask);
     }
 
@@ -156,14 +386,14 @@ public class TodoController {
      * PUT /api/subtasks/{id}/priority
      * @param id 子任务ID
      * @param request 包含优先级的请求体
-     * @return 更新后的子任务
+     * @return 更新后的子任务（启用写缓冲时为写入后的预期状态）
      */
     @PutMapping("/subtasks/{id}/priority")
     public ResponseEntity<Subtask> updateSubtaskPriority(
             @PathVariable Long id,
             @RequestBody PriorityUpdateRequest request) {
-        log.info("更新子任务ID{}的优先级为: {}", id, request.getPriority());
-        Subtask updatedSubtask = subtaskService.updateSubtaskPriority(id, request.getPriority());
+        log.debug("更新子任务ID{}的优先级为: {}", id, request.getPriority());
+        Subtask updatedSubtask = subtaskWriteBehindService.updateSubtaskPriority(id, request.getPriority());
         return ResponseEntity.ok(updatedSubtask);
     }
 
@@ -171,12 +401,13 @@ public class TodoController {
      * 切换子任务完成状态
      * POST /api/subtasks/{id}/toggle
      * @param id 子任务ID
-     * @return 更新后的子任务
+     * @return 更新后的子任务（启用写缓冲时为写入后的预期状态）
      */
+    @QueryBudget(5)
     @PostMapping("/subtasks/{id}/toggle")
     public ResponseEntity<Subtask> toggleSubtaskStatus(@PathVariable Long id) {
-        log.info("切换子任务ID{}的完成状态", id);
-        Subtask updatedSubtask = subtaskService.toggleSubtaskStatus(id);
+        log.debug("切换子任务ID{}的完成状态", id);
+        Subtask updatedSubtask = subtaskWriteBehindService.toggleSubtaskStatus(id);
         return ResponseEntity.ok(updatedSubtask);
     }
 
@@ -188,8 +419,8 @@ public class TodoController {
      */
     @DeleteMapping("/subtasks/{id}")
     public ResponseEntity<Void> deleteSubtask(@PathVariable Long id) {
-        log.info("删除子任务ID{}", id);
-        subtaskService.deleteSubtask(id);
+        log.debug("删除子任务ID{}", id);
+        subtaskWriteBehindService.deleteSubtask(id);
         return ResponseEntity.ok().build();
     }
 
@@ -199,13 +430,28 @@ public class TodoController {
      * @param id 父任务ID
      * @return 子任务统计信息
      */
+    @QueryBudget(1)
     @GetMapping("/tasks/{id}/subtasks/stats")
     public ResponseEntity<SubtaskService.SubtaskStats> getSubtaskStats(@PathVariable Long id) {
-        log.info("获取任务ID{}的子任务统计信息", id);
+        log.debug("获取任务ID{}的子任务统计信息", id);
         SubtaskService.SubtaskStats stats = subtaskService.getSubtaskStats(id);
         return ResponseEntity.ok(stats);
     }
 
+    /**
+     * 批量获取多个任务的子任务统计信息（单次聚合查询）
+     * GET /api/subtasks/stats?parentIds=1,2,3
+     * @param parentIds 父任务ID列表（最多500个）
+     * @return 父任务ID到子任务统计信息的映射
+     */
+    @QueryBudget(1)
+    @GetMapping("/subtasks/stats")
+    public ResponseEntity<Map<Long, SubtaskService.SubtaskStats>> getSubtaskStatsBatch(
+            @RequestParam List<Long> parentIds) {
+        log.debug("批量获取{}个任务的子任务统计信息", parentIds.size());
+        return ResponseEntity.ok(subtaskService.getSubtaskStats(parentIds));
+    }
+
     /**
      * 删除任务的所有子任务
      * DELETE /api/tasks/{id}/subtasks
@@ -214,16 +460,88 @@ public class TodoController {
      */
     @DeleteMapping("/tasks/{id}/subtasks")
     public ResponseEntity<Void> deleteAllSubtasks(@PathVariable Long id) {
-        log.info("删除任务ID{}的所有子任务", id);
+        log.debug("删除任务ID{}的所有子任务", id);
         subtaskService.deleteSubtasksByParentId(id);
         return ResponseEntity.ok().build();
     }
 
+    /**
+     * 获取某个任务的子任务数量（内存计数，不查询数据库）
+     * GET /api/tasks/{id}/subtasks/count
+     * @param id 父任务ID
+     * @return 子任务数量统计
+     */
+    @QueryBudget(0)
+    @GetMapping("/tasks/{id}/subtasks/count")
+    public ResponseEntity<StatsRollupService.SubtaskCount> getSubtaskCount(@PathVariable Long id) {
+        return ResponseEntity.ok(statsRollupService.getSubtaskCount(id));
+    }
+
+    // ==================== 搜索接口 ====================
+
+    /**
+     * 全文搜索待办事项和子任务（内存倒排索引，不查询数据库）
+     * GET /api/search?q=买菜&type=SUBTASK&completed=false&priority=HIGH&offset=0&limit=20
+     * @param q 查询文本，英文词按前缀匹配，中文按相邻两字匹配，所有词都必须匹配
+     * @param type 只搜索TODO或SUBTASK，不传则都搜索
+     * @param completed 完成状态过滤
+     * @param priority 优先级过滤（只返回子任务）
+     * @param offset 跳过的结果数（默认0）
+     * @param limit 返回条数（默认20，最大100）
+     * @return 按相关度排序的结果及匹配总数；truncated为true表示某个前缀匹配的词过多，结果不完整，应输入更长的前缀
+     */
+    @QueryBudget(0)
+    @GetMapping("/search")
+    public ResponseEntity<InvertedIndex.SearchPage> search(
+            @RequestParam String q,
+            @RequestParam(required = false) InvertedIndex.DocumentType type,
+            @RequestParam(required = false) Boolean completed,
+            @RequestParam(required = false) Priority priority,
+            @RequestParam(required = false) Integer offset,
+            @RequestParam(required = false) Integer limit) {
+        log.debug("搜索: {}，类型: {}，完成状态: {}，优先级: {}", q, type, completed, priority);
+        return ResponseEntity.ok(searchService.search(q, type, completed, priority, offset, limit));
+    }
+
+    /**
+     * 获取全局统计信息（内存计数，不查询数据库）
+     * GET /api/stats
+     * @return 待办事项与子任务的总数、完成数及子任务优先级分布
+     */
+    @QueryBudget(0)
+    @GetMapping("/stats")
+    public ResponseEntity<StatsRollupService.DashboardStats> getDashboardStats() {
+        return ResponseEntity.ok(statsRollupService.getDashboardStats());
+    }
+
+    /**
+     * 获取缓存命中统计
+     * GET /api/cache/stats
+     * @return 各缓存的条数、命中/未命中次数和命中率
+     */
+    @QueryBudget(0)
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, CacheService.CacheMetrics>> getCacheStats() {
+        return ResponseEntity.ok(cacheService.getCacheMetrics());
+    }
+
+    /**
+     * 获取子任务写缓冲状态
+     * GET /api/write-behind/stats
+     * @return 是否启用、待写入的子任务数及累计的缓冲操作数、写入行数和失败批次数
+     */
+    @QueryBudget(0)
+    @GetMapping("/write-behind/stats")
+    public ResponseEntity<SubtaskWriteBehindService.WriteBehindStats> getWriteBehindStats() {
+        return ResponseEntity.ok(subtaskWriteBehindService.getStats());
+    }
+
     /**
      * 获取所有优先级选项
      * GET /api/priorities
      * @return 优先级列表
      */
+    @QueryBudget(0)
     @GetMapping("/priorities")
     public ResponseEntity<Priority[]> getPriorities() {
         return ResponseEntity.ok(Priority.values());
@@ -0,0 +1,24 @@
+package com.example.todolist.converter;
+
+import com.example.todolist.enums.Priority;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * 优先级与数据库数值之间的转换器
+ * 数据库中保存Priority.getLevel()，使 ORDER BY priority 按真实的优先级高低排序并能走索引
+ */
+@Converter
+public class PriorityConverter implements AttributeConverter<Priority, Integer> {
+
+    @Override
+    public Integer convertToDatabaseColumn(Priority priority) {
+        return priority == null ? null : priority.getLevel();
+    }
+
+    @Override
+    public Priority convertToEntityAttribute(Integer level) {
+        return level == null ? null : Priority.fromLevel(level);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.todolist.entity;
+
+import com.example.todolist.event.ChangeType;
+import lombok.Data;
+import javax.persistence.*;
+
+/**
+ * 变更日志实体类，对应数据库中的change_log表
+ * 每次待办事项/子任务的写操作都会在同一事务中追加一条记录，记录的版本号即增量同步的令牌
+ */
+@Data
+@Entity
+@Table(name = "change_log", indexes = {
+        @Index(name = "idx_change_log_version", columnList = "version", unique = true),
+        @Index(name = "idx_change_log_type_version", columnList = "entity_type, version"),
+        @Index(name = "idx_change_log_parent_version", columnList = "parent_task_id, version")
+})
+public class ChangeLog {
+    /**
+     * 主键ID，使用自增策略；在事务写入时分配，顺序与提交顺序可能不同，不能用作同步令牌
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * 版本号，事务提交前持有版本计数的行锁时分配（见ChangeLogCounter），顺序即提交顺序
+     */
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    /**
+     * 实体类型
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "entity_type", nullable = false, length = 16)
+    private EntityType entityType;
+
+    /**
+     * 实体ID
+     */
+    @Column(name = "entity_id", nullable = false)
+    private Long entityId;
+
+    /**
+     * 所属父任务ID：子任务为其父任务ID，待办事项为自身ID
+     */
+    @Column(name = "parent_task_id")
+    private Long parentTaskId;
+
+    /**
+     * 变更类型
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(name = "change_type", nullable = false, length = 16)
+    private ChangeType changeType;
+
+    /**
+     * 变更时间
+     */
+    @Column(name = "changed_at", nullable = false)
+    private java.time.LocalDateTime changedAt;
+
+    /**
+     * 变更的实体类型
+     */
+    public enum EntityType {
+        TODO,
+        SUBTASK
+    }
+
+    public static ChangeLog of(EntityType entityType, Long entityId, Long parentTaskId, ChangeType changeType) {
+        ChangeLog log = new ChangeLog();
+        log.setEntityType(entityType);
+        log.setEntityId(entityId);
+        log.setParentTaskId(parentTaskId);
+        log.setChangeType(changeType);
+        log.setChangedAt(java.time.LocalDateTime.now());
+        return log;
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.todolist.entity;
+
+import lombok.Data;
+import javax.persistence.*;
+
+/**
+ * 变更日志版本计数实体类，对应数据库中的change_log_counter表（只有一行）
+ * 写事务在提交前对该行加锁并递增版本号，锁一直持有到提交，
+ * 因此后分配到版本号的事务一定在先分配到的事务提交之后才提交：读到版本号N时，所有不大于N的版本都已提交
+ */
+@Data
+@Entity
+@Table(name = "change_log_counter")
+public class ChangeLogCounter {
+
+    /**
+     * 唯一一行的主键
+     */
+    public static final int SINGLETON_ID = 1;
+
+    @Id
+    private Integer id;
+
+    /**
+     * 最后分配的版本号
+     */
+    @Column(name = "current_version", nullable = false)
+    private Long currentVersion;
+
+    /**
+     * 已清理的最大版本号，不大于该值的变更日志已被删除
+     */
+    @Column(name = "pruned_version", nullable = false)
+    private Long prunedVersion;
+}
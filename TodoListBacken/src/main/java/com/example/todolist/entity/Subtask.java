@@ -1,5 +1,6 @@
 package com.example.todolist.entity;
 
+import com.example.todolist.converter.PriorityConverter;
 import com.example.todolist.enums.Priority;
 import lombok.Data;
 import javax.persistence.*;
@@ -11,13 +12,18 @@ import javax.persistence.*;
  */
 @Data
 @Entity
-@Table(name = "subtask")
+@Table(name = "subtask", indexes = {
+        @Index(name = "idx_subtask_parent_priority", columnList = "parent_task_id, priority DESC, created_at"),
+        @Index(name = "idx_subtask_parent_completed_priority", columnList = "parent_task_id, is_completed, priority DESC, created_at")
+})
 public class Subtask {
     /**
-     * 主键ID，使用自增策略
+     * 主键ID，由序列表subtask_id_seq按块分配（pooled-lo，每次取50个）
+     * 不使用IDENTITY：IDENTITY要求每条INSERT立即执行以取回自增值，会使Hibernate的JDBC批处理失效
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "subtask_id_seq")
+    @SequenceGenerator(name = "subtask_id_seq", sequenceName = "subtask_id_seq", allocationSize = 50)
     private Long id;
 
     /**
@@ -40,11 +46,19 @@ public class Subtask {
 
     /**
      * 优先级，默认为中等优先级
+     * 数据库中保存优先级等级数值（见PriorityConverter）
      */
-    @Enumerated(EnumType.STRING)
+    @Convert(converter = PriorityConverter.class)
     @Column(nullable = false)
     private Priority priority = Priority.MEDIUM;
 
+    /**
+     * 乐观锁版本号，每次更新加1
+     * 更新时带上读取到的版本号，若期间已被他人修改则更新失败，避免覆盖别人的修改
+     */
+    @Version
+    private Long version;
+
     /**
      * 创建时间
      */
@@ -58,12 +72,18 @@ public class Subtask {
     private java.time.LocalDateTime updatedAt;
 
     /**
-     * 在保存前自动设置创建时间和更新时间
+     * 在保存前自动设置创建时间和更新时间（未设置时）
      */
     @PrePersist
     protected void onCreate() {
-        createdAt = java.time.LocalDateTime.now();
-        updatedAt = java.time.LocalDateTime.now();
+        // 已有值时保留（导入数据时沿用原来的时间），新建接口会先清空客户端传入的时间
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        if (createdAt == null) {
+            createdAt = now;
+        }
+        if (updatedAt == null) {
+            updatedAt = now;
+        }
     }
 
     /**
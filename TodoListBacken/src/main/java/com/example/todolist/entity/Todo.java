@@ -10,13 +10,18 @@ import javax.persistence.*;
  */
 @Data
 @Entity
-@Table(name = "todo_list")
+@Table(name = "todo_list", indexes = {
+        @Index(name = "idx_todo_completed_id", columnList = "is_completed, id"),
+        @Index(name = "idx_todo_value_id", columnList = "value, id")
+})
 public class Todo {
     /**
-     * 主键ID，使用自增策略
+     * 主键ID，由序列表todo_id_seq按块分配（pooled-lo，每次取50个）
+     * 不使用IDENTITY：IDENTITY要求每条INSERT立即执行以取回自增值，会使Hibernate的JDBC批处理失效
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "todo_id_seq")
+    @SequenceGenerator(name = "todo_id_seq", sequenceName = "todo_id_seq", allocationSize = 50)
     private Long id;
     
     /**
@@ -30,4 +35,46 @@ public class Todo {
      */
     @Column(name = "is_completed")
     private boolean completed = false;
+
+    /**
+     * 乐观锁版本号，每次更新加1
+     * 更新时带上读取到的版本号，若期间已被他人修改则更新失败，避免覆盖别人的修改
+     */
+    @Version
+    private Long version;
+
+    /**
+     * 创建时间
+     */
+    @Column(name = "created_at")
+    private java.time.LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    @Column(name = "updated_at")
+    private java.time.LocalDateTime updatedAt;
+
+    /**
+     * 在保存前自动设置创建时间和更新时间（未设置时）
+     */
+    @PrePersist
+    protected void onCreate() {
+        // 已有值时保留（导入数据时沿用原来的时间），新建接口会先清空客户端传入的时间
+        java.time.LocalDateTime now = java.time.LocalDateTime.now();
+        if (createdAt == null) {
+            createdAt = now;
+        }
+        if (updatedAt == null) {
+            updatedAt = now;
+        }
+    }
+
+    /**
+     * 在更新前自动设置更新时间
+     */
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = java.time.LocalDateTime.now();
+    }
 } 
\ No newline at end of file
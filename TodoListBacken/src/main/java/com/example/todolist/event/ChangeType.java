@@ -0,0 +1,21 @@
+package com.example.todolist.event;
+
+/**
+ * 数据变更类型
+ */
+public enum ChangeType {
+    /**
+     * 新建
+     */
+    CREATED,
+
+    /**
+     * 修改
+     */
+    UPDATED,
+
+    /**
+     * 删除
+     */
+    DELETED
+}
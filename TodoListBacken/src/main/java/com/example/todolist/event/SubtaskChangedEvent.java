@@ -0,0 +1,67 @@
+package com.example.todolist.event;
+
+import com.example.todolist.entity.Subtask;
+import lombok.Getter;
+
+/**
+ * 子任务变更事件
+ * 由SubtaskService在写操作后发布，监听方通过@TransactionalEventListener在事务提交后处理
+ * before/after 为变更前后的快照（不是受管实体），新建时before为null，删除时after为null
+ */
+@Getter
+public class SubtaskChangedEvent {
+
+    private final ChangeType type;
+    private final Subtask before;
+    private final Subtask after;
+
+    private SubtaskChangedEvent(ChangeType type, Subtask before, Subtask after) {
+        this.type = type;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static SubtaskChangedEvent created(Subtask after) {
+        return new SubtaskChangedEvent(ChangeType.CREATED, null, snapshot(after));
+    }
+
+    public static SubtaskChangedEvent updated(Subtask before, Subtask after) {
+        return new SubtaskChangedEvent(ChangeType.UPDATED, before, snapshot(after));
+    }
+
+    public static SubtaskChangedEvent deleted(Subtask before) {
+        return new SubtaskChangedEvent(ChangeType.DELETED, before, null);
+    }
+
+    /**
+     * 变更的子任务ID
+     */
+    public Long getSubtaskId() {
+        return after != null ? after.getId() : before.getId();
+    }
+
+    /**
+     * 子任务所属的父任务ID
+     */
+    public Long getParentTaskId() {
+        return after != null ? after.getParentTaskId() : before.getParentTaskId();
+    }
+
+    /**
+     * 复制实体的当前状态，避免后续修改影响事件内容
+     * @param subtask 子任务
+     * @return 快照
+     */
+    public static Subtask snapshot(Subtask subtask) {
+        Subtask copy = new Subtask();
+        copy.setId(subtask.getId());
+        copy.setValue(subtask.getValue());
+        copy.setCompleted(subtask.isCompleted());
+        copy.setParentTaskId(subtask.getParentTaskId());
+        copy.setPriority(subtask.getPriority());
+        copy.setVersion(subtask.getVersion());
+        copy.setCreatedAt(subtask.getCreatedAt());
+        copy.setUpdatedAt(subtask.getUpdatedAt());
+        return copy;
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.todolist.event;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * 某个父任务下的子任务被全部删除的事件
+ * 批量删除不逐条加载实体，因此只携带被删除子任务的ID，不携带快照
+ */
+@Getter
+public class SubtasksClearedEvent {
+
+    private final Long parentTaskId;
+    private final List<Long> subtaskIds;
+
+    public SubtasksClearedEvent(Long parentTaskId, List<Long> subtaskIds) {
+        this.parentTaskId = parentTaskId;
+        this.subtaskIds = subtaskIds;
+    }
+}
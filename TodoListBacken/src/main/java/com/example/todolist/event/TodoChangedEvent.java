@@ -0,0 +1,58 @@
+package com.example.todolist.event;
+
+import com.example.todolist.entity.Todo;
+import lombok.Getter;
+
+/**
+ * 待办事项变更事件
+ * 由TodoService在写操作后发布，监听方通过@TransactionalEventListener在事务提交后处理
+ * before/after 为变更前后的快照（不是受管实体），新建时before为null，删除时after为null
+ */
+@Getter
+public class TodoChangedEvent {
+
+    private final ChangeType type;
+    private final Todo before;
+    private final Todo after;
+
+    private TodoChangedEvent(ChangeType type, Todo before, Todo after) {
+        this.type = type;
+        this.before = before;
+        this.after = after;
+    }
+
+    public static TodoChangedEvent created(Todo after) {
+        return new TodoChangedEvent(ChangeType.CREATED, null, snapshot(after));
+    }
+
+    public static TodoChangedEvent updated(Todo before, Todo after) {
+        return new TodoChangedEvent(ChangeType.UPDATED, before, snapshot(after));
+    }
+
+    public static TodoChangedEvent deleted(Todo before) {
+        return new TodoChangedEvent(ChangeType.DELETED, before, null);
+    }
+
+    /**
+     * 变更的待办事项ID
+     */
+    public Long getTodoId() {
+        return after != null ? after.getId() : before.getId();
+    }
+
+    /**
+     * 复制实体的当前状态，避免后续修改影响事件内容
+     * @param todo 待办事项
+     * @return 快照
+     */
+    public static Todo snapshot(Todo todo) {
+        Todo copy = new Todo();
+        copy.setId(todo.getId());
+        copy.setValue(todo.getValue());
+        copy.setCompleted(todo.isCompleted());
+        copy.setVersion(todo.getVersion());
+        copy.setCreatedAt(todo.getCreatedAt());
+        copy.setUpdatedAt(todo.getUpdatedAt());
+        return copy;
+    }
+}
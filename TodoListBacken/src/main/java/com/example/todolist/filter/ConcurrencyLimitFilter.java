@@ -0,0 +1,80 @@
+package com.example.todolist.filter;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 请求并发限制过滤器
+ * 同时处理的请求数超过上限时，新请求最多等待acquireTimeoutMs，仍无空闲许可则返回503
+ * 长时间运行的流式接口不计入并发：变更推送（SSE）长连接不访问数据库；
+ * 导出、导入在整个传输期间占用请求，但每批只短暂借用连接，由连接池自身限制，
+ * 持有许可会在传输期间挤占普通请求
+ */
+@Slf4j
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> STREAMING_PATHS = new HashSet<>(Arrays.asList(
+            "/api/changes/stream", "/api/export", "/api/import"));
+
+    private final Semaphore permits;
+    private final int maxConcurrentRequests;
+    private final long acquireTimeoutMs;
+    private final LongAdder rejectedRequests = new LongAdder();
+
+    public ConcurrencyLimitFilter(int maxConcurrentRequests, long acquireTimeoutMs) {
+        if (maxConcurrentRequests <= 0) {
+            throw new IllegalArgumentException("最大并发请求数必须大于0: " + maxConcurrentRequests);
+        }
+        this.permits = new Semaphore(maxConcurrentRequests, true);
+        this.maxConcurrentRequests = maxConcurrentRequests;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return STREAMING_PATHS.contains(request.getRequestURI());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            rejectedRequests.increment();
+            log.warn("并发请求数已达上限{}，拒绝请求: {} {}", maxConcurrentRequests, request.getMethod(), request.getRequestURI());
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "服务繁忙，请稍后重试");
+            return;
+        }
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * 因并发超限被拒绝的请求数
+     */
+    public long getRejectedRequests() {
+        return rejectedRequests.sum();
+    }
+}
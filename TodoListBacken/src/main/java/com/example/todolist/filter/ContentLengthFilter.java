@@ -0,0 +1,47 @@
+package com.example.todolist.filter;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 为接口响应补上Content-Length，使响应压缩的阈值（server.compression.min-response-size）生效
+ * 消息转换器写完响应体后会flush输出流，响应在Tomcat得知长度之前就已按分块传输提交，
+ * 而长度未知的响应不论大小都会被压缩；这里先把响应体缓存在内存中，处理完后带着长度一次写出
+ * 流式接口不经过本过滤器：其响应体不应整体驻留内存，也需要边生成边发送
+ */
+public class ContentLengthFilter extends OncePerRequestFilter {
+
+    private final Set<String> streamingPaths;
+
+    /**
+     * @param streamingPaths 不缓存响应体的接口路径（不含上下文路径）
+     */
+    public ContentLengthFilter(String... streamingPaths) {
+        this.streamingPaths = new HashSet<>(Arrays.asList(streamingPaths));
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return streamingPaths.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        ContentCachingResponseWrapper buffered = new ContentCachingResponseWrapper(response);
+        try {
+            filterChain.doFilter(request, buffered);
+        } finally {
+            buffered.copyBodyToResponse();
+        }
+    }
+}
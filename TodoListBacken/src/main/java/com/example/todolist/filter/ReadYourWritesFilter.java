@@ -0,0 +1,62 @@
+package com.example.todolist.filter;
+
+import com.example.todolist.replica.ReplicaContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 写后读一致过滤器（启用只读副本时）
+ * 为每个请求建立读路由状态；请求中执行过写事务的客户端，在接下来的窗口时间内只读主库，
+ * 不会因为副本的复制延迟而看不到自己刚写入的数据
+ * 客户端以请求头X-Client-Id区分，没有该请求头时按来源地址区分；记录只保存在本实例内存中，
+ * 多实例部署时需要按客户端粘性路由
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+    /**
+     * 最多同时记录的客户端数
+     */
+    private static final int MAX_CLIENTS = 100_000;
+
+    /**
+     * 客户端到最近一次写入的时间，超过窗口自动过期
+     */
+    private final Cache<String, Long> recentWriters;
+
+    public ReadYourWritesFilter(long windowMillis) {
+        this.recentWriters = Caffeine.newBuilder()
+                .maximumSize(MAX_CLIENTS)
+                .expireAfterWrite(windowMillis, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String client = clientOf(request);
+        ReplicaContext.Scope scope = ReplicaContext.open(recentWriters.getIfPresent(client) != null);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (scope.isWritten()) {
+                recentWriters.put(client, System.currentTimeMillis());
+            }
+            ReplicaContext.close();
+        }
+    }
+
+    private static String clientOf(HttpServletRequest request) {
+        String clientId = request.getHeader(CLIENT_ID_HEADER);
+        return clientId == null || clientId.isEmpty() ? request.getRemoteAddr() : clientId;
+    }
+}
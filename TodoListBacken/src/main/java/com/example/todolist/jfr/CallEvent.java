@@ -0,0 +1,30 @@
+package com.example.todolist.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * 调用事件基类：记录一次方法调用的耗时（JFR自动记录开始时间和持续时间）、操作名、实体ID、行数和异常
+ * 不采集调用栈，单个事件的开销只有几十纳秒，可在生产环境持续录制
+ */
+@StackTrace(false)
+abstract class CallEvent extends Event {
+
+    @Label("Operation")
+    @Description("类名.方法名")
+    String operation;
+
+    @Label("Entity ID")
+    @Description("第一个Long类型参数（通常是待办事项或子任务ID），没有时为0")
+    long entityId;
+
+    @Label("Row Count")
+    @Description("返回的条数或影响的行数，无法确定时为-1")
+    int rowCount;
+
+    @Label("Exception")
+    @Description("抛出的异常类名，正常返回时为空")
+    String exception;
+}
@@ -0,0 +1,14 @@
+package com.example.todolist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR事件：REST接口调用
+ */
+@Name("com.example.todolist.ControllerCall")
+@Label("Controller Call")
+@Category({"TodoList", "Controller"})
+class ControllerCallEvent extends CallEvent {
+}
@@ -0,0 +1,117 @@
+package com.example.todolist.jfr;
+
+import com.example.todolist.service.TodoService;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.repository.Repository;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 为控制器、服务和仓库方法生成JFR事件
+ * 没有录制或事件未启用时只多一次isEnabled判断；操作名、ID和行数只在事件需要提交时才计算
+ * 录制方式见Dockerfile（-XX:StartFlightRecording），也可运行时通过 jcmd <pid> JFR.start 开启
+ */
+@Aspect
+public class FlightRecorderAspect {
+
+    @Around("within(com.example.todolist.controller..*)")
+    public Object recordController(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(new ControllerCallEvent(), joinPoint);
+    }
+
+    @Around("within(com.example.todolist.service..*)")
+    public Object recordService(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(new ServiceCallEvent(), joinPoint);
+    }
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object recordRepository(ProceedingJoinPoint joinPoint) throws Throwable {
+        return record(new RepositoryQueryEvent(), joinPoint);
+    }
+
+    private static Object record(CallEvent event, ProceedingJoinPoint joinPoint) throws Throwable {
+        if (!event.isEnabled()) {
+            return joinPoint.proceed();
+        }
+        event.begin();
+        Object result = null;
+        Throwable failure = null;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operationOf(joinPoint);
+                event.entityId = entityIdOf(joinPoint.getArgs());
+                event.rowCount = failure == null ? rowCountOf(result) : -1;
+                event.exception = failure == null ? null : failure.getClass().getName();
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * 仓库方法可能声明在JpaRepository等父接口上，操作名使用实际的仓库接口名
+     */
+    private static String operationOf(ProceedingJoinPoint joinPoint) {
+        Class<?> type;
+        if (joinPoint.getThis() instanceof Repository) {
+            type = AopProxyUtils.proxiedUserInterfaces(joinPoint.getThis())[0];
+        } else {
+            type = joinPoint.getSignature().getDeclaringType();
+        }
+        return type.getSimpleName() + "." + joinPoint.getSignature().getName();
+    }
+
+    private static long entityIdOf(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof Long) {
+                return (Long) arg;
+            }
+        }
+        return 0L;
+    }
+
+    private static int rowCountOf(Object result) {
+        if (result instanceof ResponseEntity) {
+            result = ((ResponseEntity<?>) result).getBody();
+        }
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Map) {
+            return ((Map<?, ?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof TodoService.TodoPage) {
+            return ((TodoService.TodoPage) result).getItems().size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        if (result instanceof Integer) {
+            // @Modifying语句返回的影响行数
+            return (Integer) result;
+        }
+        if (result instanceof Object[]) {
+            return ((Object[]) result).length;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.todolist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR事件：仓库方法调用（一次或多次SQL）
+ */
+@Name("com.example.todolist.RepositoryQuery")
+@Label("Repository Query")
+@Category({"TodoList", "Repository"})
+class RepositoryQueryEvent extends CallEvent {
+}
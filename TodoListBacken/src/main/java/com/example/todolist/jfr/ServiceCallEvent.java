@@ -0,0 +1,14 @@
+package com.example.todolist.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR事件：服务方法调用
+ */
+@Name("com.example.todolist.ServiceCall")
+@Label("Service Call")
+@Category({"TodoList", "Service"})
+class ServiceCallEvent extends CallEvent {
+}
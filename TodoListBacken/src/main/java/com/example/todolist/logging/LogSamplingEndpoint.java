@@ -0,0 +1,49 @@
+package com.example.todolist.logging;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 日志采样端点
+ * GET /actuator/logsampling 查看当前采样比例
+ * POST /actuator/logsampling {"sampleRate":0.5} 修改采样比例，立即生效
+ * 写操作没有鉴权，默认不暴露；需要时在受保护的管理端口上开放（见application.yml中的management配置）
+ */
+@Endpoint(id = "logsampling")
+public class LogSamplingEndpoint {
+
+    @ReadOperation
+    public Map<String, Object> sampling() {
+        LogSamplingTurboFilter filter = findFilter();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("loggerPrefixes", filter.getLoggerPrefixes());
+        result.put("sampleRate", filter.getSampleRate());
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> updateSampleRate(double sampleRate) {
+        findFilter().setSampleRate(sampleRate);
+        return sampling();
+    }
+
+    /**
+     * 采样过滤器由logback-spring.xml创建，日志系统重新初始化后实例会变化，因此每次都从LoggerContext中查找
+     */
+    private static LogSamplingTurboFilter findFilter() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        for (TurboFilter filter : context.getTurboFilterList()) {
+            if (filter instanceof LogSamplingTurboFilter) {
+                return (LogSamplingTurboFilter) filter;
+            }
+        }
+        throw new IllegalStateException("未配置日志采样过滤器（见logback-spring.xml）");
+    }
+}
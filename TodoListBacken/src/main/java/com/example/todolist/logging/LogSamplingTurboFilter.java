@@ -0,0 +1,72 @@
+package com.example.todolist.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 日志采样过滤器（在格式化参数之前判断，被丢弃的日志几乎没有开销）
+ * loggerPrefixes（逗号分隔）下INFO及以下级别的日志按sampleRate比例随机保留，WARN和ERROR始终保留
+ * 只对逐请求打印的日志（控制器、服务）采样，启动等一次性日志不受影响
+ * 开放 /actuator/logsampling 端点后，采样比例可在运行时修改
+ */
+public class LogSamplingTurboFilter extends TurboFilter {
+
+    private String[] loggerPrefixes = {"com.example.todolist.controller", "com.example.todolist.service"};
+
+    private volatile double sampleRate = 1.0;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (!isStarted() || level == null || level.isGreaterOrEqual(Level.WARN) || !isSampled(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        double rate = sampleRate;
+        if (rate >= 1.0) {
+            return FilterReply.NEUTRAL;
+        }
+        if (rate <= 0.0) {
+            return FilterReply.DENY;
+        }
+        return ThreadLocalRandom.current().nextDouble() < rate ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    private boolean isSampled(String loggerName) {
+        for (String prefix : loggerPrefixes) {
+            if (loggerName.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public String getLoggerPrefixes() {
+        return String.join(",", loggerPrefixes);
+    }
+
+    public void setLoggerPrefixes(String loggerPrefixes) {
+        this.loggerPrefixes = Arrays.stream(loggerPrefixes.split(","))
+                .map(String::trim)
+                .filter(prefix -> !prefix.isEmpty())
+                .toArray(String[]::new);
+    }
+
+    public double getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * @param sampleRate 保留比例，0到1之间
+     */
+    public void setSampleRate(double sampleRate) {
+        if (sampleRate < 0.0 || sampleRate > 1.0) {
+            throw new IllegalArgumentException("日志采样比例必须在0到1之间: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+    }
+}
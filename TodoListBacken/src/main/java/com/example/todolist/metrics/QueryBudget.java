@@ -0,0 +1,23 @@
+package com.example.todolist.metrics;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 声明接口单次请求最多执行的SQL语句数
+ * 未标注的接口使用 todo.query-budget.default；超出预算时按 todo.query-budget.mode 记录警告或直接失败
+ * 用于及早发现N+1查询等回归
+ */
+@Documented
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface QueryBudget {
+
+    /**
+     * 单次请求允许的最大SQL语句数
+     */
+    int value();
+}
@@ -0,0 +1,11 @@
+package com.example.todolist.metrics;
+
+/**
+ * 请求执行的SQL语句数超过预算（仅在 todo.query-budget.mode=fail 时抛出）
+ */
+public class QueryBudgetExceededException extends IllegalStateException {
+
+    public QueryBudgetExceededException(String endpoint, int budget) {
+        super("接口" + endpoint + "执行的SQL语句数超过预算: " + budget);
+    }
+}
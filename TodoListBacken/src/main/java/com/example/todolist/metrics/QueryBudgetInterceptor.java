@@ -0,0 +1,117 @@
+package com.example.todolist.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * 查询预算拦截器
+ * 每个请求开始时按接口上的@QueryBudget（未标注时用默认值）开启计数，请求结束时记录语句数分布，
+ * 超出预算时记录警告并累加超限次数；fail模式下超出预算的那条语句直接抛出异常，使测试失败
+ * 预算乘以budgetMultiplier（分片数）：@QueryBudget按单个数据库声明，分片模式下扇出查询在每个分片上各执行一次
+ */
+@Slf4j
+public class QueryBudgetInterceptor implements AsyncHandlerInterceptor {
+
+    /**
+     * 运行模式
+     */
+    public enum Mode {
+        /**
+         * 只统计，不检查预算
+         */
+        OFF,
+        /**
+         * 超出预算时记录警告
+         */
+        WARN,
+        /**
+         * 超出预算时请求失败（用于测试环境）
+         */
+        FAIL
+    }
+
+    private static final String BUDGET_ATTRIBUTE = QueryBudgetInterceptor.class.getName() + ".budget";
+
+    private final MeterRegistry meterRegistry;
+    private final int defaultBudget;
+    private final int budgetMultiplier;
+    private final Mode mode;
+
+    public QueryBudgetInterceptor(MeterRegistry meterRegistry, int defaultBudget, int budgetMultiplier, Mode mode) {
+        this.meterRegistry = meterRegistry;
+        this.defaultBudget = defaultBudget;
+        this.budgetMultiplier = budgetMultiplier;
+        this.mode = mode;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod)) {
+            return true;
+        }
+        int budget = budgetOf((HandlerMethod) handler);
+        request.setAttribute(BUDGET_ATTRIBUTE, budget);
+        QueryCounter.begin(endpointOf(request), budget, mode == Mode.FAIL);
+        return true;
+    }
+
+    /**
+     * 异步请求（如SSE）的处理线程先返回，结束当前线程上的统计；异步分派时会重新开始统计
+     */
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCounter.end();
+        request.removeAttribute(BUDGET_ATTRIBUTE);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Integer budget = (Integer) request.getAttribute(BUDGET_ATTRIBUTE);
+        if (budget == null) {
+            return;
+        }
+        int count = QueryCounter.end();
+        String endpoint = endpointOf(request);
+        DistributionSummary.builder("todo.request.queries")
+                .description("单次请求执行的SQL语句数")
+                .tag("method", request.getMethod())
+                .tag("uri", endpoint)
+                .register(meterRegistry)
+                .record(count);
+        if (mode != Mode.OFF && count > budget) {
+            Counter.builder("todo.request.query.budget.exceeded")
+                    .description("SQL语句数超出预算的请求数")
+                    .tag("method", request.getMethod())
+                    .tag("uri", endpoint)
+                    .register(meterRegistry)
+                    .increment();
+            log.warn("接口{} {}执行了{}条SQL，超出预算{}", request.getMethod(), endpoint, count, budget);
+        }
+    }
+
+    private int budgetOf(HandlerMethod handler) {
+        QueryBudget budget = handler.getMethodAnnotation(QueryBudget.class);
+        if (budget == null) {
+            budget = handler.getBeanType().getAnnotation(QueryBudget.class);
+        }
+        int value = budget == null ? defaultBudget : budget.value();
+        // Integer.MAX_VALUE表示不限制，乘法不能溢出
+        return value > Integer.MAX_VALUE / budgetMultiplier ? Integer.MAX_VALUE : value * budgetMultiplier;
+    }
+
+    /**
+     * 使用路由模板（如 /api/tasks/{id}/subtasks）而不是实际路径，避免指标标签数量随ID增长
+     */
+    private static String endpointOf(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? request.getRequestURI() : pattern.toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.todolist.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 按请求统计SQL语句数
+ * Hibernate准备每条语句时调用inspect（批处理的一批语句只准备一次），计数记在当前线程的统计范围内；
+ * 没有统计范围的线程（如定时任务、启动时的初始化）不计数；
+ * 请求内扇出到其他线程的查询（分片扇出）通过callWith使用请求的统计范围，计入同一个预算
+ */
+public class QueryCounter implements StatementInspector {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    /**
+     * 在当前线程开始统计
+     * @param endpoint 接口名称，用于超出预算时的提示
+     * @param budget 允许的最大语句数
+     * @param failFast 超出预算时是否立即抛出异常
+     */
+    public static void begin(String endpoint, int budget, boolean failFast) {
+        CURRENT.set(new Scope(endpoint, budget, failFast));
+    }
+
+    /**
+     * 结束当前线程的统计
+     * @return 本次统计的语句数，未开始统计时返回0
+     */
+    public static int end() {
+        Scope scope = CURRENT.get();
+        CURRENT.remove();
+        return scope == null ? 0 : scope.count.get();
+    }
+
+    /**
+     * 当前线程的统计范围，用于传递给扇出线程
+     * @return 统计范围，未开始统计时为null
+     */
+    public static Scope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在指定的统计范围内执行（扇出线程使用发起请求的线程的范围），结束后恢复原来的范围
+     * @param scope 统计范围，可以为null
+     * @param action 要执行的操作
+     * @return 操作的返回值
+     */
+    public static <T> T callWith(Scope scope, Supplier<T> action) {
+        Scope previous = CURRENT.get();
+        set(scope);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    private static void set(Scope scope) {
+        if (scope == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(scope);
+        }
+    }
+
+    @Override
+    public String inspect(String sql) {
+        Scope scope = CURRENT.get();
+        if (scope != null && scope.count.incrementAndGet() > scope.budget && scope.failFast) {
+            throw new QueryBudgetExceededException(scope.endpoint, scope.budget);
+        }
+        return sql;
+    }
+
+    /**
+     * 一个请求的统计范围（可能被多个扇出线程同时计数）
+     */
+    public static final class Scope {
+        private final String endpoint;
+        private final int budget;
+        private final boolean failFast;
+        private final AtomicInteger count = new AtomicInteger();
+
+        Scope(String endpoint, int budget, boolean failFast) {
+            this.endpoint = endpoint;
+            this.budget = budget;
+            this.failFast = failFast;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.todolist.replica;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * 读写分离数据源：只读事务（@Transactional(readOnly = true)）中的连接取自副本，其余连接取自主库
+ * 主库可以是单个连接池，也可以是分片路由数据源（此时按当前分片选择该分片的副本）
+ *
+ * 事务开始时连接还没有标记只读，因此必须包装在LazyConnectionDataSourceProxy中使用：
+ * 第一条语句执行时才真正取连接，此时已能判断事务是否只读
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource {
+
+    private final DataSource primary;
+    private final ReplicaRouter replicaRouter;
+    private final Supplier<String> currentSource;
+
+    /**
+     * @param primary 主库数据源
+     * @param replicaRouter 副本路由器
+     * @param currentSource 当前连接所属的数据源（ReplicaRouter.PRIMARY或当前分片名称）
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaRouter replicaRouter, Supplier<String> currentSource) {
+        this.primary = primary;
+        this.replicaRouter = replicaRouter;
+        this.currentSource = currentSource;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        ReplicaContext.Scope scope = ReplicaContext.current();
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (scope == null || !scope.isPrimaryRequired()) {
+                Connection connection = replicaRouter.getReadConnection(currentSource.get(), scope);
+                if (connection != null) {
+                    return connection;
+                }
+            }
+        } else if (scope != null && TransactionSynchronizationManager.isActualTransactionActive()) {
+            scope.markWritten();
+        }
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * 向主库数据源解包，使连接池指标和健康检查仍能识别主库连接池
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return (T) this;
+        }
+        if (iface.isInstance(primary)) {
+            return (T) primary;
+        }
+        return primary.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(this) || iface.isInstance(primary) || primary.isWrapperFor(iface);
+    }
+
+    public DataSource getPrimary() {
+        return primary;
+    }
+}
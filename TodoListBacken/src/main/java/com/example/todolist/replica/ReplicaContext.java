@@ -0,0 +1,130 @@
+package com.example.todolist.replica;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * 当前请求的读路由状态
+ * 由ReadYourWritesFilter在请求开始时创建：同一请求内每个数据源的只读查询固定使用同一个副本，
+ * 先读的版本号（ETag）不会比后读的数据更新；请求中发生写操作后，或客户端刚写过数据时，只读查询也改走主库
+ * 不在请求中（启动、定时任务）时没有状态，每次只读查询各自选择副本
+ */
+public final class ReplicaContext {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private ReplicaContext() {
+    }
+
+    /**
+     * @return 当前线程的请求状态，不在请求中时为null
+     */
+    public static Scope current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 开始一个请求
+     * @param primaryRequired 是否从一开始就只读主库（客户端处于写后读一致窗口内）
+     * @return 请求状态
+     */
+    public static Scope open(boolean primaryRequired) {
+        Scope scope = new Scope(primaryRequired);
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    public static void close() {
+        CURRENT.remove();
+    }
+
+    /**
+     * 在另一个线程上沿用请求状态执行（用于分片扇出查询），结束后恢复原来的状态
+     * @param scope 请求状态，可以为null
+     * @param action 要执行的操作
+     * @return 操作的返回值
+     */
+    public static <T> T callWith(Scope scope, Supplier<T> action) {
+        Scope previous = CURRENT.get();
+        set(scope);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    /**
+     * 只读主库执行（如启动时重建内存统计，需要读到最新的已提交数据）
+     * @param action 要执行的操作
+     * @return 操作的返回值
+     */
+    public static <T> T callOnPrimary(Supplier<T> action) {
+        return callWith(new Scope(true), action);
+    }
+
+    /**
+     * 当前请求是否只读主库；用于跳过缓存，避免刚写过的客户端读到由副本数据填充的旧缓存
+     */
+    public static boolean isPrimaryRequired() {
+        Scope scope = CURRENT.get();
+        return scope != null && scope.isPrimaryRequired();
+    }
+
+    private static void set(Scope scope) {
+        if (scope == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(scope);
+        }
+    }
+
+    /**
+     * 一个请求的读路由状态（可能被多个扇出线程同时访问）
+     */
+    public static final class Scope {
+        private volatile boolean primaryRequired;
+        private volatile boolean written;
+
+        /**
+         * 数据源（主库或分片名称）到本请求固定使用的副本
+         */
+        private final Map<String, ReplicaNode> pinned = new ConcurrentHashMap<>();
+
+        private Scope(boolean primaryRequired) {
+            this.primaryRequired = primaryRequired;
+        }
+
+        public boolean isPrimaryRequired() {
+            return primaryRequired;
+        }
+
+        /**
+         * 本请求是否执行过写事务
+         */
+        public boolean isWritten() {
+            return written;
+        }
+
+        /**
+         * 记录写事务：本请求之后的只读查询都走主库
+         */
+        void markWritten() {
+            written = true;
+            primaryRequired = true;
+        }
+
+        ReplicaNode pinned(String source) {
+            return pinned.get(source);
+        }
+
+        void pin(String source, ReplicaNode node) {
+            pinned.put(source, node);
+        }
+
+        void unpin(String source) {
+            pinned.remove(source);
+        }
+    }
+}
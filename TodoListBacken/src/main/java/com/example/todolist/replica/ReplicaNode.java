@@ -0,0 +1,159 @@
+package com.example.todolist.replica;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+
+/**
+ * 一个只读副本：连接池及健康状态
+ */
+public class ReplicaNode {
+
+    private final String name;
+    private final String source;
+    private final HikariDataSource dataSource;
+    private final int weight;
+
+    private volatile boolean healthy = true;
+    private volatile Long lagSeconds;
+    private volatile String lastError;
+    private volatile LocalDateTime lastCheckedAt;
+
+    public ReplicaNode(String name, String source, HikariDataSource dataSource, int weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("副本" + name + "的权重必须大于0: " + weight);
+        }
+        this.name = name;
+        this.source = source;
+        this.dataSource = dataSource;
+        this.weight = weight;
+    }
+
+    Connection getConnection() throws SQLException {
+        return dataSource.getConnection();
+    }
+
+    /**
+     * 负载：正在使用的连接数按权重折算，越小越空闲
+     */
+    double load() {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        int active = pool == null ? 0 : pool.getActiveConnections();
+        return (active + 1.0) / weight;
+    }
+
+    /**
+     * 检查副本：能在超时内取得可用连接，且（配置了延迟查询时）复制延迟不超过上限
+     * @param lagQuery 查询复制延迟（秒）的SQL，为null时不检查延迟
+     * @param maxLagSeconds 允许的最大延迟
+     * @param timeoutSeconds 连接校验的超时时间
+     */
+    void check(String lagQuery, long maxLagSeconds, int timeoutSeconds) {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.isValid(timeoutSeconds)) {
+                markDown("连接校验失败");
+                return;
+            }
+            if (lagQuery != null) {
+                Long lag = queryLag(connection, lagQuery, timeoutSeconds);
+                lagSeconds = lag;
+                if (lag == null) {
+                    markDown("复制未运行");
+                    return;
+                }
+                if (lag > maxLagSeconds) {
+                    markDown("复制延迟" + lag + "秒，超过" + maxLagSeconds + "秒");
+                    return;
+                }
+            }
+            healthy = true;
+            lastError = null;
+        } catch (SQLException | RuntimeException e) {
+            markDown(e.getMessage());
+        } finally {
+            lastCheckedAt = LocalDateTime.now();
+        }
+    }
+
+    /**
+     * 执行延迟查询：结果中有Seconds_Behind_Source（MySQL的SHOW REPLICA STATUS）
+     * 或Seconds_Behind_Master列时取该列，否则取第一列
+     */
+    private static Long queryLag(Connection connection, String lagQuery, int timeoutSeconds) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.setQueryTimeout(timeoutSeconds);
+            try (ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                if (!resultSet.next()) {
+                    return null;
+                }
+                int column = 1;
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    String label = metaData.getColumnLabel(i);
+                    if ("Seconds_Behind_Source".equalsIgnoreCase(label) || "Seconds_Behind_Master".equalsIgnoreCase(label)) {
+                        column = i;
+                        break;
+                    }
+                }
+                long lag = resultSet.getLong(column);
+                return resultSet.wasNull() ? null : lag;
+            }
+        }
+    }
+
+    /**
+     * 标记为不可用，直到下一次健康检查通过
+     */
+    void markDown(String reason) {
+        healthy = false;
+        lastError = reason;
+    }
+
+    void close() {
+        dataSource.close();
+    }
+
+    public HikariDataSource getDataSource() {
+        return dataSource;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 所复制的数据源：未启用分片时为primary，否则为分片名称
+     */
+    public String getSource() {
+        return source;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public boolean isHealthy() {
+        return healthy;
+    }
+
+    /**
+     * 最近一次检查得到的复制延迟（秒），未配置延迟查询时为null
+     */
+    public Long getLagSeconds() {
+        return lagSeconds;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public LocalDateTime getLastCheckedAt() {
+        return lastCheckedAt;
+    }
+}
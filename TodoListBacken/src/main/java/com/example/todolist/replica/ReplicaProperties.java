@@ -0,0 +1,72 @@
+package com.example.todolist.replica;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 只读副本配置（todo.replicas）
+ */
+@Data
+@ConfigurationProperties(prefix = "todo.replicas")
+public class ReplicaProperties {
+
+    /**
+     * 是否启用读写分离；未启用时所有查询都走主库
+     */
+    private boolean enabled = false;
+
+    /**
+     * 全部副本，键为副本名称
+     */
+    private Map<String, Replica> servers = new LinkedHashMap<>();
+
+    /**
+     * 写后读一致窗口（毫秒）：客户端写入后这段时间内的请求只读主库，并跳过查询缓存
+     * 不能小于maxLagSeconds，否则启动失败
+     */
+    private long readYourWritesMs = 3000;
+
+    /**
+     * 健康检查间隔（毫秒）
+     */
+    private long healthCheckIntervalMs = 5000;
+
+    /**
+     * 单次健康检查的超时时间（秒）
+     */
+    private int healthCheckTimeoutSeconds = 2;
+
+    /**
+     * 查询复制延迟（秒）的SQL，如MySQL的 SHOW REPLICA STATUS；为空时只检查连接
+     */
+    private String lagQuery;
+
+    /**
+     * 复制延迟超过该值（秒）的副本不再分配读请求；同时是写后读一致窗口的下限
+     */
+    private long maxLagSeconds = 3;
+
+    /**
+     * 单个副本
+     */
+    @Data
+    public static class Replica {
+        /**
+         * 所复制的数据源：未启用分片时不填，启用分片时填分片名称（不填为主分片）
+         */
+        private String source;
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        /**
+         * 负载均衡权重，性能越好的副本可以设得越大
+         */
+        private int weight = 1;
+        private int maximumPoolSize = 10;
+        private int minimumIdle = 2;
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.todolist.replica;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 只读副本路由器
+ * 按数据源（主库或分片）分组管理副本，只读查询在健康的副本中选择负载最低的一个（正在使用的连接数按权重折算，
+ * 负载相同时轮询）；后台定期检查每个副本的连接和复制延迟，不健康的副本不再分配，恢复后自动重新加入
+ * 取连接失败的副本立即标记为不健康；没有可用副本时由调用方回退到主库
+ */
+@Slf4j
+public class ReplicaRouter implements AutoCloseable {
+
+    /**
+     * 未启用分片时唯一的主库
+     */
+    public static final String PRIMARY = "primary";
+
+    private final Map<String, List<ReplicaNode>> nodesBySource = new LinkedHashMap<>();
+    private final List<ReplicaNode> nodes;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder primaryFallbacks = new LongAdder();
+    private final ScheduledExecutorService healthChecker;
+
+    /**
+     * @param nodes 全部副本
+     * @param lagQuery 查询复制延迟（秒）的SQL，为null时只检查连接
+     * @param maxLagSeconds 允许的最大复制延迟
+     * @param checkIntervalMillis 健康检查间隔
+     * @param checkTimeoutSeconds 单次检查的超时时间
+     */
+    public ReplicaRouter(List<ReplicaNode> nodes, String lagQuery, long maxLagSeconds,
+                         long checkIntervalMillis, int checkTimeoutSeconds) {
+        this.nodes = Collections.unmodifiableList(new ArrayList<>(nodes));
+        for (ReplicaNode node : nodes) {
+            nodesBySource.computeIfAbsent(node.getSource(), source -> new ArrayList<>()).add(node);
+        }
+        // 启动时先检查一次，避免把读请求分配给一开始就不可用的副本
+        checkAll(lagQuery, maxLagSeconds, checkTimeoutSeconds);
+        this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        healthChecker.scheduleWithFixedDelay(() -> checkAll(lagQuery, maxLagSeconds, checkTimeoutSeconds),
+                checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 为只读查询取一个副本连接
+     * 在请求中时，同一数据源固定使用第一次选中的副本（该副本变为不健康时重新选择）
+     * @param source 数据源（PRIMARY或分片名称）
+     * @param scope 当前请求的状态，不在请求中时为null
+     * @return 副本连接，没有可用副本时为null（调用方应使用主库）
+     */
+    Connection getReadConnection(String source, ReplicaContext.Scope scope) {
+        if (!nodesBySource.containsKey(source)) {
+            return null;
+        }
+        ReplicaNode node = scope == null ? null : scope.pinned(source);
+        if (node != null && !node.isHealthy()) {
+            scope.unpin(source);
+            node = null;
+        }
+        for (int attempt = 0; attempt < 2; attempt++) {
+            if (node == null) {
+                node = choose(source);
+                if (node == null) {
+                    break;
+                }
+            }
+            try {
+                Connection connection = node.getConnection();
+                if (scope != null) {
+                    scope.pin(source, node);
+                }
+                replicaReads.increment();
+                return connection;
+            } catch (SQLException e) {
+                log.warn("副本{}取连接失败，暂停使用: {}", node.getName(), e.getMessage());
+                node.markDown(e.getMessage());
+                if (scope != null) {
+                    scope.unpin(source);
+                }
+                node = null;
+            }
+        }
+        primaryFallbacks.increment();
+        return null;
+    }
+
+    /**
+     * 在健康的副本中选择负载最低的一个
+     */
+    private ReplicaNode choose(String source) {
+        List<ReplicaNode> candidates = nodesBySource.get(source);
+        int size = candidates.size();
+        int start = Math.floorMod(nextIndex.getAndIncrement(), size);
+        ReplicaNode best = null;
+        double bestLoad = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ReplicaNode node = candidates.get((start + i) % size);
+            if (!node.isHealthy()) {
+                continue;
+            }
+            double load = node.load();
+            if (load < bestLoad) {
+                best = node;
+                bestLoad = load;
+            }
+        }
+        return best;
+    }
+
+    private void checkAll(String lagQuery, long maxLagSeconds, int timeoutSeconds) {
+        for (ReplicaNode node : nodes) {
+            boolean wasHealthy = node.isHealthy();
+            node.check(lagQuery, maxLagSeconds, timeoutSeconds);
+            if (wasHealthy && !node.isHealthy()) {
+                log.warn("副本{}不可用: {}", node.getName(), node.getLastError());
+            } else if (!wasHealthy && node.isHealthy()) {
+                log.info("副本{}已恢复", node.getName());
+            }
+        }
+    }
+
+    public List<ReplicaNode> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * 分配到副本的只读连接数
+     */
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    /**
+     * 因没有可用副本而回退到主库的只读连接数（不含未配置副本的数据源）
+     */
+    public long getPrimaryFallbacks() {
+        return primaryFallbacks.sum();
+    }
+
+    @Override
+    public void close() {
+        healthChecker.shutdownNow();
+        nodes.forEach(ReplicaNode::close);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.todolist.repository;
+
+import com.example.todolist.entity.ChangeLogCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+/**
+ * ChangeLogCounter实体的数据访问接口
+ * 写事务中加锁递增版本号见SyncService.record
+ */
+public interface ChangeLogCounterRepository extends JpaRepository<ChangeLogCounter, Integer> {
+
+    /**
+     * 查询版本计数（不加锁）
+     * @return 版本计数
+     */
+    @Query("SELECT c FROM ChangeLogCounter c WHERE c.id = " + ChangeLogCounter.SINGLETON_ID)
+    ChangeLogCounter findCurrent();
+
+    /**
+     * 推进已清理的版本号（只增不减），单条UPDATE，不覆盖其他事务分配的current_version
+     * @param prunedVersion 新的已清理版本号
+     * @return 受影响的行数
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE ChangeLogCounter c SET c.prunedVersion = :prunedVersion " +
+            "WHERE c.id = " + ChangeLogCounter.SINGLETON_ID + " AND c.prunedVersion < :prunedVersion")
+    int advancePrunedVersion(@Param("prunedVersion") long prunedVersion);
+}
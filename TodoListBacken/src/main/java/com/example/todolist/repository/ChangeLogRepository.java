@@ -0,0 +1,61 @@
+package com.example.todolist.repository;
+
+import com.example.todolist.entity.ChangeLog;
+import com.example.todolist.entity.ChangeLogCounter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+/**
+ * ChangeLog实体的数据访问接口
+ */
+public interface ChangeLogRepository extends JpaRepository<ChangeLog, Long> {
+
+    /**
+     * 查询某类实体最新的变更版本号及已清理版本号（一条查询），用于计算该集合的版本号
+     * @param entityType 实体类型
+     * @return 最大版本号（没有记录时为null）与已清理版本号
+     */
+    @Query("SELECT (SELECT MAX(c.version) FROM ChangeLog c WHERE c.entityType = :entityType) AS maxVersion, " +
+            "k.prunedVersion AS prunedVersion FROM ChangeLogCounter k WHERE k.id = " + ChangeLogCounter.SINGLETON_ID)
+    CollectionVersionRow findCollectionVersionByEntityType(@Param("entityType") ChangeLog.EntityType entityType);
+
+    /**
+     * 查询某个任务（自身及其子任务）最新的变更版本号及已清理版本号，用于计算该任务子任务列表的版本号
+     * @param parentTaskId 父任务ID
+     * @return 最大版本号（没有记录时为null）与已清理版本号
+     */
+    @Query("SELECT (SELECT MAX(c.version) FROM ChangeLog c WHERE c.parentTaskId = :parentTaskId) AS maxVersion, " +
+            "k.prunedVersion AS prunedVersion FROM ChangeLogCounter k WHERE k.id = " + ChangeLogCounter.SINGLETON_ID)
+    CollectionVersionRow findCollectionVersionByParentTaskId(@Param("parentTaskId") Long parentTaskId);
+
+    /**
+     * 按版本号升序查询指定版本之后的变更
+     * @param version 同步令牌
+     * @param pageable 只使用其中的页大小
+     * @return 变更记录列表
+     */
+    List<ChangeLog> findByVersionGreaterThanOrderByVersionAsc(long version, Pageable pageable);
+
+    /**
+     * 删除不大于指定版本号的变更（单条DELETE语句）
+     * @param version 版本号
+     * @return 删除的行数
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM ChangeLog c WHERE c.version <= :version")
+    int deleteUpToVersion(@Param("version") long version);
+
+    /**
+     * 集合版本查询结果投影
+     */
+    interface CollectionVersionRow {
+        Long getMaxVersion();
+
+        long getPrunedVersion();
+    }
+}
@@ -2,11 +2,18 @@ package com.example.todolist.repository;
 
 import com.example.todolist.entity.Subtask;
 import com.example.todolist.enums.Priority;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Subtask实体的数据访问接口
@@ -23,6 +30,33 @@ public interface SubtaskRepository extends JpaRepository<Subtask, Long> {
     @Query("SELECT s FROM Subtask s WHERE s.parentTaskId = :parentTaskId ORDER BY s.priority DESC, s.createdAt ASC")
     List<Subtask> findByParentTaskIdOrderByPriorityDesc(@Param("parentTaskId") Long parentTaskId);
 
+    /**
+     * 游标（keyset）分页遍历全部子任务，按ID升序排列（用于重建搜索索引等全量处理）
+     * @param afterId 上一页最后一条记录的ID（首页传0）
+     * @param pageable 只使用其中的页大小
+     * @return 子任务列表
+     */
+    @Query("SELECT s FROM Subtask s WHERE s.id > :afterId ORDER BY s.id ASC")
+    List<Subtask> findPageAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * 批量查询多个父任务的子任务（单条IN查询），按父任务ID、子任务ID排列
+     * @param parentTaskIds 父任务ID集合
+     * @return 子任务列表
+     */
+    @Query("SELECT s FROM Subtask s WHERE s.parentTaskId IN :parentTaskIds ORDER BY s.parentTaskId ASC, s.id ASC")
+    List<Subtask> findByParentTaskIdIn(@Param("parentTaskIds") Collection<Long> parentTaskIds);
+
+    /**
+     * 批量查询多个父任务的子任务（单条IN查询），同一父任务内按优先级降序、创建时间升序排列
+     * 与findByParentTaskIdOrderByPriorityDesc的排序一致
+     * @param parentTaskIds 父任务ID集合
+     * @return 子任务列表
+     */
+    @Query("SELECT s FROM Subtask s WHERE s.parentTaskId IN :parentTaskIds " +
+            "ORDER BY s.parentTaskId ASC, s.priority DESC, s.createdAt ASC, s.id ASC")
+    List<Subtask> findByParentTaskIdInOrderByPriority(@Param("parentTaskIds") Collection<Long> parentTaskIds);
+
     /**
      * 根据父任务ID查找所有子任务（原方法保留兼容性）
      * @param parentTaskId 父任务ID
@@ -30,6 +64,14 @@ public interface SubtaskRepository extends JpaRepository<Subtask, Long> {
      */
     List<Subtask> findByParentTaskId(Long parentTaskId);
 
+    /**
+     * 查询某个父任务下所有子任务的ID（不加载实体）
+     * @param parentTaskId 父任务ID
+     * @return 子任务ID列表
+     */
+    @Query("SELECT s.id FROM Subtask s WHERE s.parentTaskId = :parentTaskId")
+    List<Long> findIdsByParentTaskId(@Param("parentTaskId") Long parentTaskId);
+
     /**
      * 根据父任务ID和完成状态查找子任务，按优先级排序
      * @param parentTaskId 父任务ID
@@ -56,24 +98,99 @@ public interface SubtaskRepository extends JpaRepository<Subtask, Long> {
     long countByParentTaskId(@Param("parentTaskId") Long parentTaskId);
 
     /**
-     * 统计某个父任务下已完成子任务的数量
-     * @param parentTaskId 父任务ID
-     * @return 已完成子任务数量
+     * 按父任务、优先级、完成状态分组统计子任务数量（一次查询覆盖多个父任务）
+     * @param parentTaskIds 父任务ID集合
+     * @return 分组计数行，没有子任务的父任务不会出现在结果中
      */
-    @Query("SELECT COUNT(s) FROM Subtask s WHERE s.parentTaskId = :parentTaskId AND s.completed = true")
-    long countCompletedByParentTaskId(@Param("parentTaskId") Long parentTaskId);
+    @Query("SELECT s.parentTaskId AS parentTaskId, s.priority AS priority, s.completed AS completed, COUNT(s) AS count " +
+            "FROM Subtask s WHERE s.parentTaskId IN :parentTaskIds " +
+            "GROUP BY s.parentTaskId, s.priority, s.completed")
+    List<SubtaskCountRow> countGroupedByParentTaskIds(@Param("parentTaskIds") Collection<Long> parentTaskIds);
 
     /**
-     * 统计某个父任务下指定优先级的子任务数量
-     * @param parentTaskId 父任务ID
-     * @param priority 优先级
-     * @return 指定优先级的子任务数量
+     * 按父任务、优先级、完成状态分组统计全部子任务数量（用于启动时重建统计）
+     * @return 分组计数行
      */
-    long countByParentTaskIdAndPriority(Long parentTaskId, Priority priority);
+    @Query("SELECT s.parentTaskId AS parentTaskId, s.priority AS priority, s.completed AS completed, COUNT(s) AS count " +
+            "FROM Subtask s GROUP BY s.parentTaskId, s.priority, s.completed")
+    List<SubtaskCountRow> countGroupedByParentTask();
 
     /**
      * 删除某个父任务下的所有子任务
+     * 单条DELETE语句，不加载实体（派生删除方法会先逐个加载再逐个删除）
      * @param parentTaskId 父任务ID
+     * @return 删除的行数
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Subtask s WHERE s.parentTaskId = :parentTaskId")
+    int deleteByParentTaskId(@Param("parentTaskId") Long parentTaskId);
+
+    /**
+     * 删除多个父任务下的所有子任务（单条DELETE语句）
+     * @param parentTaskIds 父任务ID集合
+     * @return 删除的行数
      */
-    void deleteByParentTaskId(Long parentTaskId);
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Subtask s WHERE s.parentTaskId IN :parentTaskIds")
+    int deleteByParentTaskIdIn(@Param("parentTaskIds") Collection<Long> parentTaskIds);
+
+    /**
+     * 查询多个父任务下所有子任务的ID及其父任务ID（不加载实体）
+     * @param parentTaskIds 父任务ID集合
+     * @return 子任务ID与父任务ID
+     */
+    @Query("SELECT s.id AS id, s.parentTaskId AS parentTaskId FROM Subtask s WHERE s.parentTaskId IN :parentTaskIds")
+    List<SubtaskIdRow> findIdsByParentTaskIdIn(@Param("parentTaskIds") Collection<Long> parentTaskIds);
+
+    /**
+     * 原子切换完成状态：单条UPDATE语句在数据库中取反，同时版本号加1
+     * 并发切换由行锁串行执行，不会丢失更新
+     * @param id 子任务ID
+     * @param now 更新时间
+     * @return 受影响的行数，0表示子任务不存在
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Subtask s SET s.completed = CASE WHEN s.completed = true THEN false ELSE true END, " +
+            "s.version = s.version + 1, s.updatedAt = :now WHERE s.id = :id")
+    int toggleCompleted(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * 按ID查询子任务并加行锁（SELECT ... FOR UPDATE），锁持有到事务结束
+     * @param id 子任务ID
+     * @return 子任务
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Subtask s WHERE s.id = :id")
+    Optional<Subtask> findByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * 按ID批量查询子任务并加行锁，用于写入合并后的缓冲变更（见SubtaskWriteBehindService）
+     * @param ids 子任务ID集合
+     * @return 存在的子任务
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Subtask s WHERE s.id IN :ids")
+    List<Subtask> findByIdInForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 子任务分组计数结果投影
+     */
+    interface SubtaskCountRow {
+        Long getParentTaskId();
+
+        Priority getPriority();
+
+        boolean isCompleted();
+
+        long getCount();
+    }
+
+    /**
+     * 子任务ID与父任务ID（投影）
+     */
+    interface SubtaskIdRow {
+        Long getId();
+
+        Long getParentTaskId();
+    }
 }
\ No newline at end of file
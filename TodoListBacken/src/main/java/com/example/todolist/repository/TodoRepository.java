@@ -1,7 +1,17 @@
 package com.example.todolist.repository;
 
 import com.example.todolist.entity.Todo;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Todo实体的数据访问接口
@@ -9,4 +19,80 @@ import org.springframework.data.jpa.repository.JpaRepository;
  * 泛型参数：<Todo, Long> 表示实体类型是Todo，主键类型是Long
  */
 public interface TodoRepository extends JpaRepository<Todo, Long> {
-} 
\ No newline at end of file
+
+    /**
+     * 游标（keyset）分页查询：返回ID大于afterId的待办事项，按ID升序排列
+     * 基于主键范围扫描，查询代价只与页大小有关，与表的总行数无关；
+     * 带前缀过滤时使用索引idx_todo_value_id只扫描匹配前缀的行，代价与匹配的行数有关
+     * @param afterId 上一页最后一条记录的ID（首页传0）
+     * @param completed 完成状态过滤，为null时不过滤
+     * @param prefix 内容前缀的LIKE模式（已转义并以%结尾），为null时不过滤
+     * @param pageable 只使用其中的页大小，不会触发COUNT查询
+     * @return 待办事项列表
+     */
+    @Query("SELECT t FROM Todo t WHERE t.id > :afterId " +
+            "AND (:completed IS NULL OR t.completed = :completed) " +
+            "AND (:prefix IS NULL OR t.value LIKE :prefix ESCAPE '!') " +
+            "ORDER BY t.id ASC")
+    List<Todo> findPageAfter(@Param("afterId") long afterId,
+                             @Param("completed") Boolean completed,
+                             @Param("prefix") String prefix,
+                             Pageable pageable);
+
+    /**
+     * 统计指定完成状态的待办事项数量
+     * @param completed 完成状态
+     * @return 数量
+     */
+    long countByCompleted(boolean completed);
+
+    /**
+     * 原子切换完成状态：单条UPDATE语句在数据库中取反，同时版本号加1
+     * 并发切换由行锁串行执行，不会丢失更新；不需要先SELECT再UPDATE
+     * @param id 待办事项ID
+     * @param now 更新时间
+     * @return 受影响的行数，0表示待办事项不存在
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Todo t SET t.completed = CASE WHEN t.completed = true THEN false ELSE true END, " +
+            "t.version = t.version + 1, t.updatedAt = :now WHERE t.id = :id")
+    int toggleCompleted(@Param("id") Long id, @Param("now") LocalDateTime now);
+
+    /**
+     * 查询一批待办事项的ID、完成状态和版本号（不加载实体）并加行锁，用于批量删除前确认状态、记录删除事件
+     * @param ids 待办事项ID集合
+     * @return 存在的待办事项ID、完成状态及版本号
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t.id AS id, t.completed AS completed, t.version AS version FROM Todo t WHERE t.id IN :ids")
+    List<TodoStateRow> findStatesByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 按ID升序查询一批已完成待办事项的ID（游标方式），用于分块清理
+     * @param afterId 上一块最后一个ID（首块传0）
+     * @param pageable 只使用其中的页大小（块大小）
+     * @return 已完成待办事项ID列表
+     */
+    @Query("SELECT t.id FROM Todo t WHERE t.completed = true AND t.id > :afterId ORDER BY t.id ASC")
+    List<Long> findCompletedIdsAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    /**
+     * 按ID批量删除待办事项（单条DELETE语句，不加载实体）
+     * @param ids 待办事项ID集合
+     * @return 删除的行数
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("DELETE FROM Todo t WHERE t.id IN :ids")
+    int deleteByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 待办事项ID、完成状态与版本号（投影）
+     */
+    interface TodoStateRow {
+        Long getId();
+
+        boolean isCompleted();
+
+        Long getVersion();
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.todolist.search;
+
+import com.example.todolist.enums.Priority;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存倒排索引
+ * 词项按字典序存放（TreeMap），前缀匹配为一次范围查找；每个词项记录包含它的文档及词频
+ * 排序使用BM25：词项越稀有、在短文本中出现次数越多，得分越高；查询中的所有词项都必须匹配
+ * 写操作（单个文档的增删改）持有写锁，时间与文档长度成正比；查询持有读锁，可并发执行
+ * 变更事件在各自的事务提交后由提交线程投递，并发写入同一实体时到达顺序可能与提交顺序不同：
+ * 每个文档带有实体版本号，旧版本的写入被忽略；删除后保留一段墓碑，避免迟到的旧写入使已删除的文档重新出现
+ */
+public class InvertedIndex {
+
+    /**
+     * 一个前缀最多展开的词项数，避免单个字母的查询遍历整个词典；
+     * 超出时只使用字典序在前的词项，结果中truncated为true
+     */
+    static final int MAX_PREFIX_EXPANSIONS = 256;
+
+    /**
+     * 最多保留的删除墓碑数，超出时淘汰最早的；事件乱序的时间窗口很短，只需覆盖最近的删除
+     */
+    static final int MAX_TOMBSTONES = 10000;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private long totalLength;
+
+    /**
+     * 最近删除的文档及删除时的版本号
+     */
+    private final Map<Long, Long> tombstones = new LinkedHashMap<Long, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Long> eldest) {
+            return size() > MAX_TOMBSTONES;
+        }
+    };
+
+    /**
+     * 添加或替换文档；版本号低于已索引的文档或已删除文档的写入被忽略
+     * @return 是否写入了索引
+     */
+    public boolean put(Document document) {
+        Map<String, Integer> frequencies = new HashMap<>();
+        List<String> terms = TextTokenizer.indexTerms(document.getValue());
+        for (String term : terms) {
+            frequencies.merge(term, 1, Integer::sum);
+        }
+        document.length = terms.size();
+        document.terms = frequencies.keySet().toArray(new String[0]);
+
+        lock.writeLock().lock();
+        try {
+            Document existing = documents.get(document.key);
+            Long deletedVersion = tombstones.get(document.key);
+            if ((existing != null && document.version < existing.version)
+                    || (deletedVersion != null && document.version <= deletedVersion)) {
+                return false;
+            }
+            removeLocked(document.key);
+            documents.put(document.key, document);
+            totalLength += document.length;
+            frequencies.forEach((term, frequency) ->
+                    postings.computeIfAbsent(term, key -> new HashMap<>()).put(document.key, frequency));
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档（文档不存在时同样记录墓碑），之后版本号不高于version的写入被忽略
+     * @param version 删除时的实体版本号；不知道时传Long.MAX_VALUE，之后该文档的任何写入都被忽略
+     */
+    public void remove(DocumentType type, long id, long version) {
+        long key = type.key(id);
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            tombstones.merge(key, version, Math::max);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(long key) {
+        Document old = documents.remove(key);
+        if (old == null) {
+            return;
+        }
+        totalLength -= old.length;
+        for (String term : old.terms) {
+            Map<Long, Integer> docs = postings.get(term);
+            if (docs != null) {
+                docs.remove(key);
+                if (docs.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查询
+     * @param query 查询文本
+     * @param filter 过滤条件（类型、完成状态、优先级）
+     * @param offset 跳过的结果数
+     * @param limit 返回的最大结果数
+     * @return 按得分降序排列的一页结果及匹配总数；前缀展开被截断时标记truncated
+     */
+    public SearchPage search(String query, SearchFilter filter, int offset, int limit) {
+        List<String> queryTerms = TextTokenizer.queryTerms(query);
+        if (queryTerms.isEmpty()) {
+            return new SearchPage(0, new ArrayList<>(), false);
+        }
+        lock.readLock().lock();
+        try {
+            Map<Long, Double> scores = null;
+            boolean truncated = false;
+            for (String term : queryTerms) {
+                TermScores matched = scoreTerm(term);
+                Map<Long, Double> termScores = matched.scores;
+                truncated |= matched.truncated;
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    // 所有词项都必须匹配：取交集并累加得分
+                    Map<Long, Double> merged = new HashMap<>();
+                    for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                        Double score = termScores.get(entry.getKey());
+                        if (score != null) {
+                            merged.put(entry.getKey(), entry.getValue() + score);
+                        }
+                    }
+                    scores = merged;
+                }
+                if (scores.isEmpty()) {
+                    return new SearchPage(0, new ArrayList<>(), truncated);
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>();
+            for (Map.Entry<Long, Double> entry : scores.entrySet()) {
+                Document document = documents.get(entry.getKey());
+                if (filter.matches(document)) {
+                    hits.add(new SearchHit(document, entry.getValue()));
+                }
+            }
+            hits.sort(Comparator.comparingDouble(SearchHit::getScore).reversed()
+                    .thenComparing(Comparator.comparingLong(SearchHit::getId).reversed()));
+            int from = Math.min(offset, hits.size());
+            int to = Math.min(from + limit, hits.size());
+            return new SearchPage(hits.size(), new ArrayList<>(hits.subList(from, to)), truncated);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 计算单个查询词项对每个文档的BM25得分；前缀词项的各个展开词项中取得分最高的一个
+     */
+    private TermScores scoreTerm(String term) {
+        Map<Long, Double> scores = new HashMap<>();
+        int documentCount = documents.size();
+        double averageLength = documentCount == 0 ? 1.0 : Math.max(1.0, (double) totalLength / documentCount);
+        Map<String, Map<Long, Integer>> matches;
+        if (TextTokenizer.isPrefixTerm(term)) {
+            matches = postings.subMap(term, true, term + Character.MAX_VALUE, false);
+        } else {
+            Map<Long, Integer> exact = postings.get(term);
+            matches = new HashMap<>();
+            if (exact != null) {
+                matches.put(term, exact);
+            }
+        }
+        int expansions = 0;
+        boolean truncated = false;
+        for (Map<Long, Integer> docs : matches.values()) {
+            if (++expansions > MAX_PREFIX_EXPANSIONS) {
+                truncated = true;
+                break;
+            }
+            double idf = Math.log(1.0 + (documentCount - docs.size() + 0.5) / (docs.size() + 0.5));
+            for (Map.Entry<Long, Integer> entry : docs.entrySet()) {
+                int frequency = entry.getValue();
+                int length = documents.get(entry.getKey()).length;
+                double score = idf * frequency * (K1 + 1)
+                        / (frequency + K1 * (1 - B + B * length / averageLength));
+                scores.merge(entry.getKey(), score, Math::max);
+            }
+        }
+        return new TermScores(scores, truncated);
+    }
+
+    /**
+     * 单个查询词项的得分，以及前缀展开是否被截断
+     */
+    private static class TermScores {
+        private final Map<Long, Double> scores;
+        private final boolean truncated;
+
+        TermScores(Map<Long, Double> scores, boolean truncated) {
+            this.scores = scores;
+            this.truncated = truncated;
+        }
+    }
+
+    /**
+     * 被索引的对象类型
+     */
+    public enum DocumentType {
+        TODO,
+        SUBTASK;
+
+        /**
+         * 待办事项和子任务的ID各自独立，用最低位区分类型
+         */
+        long key(long id) {
+            return id << 1 | ordinal();
+        }
+    }
+
+    /**
+     * 被索引的文档：待办事项或子任务的内容及用于过滤的字段
+     */
+    public static class Document {
+        private final DocumentType type;
+        private final long id;
+        private final long key;
+        private final long version;
+        private final Long parentTaskId;
+        private final String value;
+        private final boolean completed;
+        private final Priority priority;
+        private int length;
+        private String[] terms;
+
+        /**
+         * @param version 实体版本号（@Version），用于丢弃乱序到达的旧写入
+         */
+        public Document(DocumentType type, long id, long version, Long parentTaskId, String value,
+                        boolean completed, Priority priority) {
+            this.type = type;
+            this.id = id;
+            this.key = type.key(id);
+            this.version = version;
+            this.parentTaskId = parentTaskId;
+            this.value = value;
+            this.completed = completed;
+            this.priority = priority;
+        }
+
+        public DocumentType getType() {
+            return type;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public Long getParentTaskId() {
+            return parentTaskId;
+        }
+
+        public String getValue() {
+            return value;
+        }
+
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+    }
+
+    /**
+     * 查询过滤条件，各字段为null时不过滤
+     * 按优先级过滤时只返回子任务（待办事项没有优先级）
+     */
+    public static class SearchFilter {
+        private final DocumentType type;
+        private final Boolean completed;
+        private final Priority priority;
+
+        public SearchFilter(DocumentType type, Boolean completed, Priority priority) {
+            this.type = type;
+            this.completed = completed;
+            this.priority = priority;
+        }
+
+        boolean matches(Document document) {
+            return (type == null || document.type == type)
+                    && (completed == null || document.completed == completed)
+                    && (priority == null || document.priority == priority);
+        }
+    }
+
+    /**
+     * 搜索结果条目
+     */
+    public static class SearchHit {
+        private final Document document;
+        private final double score;
+
+        SearchHit(Document document, double score) {
+            this.document = document;
+            this.score = score;
+        }
+
+        public DocumentType getType() {
+            return document.type;
+        }
+
+        public long getId() {
+            return document.id;
+        }
+
+        /**
+         * 子任务所属的待办事项ID，待办事项为null
+         */
+        public Long getParentTaskId() {
+            return document.parentTaskId;
+        }
+
+        public String getValue() {
+            return document.value;
+        }
+
+        public boolean isCompleted() {
+            return document.completed;
+        }
+
+        /**
+         * 子任务优先级，待办事项为null
+         */
+        public Priority getPriority() {
+            return document.priority;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    /**
+     * 一页搜索结果
+     */
+    public static class SearchPage {
+        private final int total;
+        private final List<SearchHit> hits;
+        private final boolean truncated;
+
+        public SearchPage(int total, List<SearchHit> hits, boolean truncated) {
+            this.total = total;
+            this.hits = hits;
+            this.truncated = truncated;
+        }
+
+        /**
+         * 匹配的结果总数（过滤后）
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        public List<SearchHit> getHits() {
+            return hits;
+        }
+
+        /**
+         * 查询中的某个前缀匹配的词项超过上限，只使用了其中字典序在前的一部分：
+         * 结果和总数可能不完整，客户端应提示输入更长的前缀
+         */
+        public boolean isTruncated() {
+            return truncated;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.todolist.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 中英文混合文本分词
+ * 先做NFKC规范化（全角转半角）并转小写；连续的字母数字作为一个英文词，
+ * 中日韩文字按字切分：索引时同时产生单字和相邻两字（bigram），查询时两字及以上的片段只用bigram，单字片段用单字
+ * 这样无需词典也能匹配任意中文子串，查询词越长结果越精确
+ */
+public final class TextTokenizer {
+
+    private TextTokenizer() {
+    }
+
+    /**
+     * 索引用分词
+     * @param text 原文
+     * @return 词项列表（可重复，重复次数即词频）
+     */
+    public static List<String> indexTerms(String text) {
+        List<String> terms = new ArrayList<>();
+        tokenize(text, terms, true);
+        return terms;
+    }
+
+    /**
+     * 查询用分词
+     * @param query 查询文本
+     * @return 词项列表（按出现顺序，可能重复）
+     */
+    public static List<String> queryTerms(String query) {
+        List<String> terms = new ArrayList<>();
+        tokenize(query, terms, false);
+        return terms;
+    }
+
+    /**
+     * 英文词和数字在查询时按前缀匹配（如 "mee" 匹配 "meeting"），中文bigram/单字精确匹配
+     * @param term queryTerms返回的词项
+     * @return 是否按前缀匹配
+     */
+    public static boolean isPrefixTerm(String term) {
+        return !isCjk(term.codePointAt(0));
+    }
+
+    private static void tokenize(String text, List<String> terms, boolean forIndex) {
+        if (text == null || text.isEmpty()) {
+            return;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        int length = normalized.length();
+        int i = 0;
+        while (i < length) {
+            int codePoint = normalized.codePointAt(i);
+            if (isCjk(codePoint)) {
+                int end = i;
+                while (end < length && isCjk(normalized.codePointAt(end))) {
+                    end += Character.charCount(normalized.codePointAt(end));
+                }
+                addCjkTerms(normalized.substring(i, end), terms, forIndex);
+                i = end;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                int end = i;
+                while (end < length) {
+                    int next = normalized.codePointAt(end);
+                    if (!Character.isLetterOrDigit(next) || isCjk(next)) {
+                        break;
+                    }
+                    end += Character.charCount(next);
+                }
+                terms.add(normalized.substring(i, end));
+                i = end;
+            } else {
+                i += Character.charCount(codePoint);
+            }
+        }
+    }
+
+    private static void addCjkTerms(String run, List<String> terms, boolean forIndex) {
+        int[] codePoints = run.codePoints().toArray();
+        if (forIndex || codePoints.length == 1) {
+            for (int codePoint : codePoints) {
+                terms.add(new String(Character.toChars(codePoint)));
+            }
+        }
+        for (int i = 0; i + 1 < codePoints.length; i++) {
+            terms.add(new String(codePoints, i, 2));
+        }
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.todolist.service;
+
+import com.example.todolist.config.CacheConfig;
+import com.example.todolist.event.ChangeType;
+import com.example.todolist.event.SubtaskChangedEvent;
+import com.example.todolist.event.SubtasksClearedEvent;
+import com.example.todolist.event.TodoChangedEvent;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缓存失效与统计服务
+ * 监听Todo/Subtask变更事件，在事务提交后只失效受影响的缓存key
+ * 启用只读副本时，写后读一致窗口结束时再失效一次：窗口内其他请求可能从尚未追上的副本读到旧数据并填入缓存
+ */
+@Slf4j
+@Service
+public class CacheService {
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Value("${todo.replicas.enabled:false}")
+    private boolean replicasEnabled;
+
+    @Value("${todo.replicas.read-your-writes-ms:3000}")
+    private long readYourWritesMs;
+
+    /**
+     * 延迟失效的调度线程，未启用只读副本时为null
+     */
+    private ScheduledExecutorService delayedEvictions;
+
+    @PostConstruct
+    public void start() {
+        if (replicasEnabled) {
+            delayedEvictions = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "cache-delayed-evict");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (delayedEvictions != null) {
+            delayedEvictions.shutdownNow();
+        }
+    }
+
+    /**
+     * 待办事项变更：分页结果无法按行定位，清空分页缓存；删除时同时失效该任务的子任务缓存
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTodoChanged(TodoChangedEvent event) {
+        nowAndAfterReplicaLag(() -> {
+            clear(CacheConfig.TODO_PAGES);
+            if (event.getType() == ChangeType.DELETED) {
+                evictSubtasksOf(event.getTodoId());
+            }
+        });
+    }
+
+    /**
+     * 子任务变更：只失效所属父任务的子任务列表和统计
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubtaskChanged(SubtaskChangedEvent event) {
+        nowAndAfterReplicaLag(() -> evictSubtasksOf(event.getParentTaskId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubtasksCleared(SubtasksClearedEvent event) {
+        nowAndAfterReplicaLag(() -> evictSubtasksOf(event.getParentTaskId()));
+    }
+
+    private void nowAndAfterReplicaLag(Runnable eviction) {
+        eviction.run();
+        if (delayedEvictions != null) {
+            delayedEvictions.schedule(eviction, readYourWritesMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 失效某个父任务的子任务列表（两种排序方式）和统计缓存
+     * @param parentTaskId 父任务ID
+     */
+    public void evictSubtasksOf(Long parentTaskId) {
+        log.debug("失效父任务ID{}的子任务缓存", parentTaskId);
+        evict(CacheConfig.SUBTASKS, parentTaskId + ":true");
+        evict(CacheConfig.SUBTASKS, parentTaskId + ":false");
+        evict(CacheConfig.SUBTASK_STATS, parentTaskId);
+    }
+
+    /**
+     * 获取各缓存的命中统计
+     * @return 缓存名到统计信息的映射
+     */
+    public Map<String, CacheMetrics> getCacheMetrics() {
+        Map<String, CacheMetrics> result = new LinkedHashMap<>();
+        for (String name : cacheManager.getCacheNames()) {
+            Cache cache = cacheManager.getCache(name);
+            if (cache instanceof CaffeineCache) {
+                com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache = ((CaffeineCache) cache).getNativeCache();
+                result.put(name, new CacheMetrics(nativeCache.estimatedSize(), nativeCache.stats()));
+            }
+        }
+        return result;
+    }
+
+    private void evict(String cacheName, Object key) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.evict(key);
+        }
+    }
+
+    private void clear(String cacheName) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (cache != null) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * 单个缓存的统计信息类
+     */
+    public static class CacheMetrics {
+        private final long size;
+        private final long hitCount;
+        private final long missCount;
+        private final double hitRate;
+        private final long evictionCount;
+
+        public CacheMetrics(long size, CacheStats stats) {
+            this.size = size;
+            this.hitCount = stats.hitCount();
+            this.missCount = stats.missCount();
+            this.hitRate = stats.hitRate();
+            this.evictionCount = stats.evictionCount();
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getHitCount() {
+            return hitCount;
+        }
+
+        public long getMissCount() {
+            return missCount;
+        }
+
+        public double getHitRate() {
+            return hitRate;
+        }
+
+        /**
+         * 因容量或过期被淘汰的条数（不含主动失效）
+         */
+        public long getEvictionCount() {
+            return evictionCount;
+        }
+    }
+}
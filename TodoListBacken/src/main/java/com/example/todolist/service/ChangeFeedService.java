@@ -0,0 +1,406 @@
+package com.example.todolist.service;
+
+import com.example.todolist.event.SubtaskChangedEvent;
+import com.example.todolist.event.SubtasksClearedEvent;
+import com.example.todolist.event.TodoChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 变更推送服务（Server-Sent Events）
+ * 事务提交后把Todo/Subtask变更推送给所有订阅者，客户端无需在每次写操作后重新拉取列表
+ * 每个订阅者有独立的有界缓冲队列，由少量分发线程异步发送：写操作只做入队，不会被慢客户端阻塞；
+ * 队列满的订阅者会被断开，客户端重连后可通过 /api/sync 补齐错过的变更
+ * 空闲订阅者只占用一个异步连接，不占用线程；定期发送心跳以便及时发现断开的连接
+ * 注意：向SSE连接发送是阻塞写，对端停止读取时分发线程会阻塞，直到容器的写超时（server.tomcat.connection-timeout）。
+ * 为避免几个卡住的连接占满分发线程、拖慢所有订阅者，看门狗会断开单次发送超过 todo.feed.send-timeout-seconds 的订阅者，
+ * 并临时为分发线程池补充一个线程，卡住的发送返回后再收回
+ * SseEmitter的complete/completeWithError与send同步在同一个监视器上，发送阻塞时在其他线程上complete也会被阻塞，
+ * 因此断开订阅者（缓冲区溢出、发送超时）时只做标记并移出订阅列表，连接总是由该订阅者自己的发送任务complete：
+ * 写请求的提交后回调和心跳/看门狗线程都不会被卡住的连接阻塞
+ */
+@Slf4j
+@Service
+public class ChangeFeedService {
+
+    /**
+     * 心跳在队列中的占位对象
+     */
+    private static final Object HEARTBEAT = new Object();
+
+    @Value("${todo.feed.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${todo.feed.max-subscribers:10000}")
+    private int maxSubscribers;
+
+    @Value("${todo.feed.heartbeat-interval-seconds:15}")
+    private long heartbeatIntervalSeconds;
+
+    @Value("${todo.feed.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    @Value("${todo.feed.dispatch-threads:4}")
+    private int dispatchThreads;
+
+    @Value("${todo.feed.send-timeout-seconds:10}")
+    private long sendTimeoutSeconds;
+
+    private final Map<Long, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong subscriberIds = new AtomicLong();
+    private final AtomicLong droppedSubscribers = new AtomicLong();
+    private final AtomicLong stalledSubscribers = new AtomicLong();
+
+    private ThreadPoolExecutor dispatcher;
+    private ScheduledExecutorService heartbeatScheduler;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadIndex = new AtomicInteger();
+        dispatcher = new ThreadPoolExecutor(dispatchThreads, dispatchThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeatScheduler.scheduleAtFixedRate(this::heartbeat,
+                heartbeatIntervalSeconds, heartbeatIntervalSeconds, TimeUnit.SECONDS);
+        if (sendTimeoutSeconds > 0) {
+            heartbeatScheduler.scheduleAtFixedRate(this::detectStalledSends, 1, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeatScheduler.shutdownNow();
+        dispatcher.shutdownNow();
+        subscribers.values().forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    /**
+     * 新建订阅
+     * @return SSE连接
+     * @throws ResponseStatusException 订阅数达到上限时返回503
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "订阅数已达上限: " + maxSubscribers);
+        }
+        long id = subscriberIds.incrementAndGet();
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        Subscriber subscriber = new Subscriber(id, emitter, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> subscribers.remove(id));
+        emitter.onTimeout(() -> subscribers.remove(id));
+        emitter.onError(error -> subscribers.remove(id));
+        subscribers.put(id, subscriber);
+        log.debug("新增变更订阅{}，当前订阅数: {}", id, subscribers.size());
+        return emitter;
+    }
+
+    /**
+     * 获取推送状态
+     * @return 当前订阅数、因缓冲区溢出被断开的订阅数和因发送超时被断开的订阅数
+     */
+    public FeedStats getStats() {
+        return new FeedStats(subscribers.size(), droppedSubscribers.get(), stalledSubscribers.get());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTodoChanged(TodoChangedEvent event) {
+        broadcast(new ChangeNotification("TODO_" + event.getType(), event.getTodoId(), event.getTodoId(),
+                event.getAfter(), Collections.emptyList()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubtaskChanged(SubtaskChangedEvent event) {
+        broadcast(new ChangeNotification("SUBTASK_" + event.getType(), event.getSubtaskId(), event.getParentTaskId(),
+                event.getAfter(), Collections.emptyList()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubtasksCleared(SubtasksClearedEvent event) {
+        broadcast(new ChangeNotification("SUBTASKS_CLEARED", null, event.getParentTaskId(),
+                null, event.getSubtaskIds()));
+    }
+
+    /**
+     * 把通知放入每个订阅者的队列，只做入队，不在调用线程上发送
+     */
+    private void broadcast(ChangeNotification notification) {
+        for (Subscriber subscriber : subscribers.values()) {
+            enqueue(subscriber, notification);
+        }
+    }
+
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers.values()) {
+            enqueue(subscriber, HEARTBEAT);
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, Object message) {
+        if (!subscriber.queue.offer(message) && close(subscriber, false)) {
+            // 慢消费者：缓冲区已满，断开连接，由客户端重连后增量同步
+            droppedSubscribers.incrementAndGet();
+            log.warn("变更订阅{}缓冲区已满，断开连接", subscriber.id);
+        }
+        // 已关闭的订阅者同样调度发送任务，由它complete连接
+        if (subscriber.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    /**
+     * 标记订阅者已关闭，移出订阅列表并丢弃未发送的消息；连接由其发送任务complete（见drain）
+     * @param stalled 是否因发送超时关闭
+     * @return 是否由本次调用关闭（已关闭时返回false）
+     */
+    private boolean close(Subscriber subscriber, boolean stalled) {
+        synchronized (subscriber) {
+            if (subscriber.closed) {
+                return false;
+            }
+            subscriber.closed = true;
+            subscriber.stalled = stalled;
+        }
+        subscribers.remove(subscriber.id);
+        subscriber.queue.clear();
+        return true;
+    }
+
+    /**
+     * 看门狗：断开单次发送超时（对端不再读取）的订阅者，并为分发线程池补充一个线程，
+     * 避免卡住的发送占满分发线程；卡住的发送返回（或因容器写超时失败）后，
+     * 由该发送线程completeWithError并在drain中收回补充的线程
+     */
+    private void detectStalledSends() {
+        long deadline = System.nanoTime() - TimeUnit.SECONDS.toNanos(sendTimeoutSeconds);
+        for (Subscriber subscriber : subscribers.values()) {
+            // 与drain结束时的清理互斥：只有发送仍在进行时才标记，保证补充的线程一定会被收回
+            synchronized (subscriber) {
+                long sendStarted = subscriber.sendStartedNanos;
+                if (sendStarted == 0 || sendStarted - deadline > 0 || !close(subscriber, true)) {
+                    continue;
+                }
+            }
+            stalledSubscribers.incrementAndGet();
+            log.warn("变更订阅{}发送超过{}秒没有完成，断开连接", subscriber.id, sendTimeoutSeconds);
+            resizeDispatcher(1);
+        }
+    }
+
+    /**
+     * 调整分发线程数；扩大时先调最大线程数，缩小时先调核心线程数，保证核心线程数不大于最大线程数
+     */
+    private synchronized void resizeDispatcher(int delta) {
+        int size = dispatcher.getCorePoolSize() + delta;
+        if (delta > 0) {
+            dispatcher.setMaximumPoolSize(size);
+            dispatcher.setCorePoolSize(size);
+        } else {
+            dispatcher.setCorePoolSize(size);
+            dispatcher.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * 发送订阅者队列中的全部消息，同一订阅者同一时刻只有一个线程在发送
+     * 订阅者已关闭时在本线程上complete连接：本线程就是唯一可能持有emitter监视器发送的线程，不会被阻塞
+     */
+    private void drain(Subscriber subscriber) {
+        try {
+            Object message;
+            while (!subscriber.closed && (message = subscriber.queue.poll()) != null) {
+                subscriber.sendStartedNanos = System.nanoTime();
+                if (message == HEARTBEAT) {
+                    subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    ChangeNotification notification = (ChangeNotification) message;
+                    subscriber.emitter.send(SseEmitter.event().name(notification.getType()).data(notification));
+                }
+                subscriber.sendStartedNanos = 0;
+            }
+            if (subscriber.closed && !subscriber.emitterCompleted) {
+                subscriber.emitterCompleted = true;
+                if (subscriber.stalled) {
+                    subscriber.emitter.completeWithError(new IOException("发送超时"));
+                } else {
+                    subscriber.emitter.complete();
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            log.debug("变更订阅{}发送失败，移除订阅: {}", subscriber.id, e.getMessage());
+            subscriber.emitterCompleted = true;
+            close(subscriber, false);
+            return;
+        } finally {
+            finishDrain(subscriber);
+        }
+        // 释放标记后若又有新消息入队，或订阅者在此期间被关闭而连接尚未complete，重新调度
+        boolean pending = subscriber.closed ? !subscriber.emitterCompleted : !subscriber.queue.isEmpty();
+        if (pending && subscriber.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(subscriber));
+        }
+    }
+
+    /**
+     * 结束一次发送：清除发送开始时间并释放发送标记；若看门狗已断开该订阅者并补充了线程，当前线程恢复后收回（只收回一次）
+     */
+    private void finishDrain(Subscriber subscriber) {
+        boolean releaseThread;
+        synchronized (subscriber) {
+            subscriber.sendStartedNanos = 0;
+            releaseThread = subscriber.stalled && !subscriber.threadReleased;
+            subscriber.threadReleased |= releaseThread;
+        }
+        subscriber.draining.set(false);
+        if (releaseThread) {
+            resizeDispatcher(-1);
+        }
+    }
+
+    /**
+     * 订阅者：SSE连接及其有界缓冲队列
+     */
+    private static class Subscriber {
+        private final long id;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        /**
+         * 当前发送开始的时间（System.nanoTime），没有发送时为0
+         */
+        private volatile long sendStartedNanos;
+
+        /**
+         * 已断开（缓冲区溢出、发送超时或发送失败），不再发送，连接由发送任务complete
+         */
+        private volatile boolean closed;
+
+        /**
+         * 已被看门狗判定为发送超时并断开
+         */
+        private volatile boolean stalled;
+
+        /**
+         * 看门狗补充的分发线程已收回
+         */
+        private boolean threadReleased;
+
+        /**
+         * 发送任务已complete连接（或发送失败由容器关闭），只在持有发送标记的线程上读写
+         */
+        private volatile boolean emitterCompleted;
+
+        Subscriber(long id, SseEmitter emitter, BlockingQueue<Object> queue) {
+            this.id = id;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+
+    /**
+     * 推送给客户端的变更通知类
+     */
+    public static class ChangeNotification {
+        private final String type;
+        private final Long id;
+        private final Long parentTaskId;
+        private final Object data;
+        private final List<Long> deletedIds;
+
+        public ChangeNotification(String type, Long id, Long parentTaskId, Object data, List<Long> deletedIds) {
+            this.type = type;
+            this.id = id;
+            this.parentTaskId = parentTaskId;
+            this.data = data;
+            this.deletedIds = deletedIds;
+        }
+
+        /**
+         * 事件类型，如 TODO_CREATED、SUBTASK_UPDATED、SUBTASKS_CLEARED
+         */
+        public String getType() {
+            return type;
+        }
+
+        public Long getId() {
+            return id;
+        }
+
+        public Long getParentTaskId() {
+            return parentTaskId;
+        }
+
+        /**
+         * 变更后的数据，删除时为null
+         */
+        public Object getData() {
+            return data;
+        }
+
+        /**
+         * 批量删除的子任务ID
+         */
+        public List<Long> getDeletedIds() {
+            return deletedIds;
+        }
+    }
+
+    /**
+     * 推送状态类
+     */
+    public static class FeedStats {
+        private final int subscriberCount;
+        private final long droppedSubscriberCount;
+        private final long stalledSubscriberCount;
+
+        public FeedStats(int subscriberCount, long droppedSubscriberCount, long stalledSubscriberCount) {
+            this.subscriberCount = subscriberCount;
+            this.droppedSubscriberCount = droppedSubscriberCount;
+            this.stalledSubscriberCount = stalledSubscriberCount;
+        }
+
+        public int getSubscriberCount() {
+            return subscriberCount;
+        }
+
+        public long getDroppedSubscriberCount() {
+            return droppedSubscriberCount;
+        }
+
+        public long getStalledSubscriberCount() {
+            return stalledSubscriberCount;
+        }
+    }
+}
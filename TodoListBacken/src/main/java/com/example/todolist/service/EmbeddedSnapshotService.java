@@ -0,0 +1,116 @@
+package com.example.todolist.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 嵌入式存储的定期快照服务（仅embedded配置）
+ * 使用H2的在线备份（BACKUP TO）把数据库写成zip快照，不阻塞正常读写；
+ * 先写临时文件再原子改名，超过保留数量的旧快照会被删除
+ * 恢复时把快照解压到数据目录即可
+ */
+@Slf4j
+@Service
+@Profile("embedded")
+public class EmbeddedSnapshotService {
+
+    private static final DateTimeFormatter SNAPSHOT_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${todo.embedded.snapshot-interval-minutes:60}")
+    private long snapshotIntervalMinutes;
+
+    @Value("${todo.embedded.snapshot-dir:./data/snapshots}")
+    private String snapshotDir;
+
+    @Value("${todo.embedded.snapshot-retention:24}")
+    private int snapshotRetention;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        if (snapshotIntervalMinutes <= 0) {
+            log.info("嵌入式存储未启用定期快照");
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "embedded-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshotQuietly,
+                snapshotIntervalMinutes, snapshotIntervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 立即生成一次快照
+     * @return 快照文件路径
+     * @throws IOException 写入快照文件失败时抛出
+     */
+    public Path snapshot() throws IOException {
+        long start = System.currentTimeMillis();
+        Path dir = Paths.get(snapshotDir).toAbsolutePath();
+        Files.createDirectories(dir);
+        Path target = dir.resolve("todo-" + LocalDateTime.now().format(SNAPSHOT_NAME) + ".zip");
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+
+        jdbcTemplate.execute("BACKUP TO '" + temp.toString().replace("'", "''") + "'");
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        pruneOldSnapshots(dir);
+
+        log.info("嵌入式存储快照完成: {}，耗时{}ms", target, System.currentTimeMillis() - start);
+        return target;
+    }
+
+    private void snapshotQuietly() {
+        try {
+            snapshot();
+        } catch (Exception e) {
+            log.error("嵌入式存储快照失败", e);
+        }
+    }
+
+    /**
+     * 只保留最新的snapshotRetention个快照
+     */
+    private void pruneOldSnapshots(Path dir) throws IOException {
+        File[] snapshots = dir.toFile().listFiles((file, name) -> name.startsWith("todo-") && name.endsWith(".zip"));
+        if (snapshots == null || snapshots.length <= snapshotRetention) {
+            return;
+        }
+        Arrays.sort(snapshots, Comparator.comparing(File::getName));
+        for (int i = 0; i < snapshots.length - snapshotRetention; i++) {
+            Files.deleteIfExists(snapshots[i].toPath());
+        }
+    }
+}
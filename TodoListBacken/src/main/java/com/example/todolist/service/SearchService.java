@@ -0,0 +1,177 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.event.SubtaskChangedEvent;
+import com.example.todolist.event.SubtasksClearedEvent;
+import com.example.todolist.event.TodoChangedEvent;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import com.example.todolist.replica.ReplicaContext;
+import com.example.todolist.sharding.ShardRouter;
+import com.example.todolist.search.InvertedIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+/**
+ * 全文搜索服务
+ * 在内存倒排索引中搜索待办事项和子任务的内容（中英文混合），不对数据库做 LIKE '%词%' 全表扫描
+ * 启动时（Web服务开始接收请求之前）从数据库分页重建索引，之后根据Todo/Subtask变更事件在事务提交后增量更新
+ * 注意：索引只反映本实例处理的写操作，多实例部署时各实例的索引会有偏差
+ */
+@Slf4j
+@Service
+public class SearchService implements SmartInitializingSingleton {
+
+    /**
+     * 单次搜索默认返回的条数
+     */
+    public static final int DEFAULT_SEARCH_LIMIT = 20;
+
+    /**
+     * 单次搜索允许返回的最大条数
+     */
+    public static final int MAX_SEARCH_LIMIT = 100;
+
+    /**
+     * 重建索引时每次从数据库读取的条数
+     */
+    private static final int REBUILD_PAGE_SIZE = 1000;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+
+    /**
+     * 所有单例初始化完成后、Web服务启动前，从数据库重建索引
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * 从数据库重建索引（按主键游标分页读取，内存中只保留一页实体；分片模式下依次读取每个分片），完成后整体替换旧索引
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        InvertedIndex rebuilt = new InvertedIndex();
+        // 始终读主库：之后的增量由提交后的变更事件更新，基准必须包含所有已提交的数据
+        ReplicaContext.callOnPrimary(() -> shardRouter.onEachShard(() -> {
+            indexAll(rebuilt);
+            return null;
+        }));
+
+        index = rebuilt;
+        log.info("搜索索引重建完成，文档数: {}，耗时{}ms", rebuilt.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 把当前数据库（分片）中的全部待办事项和子任务加入索引
+     */
+    private void indexAll(InvertedIndex rebuilt) {
+        long afterId = 0;
+        List<Todo> todos;
+        do {
+            todos = todoRepository.findPageAfter(afterId, null, null, PageRequest.of(0, REBUILD_PAGE_SIZE));
+            for (Todo todo : todos) {
+                rebuilt.put(toDocument(todo));
+                afterId = todo.getId();
+            }
+        } while (todos.size() == REBUILD_PAGE_SIZE);
+
+        afterId = 0;
+        List<Subtask> subtasks;
+        do {
+            subtasks = subtaskRepository.findPageAfter(afterId, PageRequest.of(0, REBUILD_PAGE_SIZE));
+            for (Subtask subtask : subtasks) {
+                rebuilt.put(toDocument(subtask));
+                afterId = subtask.getId();
+            }
+        } while (subtasks.size() == REBUILD_PAGE_SIZE);
+    }
+
+    /**
+     * 搜索待办事项和子任务
+     * 查询中的每个词都必须匹配；英文词按前缀匹配，中文按相邻两字匹配
+     * @param query 查询文本
+     * @param type 只搜索待办事项或子任务，为null时都搜索
+     * @param completed 完成状态过滤，为null时不过滤
+     * @param priority 优先级过滤（只返回子任务），为null时不过滤
+     * @param offset 跳过的结果数（默认0）
+     * @param limit 返回条数（默认20，最大100）
+     * @return 按相关度排序的一页结果
+     */
+    public InvertedIndex.SearchPage search(String query, InvertedIndex.DocumentType type, Boolean completed,
+                                           Priority priority, Integer offset, Integer limit) {
+        if (query == null || query.trim().isEmpty()) {
+            throw new IllegalArgumentException("搜索内容不能为空");
+        }
+        if (offset != null && offset < 0) {
+            throw new IllegalArgumentException("偏移量不能为负数: " + offset);
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("返回条数必须大于0: " + limit);
+        }
+        int pageSize = limit == null ? DEFAULT_SEARCH_LIMIT : Math.min(limit, MAX_SEARCH_LIMIT);
+        return index.search(query, new InvertedIndex.SearchFilter(type, completed, priority),
+                offset == null ? 0 : offset, pageSize);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTodoChanged(TodoChangedEvent event) {
+        if (event.getAfter() == null) {
+            index.remove(InvertedIndex.DocumentType.TODO, event.getTodoId(), versionOf(event.getBefore().getVersion()));
+        } else {
+            index.put(toDocument(event.getAfter()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubtaskChanged(SubtaskChangedEvent event) {
+        if (event.getAfter() == null) {
+            index.remove(InvertedIndex.DocumentType.SUBTASK, event.getSubtaskId(), versionOf(event.getBefore().getVersion()));
+        } else {
+            index.put(toDocument(event.getAfter()));
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubtasksCleared(SubtasksClearedEvent event) {
+        // 批量删除不带各子任务的版本号：之后这些子任务的任何写入都忽略（子任务ID不会重用）
+        for (Long subtaskId : event.getSubtaskIds()) {
+            index.remove(InvertedIndex.DocumentType.SUBTASK, subtaskId, Long.MAX_VALUE);
+        }
+    }
+
+    private static InvertedIndex.Document toDocument(Todo todo) {
+        return new InvertedIndex.Document(InvertedIndex.DocumentType.TODO, todo.getId(), versionOf(todo.getVersion()),
+                null, todo.getValue(), todo.isCompleted(), null);
+    }
+
+    private static InvertedIndex.Document toDocument(Subtask subtask) {
+        return new InvertedIndex.Document(InvertedIndex.DocumentType.SUBTASK, subtask.getId(), versionOf(subtask.getVersion()),
+                subtask.getParentTaskId(), subtask.getValue(), subtask.isCompleted(), subtask.getPriority());
+    }
+
+    /**
+     * 事件中的快照在写入时已flush，版本号为提交的值；未持久化的实体没有版本号，按0处理
+     */
+    private static long versionOf(Long version) {
+        return version == null ? 0 : version;
+    }
+}
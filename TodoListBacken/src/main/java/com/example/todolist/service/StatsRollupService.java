@@ -0,0 +1,301 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.event.SubtaskChangedEvent;
+import com.example.todolist.event.SubtasksClearedEvent;
+import com.example.todolist.event.TodoChangedEvent;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import com.example.todolist.replica.ReplicaContext;
+import com.example.todolist.sharding.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 全局统计汇总服务
+ * 在内存中维护待办事项与子任务的计数，读取为O(1)，不需要对数据库做COUNT全表扫描
+ * 启动时（Web服务开始接收请求之前）从数据库重建一次，之后根据Todo/Subtask变更事件在事务提交后增量更新
+ * 计数器使用LongAdder，高并发写入时没有锁竞争
+ * 注意：计数只反映本实例处理的写操作，多实例部署时各实例的计数会有偏差
+ */
+@Slf4j
+@Service
+public class StatsRollupService implements SmartInitializingSingleton {
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private final LongAdder todoTotal = new LongAdder();
+    private final LongAdder todoCompleted = new LongAdder();
+    private final Counters subtaskCounters = new Counters();
+
+    /**
+     * 每个父任务的子任务计数
+     */
+    private final Map<Long, Counters> subtaskCountersByParent = new ConcurrentHashMap<>();
+
+    /**
+     * 所有单例初始化完成后、Web服务启动前，从数据库重建计数
+     */
+    @Override
+    public void afterSingletonsInstantiated() {
+        rebuild();
+    }
+
+    /**
+     * 从数据库重建全部计数（分片模式下依次累加每个分片的计数）
+     * 始终读主库：之后的增量由提交后的变更事件累加，基准必须包含所有已提交的数据
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+
+        todoTotal.reset();
+        todoCompleted.reset();
+        subtaskCounters.reset();
+        subtaskCountersByParent.clear();
+
+        ReplicaContext.callOnPrimary(() -> shardRouter.onEachShard(() -> {
+            todoTotal.add(todoRepository.count());
+            todoCompleted.add(todoRepository.countByCompleted(true));
+
+            for (SubtaskRepository.SubtaskCountRow row : subtaskRepository.countGroupedByParentTask()) {
+                subtaskCounters.add(row.getPriority(), row.isCompleted(), row.getCount());
+                countersOf(row.getParentTaskId()).add(row.getPriority(), row.isCompleted(), row.getCount());
+            }
+            return null;
+        }));
+
+        log.info("统计计数重建完成，待办事项: {}，子任务: {}，耗时{}ms",
+                todoTotal.sum(), subtaskCounters.total.sum(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 获取全局统计
+     * @return 统计快照
+     */
+    public DashboardStats getDashboardStats() {
+        return new DashboardStats(todoTotal.sum(), todoCompleted.sum(),
+                subtaskCounters.total.sum(), subtaskCounters.completed.sum(), subtaskCounters.priorityCounts());
+    }
+
+    /**
+     * 获取某个父任务的子任务数量
+     * @param parentTaskId 父任务ID
+     * @return 子任务数量统计
+     */
+    public SubtaskCount getSubtaskCount(Long parentTaskId) {
+        Counters counters = subtaskCountersByParent.get(parentTaskId);
+        if (counters == null) {
+            return new SubtaskCount(parentTaskId, 0, 0);
+        }
+        return new SubtaskCount(parentTaskId, counters.total.sum(), counters.completed.sum());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onTodoChanged(TodoChangedEvent event) {
+        Todo before = event.getBefore();
+        Todo after = event.getAfter();
+        if (before != null) {
+            todoTotal.decrement();
+            if (before.isCompleted()) {
+                todoCompleted.decrement();
+            }
+        }
+        if (after != null) {
+            todoTotal.increment();
+            if (after.isCompleted()) {
+                todoCompleted.increment();
+            }
+        } else if (before != null) {
+            // 待办事项已删除，其子任务随之删除：移除该父任务的计数，避免每个出现过的父任务都留下一条记录
+            removeCountersOf(before.getId());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubtaskChanged(SubtaskChangedEvent event) {
+        Subtask before = event.getBefore();
+        Subtask after = event.getAfter();
+        if (before != null) {
+            subtaskCounters.add(before.getPriority(), before.isCompleted(), -1);
+            addToParent(before.getParentTaskId(), before.getPriority(), before.isCompleted(), -1);
+        }
+        if (after != null) {
+            subtaskCounters.add(after.getPriority(), after.isCompleted(), 1);
+            addToParent(after.getParentTaskId(), after.getPriority(), after.isCompleted(), 1);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSubtasksCleared(SubtasksClearedEvent event) {
+        removeCountersOf(event.getParentTaskId());
+    }
+
+    private Counters countersOf(Long parentTaskId) {
+        return subtaskCountersByParent.computeIfAbsent(parentTaskId, id -> new Counters());
+    }
+
+    /**
+     * 增减某个父任务的子任务计数；在compute中执行，与同一父任务的其他更新和移除串行，
+     * 计数归零（最后一个子任务被删除）时移除该父任务的记录
+     */
+    private void addToParent(Long parentTaskId, Priority priority, boolean isCompleted, long delta) {
+        subtaskCountersByParent.compute(parentTaskId, (id, counters) -> {
+            Counters target = counters == null ? new Counters() : counters;
+            target.add(priority, isCompleted, delta);
+            return target.total.sum() == 0 ? null : target;
+        });
+    }
+
+    /**
+     * 移除某个父任务的子任务计数，并从全局计数中扣除（其子任务已全部删除）
+     */
+    private void removeCountersOf(Long parentTaskId) {
+        Counters removed = subtaskCountersByParent.remove(parentTaskId);
+        if (removed != null) {
+            subtaskCounters.subtract(removed);
+        }
+    }
+
+    /**
+     * 一组子任务计数：总数、已完成数、各优先级数量
+     */
+    private static class Counters {
+        private final LongAdder total = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder[] byPriority = new LongAdder[Priority.values().length];
+
+        Counters() {
+            for (int i = 0; i < byPriority.length; i++) {
+                byPriority[i] = new LongAdder();
+            }
+        }
+
+        void add(Priority priority, boolean isCompleted, long delta) {
+            total.add(delta);
+            if (isCompleted) {
+                completed.add(delta);
+            }
+            byPriority[priority.ordinal()].add(delta);
+        }
+
+        void subtract(Counters other) {
+            total.add(-other.total.sum());
+            completed.add(-other.completed.sum());
+            for (int i = 0; i < byPriority.length; i++) {
+                byPriority[i].add(-other.byPriority[i].sum());
+            }
+        }
+
+        void reset() {
+            total.reset();
+            completed.reset();
+            for (LongAdder adder : byPriority) {
+                adder.reset();
+            }
+        }
+
+        Map<Priority, Long> priorityCounts() {
+            Map<Priority, Long> counts = new EnumMap<>(Priority.class);
+            for (Priority priority : Priority.values()) {
+                counts.put(priority, byPriority[priority.ordinal()].sum());
+            }
+            return counts;
+        }
+    }
+
+    /**
+     * 全局统计信息类
+     */
+    public static class DashboardStats {
+        private final long todoCount;
+        private final long completedTodoCount;
+        private final long subtaskCount;
+        private final long completedSubtaskCount;
+        private final Map<Priority, Long> subtaskPriorityStats;
+
+        public DashboardStats(long todoCount, long completedTodoCount, long subtaskCount,
+                              long completedSubtaskCount, Map<Priority, Long> subtaskPriorityStats) {
+            this.todoCount = todoCount;
+            this.completedTodoCount = completedTodoCount;
+            this.subtaskCount = subtaskCount;
+            this.completedSubtaskCount = completedSubtaskCount;
+            this.subtaskPriorityStats = subtaskPriorityStats;
+        }
+
+        public long getTodoCount() {
+            return todoCount;
+        }
+
+        public long getCompletedTodoCount() {
+            return completedTodoCount;
+        }
+
+        public long getActiveTodoCount() {
+            return todoCount - completedTodoCount;
+        }
+
+        public long getSubtaskCount() {
+            return subtaskCount;
+        }
+
+        public long getCompletedSubtaskCount() {
+            return completedSubtaskCount;
+        }
+
+        public long getActiveSubtaskCount() {
+            return subtaskCount - completedSubtaskCount;
+        }
+
+        public Map<Priority, Long> getSubtaskPriorityStats() {
+            return subtaskPriorityStats;
+        }
+    }
+
+    /**
+     * 单个父任务的子任务数量统计类
+     */
+    public static class SubtaskCount {
+        private final Long parentTaskId;
+        private final long totalCount;
+        private final long completedCount;
+
+        public SubtaskCount(Long parentTaskId, long totalCount, long completedCount) {
+            this.parentTaskId = parentTaskId;
+            this.totalCount = totalCount;
+            this.completedCount = completedCount;
+        }
+
+        public Long getParentTaskId() {
+            return parentTaskId;
+        }
+
+        public long getTotalCount() {
+            return totalCount;
+        }
+
+        public long getCompletedCount() {
+            return completedCount;
+        }
+
+        public long getActiveCount() {
+            return totalCount - completedCount;
+        }
+    }
+}
@@ -1,22 +1,37 @@
 package com.example.todolist.service;
 
+import com.example.todolist.config.CacheConfig;
 import com.example.todolist.entity.Subtask;
 import com.example.todolist.entity.Todo;
 import com.example.todolist.enums.Priority;
+import com.example.todolist.event.SubtaskChangedEvent;
+import com.example.todolist.event.SubtasksClearedEvent;
 import com.example.todolist.repository.SubtaskRepository;
 import com.example.todolist.repository.TodoRepository;
+import com.example.todolist.sharding.ShardKey;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import javax.persistence.EntityNotFoundException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
 
 /**
  * Subtask业务逻辑服务类
+ * 类上的@Transactional用于写操作；查询方法单独标注为只读事务，启用只读副本时由副本承担
  * @Slf4j 提供日志功能
  * @Service 标记这是一个服务类
  */
@@ -25,20 +40,41 @@ import java.util.HashMap;
 @Transactional
 public class SubtaskService {
 
+    /**
+     * 批量统计时单次请求允许的最大父任务数量
+     */
+    public static final int MAX_STATS_BATCH_SIZE = 500;
+
     @Autowired
     private SubtaskRepository subtaskRepository;
 
     @Autowired
     private TodoRepository todoRepository;
 
+    /**
+     * 发布变更事件，供统计、缓存等组件在事务提交后更新
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 子任务列表查询前读取该任务子任务列表的版本号，与结果一起缓存
+     */
+    @Autowired
+    private SyncService syncService;
+
     /**
      * 根据父任务ID获取所有子任务（按优先级排序）
      * @param parentTaskId 父任务ID
      * @param sortByPriority 是否按优先级排序
-     * @return 子任务列表
+     * @return 子任务列表及查询前读取的子任务列表版本号
      */
-    public List<Subtask> getSubtasksByParentId(Long parentTaskId, boolean sortByPriority) {
-        log.info("获取父任务ID为{}的所有子任务，优先级排序: {}", parentTaskId, sortByPriority);
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.SUBTASKS, key = "#parentTaskId + ':' + #sortByPriority",
+            condition = CacheConfig.UNLESS_PRIMARY_REQUIRED)
+    public SyncService.Versioned<List<Subtask>> getSubtasksByParentId(@ShardKey Long parentTaskId, boolean sortByPriority) {
+        log.debug("获取父任务ID为{}的所有子任务，优先级排序: {}", parentTaskId, sortByPriority);
+        long version = syncService.getSubtasksVersion(parentTaskId);
 
         // 验证父任务是否存在
         if (!todoRepository.existsById(parentTaskId)) {
@@ -46,9 +82,9 @@ public class SubtaskService {
         }
 
         if (sortByPriority) {
-            return subtaskRepository.findByParentTaskIdOrderByPriorityDesc(parentTaskId);
+            return new SyncService.Versioned<>(version, subtaskRepository.findByParentTaskIdOrderByPriorityDesc(parentTaskId));
         } else {
-            return subtaskRepository.findByParentTaskId(parentTaskId);
+            return new SyncService.Versioned<>(version, subtaskRepository.findByParentTaskId(parentTaskId));
         }
     }
 
@@ -57,8 +93,9 @@ public class SubtaskService {
      * @param parentTaskId 父任务ID
      * @return 子任务列表
      */
-    public List<Subtask> getSubtasksByParentId(Long parentTaskId) {
-        return getSubtasksByParentId(parentTaskId, true);
+    @Transactional(readOnly = true)
+    public List<Subtask> getSubtasksByParentId(@ShardKey Long parentTaskId) {
+        return getSubtasksByParentId(parentTaskId, true).getValue();
     }
 
     /**
@@ -67,8 +104,9 @@ public class SubtaskService {
      * @param completed 完成状态
      * @return 子任务列表
      */
-    public List<Subtask> getSubtasksByParentIdAndCompleted(Long parentTaskId, boolean completed) {
-        log.info("获取父任务ID为{}的子任务，完成状态: {}", parentTaskId, completed);
+    @Transactional(readOnly = true)
+    public List<Subtask> getSubtasksByParentIdAndCompleted(@ShardKey Long parentTaskId, boolean completed) {
+        log.debug("获取父任务ID为{}的子任务，完成状态: {}", parentTaskId, completed);
         return subtaskRepository.findByParentTaskIdAndCompletedOrderByPriority(parentTaskId, completed);
     }
 
@@ -78,8 +116,9 @@ public class SubtaskService {
      * @param priority 优先级
      * @return 子任务列表
      */
-    public List<Subtask> getSubtasksByPriority(Long parentTaskId, Priority priority) {
-        log.info("获取父任务ID为{}的{}优先级子任务", parentTaskId, priority);
+    @Transactional(readOnly = true)
+    public List<Subtask> getSubtasksByPriority(@ShardKey Long parentTaskId, Priority priority) {
+        log.debug("获取父任务ID为{}的{}优先级子任务", parentTaskId, priority);
         return subtaskRepository.findByParentTaskIdAndPriority(parentTaskId, priority);
     }
 
@@ -89,35 +128,47 @@ public class SubtaskService {
      * @param subtask 子任务对象
      * @return 保存后的子任务
      */
-    public Subtask addSubtask(Long parentTaskId, Subtask subtask) {
-        log.info("为父任务ID{}添加子任务: {}，优先级: {}", parentTaskId, subtask.getValue(), subtask.getPriority());
+    public Subtask addSubtask(@ShardKey Long parentTaskId, Subtask subtask) {
+        log.debug("为父任务ID{}添加子任务: {}，优先级: {}", parentTaskId, subtask.getValue(), subtask.getPriority());
 
         // 验证父任务是否存在
         Todo parentTask = todoRepository.findById(parentTaskId)
                 .orElseThrow(() -> new EntityNotFoundException("父任务不存在，ID: " + parentTaskId));
 
-        // 设置父任务ID
+        // 设置父任务ID，忽略客户端传入的ID和版本号
+        subtask.setId(null);
         subtask.setParentTaskId(parentTaskId);
+        subtask.setVersion(null);
+        subtask.setCreatedAt(null);
+        subtask.setUpdatedAt(null);
 
         // 如果没有设置优先级，默认为中等优先级
         if (subtask.getPriority() == null) {
             subtask.setPriority(Priority.MEDIUM);
         }
 
-        return subtaskRepository.save(subtask);
+        Subtask saved = subtaskRepository.save(subtask);
+        eventPublisher.publishEvent(SubtaskChangedEvent.created(saved));
+        return saved;
     }
 
     /**
      * 更新子任务
      * @param subtaskId 子任务ID
-     * @param updatedSubtask 更新的子任务信息
+     * @param updatedSubtask 更新的子任务信息，携带version时按乐观锁校验
      * @return 更新后的子任务
+     * @throws ObjectOptimisticLockingFailureException 子任务已被他人修改（版本号不一致）时抛出
      */
-    public Subtask updateSubtask(Long subtaskId, Subtask updatedSubtask) {
-        log.info("更新子任务，ID: {}", subtaskId);
+    public Subtask updateSubtask(@ShardKey(ShardKey.Type.SUBTASK) Long subtaskId, Subtask updatedSubtask) {
+        log.debug("更新子任务，ID: {}", subtaskId);
 
         Subtask existingSubtask = subtaskRepository.findById(subtaskId)
                 .orElseThrow(() -> new EntityNotFoundException("子任务不存在，ID: " + subtaskId));
+        // 客户端带上读取时的版本号：期间已被他人修改则拒绝，避免覆盖别人的修改
+        if (updatedSubtask.getVersion() != null && !updatedSubtask.getVersion().equals(existingSubtask.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(Subtask.class, subtaskId);
+        }
+        Subtask before = SubtaskChangedEvent.snapshot(existingSubtask);
 
         // 更新字段
         if (updatedSubtask.getValue() != null) {
@@ -130,7 +181,11 @@ public class SubtaskService {
             existingSubtask.setPriority(updatedSubtask.getPriority());
         }
 
-        return subtaskRepository.save(existingSubtask);
+        Subtask saved = subtaskRepository.save(existingSubtask);
+        // 立即flush：版本号和更新时间在flush时才递增，事件中的快照需要带上新值
+        subtaskRepository.flush();
+        eventPublisher.publishEvent(SubtaskChangedEvent.updated(before, saved));
+        return saved;
     }
 
     /**
@@ -139,14 +194,20 @@ public class SubtaskService {
      * @param priority 新优先级
      * @return 更新后的子任务
      */
-    public Subtask updateSubtaskPriority(Long subtaskId, Priority priority) {
-        log.info("更新子任务优先级，ID: {}，新优先级: {}", subtaskId, priority);
+    public Subtask updateSubtaskPriority(@ShardKey(ShardKey.Type.SUBTASK) Long subtaskId, Priority priority) {
+        log.debug("更新子任务优先级，ID: {}，新优先级: {}", subtaskId, priority);
 
-        Subtask subtask = subtaskRepository.findById(subtaskId)
+        // 先加行锁再读取变更前的状态：并发的切换、修改在锁上排队，事件中的before即本次修改前的状态
+        Subtask subtask = subtaskRepository.findByIdForUpdate(subtaskId)
                 .orElseThrow(() -> new EntityNotFoundException("子任务不存在，ID: " + subtaskId));
+        Subtask before = SubtaskChangedEvent.snapshot(subtask);
 
+        // 设置为绝对值，持有行锁期间不会与其他修改交错，无需乐观锁重试
         subtask.setPriority(priority);
-        return subtaskRepository.save(subtask);
+        // 立即flush：事件中的快照需要带上递增后的版本号
+        subtaskRepository.flush();
+        eventPublisher.publishEvent(SubtaskChangedEvent.updated(before, subtask));
+        return subtask;
     }
 
     /**
@@ -154,37 +215,95 @@ public class SubtaskService {
      * @param subtaskId 子任务ID
      * @return 更新后的子任务
      */
-    public Subtask toggleSubtaskStatus(Long subtaskId) {
-        log.info("切换子任务状态，ID: {}", subtaskId);
+    public Subtask toggleSubtaskStatus(@ShardKey(ShardKey.Type.SUBTASK) Long subtaskId) {
+        log.debug("切换子任务状态，ID: {}", subtaskId);
 
-        Subtask subtask = subtaskRepository.findById(subtaskId)
+        // 在数据库中原子取反，并发切换不会丢失更新
+        if (subtaskRepository.toggleCompleted(subtaskId, LocalDateTime.now()) == 0) {
+            throw new EntityNotFoundException("子任务不存在，ID: " + subtaskId);
+        }
+        // 行锁持有到事务结束，读回的即是本次切换后的状态
+        Subtask saved = subtaskRepository.findById(subtaskId)
+                .orElseThrow(() -> new EntityNotFoundException("子任务不存在，ID: " + subtaskId));
+        Subtask before = SubtaskChangedEvent.snapshot(saved);
+        before.setCompleted(!saved.isCompleted());
+        before.setVersion(saved.getVersion() - 1);
+        eventPublisher.publishEvent(SubtaskChangedEvent.updated(before, saved));
+        return saved;
+    }
+
+    /**
+     * 读取子任务的最新状态，供写缓冲计算变更后的预期状态
+     * 使用读写事务，启用只读副本时也读主库
+     * @param subtaskId 子任务ID
+     * @return 子任务快照（不是受管实体）
+     */
+    public Subtask getSubtaskForUpdate(@ShardKey(ShardKey.Type.SUBTASK) Long subtaskId) {
+        return subtaskRepository.findById(subtaskId)
+                .map(SubtaskChangedEvent::snapshot)
                 .orElseThrow(() -> new EntityNotFoundException("子任务不存在，ID: " + subtaskId));
+    }
 
-        subtask.setCompleted(!subtask.isCompleted());
-        return subtaskRepository.save(subtask);
+    /**
+     * 写入写缓冲中合并后的变更（调用方已路由到这些子任务所在的分片）
+     * 加行锁读出当前状态，在当前状态上切换完成状态、设置优先级，修改后的实体由Hibernate按JDBC批处理一次发送；
+     * 合并后没有变化（如切换了偶数次）的子任务不写入，期间已被删除的子任务忽略
+     * @param changes 合并后的变更
+     * @return 实际更新的子任务数
+     */
+    public int applyBufferedChanges(Collection<SubtaskWriteBehindService.PendingChange> changes) {
+        Map<Long, SubtaskWriteBehindService.PendingChange> changesById = new HashMap<>();
+        changes.forEach(change -> changesById.put(change.getSubtaskId(), change));
+
+        List<Subtask> before = new ArrayList<>();
+        List<Subtask> updated = new ArrayList<>();
+        for (Subtask subtask : subtaskRepository.findByIdInForUpdate(changesById.keySet())) {
+            SubtaskWriteBehindService.PendingChange change = changesById.get(subtask.getId());
+            boolean priorityChanged = change.getPriority() != null && change.getPriority() != subtask.getPriority();
+            if (!change.isToggled() && !priorityChanged) {
+                continue;
+            }
+            before.add(SubtaskChangedEvent.snapshot(subtask));
+            if (change.isToggled()) {
+                subtask.setCompleted(!subtask.isCompleted());
+            }
+            if (priorityChanged) {
+                subtask.setPriority(change.getPriority());
+            }
+            updated.add(subtask);
+        }
+        // 立即flush：事件中的快照需要带上递增后的版本号
+        subtaskRepository.flush();
+        for (int i = 0; i < updated.size(); i++) {
+            eventPublisher.publishEvent(SubtaskChangedEvent.updated(before.get(i), updated.get(i)));
+        }
+        log.debug("写入{}个子任务的缓冲变更，实际更新{}个", changes.size(), updated.size());
+        return updated.size();
     }
 
     /**
      * 删除子任务
      * @param subtaskId 子任务ID
      */
-    public void deleteSubtask(Long subtaskId) {
-        log.info("删除子任务，ID: {}", subtaskId);
+    public void deleteSubtask(@ShardKey(ShardKey.Type.SUBTASK) Long subtaskId) {
+        log.debug("删除子任务，ID: {}", subtaskId);
 
-        if (!subtaskRepository.existsById(subtaskId)) {
-            throw new EntityNotFoundException("子任务不存在，ID: " + subtaskId);
-        }
+        Subtask subtask = subtaskRepository.findById(subtaskId)
+                .orElseThrow(() -> new EntityNotFoundException("子任务不存在，ID: " + subtaskId));
 
-        subtaskRepository.deleteById(subtaskId);
+        subtaskRepository.delete(subtask);
+        eventPublisher.publishEvent(SubtaskChangedEvent.deleted(SubtaskChangedEvent.snapshot(subtask)));
     }
 
     /**
      * 删除父任务下的所有子任务
      * @param parentTaskId 父任务ID
      */
-    public void deleteSubtasksByParentId(Long parentTaskId) {
-        log.info("删除父任务ID为{}的所有子任务", parentTaskId);
+    public void deleteSubtasksByParentId(@ShardKey Long parentTaskId) {
+        log.debug("删除父任务ID为{}的所有子任务", parentTaskId);
+        List<Long> subtaskIds = subtaskRepository.findIdsByParentTaskId(parentTaskId);
         subtaskRepository.deleteByParentTaskId(parentTaskId);
+        eventPublisher.publishEvent(new SubtasksClearedEvent(parentTaskId, subtaskIds));
     }
 
     /**
@@ -192,20 +311,60 @@ public class SubtaskService {
      * @param parentTaskId 父任务ID
      * @return 包含总数、完成数和优先级分布的统计信息
      */
-    public SubtaskStats getSubtaskStats(Long parentTaskId) {
-        log.info("获取父任务ID为{}的子任务统计信息", parentTaskId);
+    @Transactional(readOnly = true)
+    @Cacheable(cacheNames = CacheConfig.SUBTASK_STATS, key = "#parentTaskId", condition = CacheConfig.UNLESS_PRIMARY_REQUIRED)
+    public SubtaskStats getSubtaskStats(@ShardKey Long parentTaskId) {
+        log.debug("获取父任务ID为{}的子任务统计信息", parentTaskId);
+        return computeSubtaskStats(Collections.singletonList(parentTaskId)).get(parentTaskId);
+    }
 
-        long totalCount = subtaskRepository.countByParentTaskId(parentTaskId);
-        long completedCount = subtaskRepository.countCompletedByParentTaskId(parentTaskId);
+    /**
+     * 批量获取多个父任务的子任务统计信息，只执行一次分组聚合查询
+     * @param parentTaskIds 父任务ID列表
+     * @return 父任务ID到统计信息的映射（顺序与入参一致，没有子任务的父任务统计为0）
+     * @throws IllegalArgumentException 列表为空或超过上限时抛出
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, SubtaskStats> getSubtaskStats(@ShardKey Collection<Long> parentTaskIds) {
+        if (parentTaskIds == null || parentTaskIds.isEmpty()) {
+            throw new IllegalArgumentException("父任务ID列表不能为空");
+        }
+        if (parentTaskIds.size() > MAX_STATS_BATCH_SIZE) {
+            throw new IllegalArgumentException("单次最多查询" + MAX_STATS_BATCH_SIZE + "个父任务的统计，实际: " + parentTaskIds.size());
+        }
+        log.debug("批量获取{}个父任务的子任务统计信息", parentTaskIds.size());
+        return computeSubtaskStats(new LinkedHashSet<>(parentTaskIds));
+    }
 
-        // 统计各优先级的子任务数量
-        Map<Priority, Long> priorityStats = new HashMap<>();
-        for (Priority priority : Priority.values()) {
-            long count = subtaskRepository.countByParentTaskIdAndPriority(parentTaskId, priority);
-            priorityStats.put(priority, count);
+    /**
+     * 用一次 GROUP BY 查询计算多个父任务的统计信息
+     */
+    private Map<Long, SubtaskStats> computeSubtaskStats(Collection<Long> parentTaskIds) {
+        Map<Long, long[]> totals = new LinkedHashMap<>();
+        Map<Long, Map<Priority, Long>> priorityStatsByParent = new HashMap<>();
+        for (Long parentTaskId : parentTaskIds) {
+            // totals数组：[0]总数，[1]已完成数
+            totals.put(parentTaskId, new long[2]);
+            Map<Priority, Long> priorityStats = new EnumMap<>(Priority.class);
+            for (Priority priority : Priority.values()) {
+                priorityStats.put(priority, 0L);
+            }
+            priorityStatsByParent.put(parentTaskId, priorityStats);
+        }
+
+        for (SubtaskRepository.SubtaskCountRow row : subtaskRepository.countGroupedByParentTaskIds(parentTaskIds)) {
+            long[] counts = totals.get(row.getParentTaskId());
+            counts[0] += row.getCount();
+            if (row.isCompleted()) {
+                counts[1] += row.getCount();
+            }
+            priorityStatsByParent.get(row.getParentTaskId()).merge(row.getPriority(), row.getCount(), Long::sum);
         }
 
-        return new SubtaskStats(totalCount, completedCount, priorityStats);
+        Map<Long, SubtaskStats> result = new LinkedHashMap<>();
+        totals.forEach((parentTaskId, counts) ->
+                result.put(parentTaskId, new SubtaskStats(counts[0], counts[1], priorityStatsByParent.get(parentTaskId))));
+        return result;
     }
 
     /**
@@ -222,6 +381,28 @@ public class SubtaskService {
             this.priorityStats = priorityStats;
         }
 
+        /**
+         * 由已加载的子任务直接计算统计信息（不查询数据库）
+         * @param subtasks 同一个父任务的全部子任务
+         * @return 统计信息
+         */
+        public static SubtaskStats of(List<Subtask> subtasks) {
+            long completedCount = 0;
+            Map<Priority, Long> priorityStats = new EnumMap<>(Priority.class);
+            for (Priority priority : Priority.values()) {
+                priorityStats.put(priority, 0L);
+            }
+            for (Subtask subtask : subtasks) {
+                if (subtask.isCompleted()) {
+                    completedCount++;
+                }
+                if (subtask.getPriority() != null) {
+                    priorityStats.merge(subtask.getPriority(), 1L, Long::sum);
+                }
+            }
+            return new SubtaskStats(subtasks.size(), completedCount, priorityStats);
+        }
+
         public long getTotalCount() {
             return totalCount;
         }
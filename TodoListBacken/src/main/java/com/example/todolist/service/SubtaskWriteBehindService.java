@@ -0,0 +1,535 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.event.SubtaskChangedEvent;
+import com.example.todolist.sharding.ShardRouter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * 子任务写缓冲服务（write-behind，todo.write-behind.enabled=true时生效）
+ * 切换完成状态和修改优先级先记录在内存中，按子任务ID合并（切换只记奇偶，优先级只保留最后一次），
+ * 立即返回变更后的预期状态；由后台线程按间隔或待写入数量达到阈值时批量写入，关闭时写入全部剩余变更
+ * 同一子任务在一个间隔内的多次操作只需一次加锁查询和一次UPDATE，多个子任务的UPDATE按JDBC批处理发送
+ *
+ * 变更在写入后才可见：列表、统计、ETag和变更推送最多滞后一个写入间隔；
+ * 写入失败时变更放回缓冲区等待下次重试，进程异常退出时未写入的变更会丢失
+ * 同一子任务的整体更新和删除会先写入其缓冲中的变更，乐观锁版本号与返回给客户端的预期状态一致；
+ * 从写入到更新（删除）完成期间持有该子任务的锁，其间的缓冲操作等待，不会插在两者之间
+ * 未启用时所有操作直接调用SubtaskService
+ */
+@Slf4j
+@Service
+public class SubtaskWriteBehindService {
+
+    /**
+     * 单个事务写入的最大子任务数
+     */
+    private static final int MAX_FLUSH_BATCH_SIZE = 500;
+
+    /**
+     * 关闭时写入剩余变更的最大尝试次数
+     */
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    /**
+     * 子任务锁的分段数
+     */
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${todo.write-behind.enabled:false}")
+    private boolean enabled;
+
+    @Value("${todo.write-behind.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    @Value("${todo.write-behind.flush-threshold:500}")
+    private int flushThreshold;
+
+    /**
+     * 等待写入的变更，键为子任务ID
+     */
+    private final Map<Long, PendingChange> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 正在写入的变更：写入提交前，同一子任务的新操作以其预期状态为起点
+     */
+    private final Map<Long, PendingChange> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * 缓冲操作持有读锁，关闭时持有写锁：关闭后的操作直接写数据库，不会留在缓冲区中
+     */
+    private final ReentrantReadWriteLock lifecycleLock = new ReentrantReadWriteLock();
+
+    /**
+     * 按子任务ID分段的锁：缓冲操作与同一子任务的整体更新、删除互斥（先取lifecycleLock读锁再取分段锁）
+     * 写入线程不取分段锁，持有分段锁的请求线程可以等待写入完成
+     */
+    private final ReentrantLock[] subtaskLocks = newLocks();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final AtomicLong bufferedOperations = new AtomicLong();
+    private final AtomicLong flushedRows = new AtomicLong();
+    private final AtomicLong flushFailures = new AtomicLong();
+
+    private volatile boolean stopped;
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (flushIntervalMs <= 0 || flushThreshold <= 0) {
+            throw new IllegalStateException("写缓冲的写入间隔和阈值必须大于0");
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "subtask-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        registerMetrics();
+        log.info("子任务写缓冲已启用，写入间隔{}ms，阈值{}", flushIntervalMs, flushThreshold);
+    }
+
+    /**
+     * 关闭：停止接收缓冲操作，等待进行中的写入完成后写入全部剩余变更
+     * 在容器关闭事件中执行（早于销毁Bean），写入时发布的变更事件仍能由同步、缓存等监听方处理；
+     * 之后到达的请求直接写数据库
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void stop() throws InterruptedException {
+        if (flusher == null || stopped) {
+            return;
+        }
+        lifecycleLock.writeLock().lock();
+        try {
+            stopped = true;
+        } finally {
+            lifecycleLock.writeLock().unlock();
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(30, TimeUnit.SECONDS);
+        for (int attempt = 0; attempt < SHUTDOWN_FLUSH_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            flush();
+        }
+        if (!pending.isEmpty()) {
+            log.error("关闭时仍有{}个子任务的缓冲变更未能写入: {}", pending.size(), pending.keySet());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 切换子任务完成状态
+     * @param subtaskId 子任务ID
+     * @return 切换后的子任务（启用写缓冲时为预期状态）
+     */
+    public Subtask toggleSubtaskStatus(Long subtaskId) {
+        return buffer(subtaskId, change -> change.toggled = !change.toggled,
+                () -> subtaskService.toggleSubtaskStatus(subtaskId));
+    }
+
+    /**
+     * 更新子任务优先级
+     * @param subtaskId 子任务ID
+     * @param priority 新优先级
+     * @return 更新后的子任务（启用写缓冲时为预期状态）
+     * @throws IllegalArgumentException 优先级为空时抛出
+     */
+    public Subtask updateSubtaskPriority(Long subtaskId, Priority priority) {
+        if (priority == null) {
+            throw new IllegalArgumentException("优先级不能为空");
+        }
+        return buffer(subtaskId, change -> change.priority = priority,
+                () -> subtaskService.updateSubtaskPriority(subtaskId, priority));
+    }
+
+    /**
+     * 更新子任务：先写入该子任务缓冲中的变更，再按SubtaskService的逻辑更新
+     */
+    public Subtask updateSubtask(Long subtaskId, Subtask updatedSubtask) {
+        return afterFlush(subtaskId, () -> subtaskService.updateSubtask(subtaskId, updatedSubtask));
+    }
+
+    /**
+     * 删除子任务：先写入该子任务缓冲中的变更，变更事件与删除事件按发生顺序记录
+     */
+    public void deleteSubtask(Long subtaskId) {
+        afterFlush(subtaskId, () -> {
+            subtaskService.deleteSubtask(subtaskId);
+            return null;
+        });
+    }
+
+    /**
+     * 持有子任务锁，写入其缓冲中的变更后执行直接写操作
+     * 缓冲变更写入失败（已放回缓冲区）时不执行，避免更新或删除越过客户端已看到的预期状态
+     */
+    private <T> T afterFlush(Long subtaskId, Supplier<T> direct) {
+        if (!enabled) {
+            return direct.get();
+        }
+        lifecycleLock.readLock().lock();
+        ReentrantLock lock = lockOf(subtaskId);
+        lock.lock();
+        try {
+            flushIfPending(subtaskId);
+            if (pending.containsKey(subtaskId) || inFlight.containsKey(subtaskId)) {
+                throw new IllegalStateException("子任务" + subtaskId + "的缓冲变更写入失败，请稍后重试");
+            }
+            return direct.get();
+        } finally {
+            lock.unlock();
+            lifecycleLock.readLock().unlock();
+        }
+    }
+
+    private Subtask buffer(Long subtaskId, Consumer<PendingChange> operation, Supplier<Subtask> direct) {
+        if (!enabled) {
+            return direct.get();
+        }
+        lifecycleLock.readLock().lock();
+        try {
+            if (stopped) {
+                return direct.get();
+            }
+            Subtask projected;
+            ReentrantLock lock = lockOf(subtaskId);
+            lock.lock();
+            try {
+                projected = record(subtaskId, operation);
+            } finally {
+                lock.unlock();
+            }
+            bufferedOperations.incrementAndGet();
+            if (pending.size() >= flushThreshold && flushRequested.compareAndSet(false, true)) {
+                flusher.execute(this::flush);
+            }
+            return projected;
+        } finally {
+            lifecycleLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 把操作合并到子任务的待写入变更中
+     * 待写入变更被写入线程取走（closed）后，等它移出pending再新建一个，新变更以其预期状态为起点
+     */
+    private Subtask record(Long subtaskId, Consumer<PendingChange> operation) {
+        while (true) {
+            PendingChange change = pending.get(subtaskId);
+            if (change == null) {
+                PendingChange created = new PendingChange(baseOf(subtaskId));
+                change = pending.putIfAbsent(subtaskId, created);
+                if (change == null) {
+                    change = created;
+                }
+            }
+            synchronized (change) {
+                if (!change.closed) {
+                    operation.accept(change);
+                    return change.projected();
+                }
+            }
+            Thread.yield();
+        }
+    }
+
+    /**
+     * 新变更的起点：正在写入的变更的预期状态，没有时为数据库中的最新状态
+     */
+    private Subtask baseOf(Long subtaskId) {
+        PendingChange flushing = inFlight.get(subtaskId);
+        if (flushing != null) {
+            return flushing.projected();
+        }
+        return subtaskService.getSubtaskForUpdate(subtaskId);
+    }
+
+    private ReentrantLock lockOf(Long subtaskId) {
+        int hash = subtaskId.hashCode();
+        return subtaskLocks[(hash ^ (hash >>> 16)) & (LOCK_STRIPES - 1)];
+    }
+
+    private static ReentrantLock[] newLocks() {
+        ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+
+    /**
+     * 同步写入指定子任务的缓冲变更（在写入线程上执行，与定时写入串行），调用方持有lifecycleLock读锁
+     */
+    private void flushIfPending(Long subtaskId) {
+        if (!pending.containsKey(subtaskId) && !inFlight.containsKey(subtaskId)) {
+            return;
+        }
+        try {
+            if (stopped) {
+                flush();
+                return;
+            }
+            flusher.submit(this::flush).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待写入缓冲变更时被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("写入缓冲变更失败", e.getCause());
+        }
+    }
+
+    /**
+     * 写入全部待写入变更：按子任务所在分片拆分，每个分片每批一个事务；失败的批次放回缓冲区
+     */
+    private synchronized void flush() {
+        flushRequested.set(false);
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<PendingChange> batch = new ArrayList<>();
+        for (Long subtaskId : new ArrayList<>(pending.keySet())) {
+            PendingChange change = pending.get(subtaskId);
+            if (change == null) {
+                continue;
+            }
+            // 先关闭再登记为写入中，最后移出pending：新操作等到移出后再新建变更，此时一定能取到写入中的预期状态
+            synchronized (change) {
+                change.closed = true;
+            }
+            inFlight.put(subtaskId, change);
+            pending.remove(subtaskId);
+            batch.add(change);
+        }
+        try {
+            List<Long> parentTaskIds = batch.stream()
+                    .map(PendingChange::getParentTaskId)
+                    .distinct()
+                    .collect(Collectors.toList());
+            shardRouter.forTodoIds(parentTaskIds, part -> {
+                Set<Long> parents = new LinkedHashSet<>(part);
+                List<PendingChange> changes = batch.stream()
+                        .filter(change -> parents.contains(change.getParentTaskId()))
+                        .collect(Collectors.toList());
+                for (int from = 0; from < changes.size(); from += MAX_FLUSH_BATCH_SIZE) {
+                    write(changes.subList(from, Math.min(from + MAX_FLUSH_BATCH_SIZE, changes.size())));
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            // 路由失败（如分片查询出错）：整批放回
+            flushFailures.incrementAndGet();
+            log.error("写入子任务缓冲变更失败，{}个变更放回缓冲区", batch.size(), e);
+            batch.stream().filter(change -> inFlight.containsKey(change.getSubtaskId())).forEach(this::requeue);
+        }
+    }
+
+    /**
+     * 在一个事务中写入一批变更；写入的变更提交后移出inFlight，失败时放回缓冲区
+     */
+    private void write(List<PendingChange> changes) {
+        try {
+            flushedRows.addAndGet(subtaskService.applyBufferedChanges(changes));
+            changes.forEach(change -> inFlight.remove(change.getSubtaskId()));
+        } catch (RuntimeException e) {
+            flushFailures.incrementAndGet();
+            log.error("写入{}个子任务的缓冲变更失败，放回缓冲区等待重试", changes.size(), e);
+            changes.forEach(this::requeue);
+        }
+    }
+
+    /**
+     * 把写入失败的变更放回缓冲区：已有更新的变更时合并在它之前
+     */
+    private void requeue(PendingChange failed) {
+        Long subtaskId = failed.getSubtaskId();
+        pending.compute(subtaskId, (id, newer) -> {
+            if (newer == null) {
+                synchronized (failed) {
+                    failed.closed = false;
+                }
+                return failed;
+            }
+            synchronized (newer) {
+                newer.mergeAfter(failed);
+            }
+            return newer;
+        });
+        inFlight.remove(subtaskId);
+    }
+
+    /**
+     * 获取写缓冲状态
+     * @return 待写入的子任务数及累计计数
+     */
+    public WriteBehindStats getStats() {
+        return new WriteBehindStats(enabled, pending.size() + inFlight.size(), bufferedOperations.get(),
+                flushedRows.get(), flushFailures.get());
+    }
+
+    private void registerMetrics() {
+        Gauge.builder("todo.write_behind.pending", this, service -> service.pending.size() + service.inFlight.size())
+                .description("等待写入数据库的子任务数")
+                .register(meterRegistry);
+        FunctionCounter.builder("todo.write_behind.operations", bufferedOperations, AtomicLong::get)
+                .description("进入写缓冲的切换状态和修改优先级操作数")
+                .register(meterRegistry);
+        FunctionCounter.builder("todo.write_behind.flushed", flushedRows, AtomicLong::get)
+                .description("由写缓冲实际更新的子任务行数")
+                .register(meterRegistry);
+        FunctionCounter.builder("todo.write_behind.failures", flushFailures, AtomicLong::get)
+                .description("写入失败的批次数")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 一个子任务合并后的待写入变更
+     * 字段由写入该变更的请求线程在synchronized内修改；关闭后不再修改，写入线程可直接读取
+     */
+    public static final class PendingChange {
+        /**
+         * 开始缓冲时子任务的状态
+         */
+        private Subtask base;
+        /**
+         * 是否需要切换完成状态（切换次数为奇数）
+         */
+        private boolean toggled;
+        /**
+         * 最后一次设置的优先级，没有设置时为null
+         */
+        private Priority priority;
+        private boolean closed;
+
+        private PendingChange(Subtask base) {
+            this.base = base;
+        }
+
+        public Long getSubtaskId() {
+            return base.getId();
+        }
+
+        public Long getParentTaskId() {
+            return base.getParentTaskId();
+        }
+
+        public boolean isToggled() {
+            return toggled;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        /**
+         * 写入后的预期状态：有变化时版本号加1（写入时一个子任务只执行一次UPDATE）
+         */
+        private Subtask projected() {
+            Subtask projected = SubtaskChangedEvent.snapshot(base);
+            boolean priorityChanged = priority != null && priority != base.getPriority();
+            if (!toggled && !priorityChanged) {
+                return projected;
+            }
+            if (toggled) {
+                projected.setCompleted(!base.isCompleted());
+            }
+            if (priorityChanged) {
+                projected.setPriority(priority);
+            }
+            projected.setVersion(base.getVersion() + 1);
+            projected.setUpdatedAt(LocalDateTime.now());
+            return projected;
+        }
+
+        /**
+         * 合并一个更早的、写入失败的变更：以它的起点为起点，切换次数相加，优先级以本变更为准
+         */
+        private void mergeAfter(PendingChange earlier) {
+            base = earlier.base;
+            toggled = toggled != earlier.toggled;
+            if (priority == null) {
+                priority = earlier.priority;
+            }
+        }
+    }
+
+    /**
+     * 写缓冲状态
+     */
+    public static class WriteBehindStats {
+        private final boolean enabled;
+        private final int pendingCount;
+        private final long bufferedOperations;
+        private final long flushedRows;
+        private final long flushFailures;
+
+        public WriteBehindStats(boolean enabled, int pendingCount, long bufferedOperations, long flushedRows, long flushFailures) {
+            this.enabled = enabled;
+            this.pendingCount = pendingCount;
+            this.bufferedOperations = bufferedOperations;
+            this.flushedRows = flushedRows;
+            this.flushFailures = flushFailures;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public int getPendingCount() {
+            return pendingCount;
+        }
+
+        public long getBufferedOperations() {
+            return bufferedOperations;
+        }
+
+        public long getFlushedRows() {
+            return flushedRows;
+        }
+
+        public long getFlushFailures() {
+            return flushFailures;
+        }
+    }
+}
@@ -0,0 +1,490 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.ChangeLog;
+import com.example.todolist.entity.ChangeLogCounter;
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.event.ChangeType;
+import com.example.todolist.event.SubtaskChangedEvent;
+import com.example.todolist.event.SubtasksClearedEvent;
+import com.example.todolist.event.TodoChangedEvent;
+import com.example.todolist.repository.ChangeLogCounterRepository;
+import com.example.todolist.repository.ChangeLogRepository;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import com.example.todolist.sharding.ShardKey;
+import com.example.todolist.sharding.ShardRouter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 增量同步服务
+ * 在写操作的事务提交前追加变更日志（与业务数据同一事务），
+ * 并基于变更日志提供集合版本号（用于ETag）和“某令牌之后的变更”查询
+ * 变更日志的版本号在提交前持有版本计数的行锁时分配，顺序即提交顺序：
+ * 读到版本号N时不大于N的变更都已提交，同步不会跳过较晚提交的变更，304也不会对应过期的数据
+ * 超过保留时间的变更日志定期清理，令牌早于已清理版本的客户端需要重新全量加载
+ * 分片模式下变更日志随业务数据写入各自的分片，集合版本号为各分片版本号之和（只增不减，可用于ETag），
+ * 各分片的版本号各自独立，不能组成全局有序的同步令牌，因此不支持增量同步
+ */
+@Slf4j
+@Service
+public class SyncService {
+
+    /**
+     * 单次同步默认返回的变更条数
+     */
+    public static final int DEFAULT_SYNC_LIMIT = 500;
+
+    /**
+     * 单次同步允许返回的最大变更条数
+     */
+    public static final int MAX_SYNC_LIMIT = 2000;
+
+    /**
+     * 清理变更日志时每个事务删除的最大条数
+     */
+    private static final int PRUNE_BATCH_SIZE = 1000;
+
+    /**
+     * 事务内已加锁的版本计数（绑定在当前事务的同步资源上）
+     */
+    private static final Object LOCKED_COUNTER_KEY = new Object();
+
+    @Autowired
+    private ChangeLogRepository changeLogRepository;
+
+    @Autowired
+    private ChangeLogCounterRepository changeLogCounterRepository;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * 版本号查询的只读事务：启用只读副本时，版本号与随后的列表查询读自同一个副本，
+     * ETag不会超前于响应中的数据
+     */
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * 写事务：记录变更时加入业务事务（没有事务时单独开启），清理时每批一个事务
+     */
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * 变更日志保留时间（小时）
+     */
+    @Value("${todo.sync.retention-hours:168}")
+    private long retentionHours;
+
+    /**
+     * 清理间隔（分钟），不大于0时不自动清理
+     */
+    @Value("${todo.sync.prune-interval-minutes:60}")
+    private long pruneIntervalMinutes;
+
+    private ScheduledExecutorService pruner;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+
+        if (pruneIntervalMinutes > 0) {
+            pruner = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "change-log-pruner");
+                thread.setDaemon(true);
+                return thread;
+            });
+            pruner.scheduleWithFixedDelay(this::pruneQuietly, pruneIntervalMinutes, pruneIntervalMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (pruner != null) {
+            pruner.shutdownNow();
+        }
+    }
+
+    // ==================== 记录变更（事务提交前，与业务写入同一事务） ====================
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onTodoChanged(TodoChangedEvent event) {
+        Long todoId = event.getTodoId();
+        record(Collections.singletonList(ChangeLog.of(ChangeLog.EntityType.TODO, todoId, todoId, event.getType())));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onSubtaskChanged(SubtaskChangedEvent event) {
+        record(Collections.singletonList(ChangeLog.of(ChangeLog.EntityType.SUBTASK,
+                event.getSubtaskId(), event.getParentTaskId(), event.getType())));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onSubtasksCleared(SubtasksClearedEvent event) {
+        List<ChangeLog> logs = event.getSubtaskIds().stream()
+                .map(id -> ChangeLog.of(ChangeLog.EntityType.SUBTASK, id, event.getParentTaskId(), ChangeType.DELETED))
+                .collect(Collectors.toList());
+        record(logs);
+    }
+
+    /**
+     * 锁定版本计数、为变更分配连续的版本号并保存
+     * 行锁持有到事务提交，并发的写事务在此依次排队，版本号的分配顺序与提交顺序一致；
+     * 提交前的最后一步才加锁，持锁时间只有写变更日志和提交本身
+     * 计数的UPDATE在提交时随脏检查执行一次
+     */
+    private void record(List<ChangeLog> logs) {
+        transactionTemplate.executeWithoutResult(status -> {
+            ChangeLogCounter counter = lockCounter();
+            long version = counter.getCurrentVersion();
+            for (ChangeLog change : logs) {
+                change.setVersion(++version);
+            }
+            counter.setCurrentVersion(version);
+            changeLogRepository.saveAll(logs);
+        });
+    }
+
+    /**
+     * 锁定本事务的版本计数（SELECT ... FOR UPDATE），同一事务内只在第一次调用时执行
+     * 加锁前先flush（经由仓库调用，乐观锁冲突照常转换为409）：延迟到提交时执行的DELETE/UPDATE（如deleteTodo的delete）
+     * 必须在加锁前拿到业务行锁，否则本事务持有计数行锁再等业务行锁，而并发的切换事务持有业务行锁再等计数行锁，形成死锁；
+     * flush之后持有计数行锁期间只写变更日志，加锁顺序总是先业务行后计数行
+     * 已加锁的计数绑定在事务上直接复用：再次flush会提前写出计数的UPDATE，Hibernate随后又要重新加锁
+     */
+    private ChangeLogCounter lockCounter() {
+        ChangeLogCounter locked = (ChangeLogCounter) TransactionSynchronizationManager.getResource(LOCKED_COUNTER_KEY);
+        if (locked != null && entityManager.contains(locked)) {
+            return locked;
+        }
+        changeLogRepository.flush();
+        ChangeLogCounter counter = entityManager.find(ChangeLogCounter.class,
+                ChangeLogCounter.SINGLETON_ID, LockModeType.PESSIMISTIC_WRITE);
+        if (locked == null) {
+            TransactionSynchronizationManager.bindResource(LOCKED_COUNTER_KEY, counter);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(LOCKED_COUNTER_KEY);
+                }
+            });
+        }
+        return counter;
+    }
+
+    // ==================== 版本号 ====================
+
+    /**
+     * 待办事项集合的版本号，任何待办事项变更都会使其增大
+     * @return 版本号，没有任何变更时为0
+     */
+    public long getTodosVersion() {
+        return shardRouter.fanOut(() -> readOnlyTransactionTemplate.execute(status -> {
+            return orPrunedVersion(changeLogRepository.findCollectionVersionByEntityType(ChangeLog.EntityType.TODO));
+        }), SyncService::sum);
+    }
+
+    /**
+     * 全部待办事项及子任务的版本号，任何待办事项或子任务变更都会使其增大
+     * @return 版本号，没有任何变更时为0
+     */
+    public long getTreeVersion() {
+        return shardRouter.fanOut(() -> readOnlyTransactionTemplate.execute(status ->
+                changeLogCounterRepository.findCurrent().getCurrentVersion()), SyncService::sum);
+    }
+
+    private static Long sum(List<Long> versions) {
+        return versions.stream().mapToLong(Long::longValue).sum();
+    }
+
+    /**
+     * 集合的变更日志已全部清理时以已清理版本号作为版本：
+     * 该集合此后没有变更，已清理版本号不小于客户端此前拿到的版本，不会回退到0与空集合的版本相同
+     */
+    private static long orPrunedVersion(ChangeLogRepository.CollectionVersionRow row) {
+        Long version = row.getMaxVersion();
+        return version == null ? row.getPrunedVersion() : Math.max(version, row.getPrunedVersion());
+    }
+
+    /**
+     * 某个任务子任务列表的版本号，任务自身或其子任务变更都会使其增大
+     * @param parentTaskId 父任务ID
+     * @return 版本号，没有任何变更时为0
+     */
+    @Transactional(readOnly = true)
+    public long getSubtasksVersion(@ShardKey Long parentTaskId) {
+        return orPrunedVersion(changeLogRepository.findCollectionVersionByParentTaskId(parentTaskId));
+    }
+
+    // ==================== 清理 ====================
+
+    /**
+     * 删除超过保留时间的变更日志（分片模式下依次清理每个分片）
+     * 按版本号从小到大分批删除，遇到第一条仍在保留期内的变更即停止，只删除连续的最旧部分，
+     * 并推进已清理版本号；令牌早于该版本号的同步请求会收到resetRequired
+     * @return 删除的条数
+     */
+    public long pruneChangeLog() {
+        LocalDateTime cutoff = LocalDateTime.now().minusHours(retentionHours);
+        long start = System.currentTimeMillis();
+        long deleted = sum(shardRouter.onEachShard(() -> pruneBefore(cutoff)));
+        if (deleted > 0) {
+            log.info("清理{}之前的变更日志{}条，耗时{}ms", cutoff, deleted, System.currentTimeMillis() - start);
+        }
+        return deleted;
+    }
+
+    private long pruneBefore(LocalDateTime cutoff) {
+        long deleted = 0;
+        while (true) {
+            Integer batch = transactionTemplate.execute(status -> {
+                long prunedVersion = changeLogCounterRepository.findCurrent().getPrunedVersion();
+                List<ChangeLog> oldest = changeLogRepository.findByVersionGreaterThanOrderByVersionAsc(
+                        prunedVersion, PageRequest.of(0, PRUNE_BATCH_SIZE));
+                long upTo = prunedVersion;
+                int count = 0;
+                for (ChangeLog change : oldest) {
+                    if (!change.getChangedAt().isBefore(cutoff)) {
+                        break;
+                    }
+                    upTo = change.getVersion();
+                    count++;
+                }
+                if (count == 0) {
+                    return 0;
+                }
+                // 已清理版本号与删除在同一事务中提交，同步请求看到缺失的变更时一定也看到推进后的版本号
+                changeLogCounterRepository.advancePrunedVersion(upTo);
+                changeLogRepository.deleteUpToVersion(upTo);
+                return count;
+            });
+            deleted += batch;
+            if (batch < PRUNE_BATCH_SIZE) {
+                return deleted;
+            }
+        }
+    }
+
+    private void pruneQuietly() {
+        try {
+            pruneChangeLog();
+        } catch (Exception e) {
+            log.error("清理变更日志失败", e);
+        }
+    }
+
+    // ==================== 增量同步 ====================
+
+    /**
+     * 获取某令牌之后的变更
+     * 同一实体在区间内多次变更只返回最终状态；已删除的实体以ID形式返回（墓碑）
+     * 令牌早于已清理的版本号时（包括首次同步传0而旧变更已清理），返回resetRequired及当前令牌，
+     * 客户端应通过分页接口重新全量加载，之后用该令牌继续同步
+     * @param since 上次同步返回的令牌，首次同步传0
+     * @param limit 最多处理的变更条数
+     * @return 变更结果及新的令牌
+     * @throws UnsupportedOperationException 分片模式下抛出（接口返回501）
+     */
+    @Transactional(readOnly = true)
+    public SyncResult getChangesSince(long since, Integer limit) {
+        if (shardRouter.isSharded()) {
+            throw new UnsupportedOperationException("分片模式下不支持增量同步，请使用分页接口");
+        }
+        if (since < 0) {
+            throw new IllegalArgumentException("同步令牌不能为负数: " + since);
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("同步条数必须大于0: " + limit);
+        }
+        int pageSize = limit == null ? DEFAULT_SYNC_LIMIT : Math.min(limit, MAX_SYNC_LIMIT);
+        log.debug("获取令牌{}之后的变更，最多{}条", since, pageSize);
+
+        List<ChangeLog> changes = changeLogRepository.findByVersionGreaterThanOrderByVersionAsc(since, PageRequest.of(0, pageSize + 1));
+
+        // 读取变更之后再检查已清理版本号：读到的变更如有缺失，这里一定能看到推进后的已清理版本号
+        ChangeLogCounter counter = changeLogCounterRepository.findCurrent();
+        if (since < counter.getPrunedVersion()) {
+            log.info("同步令牌{}早于已清理的版本{}，需要重新全量加载", since, counter.getPrunedVersion());
+            return SyncResult.reset(counter.getCurrentVersion());
+        }
+
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+        long token = changes.isEmpty() ? since : changes.get(changes.size() - 1).getVersion();
+
+        // 每个实体只保留区间内最后一次变更
+        Map<Long, ChangeType> lastTodoChanges = new LinkedHashMap<>();
+        Map<Long, ChangeType> lastSubtaskChanges = new LinkedHashMap<>();
+        for (ChangeLog change : changes) {
+            if (change.getEntityType() == ChangeLog.EntityType.TODO) {
+                lastTodoChanges.put(change.getEntityId(), change.getChangeType());
+            } else {
+                lastSubtaskChanges.put(change.getEntityId(), change.getChangeType());
+            }
+        }
+
+        List<Todo> todos = todoRepository.findAllById(idsNotDeleted(lastTodoChanges));
+        List<Subtask> subtasks = subtaskRepository.findAllById(idsNotDeleted(lastSubtaskChanges));
+
+        // 区间内未删除、但查询时已不存在的实体（之后被删除）同样作为墓碑返回
+        Set<Long> foundTodoIds = todos.stream().map(Todo::getId).collect(Collectors.toSet());
+        Set<Long> foundSubtaskIds = subtasks.stream().map(Subtask::getId).collect(Collectors.toSet());
+        List<Long> deletedTodoIds = lastTodoChanges.keySet().stream()
+                .filter(id -> !foundTodoIds.contains(id))
+                .collect(Collectors.toList());
+        List<Long> deletedSubtaskIds = lastSubtaskChanges.keySet().stream()
+                .filter(id -> !foundSubtaskIds.contains(id))
+                .collect(Collectors.toList());
+
+        return new SyncResult(token, hasMore, false, todos, subtasks, deletedTodoIds, deletedSubtaskIds);
+    }
+
+    private static List<Long> idsNotDeleted(Map<Long, ChangeType> lastChanges) {
+        List<Long> ids = new ArrayList<>();
+        lastChanges.forEach((id, type) -> {
+            if (type != ChangeType.DELETED) {
+                ids.add(id);
+            }
+        });
+        return ids;
+    }
+
+    /**
+     * 增量同步结果类
+     */
+    public static class SyncResult {
+        private final long token;
+        private final boolean hasMore;
+        private final boolean resetRequired;
+        private final List<Todo> todos;
+        private final List<Subtask> subtasks;
+        private final List<Long> deletedTodoIds;
+        private final List<Long> deletedSubtaskIds;
+
+        public SyncResult(long token, boolean hasMore, boolean resetRequired, List<Todo> todos, List<Subtask> subtasks,
+                          List<Long> deletedTodoIds, List<Long> deletedSubtaskIds) {
+            this.token = token;
+            this.hasMore = hasMore;
+            this.resetRequired = resetRequired;
+            this.todos = todos;
+            this.subtasks = subtasks;
+            this.deletedTodoIds = deletedTodoIds;
+            this.deletedSubtaskIds = deletedSubtaskIds;
+        }
+
+        /**
+         * 下次同步时传入的令牌
+         */
+        public long getToken() {
+            return token;
+        }
+
+        /**
+         * 是否还有未返回的变更（应立即用新令牌继续同步）
+         */
+        public boolean isHasMore() {
+            return hasMore;
+        }
+
+        /**
+         * 令牌之后的部分变更已被清理，客户端应重新全量加载，之后用返回的令牌继续同步
+         */
+        public boolean isResetRequired() {
+            return resetRequired;
+        }
+
+        static SyncResult reset(long token) {
+            return new SyncResult(token, false, true, Collections.emptyList(), Collections.emptyList(),
+                    Collections.emptyList(), Collections.emptyList());
+        }
+
+        /**
+         * 新建或修改过的待办事项（当前状态）
+         */
+        public List<Todo> getTodos() {
+            return todos;
+        }
+
+        /**
+         * 新建或修改过的子任务（当前状态）
+         */
+        public List<Subtask> getSubtasks() {
+            return subtasks;
+        }
+
+        public List<Long> getDeletedTodoIds() {
+            return deletedTodoIds;
+        }
+
+        public List<Long> getDeletedSubtaskIds() {
+            return deletedSubtaskIds;
+        }
+    }
+
+    /**
+     * 带版本号的查询结果，ETag取自这里的版本号
+     * 版本号在查询数据之前读取，数据不旧于版本号：缓存的数据与其版本号一起写入、一起失效，
+     * 不会出现新版本号配旧数据（客户端带着新ETag得到304而一直停留在旧数据上）
+     */
+    public static class Versioned<T> {
+        private final long version;
+        private final T value;
+
+        public Versioned(long version, T value) {
+            this.version = version;
+            this.value = value;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public T getValue() {
+            return value;
+        }
+    }
+}
@@ -1,13 +1,38 @@
 package com.example.todolist.service;
 
+import com.example.todolist.config.CacheConfig;
+import com.example.todolist.entity.Subtask;
 import com.example.todolist.entity.Todo;
+import com.example.todolist.event.SubtasksClearedEvent;
+import com.example.todolist.event.TodoChangedEvent;
+import com.example.todolist.repository.SubtaskRepository;
 import com.example.todolist.repository.TodoRepository;
+import com.example.todolist.sharding.ShardKey;
+import com.example.todolist.sharding.ShardRouter;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityNotFoundException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * Todo业务逻辑服务类
@@ -17,52 +42,533 @@ import java.util.List;
 @Slf4j
 @Service
 public class TodoService {
-    
+
+    /**
+     * 分页查询的默认页大小
+     */
+    public static final int DEFAULT_PAGE_SIZE = 50;
+
+    /**
+     * 分页查询允许的最大页大小
+     */
+    public static final int MAX_PAGE_SIZE = 200;
+
+    /**
+     * 批量新增时单次请求允许的最大条数
+     */
+    public static final int MAX_BATCH_SIZE = 500;
+
+    /**
+     * 清理已完成待办事项时每个事务处理的条数
+     */
+    public static final int DELETE_CHUNK_SIZE = 500;
+
     /**
      * 注入TodoRepository用于数据库操作
      */
     @Autowired
     private TodoRepository todoRepository;
-    
+
+    /**
+     * 注入SubtaskRepository用于级联删除子任务
+     */
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    /**
+     * 注入SubtaskService用于批量统计子任务
+     */
+    @Autowired
+    private SubtaskService subtaskService;
+
+    /**
+     * 列表查询前读取待办事项集合的版本号，与结果一起缓存
+     */
+    @Autowired
+    private SyncService syncService;
+
+    /**
+     * 分块清理时每块使用独立的事务
+     */
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * 分片路由：列表查询并行发往所有分片后按ID归并，未启用分片时直接执行
+     */
+    @Autowired
+    private ShardRouter shardRouter;
+
+    /**
+     * 列表查询的只读事务（分片模式下在每个分片上各开一个；启用只读副本时由副本承担）
+     */
+    private TransactionTemplate readOnlyTransactionTemplate;
+
+    /**
+     * 发布变更事件，供统计、缓存等组件在事务提交后更新
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    /**
+     * 旧接口 /api/get-todo 最多返回的条数
+     */
+    @Value("${todo.list.legacy-limit:1000}")
+    private int legacyLimit;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransactionTemplate = new TransactionTemplate(transactionManager);
+        readOnlyTransactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * 获取待办事项（兼容旧接口）
+     * 不再全表加载，而是返回第一页、最多legacyLimit条记录
+     * @return 待办事项列表及查询前读取的集合版本号
+     */
+    @Cacheable(cacheNames = CacheConfig.TODO_PAGES, key = "'legacy'", condition = CacheConfig.UNLESS_PRIMARY_REQUIRED)
+    public SyncService.Versioned<List<Todo>> getAllTodos() {
+        log.debug("获取所有待办事项，最多{}条", legacyLimit);
+        long version = syncService.getTodosVersion();
+        TodoPage page = shardRouter.fanOut(
+                () -> readOnlyTransactionTemplate.execute(status -> queryPage(0L, legacyLimit, null, null)),
+                pages -> mergePages(pages, legacyLimit));
+        if (page.isHasMore()) {
+            log.warn("待办事项数量超过{}条，旧接口只返回第一页，请改用 /api/todos 分页接口", legacyLimit);
+        }
+        return new SyncService.Versioned<>(version, page.getItems());
+    }
+
+    /**
+     * 游标分页获取待办事项
+     * @param cursor 上一页返回的nextCursor，首页传null
+     * @param limit 页大小，为null时使用默认值，超过上限时截断
+     * @param completed 完成状态过滤（true已完成/false未完成），为null时不过滤
+     * @param prefix 内容前缀过滤，为空时不过滤
+     * @return 当前页数据、下一页游标及查询前读取的集合版本号
+     */
+    @Cacheable(cacheNames = CacheConfig.TODO_PAGES, condition = CacheConfig.UNLESS_PRIMARY_REQUIRED)
+    public SyncService.Versioned<TodoPage> listTodos(Long cursor, Integer limit, Boolean completed, String prefix) {
+        int pageSize = resolvePageSize(cursor, limit);
+        log.debug("分页获取待办事项，cursor: {}，limit: {}，completed: {}，prefix: {}", cursor, pageSize, completed, prefix);
+        long afterId = cursor == null ? 0L : cursor;
+        long version = syncService.getTodosVersion();
+        return new SyncService.Versioned<>(version, shardRouter.fanOut(
+                () -> readOnlyTransactionTemplate.execute(status -> queryPage(afterId, pageSize, completed, prefix)),
+                pages -> mergePages(pages, pageSize)));
+    }
+
+    /**
+     * 游标分页获取待办事项树：每个待办事项内嵌其子任务（按优先级排序）和子任务统计
+     * 不论页大小，固定只执行两条查询：一条keyset分页查询取待办事项，一条IN查询取这一页的全部子任务，
+     * 统计由已加载的子任务在内存中计算；两条查询在同一个只读事务中执行，子任务与统计保持一致
+     * 分片模式下每个分片各执行这两条查询（各自一个只读事务），再按ID归并
+     * @param cursor 上一页返回的nextCursor，首页传null
+     * @param limit 页大小，为null时使用默认值，超过上限时截断
+     * @param completed 完成状态过滤（true已完成/false未完成），为null时不过滤
+     * @param prefix 内容前缀过滤，为空时不过滤
+     * @param includeSubtasks 为false时不返回子任务明细，第二条查询改为分组计数，只返回统计
+     * @return 当前页数据及下一页游标
+     */
+    public TodoTreePage getTodoTree(Long cursor, Integer limit, Boolean completed, String prefix, boolean includeSubtasks) {
+        int pageSize = resolvePageSize(cursor, limit);
+        log.debug("分页获取待办事项树，cursor: {}，limit: {}，completed: {}，prefix: {}，包含子任务: {}",
+                cursor, pageSize, completed, prefix, includeSubtasks);
+        long afterId = cursor == null ? 0L : cursor;
+        return shardRouter.fanOut(
+                () -> readOnlyTransactionTemplate.execute(status -> queryTree(afterId, pageSize, completed, prefix, includeSubtasks)),
+                pages -> {
+                    List<TodoNode> nodes = new ArrayList<>();
+                    boolean hasMore = false;
+                    for (TodoTreePage page : pages) {
+                        nodes.addAll(page.getItems());
+                        hasMore |= page.isHasMore();
+                    }
+                    return mergeByKey(nodes, hasMore, pageSize, node -> node.getTodo().getId(), TodoTreePage::new);
+                });
+    }
+
+    /**
+     * 在当前事务中查询一页待办事项树
+     */
+    private TodoTreePage queryTree(long afterId, int pageSize, Boolean completed, String prefix, boolean includeSubtasks) {
+        TodoPage page = queryPage(afterId, pageSize, completed, prefix);
+        List<TodoNode> nodes = new ArrayList<>(page.getItems().size());
+        if (page.getItems().isEmpty()) {
+            return new TodoTreePage(nodes, page.getNextCursor(), page.isHasMore());
+        }
+
+        List<Long> ids = page.getItems().stream()
+                .map(Todo::getId)
+                .collect(Collectors.toList());
+        if (includeSubtasks) {
+            Map<Long, List<Subtask>> subtasksByParent = subtaskRepository.findByParentTaskIdInOrderByPriority(ids).stream()
+                    .collect(Collectors.groupingBy(Subtask::getParentTaskId));
+            for (Todo todo : page.getItems()) {
+                List<Subtask> subtasks = subtasksByParent.getOrDefault(todo.getId(), Collections.emptyList());
+                nodes.add(new TodoNode(todo, subtasks, SubtaskService.SubtaskStats.of(subtasks)));
+            }
+        } else {
+            Map<Long, SubtaskService.SubtaskStats> statsByParent = subtaskService.getSubtaskStats(ids);
+            for (Todo todo : page.getItems()) {
+                nodes.add(new TodoNode(todo, null, statsByParent.get(todo.getId())));
+            }
+        }
+        return new TodoTreePage(nodes, page.getNextCursor(), page.isHasMore());
+    }
+
+    /**
+     * 校验游标和页大小，返回实际使用的页大小
+     */
+    private static int resolvePageSize(Long cursor, Integer limit) {
+        if (cursor != null && cursor < 0) {
+            throw new IllegalArgumentException("游标不能为负数: " + cursor);
+        }
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("页大小必须大于0: " + limit);
+        }
+        return limit == null ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+    }
+
     /**
-     * 获取所有待办事项
-     * @return 待办事项列表
+     * 执行keyset分页查询，多取一条用于判断是否还有下一页
      */
-    public List<Todo> getAllTodos() {
-        log.info("获取所有待办事项");
-        return todoRepository.findAll();
+    private TodoPage queryPage(long afterId, int pageSize, Boolean completed, String prefix) {
+        String pattern = (prefix == null || prefix.isEmpty()) ? null : escapeLike(prefix) + "%";
+        List<Todo> rows = todoRepository.findPageAfter(afterId, completed, pattern, PageRequest.of(0, pageSize + 1));
+
+        boolean hasMore = rows.size() > pageSize;
+        List<Todo> items = hasMore ? rows.subList(0, pageSize) : rows;
+        Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+        return new TodoPage(items, nextCursor, hasMore);
+    }
+
+    /**
+     * 归并各分片的一页结果（各分片的页都按ID升序，且都多取了一条判断是否有下一页）
+     */
+    private static TodoPage mergePages(List<TodoPage> pages, int pageSize) {
+        List<Todo> items = new ArrayList<>();
+        boolean hasMore = false;
+        for (TodoPage page : pages) {
+            items.addAll(page.getItems());
+            hasMore |= page.isHasMore();
+        }
+        return mergeByKey(items, hasMore, pageSize, Todo::getId, TodoPage::new);
+    }
+
+    /**
+     * 按ID排序后取前pageSize条
+     * 某个分片还有下一页时，它返回了整页，归并后的前pageSize条不会越过它未返回的数据，以最后一条的ID作为游标即可
+     */
+    private static <T, P> P mergeByKey(List<T> items, boolean hasMore, int pageSize, Function<T, Long> id,
+                                       PageFactory<T, P> factory) {
+        items.sort(Comparator.comparing(id));
+        if (items.size() > pageSize) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+            hasMore = true;
+        }
+        Long nextCursor = hasMore && !items.isEmpty() ? id.apply(items.get(items.size() - 1)) : null;
+        return factory.create(items, nextCursor, hasMore);
     }
-    
+
+    private interface PageFactory<T, P> {
+        P create(List<T> items, Long nextCursor, boolean hasMore);
+    }
+
+    /**
+     * 转义LIKE模式中的通配符，转义字符为'!'（与TodoRepository中的ESCAPE子句一致）
+     */
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
     /**
      * 添加新的待办事项
      * @param todo 待添加的待办事项
      * @return 添加后的待办事项（包含ID）
      */
-    public Todo addTodo(Todo todo) {
-        log.info("添加新的待办事项: {}", todo.getValue());
-        return todoRepository.save(todo);
+    @Transactional
+    public Todo addTodo(@ShardKey(ShardKey.Type.NEW_TODO) Todo todo) {
+        log.debug("添加新的待办事项: {}", todo.getValue());
+        // 忽略客户端传入的ID和版本号，始终新建
+        todo.setId(null);
+        todo.setVersion(null);
+        todo.setCreatedAt(null);
+        todo.setUpdatedAt(null);
+        Todo saved = todoRepository.save(todo);
+        eventPublisher.publishEvent(TodoChangedEvent.created(saved));
+        return saved;
     }
-    
+
+    /**
+     * 批量添加待办事项，在同一个事务中保存
+     * 配合hibernate.jdbc.batch_size，多条INSERT会以JDBC批处理方式发送
+     * 分片模式下先校验整批，再按分片拆分，每个分片一个事务
+     * @param todos 待添加的待办事项列表
+     * @return 新建待办事项的ID列表（与入参顺序一致）
+     * @throws IllegalArgumentException 列表为空、超过上限或内容为空时抛出
+     */
+    public List<Long> addTodos(List<Todo> todos) {
+        if (todos == null || todos.isEmpty()) {
+            throw new IllegalArgumentException("待办事项列表不能为空");
+        }
+        if (todos.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("单次最多添加" + MAX_BATCH_SIZE + "条待办事项，实际: " + todos.size());
+        }
+        for (Todo todo : todos) {
+            if (todo == null || todo.getValue() == null || todo.getValue().trim().isEmpty()) {
+                throw new IllegalArgumentException("待办事项内容不能为空");
+            }
+            // 忽略客户端传入的ID，始终新建
+            todo.setId(null);
+            todo.setVersion(null);
+            todo.setCreatedAt(null);
+            todo.setUpdatedAt(null);
+        }
+        log.debug("批量添加{}条待办事项", todos.size());
+
+        return shardRouter.forNewTodos(todos, part -> transactionTemplate.execute(status -> {
+            List<Todo> saved = todoRepository.saveAll(part);
+            saved.forEach(todo -> eventPublisher.publishEvent(TodoChangedEvent.created(todo)));
+            return saved.stream()
+                    .map(Todo::getId)
+                    .collect(Collectors.toList());
+        }));
+    }
+
     /**
      * 更新待办事项的完成状态
      * @param id 待办事项ID
      * @return 更新后的待办事项
      * @throws EntityNotFoundException 当待办事项不存在时抛出
      */
-    public Todo updateTodoStatus(Long id) {
-        log.info("更新待办事项状态, id: {}", id);
-        Todo todo = todoRepository.findById(id)
+    @Transactional
+    public Todo updateTodoStatus(@ShardKey Long id) {
+        log.debug("更新待办事项状态, id: {}", id);
+        // 在数据库中原子取反，并发切换不会丢失更新
+        if (todoRepository.toggleCompleted(id, LocalDateTime.now()) == 0) {
+            throw new EntityNotFoundException("待办事项未找到");
+        }
+        // 行锁持有到事务结束，读回的即是本次切换后的状态
+        Todo saved = todoRepository.findById(id)
                 .orElseThrow(() -> new EntityNotFoundException("待办事项未找到"));
-        todo.setCompleted(!todo.isCompleted());
-        return todoRepository.save(todo);
+        Todo before = TodoChangedEvent.snapshot(saved);
+        before.setCompleted(!saved.isCompleted());
+        before.setVersion(saved.getVersion() - 1);
+        eventPublisher.publishEvent(TodoChangedEvent.updated(before, saved));
+        return saved;
     }
-    
+
     /**
-     * 删除待办事项
+     * 删除待办事项及其所有子任务（同一事务，子任务以单条DELETE语句删除）
      * @param id 待删除的待办事项ID
+     * @throws EntityNotFoundException 当待办事项不存在时抛出
+     */
+    @Transactional
+    public void deleteTodo(@ShardKey Long id) {
+        log.debug("删除待办事项, id: {}", id);
+        Todo todo = todoRepository.findById(id)
+                .orElseThrow(() -> new EntityNotFoundException("待办事项未找到"));
+        List<Long> subtaskIds = subtaskRepository.findIdsByParentTaskId(id);
+        if (!subtaskIds.isEmpty()) {
+            subtaskRepository.deleteByParentTaskId(id);
+            eventPublisher.publishEvent(new SubtasksClearedEvent(id, subtaskIds));
+        }
+        todoRepository.delete(todo);
+        eventPublisher.publishEvent(TodoChangedEvent.deleted(TodoChangedEvent.snapshot(todo)));
+    }
+
+    /**
+     * 批量删除待办事项及其所有子任务，在同一个事务中执行（分片模式下每个分片一个事务）
+     * @param ids 待删除的待办事项ID列表，不存在的ID会被忽略
+     * @return 实际删除的待办事项数量
+     * @throws IllegalArgumentException 列表为空、超过上限或包含空ID时抛出
+     */
+    public int deleteTodos(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("待删除的ID列表不能为空");
+        }
+        if (ids.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("单次最多删除" + MAX_BATCH_SIZE + "条待办事项，实际: " + ids.size());
+        }
+        if (ids.contains(null)) {
+            throw new IllegalArgumentException("待删除的ID不能为空");
+        }
+        log.debug("批量删除{}条待办事项", ids.size());
+        return shardRouter.forTodoIds(new ArrayList<>(new LinkedHashSet<>(ids)),
+                part -> transactionTemplate.execute(status -> deleteChunk(part, false))).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+    }
+
+    /**
+     * 清理所有已完成的待办事项及其子任务
+     * 按ID分块执行，每块（最多DELETE_CHUNK_SIZE条）一个独立的短事务：
+     * 不会长时间持有大量行锁，也不会把全部实体加载到内存中；分片模式下依次清理每个分片
+     * @return 删除的待办事项数量
      */
-    public void deleteTodo(Long id) {
-        log.info("删除待办事项, id: {}", id);
-        todoRepository.deleteById(id);
+    public int purgeCompletedTodos() {
+        long start = System.currentTimeMillis();
+        int total = shardRouter.onEachShard(this::purgeCompletedChunks).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        log.info("清理已完成的待办事项{}条，耗时{}ms", total, System.currentTimeMillis() - start);
+        return total;
+    }
+
+    /**
+     * 在当前分片上分块清理已完成的待办事项
+     */
+    private int purgeCompletedChunks() {
+        int total = 0;
+        long afterId = 0;
+        while (true) {
+            List<Long> ids = todoRepository.findCompletedIdsAfter(afterId, PageRequest.of(0, DELETE_CHUNK_SIZE));
+            if (ids.isEmpty()) {
+                break;
+            }
+            Integer deleted = transactionTemplate.execute(status -> deleteChunk(ids, true));
+            total += deleted == null ? 0 : deleted;
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < DELETE_CHUNK_SIZE) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * 在当前事务中删除一块待办事项及其子任务，并发布删除事件
+     * 先对这些待办事项加行锁再删除，避免与并发的状态切换交错
+     * @param ids 待办事项ID
+     * @param completedOnly 为true时只删除（加锁后确认）仍处于已完成状态的待办事项
+     * @return 删除的待办事项数量
+     */
+    private int deleteChunk(List<Long> ids, boolean completedOnly) {
+        List<Todo> removed = new ArrayList<>();
+        for (TodoRepository.TodoStateRow row : todoRepository.findStatesByIdIn(ids)) {
+            if (!completedOnly || row.isCompleted()) {
+                Todo before = new Todo();
+                before.setId(row.getId());
+                before.setCompleted(row.isCompleted());
+                before.setVersion(row.getVersion());
+                removed.add(before);
+            }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        List<Long> removedIds = removed.stream()
+                .map(Todo::getId)
+                .collect(Collectors.toList());
+
+        Map<Long, List<Long>> subtaskIdsByParent = subtaskRepository.findIdsByParentTaskIdIn(removedIds).stream()
+                .collect(Collectors.groupingBy(SubtaskRepository.SubtaskIdRow::getParentTaskId,
+                        Collectors.mapping(SubtaskRepository.SubtaskIdRow::getId, Collectors.toList())));
+        if (!subtaskIdsByParent.isEmpty()) {
+            subtaskRepository.deleteByParentTaskIdIn(removedIds);
+        }
+        int deleted = todoRepository.deleteByIdIn(removedIds);
+
+        subtaskIdsByParent.forEach((parentTaskId, subtaskIds) ->
+                eventPublisher.publishEvent(new SubtasksClearedEvent(parentTaskId, subtaskIds)));
+        removed.forEach(todo -> eventPublisher.publishEvent(TodoChangedEvent.deleted(todo)));
+        return deleted;
+    }
+
+    /**
+     * 待办事项分页结果类
+     */
+    public static class TodoPage {
+        private final List<Todo> items;
+        private final Long nextCursor;
+        private final boolean hasMore;
+
+        public TodoPage(List<Todo> items, Long nextCursor, boolean hasMore) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+
+        public List<Todo> getItems() {
+            return items;
+        }
+
+        /**
+         * 下一页游标，没有下一页时为null
+         */
+        public Long getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean isHasMore() {
+            return hasMore;
+        }
+    }
+
+    /**
+     * 待办事项树分页结果类
+     */
+    public static class TodoTreePage {
+        private final List<TodoNode> items;
+        private final Long nextCursor;
+        private final boolean hasMore;
+
+        public TodoTreePage(List<TodoNode> items, Long nextCursor, boolean hasMore) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+            this.hasMore = hasMore;
+        }
+
+        public List<TodoNode> getItems() {
+            return items;
+        }
+
+        /**
+         * 下一页游标，没有下一页时为null
+         */
+        public Long getNextCursor() {
+            return nextCursor;
+        }
+
+        public boolean isHasMore() {
+            return hasMore;
+        }
+    }
+
+    /**
+     * 待办事项树的一个节点：待办事项的字段与subtasks、stats平铺在同一个JSON对象中
+     */
+    public static class TodoNode {
+        private final Todo todo;
+        private final List<Subtask> subtasks;
+        private final SubtaskService.SubtaskStats stats;
+
+        public TodoNode(Todo todo, List<Subtask> subtasks, SubtaskService.SubtaskStats stats) {
+            this.todo = todo;
+            this.subtasks = subtasks;
+            this.stats = stats;
+        }
+
+        @JsonUnwrapped
+        public Todo getTodo() {
+            return todo;
+        }
+
+        /**
+         * 子任务列表（按优先级从高到低），不包含子任务明细时为null（不输出）
+         */
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        public List<Subtask> getSubtasks() {
+            return subtasks;
+        }
+
+        public SubtaskService.SubtaskStats getStats() {
+            return stats;
+        }
     }
-} 
\ No newline at end of file
+}
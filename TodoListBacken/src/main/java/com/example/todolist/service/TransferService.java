@@ -0,0 +1,411 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.event.SubtaskChangedEvent;
+import com.example.todolist.event.TodoChangedEvent;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import com.example.todolist.sharding.ShardRouter;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 数据导出/导入服务（NDJSON：每行一个待办事项，子任务内嵌在subtasks数组中）
+ * 导出按主键游标分块读取（每块一次待办事项查询和一次子任务IN查询），边读边写到响应流；
+ * 导入边解析边按固定行数分块写入，每块一个事务并以JDBC批处理插入，同时发布变更事件（统计、缓存、搜索索引、同步日志随之更新）
+ * 每块处理完后清空持久化上下文，内存占用只与块大小有关，与总数据量无关
+ */
+@Slf4j
+@Service
+public class TransferService {
+
+    /**
+     * 导出时每块读取的待办事项数
+     */
+    public static final int EXPORT_CHUNK_SIZE = 500;
+
+    /**
+     * 导入时每个事务最多写入的行数（待办事项与子任务合计）
+     */
+    public static final int IMPORT_CHUNK_ROWS = 1000;
+
+    /**
+     * 导入时每条记录最多包含的子任务数，保证单条记录也能放进一块
+     * 超过时在解析到第一个多余的子任务时即拒绝，不会把整个subtasks数组读入内存
+     */
+    public static final int MAX_SUBTASKS_PER_RECORD = IMPORT_CHUNK_ROWS - 1;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final AtomicLong importIds = new AtomicLong();
+
+    /**
+     * 正在进行的导入
+     */
+    private final Map<Long, ImportProgress> runningImports = new ConcurrentHashMap<>();
+
+    /**
+     * 导出全部待办事项及其子任务
+     * 注意：各块分别读取，导出期间发生的写操作可能只有部分体现在导出结果中；
+     * 分片模式下依次导出每个分片，每个分片内按ID升序；
+     * 子任务超过MAX_SUBTASKS_PER_RECORD个的待办事项照常导出，但导入时会被拒绝
+     * @param output 输出流（不会被关闭）
+     * @return 导出的待办事项数
+     */
+    public long exportTo(OutputStream output) throws IOException {
+        long start = System.currentTimeMillis();
+        long exported = 0;
+        SequenceWriter writer = objectMapper.writerFor(TodoRecord.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(output);
+        try {
+            for (long count : shardRouter.onEachShard(() -> {
+                try {
+                    return exportChunks(writer);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            })) {
+                exported += count;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.close();
+        if (exported > 0) {
+            output.write('\n');
+        }
+        output.flush();
+        log.info("导出{}条待办事项，耗时{}ms", exported, System.currentTimeMillis() - start);
+        return exported;
+    }
+
+    /**
+     * 按主键游标分块导出当前数据库（分片）中的全部待办事项
+     */
+    private long exportChunks(SequenceWriter writer) throws IOException {
+        long exported = 0;
+        long afterId = 0;
+        List<Todo> todos;
+        do {
+            todos = todoRepository.findPageAfter(afterId, null, null, PageRequest.of(0, EXPORT_CHUNK_SIZE));
+            if (todos.isEmpty()) {
+                break;
+            }
+            List<Long> ids = todos.stream().map(Todo::getId).collect(Collectors.toList());
+            Map<Long, List<Subtask>> subtasksByParent = subtaskRepository.findByParentTaskIdIn(ids).stream()
+                    .collect(Collectors.groupingBy(Subtask::getParentTaskId));
+            for (Todo todo : todos) {
+                writer.write(new TodoRecord(todo, subtasksByParent.getOrDefault(todo.getId(), Collections.emptyList())));
+            }
+            writer.flush();
+            exported += todos.size();
+            afterId = todos.get(todos.size() - 1).getId();
+            entityManager.clear();
+        } while (todos.size() == EXPORT_CHUNK_SIZE);
+        return exported;
+    }
+
+    /**
+     * 导入NDJSON数据（格式与导出相同），全部新建，忽略其中的ID、版本号和父任务ID
+     * 每块单独提交：中途出错时之前的块已经写入，错误信息中包含已导入的条数
+     * 记录按顺序装入块中，装不下时先提交当前块，每块不超过IMPORT_CHUNK_ROWS行
+     * @param input 输入流
+     * @return 导入结果
+     * @throws IllegalArgumentException 某行格式错误、内容不合法或子任务超过MAX_SUBTASKS_PER_RECORD个时抛出
+     */
+    public ImportProgress importFrom(InputStream input) throws IOException {
+        ImportProgress progress = new ImportProgress(importIds.incrementAndGet());
+        runningImports.put(progress.getId(), progress);
+        long recordNumber = 0;
+        try (MappingIterator<TodoRecord> records = objectMapper.readerFor(TodoRecord.class).readValues(input)) {
+            List<TodoRecord> chunk = new ArrayList<>();
+            int chunkRows = 0;
+            while (records.hasNextValue()) {
+                TodoRecord record = records.nextValue();
+                recordNumber++;
+                validate(record, recordNumber, progress);
+                int rows = 1 + record.getSubtasks().size();
+                if (chunkRows + rows > IMPORT_CHUNK_ROWS) {
+                    saveChunk(chunk, progress);
+                    chunk.clear();
+                    chunkRows = 0;
+                }
+                chunk.add(record);
+                chunkRows += rows;
+            }
+            if (!chunk.isEmpty()) {
+                saveChunk(chunk, progress);
+            }
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("第" + (recordNumber + 1) + "条记录格式错误（已导入"
+                    + progress.getTodoCount() + "条待办事项）: " + e.getOriginalMessage());
+        } finally {
+            runningImports.remove(progress.getId());
+        }
+        progress.finish();
+        log.info("导入完成，待办事项: {}，子任务: {}，耗时{}ms",
+                progress.getTodoCount(), progress.getSubtaskCount(), progress.getElapsedMillis());
+        return progress;
+    }
+
+    /**
+     * 获取正在进行的导入的进度
+     * @return 进度列表
+     */
+    public List<ImportProgress> getRunningImports() {
+        return new ArrayList<>(runningImports.values());
+    }
+
+    private static void validate(TodoRecord record, long recordNumber, ImportProgress progress) {
+        String error = null;
+        if (record == null || record.getTodo() == null) {
+            error = "记录为空";
+        } else if (isBlankOrTooLong(record.getTodo().getValue())) {
+            error = "待办事项内容为空或超过255个字符";
+        } else {
+            for (Subtask subtask : record.getSubtasks()) {
+                if (subtask == null || isBlankOrTooLong(subtask.getValue())) {
+                    error = "子任务内容为空或超过255个字符";
+                    break;
+                }
+            }
+        }
+        if (error != null) {
+            throw new IllegalArgumentException("第" + recordNumber + "条记录" + error
+                    + "（已导入" + progress.getTodoCount() + "条待办事项）");
+        }
+    }
+
+    private static boolean isBlankOrTooLong(String value) {
+        return value == null || value.trim().isEmpty() || value.length() > 255;
+    }
+
+    /**
+     * 在一个事务中写入一块数据：先批量插入待办事项取得新ID，再批量插入子任务
+     * 分片模式下按新ID所在的分片拆分，每个分片一个事务
+     */
+    private void saveChunk(List<TodoRecord> chunk, ImportProgress progress) {
+        int subtaskCount = shardRouter.forNewTodos(chunk, this::saveRecords).stream()
+                .mapToInt(Integer::intValue)
+                .sum();
+        entityManager.clear();
+        progress.addChunk(chunk.size(), subtaskCount);
+        log.debug("导入{}进度：待办事项{}条，子任务{}条", progress.getId(), progress.getTodoCount(), progress.getSubtaskCount());
+    }
+
+    /**
+     * 在一个事务中写入若干条记录
+     * @return 每条记录写入的子任务数
+     */
+    private List<Integer> saveRecords(List<TodoRecord> records) {
+        return transactionTemplate.execute(status -> {
+            List<Todo> todos = new ArrayList<>(records.size());
+            for (TodoRecord record : records) {
+                Todo todo = record.getTodo();
+                todo.setId(null);
+                todo.setVersion(null);
+                todos.add(todo);
+            }
+            todoRepository.saveAll(todos);
+            todos.forEach(todo -> eventPublisher.publishEvent(TodoChangedEvent.created(todo)));
+
+            List<Subtask> subtasks = new ArrayList<>();
+            for (TodoRecord record : records) {
+                for (Subtask subtask : record.getSubtasks()) {
+                    subtask.setId(null);
+                    subtask.setVersion(null);
+                    subtask.setParentTaskId(record.getTodo().getId());
+                    if (subtask.getPriority() == null) {
+                        subtask.setPriority(Priority.MEDIUM);
+                    }
+                    subtasks.add(subtask);
+                }
+            }
+            subtaskRepository.saveAll(subtasks);
+            subtasks.forEach(subtask -> eventPublisher.publishEvent(SubtaskChangedEvent.created(subtask)));
+            return records.stream()
+                    .map(record -> record.getSubtasks().size())
+                    .collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * 导出/导入的一行：待办事项的字段与subtasks数组平铺在同一个JSON对象中
+     */
+    public static class TodoRecord {
+        private Todo todo;
+        private List<Subtask> subtasks = new ArrayList<>();
+
+        public TodoRecord() {
+            this.todo = new Todo();
+        }
+
+        public TodoRecord(Todo todo, List<Subtask> subtasks) {
+            this.todo = todo;
+            this.subtasks = subtasks;
+        }
+
+        @JsonUnwrapped
+        public Todo getTodo() {
+            return todo;
+        }
+
+        public void setTodo(Todo todo) {
+            this.todo = todo;
+        }
+
+        public List<Subtask> getSubtasks() {
+            return subtasks;
+        }
+
+        @JsonDeserialize(using = BoundedSubtaskListDeserializer.class)
+        public void setSubtasks(List<Subtask> subtasks) {
+            this.subtasks = subtasks == null ? new ArrayList<>() : subtasks;
+        }
+    }
+
+    /**
+     * 逐个解析subtasks数组，超过MAX_SUBTASKS_PER_RECORD个时立即报错
+     */
+    static class BoundedSubtaskListDeserializer extends JsonDeserializer<List<Subtask>> {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<Subtask> deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (!parser.isExpectedStartArrayToken()) {
+                return (List<Subtask>) context.handleUnexpectedToken(List.class, parser);
+            }
+            JsonDeserializer<Object> element = context.findRootValueDeserializer(context.constructType(Subtask.class));
+            List<Subtask> subtasks = new ArrayList<>();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (subtasks.size() == MAX_SUBTASKS_PER_RECORD) {
+                    throw JsonMappingException.from(parser, "子任务超过" + MAX_SUBTASKS_PER_RECORD + "个");
+                }
+                subtasks.add(parser.currentToken() == JsonToken.VALUE_NULL
+                        ? null : (Subtask) element.deserialize(parser, context));
+            }
+            return subtasks;
+        }
+    }
+
+    /**
+     * 导入进度类
+     */
+    public static class ImportProgress {
+        private final long id;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final long startNanos = System.nanoTime();
+        private final AtomicLong todoCount = new AtomicLong();
+        private final AtomicLong subtaskCount = new AtomicLong();
+        private final AtomicLong chunkCount = new AtomicLong();
+        private volatile long elapsedMillis = -1;
+
+        ImportProgress(long id) {
+            this.id = id;
+        }
+
+        void addChunk(int todos, int subtasks) {
+            todoCount.addAndGet(todos);
+            subtaskCount.addAndGet(subtasks);
+            chunkCount.incrementAndGet();
+        }
+
+        void finish() {
+            elapsedMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        /**
+         * 已提交的待办事项数
+         */
+        public long getTodoCount() {
+            return todoCount.get();
+        }
+
+        /**
+         * 已提交的子任务数
+         */
+        public long getSubtaskCount() {
+            return subtaskCount.get();
+        }
+
+        /**
+         * 已提交的块数
+         */
+        public long getChunkCount() {
+            return chunkCount.get();
+        }
+
+        /**
+         * 已用时间（毫秒），进行中时为到目前为止的时间
+         */
+        public long getElapsedMillis() {
+            return elapsedMillis >= 0 ? elapsedMillis : (System.nanoTime() - startNanos) / 1_000_000;
+        }
+
+        public boolean isFinished() {
+            return elapsedMillis >= 0;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.todolist.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * 一致性哈希环（不可变）
+ * 每个分片在环上放置virtualNodes个虚拟节点，键落在顺时针方向第一个虚拟节点所属的分片上；
+ * 增减一个分片时只有约1/N的键改变归属，其余键保持不动
+ */
+public final class ConsistentHashRing {
+
+    private final List<String> members;
+    private final int virtualNodes;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+    /**
+     * @param members 分片名称（顺序不影响路由结果）
+     * @param virtualNodes 每个分片的虚拟节点数，越多分布越均匀
+     * @throws IllegalArgumentException 分片列表为空或虚拟节点数不大于0时抛出
+     */
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        if (members == null || members.isEmpty()) {
+            throw new IllegalArgumentException("分片列表不能为空");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("虚拟节点数必须大于0: " + virtualNodes);
+        }
+        this.members = Collections.unmodifiableList(new ArrayList<>(members));
+        this.virtualNodes = virtualNodes;
+        for (String member : this.members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.putIfAbsent(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * 计算键所属的分片
+     * @param key 分片键（待办事项ID）
+     * @return 分片名称
+     */
+    public String route(long key) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(mix(key));
+        return (entry != null ? entry : ring.firstEntry()).getValue();
+    }
+
+    public List<String> getMembers() {
+        return members;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * 虚拟节点位置：取MD5摘要的前8个字节
+     */
+    private static long hash(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(text.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (digest[i] & 0xFF);
+            }
+            return value;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 打散连续的ID（MurmurHash3的fmix64），使相邻ID均匀落到环上
+     */
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.todolist.sharding;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * 在线重新分片工具：把数据迁移到新的分片成员组成的哈希环上（增加、移除或替换分片）
+ *
+ * 每个源分片按ID升序分块扫描，只有在新环上换了分片的待办事项（连同其子任务）需要迁移；
+ * 每块在路由写锁下完成“扫描、复制到目标分片、从源分片删除、推进迁移进度”，持锁时间只有一块数据的复制时间，
+ * 其余时间读写请求照常进行并按迁移进度路由到数据当前所在的分片
+ * 全部扫描完成后在写锁下补迁扫描期间新写入的数据，然后切换哈希环并把新成员记录到主分片的shard_member表
+ *
+ * 复制前会先删除目标分片中的同ID数据，中途失败后重新执行同一目标的迁移可以从上次的进度继续；
+ * 迁移进度只保存在内存中，迁移未完成时重启，已迁出的数据在重新执行同一目标的迁移之前不可见
+ * 变更日志（change_log）不迁移，仍保留在原分片
+ */
+@Slf4j
+public class Resharder implements AutoCloseable {
+
+    /**
+     * 每块迁移的待办事项数（每块持有一次路由写锁）
+     */
+    private final int chunkSize;
+
+    private final ShardRouter router;
+    private final Map<String, TransactionTemplate> transactionTemplates = new LinkedHashMap<>();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "resharder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile ReshardStatus status;
+
+    public Resharder(ShardRouter router, int chunkSize) {
+        this.router = router;
+        this.chunkSize = chunkSize;
+        router.getDataSources().forEach((name, dataSource) ->
+                transactionTemplates.put(name, new TransactionTemplate(new DataSourceTransactionManager(dataSource))));
+    }
+
+    /**
+     * 读取主分片中记录的分片成员并应用（启动时、数据库迁移完成后调用）
+     * 与配置的成员不同时以记录为准：记录是上一次重新分片的结果
+     * @param configured 配置的哈希环
+     */
+    public void restoreMembers(ConsistentHashRing configured) {
+        List<String> members = router.jdbcTemplate(router.getHome())
+                .queryForList("SELECT name FROM shard_member ORDER BY sort_order", String.class);
+        if (members.isEmpty()) {
+            saveMembers(configured.getMembers());
+            return;
+        }
+        if (!members.equals(configured.getMembers())) {
+            log.warn("分片成员以主分片记录为准: {}（配置为{}）", members, configured.getMembers());
+        }
+        router.restoreRing(new ConsistentHashRing(members, configured.getVirtualNodes()));
+    }
+
+    /**
+     * 开始（或继续）重新分片，在后台执行
+     * @param members 新的分片成员
+     * @return 迁移状态
+     * @throws IllegalArgumentException 成员为空、未配置或与当前相同时抛出
+     * @throws IllegalStateException 已有迁移在执行时抛出
+     */
+    public synchronized ReshardStatus start(List<String> members) {
+        if (members == null || members.isEmpty()) {
+            throw new IllegalArgumentException("分片成员不能为空");
+        }
+        for (String member : members) {
+            if (!router.getShardNames().contains(member)) {
+                throw new IllegalArgumentException("分片未配置数据源: " + member);
+            }
+        }
+        if (status != null && status.getState() == ReshardStatus.State.RUNNING) {
+            throw new IllegalStateException("重新分片正在执行");
+        }
+        ConsistentHashRing current = router.getRing();
+        if (router.getMigration() == null && current.getMembers().equals(members)) {
+            throw new IllegalArgumentException("分片成员没有变化: " + members);
+        }
+        ConsistentHashRing target = new ConsistentHashRing(members, current.getVirtualNodes());
+        ShardRouter.Migration migration = router.beginMigration(target);
+        status = new ReshardStatus(current.getMembers(), members);
+        executor.submit(() -> run(migration));
+        return status;
+    }
+
+    public ReshardStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return 进行中迁移的各源分片进度（已处理到的ID），没有迁移时为空
+     */
+    public Map<String, Long> getProgress() {
+        ShardRouter.Migration migration = router.getMigration();
+        return migration == null ? Collections.emptyMap() : migration.getProgress();
+    }
+
+    private void run(ShardRouter.Migration migration) {
+        ReshardStatus current = status;
+        long start = System.currentTimeMillis();
+        try {
+            List<String> sources = router.getShardNames();
+            for (String source : sources) {
+                moveFrom(source, migration, current);
+            }
+            router.exclusive(() -> {
+                // 扫描期间新写入、仍在原分片上的数据
+                for (String source : sources) {
+                    moveFrom(source, migration, current);
+                }
+                saveMembers(migration.target.getMembers());
+                router.finishMigration();
+            });
+            current.complete();
+            log.info("重新分片完成，成员: {}，迁移待办事项{}条、子任务{}条，耗时{}ms", migration.target.getMembers(),
+                    current.getMovedTodos(), current.getMovedSubtasks(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            current.fail(e);
+            log.error("重新分片失败，可重新执行同一目标的迁移从当前进度继续", e);
+        }
+    }
+
+    /**
+     * 从一个源分片迁出新环上不再属于它的数据（从上次的进度开始）
+     */
+    private void moveFrom(String source, ShardRouter.Migration migration, ReshardStatus current) {
+        JdbcTemplate sourceJdbc = router.jdbcTemplate(source);
+        boolean[] done = new boolean[1];
+        while (!done[0]) {
+            // 在写锁内扫描：预留了ID但尚未提交的新数据此时已经写入，不会被进度越过
+            router.exclusive(() -> {
+                List<Long> ids = sourceJdbc.queryForList("SELECT id FROM todo_list WHERE id > ? ORDER BY id LIMIT " + chunkSize,
+                        Long.class, migration.progressOf(source));
+                if (ids.isEmpty()) {
+                    done[0] = true;
+                    return;
+                }
+                ids.stream()
+                        .filter(id -> !migration.target.route(id).equals(source))
+                        .collect(Collectors.groupingBy(migration.target::route, LinkedHashMap::new, Collectors.toList()))
+                        .forEach((target, todoIds) -> moveChunk(source, target, todoIds, current));
+                migration.advance(source, ids.get(ids.size() - 1));
+            });
+        }
+    }
+
+    /**
+     * 复制一块待办事项及其子任务到目标分片，提交后再从源分片删除
+     */
+    private void moveChunk(String source, String target, List<Long> todoIds, ReshardStatus current) {
+        String in = todoIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+        JdbcTemplate sourceJdbc = router.jdbcTemplate(source);
+        List<Map<String, Object>> todos = sourceJdbc.queryForList("SELECT * FROM todo_list WHERE id IN (" + in + ")");
+        List<Map<String, Object>> subtasks = sourceJdbc.queryForList("SELECT * FROM subtask WHERE parent_task_id IN (" + in + ")");
+
+        JdbcTemplate targetJdbc = router.jdbcTemplate(target);
+        transactionTemplates.get(target).executeWithoutResult(status -> {
+            targetJdbc.update("DELETE FROM subtask WHERE parent_task_id IN (" + in + ")");
+            targetJdbc.update("DELETE FROM todo_list WHERE id IN (" + in + ")");
+            insertRows(targetJdbc, "todo_list", todos);
+            insertRows(targetJdbc, "subtask", subtasks);
+        });
+        transactionTemplates.get(source).executeWithoutResult(status -> {
+            sourceJdbc.update("DELETE FROM subtask WHERE parent_task_id IN (" + in + ")");
+            sourceJdbc.update("DELETE FROM todo_list WHERE id IN (" + in + ")");
+        });
+        current.addMoved(todos.size(), subtasks.size());
+        log.debug("从分片{}迁移{}条待办事项、{}条子任务到分片{}", source, todos.size(), subtasks.size(), target);
+    }
+
+    /**
+     * 按原列名原样插入（保留ID、版本号和时间）
+     */
+    private static void insertRows(JdbcTemplate jdbc, String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        String sql = "INSERT INTO " + table + " (" + String.join(",", columns) + ") VALUES ("
+                + columns.stream().map(column -> "?").collect(Collectors.joining(",")) + ")";
+        List<Object[]> values = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            values.add(columns.stream().map(row::get).toArray());
+        }
+        jdbc.batchUpdate(sql, values);
+    }
+
+    private void saveMembers(List<String> members) {
+        transactionTemplates.get(router.getHome()).executeWithoutResult(status -> {
+            JdbcTemplate home = router.jdbcTemplate(router.getHome());
+            home.update("DELETE FROM shard_member");
+            for (int i = 0; i < members.size(); i++) {
+                home.update("INSERT INTO shard_member (name, sort_order) VALUES (?, ?)", members.get(i), i);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 重新分片状态
+     */
+    public static class ReshardStatus {
+
+        public enum State {
+            RUNNING,
+            COMPLETED,
+            FAILED
+        }
+
+        private final List<String> from;
+        private final List<String> to;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private volatile LocalDateTime finishedAt;
+        private volatile State state = State.RUNNING;
+        private volatile String error;
+        private long movedTodos;
+        private long movedSubtasks;
+
+        ReshardStatus(List<String> from, List<String> to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        synchronized void addMoved(int todos, int subtasks) {
+            movedTodos += todos;
+            movedSubtasks += subtasks;
+        }
+
+        void complete() {
+            finishedAt = LocalDateTime.now();
+            state = State.COMPLETED;
+        }
+
+        void fail(Exception e) {
+            finishedAt = LocalDateTime.now();
+            error = e.getMessage();
+            state = State.FAILED;
+        }
+
+        public List<String> getFrom() {
+            return from;
+        }
+
+        public List<String> getTo() {
+            return to;
+        }
+
+        public LocalDateTime getStartedAt() {
+            return startedAt;
+        }
+
+        public LocalDateTime getFinishedAt() {
+            return finishedAt;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public synchronized long getMovedTodos() {
+            return movedTodos;
+        }
+
+        public synchronized long getMovedSubtasks() {
+            return movedSubtasks;
+        }
+    }
+}
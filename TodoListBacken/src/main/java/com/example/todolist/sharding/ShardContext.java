@@ -0,0 +1,82 @@
+package com.example.todolist.sharding;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * 当前线程绑定的分片
+ * ShardRoutingDataSource按这里的分片名称选择连接池；未绑定时使用第一个分片（主分片）
+ * 同时保存为当前线程预留的待办事项ID，新建待办事项时由ShardIdGenerator按顺序取用
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private static final ThreadLocal<Deque<Long>> RESERVED_TODO_IDS = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * @return 当前线程绑定的分片，未绑定时为null
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 在指定分片上执行，结束后恢复原来的绑定
+     * @param shard 分片名称，为null时使用主分片
+     * @param action 要执行的操作
+     * @return 操作的返回值
+     */
+    public static <T> T callOn(String shard, Supplier<T> action) {
+        String previous = CURRENT.get();
+        set(shard);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    /**
+     * 在指定分片上执行，并为其中新建的待办事项预留ID（按保存顺序依次使用）
+     * @param shard 分片名称
+     * @param reservedTodoIds 预留的待办事项ID
+     * @param action 要执行的操作
+     * @return 操作的返回值
+     */
+    public static <T> T callOn(String shard, List<Long> reservedTodoIds, Supplier<T> action) {
+        Deque<Long> previous = RESERVED_TODO_IDS.get();
+        RESERVED_TODO_IDS.set(new ArrayDeque<>(reservedTodoIds));
+        try {
+            return callOn(shard, action);
+        } finally {
+            if (previous == null) {
+                RESERVED_TODO_IDS.remove();
+            } else {
+                RESERVED_TODO_IDS.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 取出下一个预留的待办事项ID
+     * @return 预留ID，没有预留时为null
+     */
+    static Long nextReservedTodoId() {
+        Deque<Long> reserved = RESERVED_TODO_IDS.get();
+        return reserved == null ? null : reserved.pollFirst();
+    }
+
+    private static void set(String shard) {
+        if (shard == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(shard);
+        }
+    }
+}
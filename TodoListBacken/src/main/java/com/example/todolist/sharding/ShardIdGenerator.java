@@ -0,0 +1,44 @@
+package com.example.todolist.sharding;
+
+import com.example.todolist.entity.Todo;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+import org.hibernate.jpa.spi.IdentifierGeneratorStrategyProvider;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 分片模式下的主键生成器，替换实体上声明的序列生成器
+ * <ul>
+ *     <li>待办事项：使用路由前预留的ID（ShardRouter.reserveTodoIds），ID决定分片，必须在事务开始前确定</li>
+ *     <li>其他实体（子任务）：仍按pooled-lo分配，但序列表固定从主分片读取，保证各分片之间ID不重复</li>
+ * </ul>
+ */
+public class ShardIdGenerator extends SequenceStyleGenerator {
+
+    /**
+     * 以本类替换JPA的SEQUENCE生成策略
+     */
+    public static final IdentifierGeneratorStrategyProvider STRATEGY_PROVIDER = () -> {
+        Map<String, Class<?>> strategies = new HashMap<>();
+        strategies.put(SequenceStyleGenerator.class.getName(), ShardIdGenerator.class);
+        strategies.put("enhanced-sequence", ShardIdGenerator.class);
+        strategies.put("sequence", ShardIdGenerator.class);
+        return strategies;
+    };
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        if (object instanceof Todo) {
+            Long reserved = ShardContext.nextReservedTodoId();
+            if (reserved == null) {
+                throw new IllegalStateException("分片模式下待办事项必须先预留ID再保存（经@ShardKey(NEW_TODO)或ShardRouter.reserveTodoIds）");
+            }
+            return reserved;
+        }
+        // 序列表在独立的连接上读取，此时解除分片绑定，连接取自主分片
+        return ShardContext.callOn(null, () -> super.generate(session, object));
+    }
+}
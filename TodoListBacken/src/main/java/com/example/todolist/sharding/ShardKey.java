@@ -0,0 +1,30 @@
+package com.example.todolist.sharding;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记服务方法中决定分片的参数，分片模式下由ShardRoutingAspect在事务开始前绑定分片
+ * 未启用分片时没有任何作用
+ * <ul>
+ *     <li>TODO：待办事项ID（Long）或ID集合（按分片拆分后分别执行，再合并结果，用于批量查询）</li>
+ *     <li>SUBTASK：子任务ID，按其父任务所在分片路由</li>
+ *     <li>NEW_TODO：新建的待办事项（Todo），先从主分片预留ID，再按ID路由</li>
+ * </ul>
+ */
+@Documented
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ShardKey {
+
+    Type value() default Type.TODO;
+
+    enum Type {
+        TODO,
+        SUBTASK,
+        NEW_TODO
+    }
+}
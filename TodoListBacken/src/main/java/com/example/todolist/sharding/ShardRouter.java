@@ -0,0 +1,507 @@
+package com.example.todolist.sharding;
+
+import com.example.todolist.metrics.QueryCounter;
+import com.example.todolist.replica.ReplicaContext;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 分片路由器
+ * 待办事项按ID在一致性哈希环上路由到分片，子任务跟随其父任务（parentTaskId）存放在同一个分片；
+ * 跨分片的列表和统计查询并行发往所有分片，再由调用方合并结果
+ *
+ * 未启用分片时只有一个隐含的分片，路由和扇出都直接在当前线程执行，没有额外开销
+ *
+ * 重新分片（Resharder）期间同时持有新旧两个哈希环：每个源分片按ID升序迁移，
+ * 某个键在新环上换了分片且ID不大于该源分片的迁移进度时，说明已经迁到新分片；
+ * 每次迁移一块数据时持有写锁，路由和扇出持有读锁，保证任何时刻每条数据只在一个分片上可见
+ */
+@Slf4j
+public class ShardRouter implements AutoCloseable {
+
+    /**
+     * 从主分片的序列表中一次取出的待办事项ID数
+     */
+    private static final int ID_BLOCK_SIZE = 50;
+
+    /**
+     * 子任务ID到父任务ID的缓存上限（父任务ID不会改变，缓存不需要失效）
+     */
+    private static final int SUBTASK_PARENT_CACHE_SIZE = 100_000;
+
+    private final Map<String, DataSource> dataSources;
+    private final Map<String, JdbcTemplate> jdbcTemplates = new LinkedHashMap<>();
+    private final String home;
+    private final ExecutorService fanOutExecutor;
+    private final ReentrantReadWriteLock routingLock = new ReentrantReadWriteLock();
+    private final Cache<Long, Long> subtaskParents = Caffeine.newBuilder()
+            .maximumSize(SUBTASK_PARENT_CACHE_SIZE)
+            .build();
+
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * 进行中的重新分片，没有时为null
+     */
+    private volatile Migration migration;
+
+    private long nextTodoId;
+    private long todoIdLimit;
+
+    private ShardRouter() {
+        this.dataSources = Collections.emptyMap();
+        this.home = null;
+        this.fanOutExecutor = null;
+    }
+
+    /**
+     * @param dataSources 全部分片的连接池（按配置顺序，第一个为主分片：保存ID序列和分片成员）
+     * @param ring 当前的哈希环，成员必须都在dataSources中
+     * @param fanOutThreads 扇出查询的线程数
+     */
+    public ShardRouter(Map<String, DataSource> dataSources, ConsistentHashRing ring, int fanOutThreads) {
+        this.dataSources = Collections.unmodifiableMap(new LinkedHashMap<>(dataSources));
+        this.home = dataSources.keySet().iterator().next();
+        dataSources.forEach((name, dataSource) -> jdbcTemplates.put(name, new JdbcTemplate(dataSource)));
+        checkMembers(ring);
+        this.ring = ring;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fanOutExecutor = Executors.newFixedThreadPool(fanOutThreads, runnable -> {
+            Thread thread = new Thread(runnable, "shard-fanout-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 未启用分片时使用的路由器
+     */
+    public static ShardRouter single() {
+        return new ShardRouter();
+    }
+
+    public boolean isSharded() {
+        return !dataSources.isEmpty();
+    }
+
+    /**
+     * @return 全部已配置的分片名称（包括不在哈希环中的空闲分片）
+     */
+    public List<String> getShardNames() {
+        return new ArrayList<>(dataSources.keySet());
+    }
+
+    public String getHome() {
+        return home;
+    }
+
+    public ConsistentHashRing getRing() {
+        return ring;
+    }
+
+    /**
+     * @param shard 分片名称
+     * @return 该分片的连接池
+     */
+    public DataSource getDataSource(String shard) {
+        return dataSources.get(shard);
+    }
+
+    Map<String, DataSource> getDataSources() {
+        return dataSources;
+    }
+
+    JdbcTemplate jdbcTemplate(String shard) {
+        return jdbcTemplates.get(shard);
+    }
+
+    // ==================== 路由 ====================
+
+    /**
+     * 计算待办事项（及其子任务）当前所在的分片
+     * 调用方应持有路由读锁（见routed），否则结果可能在返回后因迁移而失效
+     * @param todoId 待办事项ID
+     * @return 分片名称
+     */
+    public String shardOfTodo(long todoId) {
+        String owner = ring.route(todoId);
+        Migration current = migration;
+        if (current != null) {
+            String next = current.target.route(todoId);
+            if (!next.equals(owner) && todoId <= current.progressOf(owner)) {
+                return next;
+            }
+        }
+        return owner;
+    }
+
+    /**
+     * 查找子任务的父任务ID：先查缓存，未命中时并行查询所有分片
+     * @param subtaskId 子任务ID
+     * @return 父任务ID，子任务不存在时为null
+     */
+    public Long findParentOfSubtask(long subtaskId) {
+        Long cached = subtaskParents.getIfPresent(subtaskId);
+        if (cached != null) {
+            return cached;
+        }
+        List<Long> found = fanOutAll(shard -> {
+            List<Long> parents = jdbcTemplates.get(shard).queryForList(
+                    "SELECT parent_task_id FROM subtask WHERE id = ?", Long.class, subtaskId);
+            return parents.isEmpty() ? null : parents.get(0);
+        });
+        for (Long parentTaskId : found) {
+            if (parentTaskId != null) {
+                subtaskParents.put(subtaskId, parentTaskId);
+                return parentTaskId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 持有路由读锁执行：期间不会有数据在分片之间迁移，路由结果保持有效
+     * 已经在某个分片上执行时（嵌套调用）直接执行，不再加锁
+     * @param action 要执行的操作
+     * @return 操作的返回值
+     */
+    public <T> T routed(Supplier<T> action) {
+        if (!isSharded() || ShardContext.current() != null) {
+            return action.get();
+        }
+        routingLock.readLock().lock();
+        try {
+            return action.get();
+        } finally {
+            routingLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 在指定分片上执行（应在routed中调用）
+     * @param shard 分片名称
+     * @param action 要执行的操作
+     * @return 操作的返回值
+     * @throws IllegalStateException 已在另一个分片的事务中时抛出（一个事务不能跨分片）
+     */
+    public <T> T callOn(String shard, Supplier<T> action) {
+        return callOn(shard, null, action);
+    }
+
+    /**
+     * 在指定分片上执行，并为其中新建的待办事项预留ID
+     * @param shard 分片名称
+     * @param reservedTodoIds 预留的待办事项ID，为null时不预留
+     * @param action 要执行的操作
+     * @return 操作的返回值
+     */
+    public <T> T callOn(String shard, List<Long> reservedTodoIds, Supplier<T> action) {
+        if (!isSharded()) {
+            return action.get();
+        }
+        String current = ShardContext.current();
+        if (current != null && !current.equals(shard) && TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("事务已绑定分片" + current + "，不能在同一事务中访问分片" + shard);
+        }
+        return reservedTodoIds == null
+                ? ShardContext.callOn(shard, action)
+                : ShardContext.callOn(shard, reservedTodoIds, action);
+    }
+
+    /**
+     * 新建一批待办事项：预留ID后按分片拆分，依次在各分片上执行（每个分片应各自一个事务，分片之间不保证原子性）
+     * 未启用分片时直接执行，ID由Hibernate分配
+     * @param items 新建的待办事项
+     * @param action 在一个分片上保存其中一部分，返回与入参一一对应的结果
+     * @return 与items顺序一致的结果
+     */
+    public <T, R> List<R> forNewTodos(List<T> items, Function<List<T>, List<R>> action) {
+        if (!isSharded() || items.isEmpty()) {
+            return action.apply(items);
+        }
+        List<Long> ids = reserveTodoIds(items.size());
+        return routed(() -> {
+            Map<String, List<Integer>> positionsByShard = new LinkedHashMap<>();
+            for (int i = 0; i < items.size(); i++) {
+                positionsByShard.computeIfAbsent(shardOfTodo(ids.get(i)), shard -> new ArrayList<>()).add(i);
+            }
+            List<R> results = new ArrayList<>(Collections.nCopies(items.size(), null));
+            positionsByShard.forEach((shard, positions) -> {
+                List<T> part = new ArrayList<>(positions.size());
+                List<Long> partIds = new ArrayList<>(positions.size());
+                for (int position : positions) {
+                    part.add(items.get(position));
+                    partIds.add(ids.get(position));
+                }
+                List<R> partResults = callOn(shard, partIds, () -> action.apply(part));
+                for (int i = 0; i < positions.size(); i++) {
+                    results.set(positions.get(i), partResults.get(i));
+                }
+            });
+            return results;
+        });
+    }
+
+    /**
+     * 按待办事项ID所在的分片拆分，依次在各分片上执行（每个分片应各自一个事务，分片之间不保证原子性）
+     * @param ids 待办事项ID
+     * @param action 在一个分片上处理其中一部分ID
+     * @return 各分片的结果
+     */
+    public <R> List<R> forTodoIds(List<Long> ids, Function<List<Long>, R> action) {
+        if (!isSharded()) {
+            return Collections.singletonList(action.apply(ids));
+        }
+        return routed(() -> {
+            Map<String, List<Long>> idsByShard = new LinkedHashMap<>();
+            for (Long id : ids) {
+                idsByShard.computeIfAbsent(shardOfTodo(id), shard -> new ArrayList<>()).add(id);
+            }
+            List<R> results = new ArrayList<>(idsByShard.size());
+            idsByShard.forEach((shard, part) -> results.add(callOn(shard, () -> action.apply(part))));
+            return results;
+        });
+    }
+
+    // ==================== 扇出查询 ====================
+
+    /**
+     * 在所有分片上并行执行同一个查询并合并结果
+     * 已经在某个分片上执行时（嵌套调用）只查询当前分片
+     * @param query 查询（在每个分片上各执行一次）
+     * @param merge 合并各分片的结果（顺序与getShardNames一致）
+     * @return 合并后的结果
+     */
+    public <T> T fanOut(Supplier<T> query, Function<List<T>, T> merge) {
+        if (!isSharded() || ShardContext.current() != null) {
+            return query.get();
+        }
+        return routed(() -> merge.apply(fanOutAll(shard -> ShardContext.callOn(shard, query))));
+    }
+
+    /**
+     * 依次在每个分片上执行（用于启动时重建、导出、清理等全量处理，按分片顺序串行执行）
+     * @param task 任务（在每个分片上各执行一次）
+     * @return 各分片的结果
+     */
+    public <T> List<T> onEachShard(Supplier<T> task) {
+        if (!isSharded() || ShardContext.current() != null) {
+            return Collections.singletonList(task.get());
+        }
+        return routed(() -> {
+            List<T> results = new ArrayList<>(dataSources.size());
+            for (String shard : dataSources.keySet()) {
+                results.add(ShardContext.callOn(shard, task));
+            }
+            return results;
+        });
+    }
+
+    /**
+     * 并行执行，扇出线程沿用调用线程的读路由状态（副本选择、写后读一致）和SQL语句统计范围（计入请求的预算）
+     */
+    private <T> List<T> fanOutAll(Function<String, T> query) {
+        ReplicaContext.Scope scope = ReplicaContext.current();
+        QueryCounter.Scope queryScope = QueryCounter.current();
+        List<Future<T>> futures = new ArrayList<>(dataSources.size());
+        for (String shard : dataSources.keySet()) {
+            futures.add(fanOutExecutor.submit(() -> QueryCounter.callWith(queryScope,
+                    () -> ReplicaContext.callWith(scope, () -> query.apply(shard)))));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("分片查询被中断", e);
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("分片查询失败", cause);
+        }
+        return results;
+    }
+
+    // ==================== ID分配 ====================
+
+    /**
+     * 为新建的待办事项预留ID
+     * ID从主分片的序列表todo_id_seq中按块分配（与Hibernate的pooled-lo方式相同），全局唯一且在保存前已知，因此可以先路由再写入
+     * @param count 数量
+     * @return 递增的ID列表
+     */
+    public synchronized List<Long> reserveTodoIds(int count) {
+        if (!isSharded()) {
+            throw new IllegalStateException("未启用分片，待办事项ID由Hibernate分配");
+        }
+        List<Long> ids = new ArrayList<>(count);
+        while (ids.size() < count) {
+            if (nextTodoId >= todoIdLimit) {
+                allocateTodoIdBlock(Math.max(ID_BLOCK_SIZE, count - ids.size()));
+            }
+            ids.add(nextTodoId++);
+        }
+        return ids;
+    }
+
+    private void allocateTodoIdBlock(int size) {
+        try (Connection connection = dataSources.get(home).getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                long start;
+                try (PreparedStatement select = connection.prepareStatement("SELECT next_val FROM todo_id_seq FOR UPDATE");
+                     ResultSet resultSet = select.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new IllegalStateException("主分片" + home + "的序列表todo_id_seq没有初始值");
+                    }
+                    start = resultSet.getLong(1);
+                }
+                try (PreparedStatement update = connection.prepareStatement("UPDATE todo_id_seq SET next_val = ?")) {
+                    update.setLong(1, start + size);
+                    update.executeUpdate();
+                }
+                connection.commit();
+                nextTodoId = start;
+                todoIdLimit = start + size;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("分配待办事项ID失败", e);
+        }
+    }
+
+    // ==================== 重新分片 ====================
+
+    /**
+     * 持有路由写锁执行：等待进行中的路由和扇出结束，期间新的请求等待
+     */
+    void exclusive(Runnable action) {
+        routingLock.writeLock().lock();
+        try {
+            action.run();
+        } finally {
+            routingLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 开始迁移到新的哈希环；已有同一目标的迁移时沿用原来的进度（断点续迁）
+     * @return 进行中的迁移
+     * @throws IllegalStateException 正在迁移到另一个目标时抛出
+     */
+    Migration beginMigration(ConsistentHashRing target) {
+        checkMembers(target);
+        Migration[] result = new Migration[1];
+        exclusive(() -> {
+            Migration current = migration;
+            if (current != null && !current.target.getMembers().equals(target.getMembers())) {
+                throw new IllegalStateException("正在迁移到" + current.target.getMembers() + "，请先完成该迁移");
+            }
+            if (current == null) {
+                current = new Migration(target);
+                migration = current;
+            }
+            result[0] = current;
+        });
+        return result[0];
+    }
+
+    /**
+     * 完成迁移，切换到新的哈希环（应在exclusive中调用）
+     */
+    void finishMigration() {
+        ring = migration.target;
+        migration = null;
+    }
+
+    Migration getMigration() {
+        return migration;
+    }
+
+    /**
+     * 恢复持久化的分片成员（启动时调用）
+     */
+    void restoreRing(ConsistentHashRing restored) {
+        checkMembers(restored);
+        ring = restored;
+    }
+
+    private void checkMembers(ConsistentHashRing target) {
+        for (String member : target.getMembers()) {
+            if (!dataSources.containsKey(member)) {
+                throw new IllegalArgumentException("分片未配置数据源: " + member);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        if (fanOutExecutor != null) {
+            fanOutExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 进行中的迁移：目标哈希环及每个源分片已迁移到的ID
+     */
+    static class Migration {
+        final ConsistentHashRing target;
+        private final Map<String, Long> progress = new ConcurrentHashMap<>();
+
+        Migration(ConsistentHashRing target) {
+            this.target = target;
+        }
+
+        long progressOf(String source) {
+            return progress.getOrDefault(source, 0L);
+        }
+
+        /**
+         * 源分片中ID不大于afterId的数据已处理完（应在exclusive中调用）
+         */
+        void advance(String source, long afterId) {
+            progress.put(source, afterId);
+        }
+
+        Map<String, Long> getProgress() {
+            return new LinkedHashMap<>(progress);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.todolist.sharding;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.annotation.Order;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片路由切面：在服务方法开始事务之前，按@ShardKey参数把当前线程绑定到对应的分片
+ * order = 1：位于缓存拦截器（order = 0）之内、事务拦截器之外，缓存命中时不需要路由，事务开始时分片已经确定
+ *
+ * 参数为ID集合时（用于批量查询），按分片拆分后依次在各分片上执行，
+ * 返回值按类型合并：数值求和，Map按入参顺序重新排列，集合依次拼接
+ * 需要先校验整批入参的批量写入不使用切面，由服务方法校验后通过ShardRouter.forNewTodos/forTodoIds自行拆分
+ */
+@Aspect
+@Order(1)
+public class ShardRoutingAspect {
+
+    private final ShardRouter router;
+
+    public ShardRoutingAspect(ShardRouter router) {
+        this.router = router;
+    }
+
+    @Around("execution(* com.example.todolist.service..*(.., @com.example.todolist.sharding.ShardKey (*), ..))")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        int keyIndex = -1;
+        ShardKey shardKey = null;
+        Annotation[][] parameterAnnotations = method.getParameterAnnotations();
+        for (int i = 0; i < parameterAnnotations.length && shardKey == null; i++) {
+            for (Annotation annotation : parameterAnnotations[i]) {
+                if (annotation instanceof ShardKey) {
+                    shardKey = (ShardKey) annotation;
+                    keyIndex = i;
+                    break;
+                }
+            }
+        }
+        Object[] args = joinPoint.getArgs();
+        Object key = args[keyIndex];
+        if (key == null) {
+            return joinPoint.proceed();
+        }
+        int index = keyIndex;
+        try {
+            switch (shardKey.value()) {
+                case SUBTASK:
+                    return router.routed(() -> {
+                        Long parentTaskId = router.findParentOfSubtask((Long) key);
+                        // 子任务不存在时在主分片上执行，由服务方法按原逻辑报告不存在
+                        String shard = parentTaskId == null ? router.getHome() : router.shardOfTodo(parentTaskId);
+                        return router.callOn(shard, () -> proceed(joinPoint, args));
+                    });
+                case NEW_TODO:
+                    return routeNewTodo(joinPoint, args);
+                case TODO:
+                default:
+                    return key instanceof Collection
+                            ? routeTodoIds(joinPoint, args, index, (Collection<?>) key)
+                            : router.routed(() -> router.callOn(router.shardOfTodo((Long) key), () -> proceed(joinPoint, args)));
+            }
+        } catch (UndeclaredThrowableException e) {
+            throw e.getUndeclaredThrowable();
+        }
+    }
+
+    private Object routeNewTodo(ProceedingJoinPoint joinPoint, Object[] args) {
+        List<Long> ids = router.reserveTodoIds(1);
+        return router.routed(() -> router.callOn(router.shardOfTodo(ids.get(0)), ids, () -> proceed(joinPoint, args)));
+    }
+
+    /**
+     * 按待办事项ID集合拆分执行（如批量统计）
+     */
+    private Object routeTodoIds(ProceedingJoinPoint joinPoint, Object[] args, int index, Collection<?> keys) {
+        if (keys.isEmpty() || keys.contains(null)) {
+            return proceed(joinPoint, args);
+        }
+        return router.routed(() -> {
+            Map<String, List<Long>> idsByShard = new LinkedHashMap<>();
+            for (Object key : keys) {
+                Long id = (Long) key;
+                idsByShard.computeIfAbsent(router.shardOfTodo(id), shard -> new ArrayList<>()).add(id);
+            }
+            if (idsByShard.size() == 1) {
+                return router.callOn(idsByShard.keySet().iterator().next(), () -> proceed(joinPoint, args));
+            }
+            List<Object> results = new ArrayList<>();
+            for (Map.Entry<String, List<Long>> entry : idsByShard.entrySet()) {
+                Object[] partArgs = args.clone();
+                partArgs[index] = entry.getValue();
+                results.add(router.callOn(entry.getKey(), () -> proceed(joinPoint, partArgs)));
+            }
+            return merge(results, keys);
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object merge(List<Object> results, Collection<?> keys) {
+        Object first = results.get(0);
+        if (first instanceof Integer) {
+            return results.stream().mapToInt(result -> (Integer) result).sum();
+        }
+        if (first instanceof Long) {
+            return results.stream().mapToLong(result -> (Long) result).sum();
+        }
+        if (first instanceof Map) {
+            Map<Object, Object> all = new LinkedHashMap<>();
+            results.forEach(result -> all.putAll((Map<Object, Object>) result));
+            Map<Object, Object> ordered = new LinkedHashMap<>();
+            for (Object key : keys) {
+                if (all.containsKey(key)) {
+                    ordered.put(key, all.get(key));
+                }
+            }
+            return ordered;
+        }
+        if (first instanceof Collection) {
+            List<Object> all = new ArrayList<>();
+            results.forEach(result -> all.addAll((Collection<Object>) result));
+            return all;
+        }
+        return null;
+    }
+
+    /**
+     * 在当前线程继续执行被拦截的方法；检查型异常包装为UndeclaredThrowableException，在route中还原
+     */
+    private static Object proceed(ProceedingJoinPoint joinPoint, Object[] args) {
+        try {
+            return joinPoint.proceed(args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+}
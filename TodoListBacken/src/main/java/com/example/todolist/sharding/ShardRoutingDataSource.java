@@ -0,0 +1,30 @@
+package com.example.todolist.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按当前线程绑定的分片（ShardContext）选择连接池的数据源
+ * JPA只使用这一个数据源；事务开始时取得的连接决定了整个事务所在的分片，因此必须在事务开始前绑定分片
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    /**
+     * @param shards 分片名称到连接池的映射
+     * @param home 主分片名称，未绑定分片时使用
+     */
+    public ShardRoutingDataSource(Map<String, DataSource> shards, String home) {
+        setTargetDataSources(new LinkedHashMap<>(shards));
+        setDefaultTargetDataSource(shards.get(home));
+        // 绑定了未配置的分片时直接报错，而不是悄悄落到主分片上
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+}
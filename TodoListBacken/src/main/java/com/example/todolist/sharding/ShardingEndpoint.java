@@ -0,0 +1,56 @@
+package com.example.todolist.sharding;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 分片端点（仅分片模式）
+ * GET /actuator/shards 查看分片、哈希环成员、各分片的待办事项数和重新分片进度
+ * POST /actuator/shards {"members":"shard0,shard1,shard2,shard3"} 在线重新分片到新的成员，在后台执行
+ * 端点没有鉴权，默认不通过HTTP暴露，需要时在受保护的管理端口上显式加入 management.endpoints.web.exposure.include
+ */
+@Endpoint(id = "shards")
+public class ShardingEndpoint {
+
+    private final ShardRouter router;
+    private final Resharder resharder;
+
+    public ShardingEndpoint(ShardRouter router, Resharder resharder) {
+        this.router = router;
+        this.resharder = resharder;
+    }
+
+    @ReadOperation
+    public Map<String, Object> shards() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("shards", router.getShardNames());
+        result.put("home", router.getHome());
+        result.put("members", router.getRing().getMembers());
+        result.put("virtualNodes", router.getRing().getVirtualNodes());
+        Map<String, Long> todoCounts = new LinkedHashMap<>();
+        for (String shard : router.getShardNames()) {
+            todoCounts.put(shard, router.jdbcTemplate(shard).queryForObject("SELECT COUNT(*) FROM todo_list", Long.class));
+        }
+        result.put("todoCounts", todoCounts);
+        result.put("reshard", resharder.getStatus());
+        result.put("reshardProgress", resharder.getProgress());
+        return result;
+    }
+
+    @WriteOperation
+    public Map<String, Object> reshard(String members) {
+        List<String> names = Arrays.stream(members.split(","))
+                .map(String::trim)
+                .filter(name -> !name.isEmpty())
+                .collect(Collectors.toList());
+        resharder.start(names);
+        return shards();
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.todolist.sharding;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 分片配置（todo.sharding）
+ */
+@Data
+@ConfigurationProperties(prefix = "todo.sharding")
+public class ShardingProperties {
+
+    /**
+     * 是否启用分片；未启用时使用 spring.datasource 的单个数据库
+     */
+    private boolean enabled = false;
+
+    /**
+     * 全部分片的数据源，按配置顺序，第一个为主分片（保存ID序列和分片成员）
+     */
+    private Map<String, Shard> shards = new LinkedHashMap<>();
+
+    /**
+     * 哈希环成员，为空时使用全部分片；不在其中的分片不分配数据，可作为重新分片的目标
+     */
+    private List<String> members = new ArrayList<>();
+
+    /**
+     * 每个分片在哈希环上的虚拟节点数
+     */
+    private int virtualNodes = 160;
+
+    /**
+     * 扇出查询的线程数
+     */
+    private int fanOutThreads = 8;
+
+    /**
+     * 重新分片时每块迁移的待办事项数
+     */
+    private int reshardChunkSize = 200;
+
+    /**
+     * 单个分片的数据源
+     */
+    @Data
+    public static class Shard {
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        private int maximumPoolSize = 10;
+        private int minimumIdle = 2;
+    }
+}
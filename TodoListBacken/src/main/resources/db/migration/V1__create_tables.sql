@@ -0,0 +1,20 @@
+-- 初始表结构（与此前 ddl-auto: update 生成的结构一致）
+-- 已有数据库通过 spring.flyway.baseline-on-migrate 以版本1为基线，不会重复执行本脚本
+
+CREATE TABLE IF NOT EXISTS todo_list (
+    id           BIGINT       NOT NULL AUTO_INCREMENT,
+    is_completed BIT          NOT NULL,
+    value        VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE IF NOT EXISTS subtask (
+    id             BIGINT       NOT NULL AUTO_INCREMENT,
+    created_at     DATETIME(6),
+    is_completed   BIT          NOT NULL,
+    parent_task_id BIGINT       NOT NULL,
+    priority       VARCHAR(255) NOT NULL,
+    updated_at     DATETIME(6),
+    value          VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,23 @@
+-- 子任务优先级改为保存等级数值（LOW=1, MEDIUM=2, HIGH=3, URGENT=4），排序按真实优先级进行
+ALTER TABLE subtask ADD COLUMN priority_level INT NOT NULL DEFAULT 2;
+
+UPDATE subtask
+SET priority_level = CASE priority
+                         WHEN 'LOW' THEN 1
+                         WHEN 'MEDIUM' THEN 2
+                         WHEN 'HIGH' THEN 3
+                         WHEN 'URGENT' THEN 4
+                         ELSE 2
+    END;
+
+ALTER TABLE subtask DROP COLUMN priority;
+ALTER TABLE subtask RENAME COLUMN priority_level TO priority;
+
+-- 按父任务查询子任务并按优先级降序、创建时间升序排序（findByParentTaskIdOrderByPriorityDesc、findByParentTaskIdAndPriority）
+CREATE INDEX idx_subtask_parent_priority ON subtask (parent_task_id, priority DESC, created_at);
+
+-- 按父任务和完成状态查询并排序（findByParentTaskIdAndCompletedOrderByPriority），同时覆盖分组统计查询
+CREATE INDEX idx_subtask_parent_completed_priority ON subtask (parent_task_id, is_completed, priority DESC, created_at);
+
+-- 待办事项按完成状态过滤的游标分页
+CREATE INDEX idx_todo_completed_id ON todo_list (is_completed, id);
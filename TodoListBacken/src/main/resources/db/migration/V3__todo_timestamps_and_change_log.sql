@@ -0,0 +1,21 @@
+-- 待办事项增加创建/更新时间
+ALTER TABLE todo_list ADD COLUMN created_at DATETIME(6);
+ALTER TABLE todo_list ADD COLUMN updated_at DATETIME(6);
+
+-- 变更日志：每次写操作在同一事务中追加一行，id即同步令牌
+-- parent_task_id：子任务记录其父任务ID，待办事项记录自身ID，用于计算某个任务子任务列表的版本
+CREATE TABLE change_log (
+    id             BIGINT      NOT NULL AUTO_INCREMENT,
+    entity_type    VARCHAR(16) NOT NULL,
+    entity_id      BIGINT      NOT NULL,
+    parent_task_id BIGINT,
+    change_type    VARCHAR(16) NOT NULL,
+    changed_at     DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+-- 待办事项集合版本：MAX(id) WHERE entity_type = 'TODO'
+CREATE INDEX idx_change_log_type_id ON change_log (entity_type, id);
+
+-- 某个任务的子任务集合版本：MAX(id) WHERE parent_task_id = ?
+CREATE INDEX idx_change_log_parent_id ON change_log (parent_task_id, id);
@@ -0,0 +1,3 @@
+-- 乐观锁版本号：每次更新（包括原子切换完成状态）加1
+ALTER TABLE todo_list ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE subtask ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,11 @@
+-- 主键改为按块分配（Hibernate pooled-lo），MySQL没有序列，使用单行序列表模拟
+-- next_val为下一块的起始ID，从现有最大ID之后开始；原有AUTO_INCREMENT保留，不影响显式指定ID的插入
+CREATE TABLE todo_id_seq (
+    next_val BIGINT NOT NULL
+) ENGINE = InnoDB;
+INSERT INTO todo_id_seq (next_val) SELECT COALESCE(MAX(id), 0) + 1 FROM todo_list;
+
+CREATE TABLE subtask_id_seq (
+    next_val BIGINT NOT NULL
+) ENGINE = InnoDB;
+INSERT INTO subtask_id_seq (next_val) SELECT COALESCE(MAX(id), 0) + 1 FROM subtask;
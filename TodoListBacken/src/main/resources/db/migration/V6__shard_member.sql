@@ -0,0 +1,5 @@
+-- 分片成员（仅分片模式使用，记录在第一个分片中）：重新分片完成后写入新的成员，重启时优先于配置
+CREATE TABLE shard_member (
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    sort_order INT NOT NULL
+) ENGINE = InnoDB;
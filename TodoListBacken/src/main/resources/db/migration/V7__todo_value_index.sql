@@ -0,0 +1,3 @@
+-- 待办事项按内容前缀过滤的游标分页（findPageAfter的prefix条件）：
+-- 前缀条件在(value, id)上做范围扫描，只读取匹配前缀的行，不再沿主键扫描整张表
+CREATE INDEX idx_todo_value_id ON todo_list (value, id);
@@ -0,0 +1,25 @@
+-- 变更日志增加提交顺序的版本号：自增ID在事务开始写入时分配，并发事务的提交顺序可能与ID顺序不同，
+-- 以ID作同步令牌时客户端可能跳过较晚提交的较小ID；版本号在事务提交前持有计数行的行锁时分配，
+-- 持锁直到提交，因此版本号的顺序即提交顺序
+ALTER TABLE change_log ADD COLUMN version BIGINT;
+UPDATE change_log SET version = id;
+ALTER TABLE change_log MODIFY COLUMN version BIGINT NOT NULL;
+
+-- 同步令牌：version > ? ORDER BY version；清理：DELETE WHERE version <= ?
+CREATE UNIQUE INDEX idx_change_log_version ON change_log (version);
+
+-- 集合版本改为按version计算
+DROP INDEX idx_change_log_type_id ON change_log;
+DROP INDEX idx_change_log_parent_id ON change_log;
+CREATE INDEX idx_change_log_type_version ON change_log (entity_type, version);
+CREATE INDEX idx_change_log_parent_version ON change_log (parent_task_id, version);
+
+-- 版本计数（单行）：current_version为最后分配的版本号，pruned_version为已清理的最大版本号
+CREATE TABLE change_log_counter (
+    id              INT    NOT NULL,
+    current_version BIGINT NOT NULL,
+    pruned_version  BIGINT NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+INSERT INTO change_log_counter (id, current_version, pruned_version)
+SELECT 1, COALESCE(MAX(id), 0), 0 FROM change_log;
@@ -0,0 +1,126 @@
+package com.example.todolist.controller;
+
+import com.example.todolist.config.JacksonConfig;
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.service.SubtaskService;
+import com.example.todolist.service.TodoService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 内容协商与压缩集成测试：同一个列表接口按Accept头返回JSON、Smile或CBOR，解码后内容相同；
+ * 超过压缩阈值的响应在客户端接受gzip时被压缩，小响应不压缩
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class ContentNegotiationIntegrationTest {
+
+    private static final MediaType SMILE = MediaType.valueOf("application/x-jackson-smile");
+    private static final MediaType CBOR = MediaType.valueOf("application/cbor");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Long todoId;
+
+    @BeforeEach
+    void setUp() {
+        Todo todo = new Todo();
+        todo.setValue("内容协商");
+        todoId = todoService.addTodo(todo).getId();
+        for (int i = 0; i < 60; i++) {
+            Subtask subtask = new Subtask();
+            subtask.setValue("内容协商子任务" + i);
+            subtask.setPriority(Priority.values()[i % Priority.values().length]);
+            subtaskService.addSubtask(todoId, subtask);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        todoService.deleteTodo(todoId);
+    }
+
+    @Test
+    void binaryFormatsCarryTheSameListAsJson() throws IOException {
+        String path = "/api/tasks/" + todoId + "/subtasks";
+        ResponseEntity<byte[]> json = get(path, MediaType.APPLICATION_JSON, null);
+        ResponseEntity<byte[]> smile = get(path, SMILE, null);
+        ResponseEntity<byte[]> cbor = get(path, CBOR, null);
+
+        assertThat(json.getHeaders().getContentType().isCompatibleWith(MediaType.APPLICATION_JSON)).isTrue();
+        assertThat(smile.getHeaders().getContentType().isCompatibleWith(SMILE)).isTrue();
+        assertThat(cbor.getHeaders().getContentType().isCompatibleWith(CBOR)).isTrue();
+
+        JsonNode expected = objectMapper.readTree(json.getBody());
+        assertThat(expected).hasSize(60);
+        assertThat(new ObjectMapper(JacksonConfig.newSmileFactory()).readTree(smile.getBody())).isEqualTo(expected);
+        assertThat(new ObjectMapper(new CBORFactory()).readTree(cbor.getBody())).isEqualTo(expected);
+        // Smile共享重复的字段名和短字符串值
+        assertThat(smile.getBody().length).isLessThan(json.getBody().length);
+    }
+
+    @Test
+    void largeResponsesAreGzippedAndSmallOnesAreNot() throws IOException {
+        String path = "/api/tasks/" + todoId + "/subtasks";
+        ResponseEntity<byte[]> plain = get(path, MediaType.APPLICATION_JSON, null);
+        ResponseEntity<byte[]> gzipped = get(path, MediaType.APPLICATION_JSON, "gzip");
+
+        assertThat(plain.getBody().length).isGreaterThan(2048);
+        assertThat(gzipped.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gzipped.getBody().length).isLessThan(plain.getBody().length);
+        try (GZIPInputStream input = new GZIPInputStream(new ByteArrayInputStream(gzipped.getBody()))) {
+            assertThat(objectMapper.readTree(input)).isEqualTo(objectMapper.readTree(plain.getBody()));
+        }
+
+        ResponseEntity<byte[]> small = get(path + "/count", MediaType.APPLICATION_JSON, "gzip");
+        assertThat(small.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(objectMapper.readTree(small.getBody()).get("totalCount").asLong()).isEqualTo(60);
+    }
+
+    @Test
+    void unsupportedFormatIsRejected() {
+        ResponseEntity<byte[]> response = get("/api/tasks/" + todoId + "/subtasks", MediaType.APPLICATION_PDF, null);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.NOT_ACCEPTABLE);
+    }
+
+    private ResponseEntity<byte[]> get(String path, MediaType accept, String acceptEncoding) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT, accept.toString());
+        if (acceptEncoding != null) {
+            headers.set(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        return restTemplate.exchange(path, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.todolist.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 查询预算集成测试：fail模式下依次调用主要接口，任何接口执行的SQL语句数超出@QueryBudget都会返回500而使测试失败
+ * 覆盖写入、缓存未命中的读取和删除路径；最后确认没有记录任何超限（防止异常在某处被吞掉）
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "todo.query-budget.mode=fail")
+@ActiveProfiles("test")
+class QueryBudgetIntegrationTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void mainEndpointsStayWithinQueryBudget() {
+        long todoId = call(HttpMethod.POST, "/api/add-todo", todo("预算测试")).get("id").asLong();
+        JsonNode batchIds = call(HttpMethod.POST, "/api/add-todos", Arrays.asList(todo("预算批量1"), todo("预算批量2")));
+        assertThat(batchIds).hasSize(2);
+
+        Map<String, Object> newSubtask = new LinkedHashMap<>();
+        newSubtask.put("value", "预算子任务");
+        newSubtask.put("priority", "HIGH");
+        long subtaskId = call(HttpMethod.POST, "/api/tasks/" + todoId + "/subtasks", newSubtask).get("id").asLong();
+
+        // 写入后缓存已失效，以下读取走数据库
+        call(HttpMethod.GET, "/api/get-todo", null);
+        call(HttpMethod.GET, "/api/todos?limit=20", null);
+        call(HttpMethod.GET, "/api/todos?prefix=预算&completed=false", null);
+        call(HttpMethod.GET, "/api/todos/tree?limit=20", null);
+        call(HttpMethod.GET, "/api/sync?since=0", null);
+        call(HttpMethod.GET, "/api/tasks/" + todoId + "/subtasks", null);
+        call(HttpMethod.GET, "/api/tasks/" + todoId + "/subtasks/status?completed=false", null);
+        call(HttpMethod.GET, "/api/tasks/" + todoId + "/subtasks/priority?priority=HIGH", null);
+        call(HttpMethod.GET, "/api/tasks/" + todoId + "/subtasks/stats", null);
+        call(HttpMethod.GET, "/api/tasks/" + todoId + "/subtasks/count", null);
+        call(HttpMethod.GET, "/api/subtasks/stats?parentIds=" + todoId + "," + batchIds.get(0).asLong(), null);
+        call(HttpMethod.GET, "/api/search?q=预算", null);
+        call(HttpMethod.GET, "/api/stats", null);
+        call(HttpMethod.GET, "/api/cache/stats", null);
+        call(HttpMethod.GET, "/api/write-behind/stats", null);
+        call(HttpMethod.GET, "/api/changes/stats", null);
+        call(HttpMethod.GET, "/api/import/progress", null);
+        call(HttpMethod.GET, "/api/priorities", null);
+
+        Map<String, Object> subtaskUpdate = new LinkedHashMap<>();
+        subtaskUpdate.put("value", "预算子任务（已修改）");
+        call(HttpMethod.PUT, "/api/subtasks/" + subtaskId, subtaskUpdate);
+        call(HttpMethod.PUT, "/api/subtasks/" + subtaskId + "/priority", Collections.singletonMap("priority", "LOW"));
+        call(HttpMethod.POST, "/api/subtasks/" + subtaskId + "/toggle", null);
+        call(HttpMethod.POST, "/api/update-todo/" + todoId, null);
+
+        call(HttpMethod.DELETE, "/api/subtasks/" + subtaskId, null);
+        call(HttpMethod.DELETE, "/api/tasks/" + todoId + "/subtasks", null);
+        call(HttpMethod.POST, "/api/del-completed-todos", null);
+        call(HttpMethod.POST, "/api/del-todos", Collections.singletonList(batchIds.get(0).asLong()));
+        call(HttpMethod.POST, "/api/del-todo/" + batchIds.get(1).asLong(), null);
+
+        assertThat(meterRegistry.find("todo.request.query.budget.exceeded").counter()).isNull();
+    }
+
+    private static Map<String, Object> todo(String value) {
+        return Collections.singletonMap("value", value);
+    }
+
+    /**
+     * 调用接口并断言返回2xx，返回响应体（没有响应体时为null）
+     */
+    private JsonNode call(HttpMethod method, String path, Object body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<JsonNode> response = restTemplate.exchange(path, method, new HttpEntity<>(body, headers), JsonNode.class);
+        assertThat(response.getStatusCode().is2xxSuccessful())
+                .as("%s %s 返回 %s: %s", method, path, response.getStatusCode(), response.getBody())
+                .isTrue();
+        return response.getBody();
+    }
+}
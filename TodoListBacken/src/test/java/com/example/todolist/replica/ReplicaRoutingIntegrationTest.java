@@ -0,0 +1,116 @@
+package com.example.todolist.replica;
+
+import com.example.todolist.filter.ReadYourWritesFilter;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 读写分离集成测试：副本是一个独立的H2内存库（不复制主库），读到哪一边的数据即可判断查询被路由到了哪里
+ * 覆盖只读请求走副本、客户端写入后的窗口内只读主库、窗口结束后回到副本，以及副本不可用时回退主库
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "todo.replicas.enabled=true",
+        "todo.replicas.read-your-writes-ms=" + ReplicaRoutingIntegrationTest.WINDOW_MS,
+        "todo.replicas.max-lag-seconds=0",
+        // 只在启动时检查一次，测试中手动标记的不可用状态不会被后台检查恢复
+        "todo.replicas.health-check-interval-ms=600000",
+        "todo.replicas.servers.replica1.url=" + ReplicaRoutingIntegrationTest.REPLICA_URL,
+        "todo.replicas.servers.replica1.username=sa",
+        "todo.replicas.servers.replica1.password=",
+        "todo.replicas.servers.replica1.driver-class-name=org.h2.Driver"
+})
+@ActiveProfiles("test")
+class ReplicaRoutingIntegrationTest {
+
+    static final long WINDOW_MS = 1000;
+    static final String REPLICA_URL =
+            "jdbc:h2:mem:replica-test;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE";
+
+    private static final String PREFIX = "读写分离-";
+    private static final String REPLICA_ONLY = PREFIX + "只在副本上";
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ReplicaRouter replicaRouter;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @BeforeAll
+    static void createReplica() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(REPLICA_URL, "sa", "");
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+        new JdbcTemplate(dataSource).update("INSERT INTO todo_list (id, is_completed, value, version) VALUES (1, FALSE, ?, 0)", REPLICA_ONLY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        created.forEach(id -> call(HttpMethod.POST, "/api/del-todo/" + id, "cleanup", null));
+        replicaRouter.getNodes().forEach(node -> node.check(null, 0, 2));
+    }
+
+    @Test
+    void readsGoToReplicaExceptDuringTheWritersWindow() throws InterruptedException {
+        assertThat(treeValues("reader")).containsExactly(REPLICA_ONLY);
+
+        JsonNode added = call(HttpMethod.POST, "/api/add-todo", "writer", Collections.singletonMap("value", PREFIX + "主库"));
+        created.add(added.get("id").asLong());
+
+        // 写入的客户端在窗口内读主库，立即看到自己的写入；其他客户端仍读副本
+        assertThat(treeValues("writer")).containsExactly(PREFIX + "主库");
+        assertThat(treeValues("reader")).containsExactly(REPLICA_ONLY);
+
+        Thread.sleep(WINDOW_MS + 200);
+        assertThat(treeValues("writer")).containsExactly(REPLICA_ONLY);
+    }
+
+    @Test
+    void unhealthyReplicaFallsBackToPrimary() {
+        JsonNode added = call(HttpMethod.POST, "/api/add-todo", "cleanup", Collections.singletonMap("value", PREFIX + "主库"));
+        created.add(added.get("id").asLong());
+        long fallbacks = replicaRouter.getPrimaryFallbacks();
+
+        replicaRouter.getNodes().forEach(node -> node.markDown("测试"));
+        assertThat(treeValues("reader")).containsExactly(PREFIX + "主库");
+        assertThat(replicaRouter.getPrimaryFallbacks()).isGreaterThan(fallbacks);
+
+        replicaRouter.getNodes().forEach(node -> node.check(null, 0, 2));
+        assertThat(treeValues("reader")).containsExactly(REPLICA_ONLY);
+    }
+
+    private List<String> treeValues(String client) {
+        List<String> values = new ArrayList<>();
+        for (JsonNode node : call(HttpMethod.GET, "/api/todos/tree?prefix=" + PREFIX, client, null).get("items")) {
+            values.add(node.get("value").asText());
+        }
+        return values;
+    }
+
+    private JsonNode call(HttpMethod method, String path, String client, Object body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(ReadYourWritesFilter.CLIENT_ID_HEADER, client);
+        ResponseEntity<JsonNode> response = restTemplate.exchange(path, method, new HttpEntity<>(body, headers), JsonNode.class);
+        assertThat(response.getStatusCode().is2xxSuccessful()).as("%s %s 返回 %s", method, path, response.getStatusCode()).isTrue();
+        return response.getBody();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.todolist.repository;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.metrics.QueryCounter;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 主键按块分配测试：批量保存时ID在内存中分配，INSERT和UPDATE按hibernate.jdbc.batch_size成批发送，
+ * 序列表每块只访问一次；测试数据在事务结束时回滚
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class PooledIdBatchingTest {
+
+    private static final int ROWS = 120;
+    private static final int BATCH_SIZE = 50;
+    private static final int BATCHES = (ROWS + BATCH_SIZE - 1) / BATCH_SIZE;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void bulkWritesGoOutInBatchesWithBlockAllocatedIds() {
+        long todoSeqBefore = nextVal("todo_id_seq");
+        long subtaskSeqBefore = nextVal("subtask_id_seq");
+
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Todo> todos = new ArrayList<>();
+            for (int i = 0; i < ROWS; i++) {
+                Todo todo = new Todo();
+                todo.setValue("批处理" + i);
+                todos.add(todo);
+            }
+            QueryCounter.begin("insert", Integer.MAX_VALUE, false);
+            todoRepository.saveAll(todos);
+            List<Subtask> subtasks = new ArrayList<>();
+            for (Todo todo : todos) {
+                // ID在保存时已分配，无需等待INSERT执行
+                assertThat(todo.getId()).isNotNull();
+                Subtask subtask = new Subtask();
+                subtask.setValue("批处理子任务");
+                subtask.setParentTaskId(todo.getId());
+                subtask.setPriority(Priority.LOW);
+                subtasks.add(subtask);
+            }
+            subtaskRepository.saveAll(subtasks);
+            todoRepository.flush();
+            // 每个实体类型：每块ID一次序列表读取和更新，每批一条INSERT
+            assertThat(QueryCounter.end()).isLessThanOrEqualTo(2 * (BATCHES * 2 + BATCHES));
+
+            todos.forEach(todo -> todo.setCompleted(true));
+            subtasks.forEach(subtask -> subtask.setPriority(Priority.HIGH));
+            QueryCounter.begin("update", Integer.MAX_VALUE, false);
+            todoRepository.flush();
+            assertThat(QueryCounter.end()).isLessThanOrEqualTo(2 * BATCHES);
+
+            status.setRollbackOnly();
+        });
+
+        // 序列表在独立事务中更新，不随回滚撤销：每块前进allocationSize，块数远小于行数
+        long todoAdvance = nextVal("todo_id_seq") - todoSeqBefore;
+        long subtaskAdvance = nextVal("subtask_id_seq") - subtaskSeqBefore;
+        assertThat(todoAdvance % BATCH_SIZE).isZero();
+        assertThat(todoAdvance).isLessThanOrEqualTo((long) BATCHES * BATCH_SIZE);
+        assertThat(subtaskAdvance % BATCH_SIZE).isZero();
+        assertThat(subtaskAdvance).isLessThanOrEqualTo((long) BATCHES * BATCH_SIZE);
+    }
+
+    private long nextVal(String table) {
+        return jdbcTemplate.queryForObject("SELECT next_val FROM " + table, Long.class);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.todolist.repository;
+
+import com.example.todolist.enums.Priority;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 优先级迁移测试：在独立的H2内存库上先迁移到版本1并写入按名称保存优先级的旧数据，
+ * 再执行后续迁移，验证优先级转换为等级数值、排序按真实优先级进行，且相应索引已创建
+ */
+class PriorityMigrationTest {
+
+    @Test
+    void priorityNamesBecomeLevelsThatSortByImportance() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:priority-migration;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+                "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+
+        flyway(dataSource).target("1").load().migrate();
+        String[] names = {"LOW", "URGENT", "MEDIUM", "HIGH", "UNKNOWN"};
+        for (String name : names) {
+            jdbc.update("INSERT INTO subtask (created_at, is_completed, parent_task_id, priority, value) "
+                    + "VALUES (CURRENT_TIMESTAMP, FALSE, 1, ?, ?)", name, name);
+        }
+
+        flyway(dataSource).load().migrate();
+
+        for (String name : names) {
+            int level = jdbc.queryForObject("SELECT priority FROM subtask WHERE value = ?", Integer.class, name);
+            Priority expected = "UNKNOWN".equals(name) ? Priority.MEDIUM : Priority.valueOf(name);
+            assertThat(level).as(name).isEqualTo(expected.getLevel());
+        }
+        List<String> ordered = jdbc.queryForList(
+                "SELECT value FROM subtask WHERE parent_task_id = 1 ORDER BY priority DESC, id", String.class);
+        assertThat(ordered).containsExactly("URGENT", "HIGH", "MEDIUM", "UNKNOWN", "LOW");
+
+        List<String> indexes = jdbc.queryForList(
+                "SELECT index_name FROM information_schema.indexes WHERE table_name = 'subtask'", String.class);
+        assertThat(indexes).contains("idx_subtask_parent_priority", "idx_subtask_parent_completed_priority");
+    }
+
+    private static FluentConfiguration flyway(DriverManagerDataSource dataSource) {
+        return Flyway.configure().dataSource(dataSource).locations("classpath:db/migration");
+    }
+}
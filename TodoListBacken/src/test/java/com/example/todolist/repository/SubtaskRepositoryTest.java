@@ -0,0 +1,139 @@
+package com.example.todolist.repository;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * SubtaskRepository测试：使用嵌入式存储配置（进程内H2文件数据库，表结构由Flyway创建），
+ * 每个测试在事务中执行并在结束后回滚
+ */
+@DataJpaTest(properties = "todo.embedded.data-dir=./target/embedded-repository-test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("embedded")
+class SubtaskRepositoryTest {
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    private Long parentId;
+    private Long otherParentId;
+
+    @BeforeEach
+    void setUp() {
+        parentId = saveTodo("父任务").getId();
+        otherParentId = saveTodo("另一个父任务").getId();
+    }
+
+    @Test
+    void findByParentTaskIdOrdersByPriorityThenCreation() {
+        Subtask low = save(parentId, "低", Priority.LOW, false);
+        Subtask highFirst = save(parentId, "高1", Priority.HIGH, false);
+        Subtask highSecond = save(parentId, "高2", Priority.HIGH, true);
+        save(otherParentId, "其他", Priority.HIGH, false);
+
+        assertThat(ids(subtaskRepository.findByParentTaskIdOrderByPriorityDesc(parentId)))
+                .containsExactly(highFirst.getId(), highSecond.getId(), low.getId());
+        assertThat(ids(subtaskRepository.findByParentTaskIdAndCompletedOrderByPriority(parentId, false)))
+                .containsExactly(highFirst.getId(), low.getId());
+        assertThat(ids(subtaskRepository.findByParentTaskIdAndPriority(parentId, Priority.HIGH)))
+                .containsExactlyInAnyOrder(highFirst.getId(), highSecond.getId());
+        assertThat(subtaskRepository.countByParentTaskId(parentId)).isEqualTo(3);
+    }
+
+    @Test
+    void findByParentTaskIdInGroupsByParent() {
+        Subtask first = save(parentId, "a", Priority.MEDIUM, false);
+        Subtask second = save(otherParentId, "b", Priority.MEDIUM, false);
+        Subtask third = save(parentId, "c", Priority.MEDIUM, false);
+
+        List<Subtask> subtasks = subtaskRepository.findByParentTaskIdIn(Arrays.asList(parentId, otherParentId));
+        assertThat(subtasks).extracting(Subtask::getParentTaskId)
+                .containsExactly(parentId, parentId, otherParentId);
+        assertThat(ids(subtasks)).containsExactly(first.getId(), third.getId(), second.getId());
+        assertThat(subtaskRepository.findIdsByParentTaskIdIn(Arrays.asList(parentId, otherParentId)))
+                .extracting(SubtaskRepository.SubtaskIdRow::getId)
+                .containsExactlyInAnyOrder(first.getId(), second.getId(), third.getId());
+    }
+
+    @Test
+    void countGroupedByParentTaskIds() {
+        save(parentId, "a", Priority.HIGH, true);
+        save(parentId, "b", Priority.HIGH, true);
+        save(parentId, "c", Priority.LOW, false);
+        save(otherParentId, "d", Priority.LOW, false);
+
+        List<SubtaskRepository.SubtaskCountRow> rows =
+                subtaskRepository.countGroupedByParentTaskIds(Arrays.asList(parentId, otherParentId));
+        assertThat(rows).hasSize(3);
+        assertThat(rows).filteredOn(row -> row.getParentTaskId().equals(parentId)
+                        && row.getPriority() == Priority.HIGH && row.isCompleted())
+                .extracting(SubtaskRepository.SubtaskCountRow::getCount)
+                .containsExactly(2L);
+        assertThat(rows).filteredOn(row -> row.getParentTaskId().equals(otherParentId))
+                .extracting(SubtaskRepository.SubtaskCountRow::getCount)
+                .containsExactly(1L);
+    }
+
+    @Test
+    void toggleCompletedFlipsStateAndBumpsVersion() {
+        Subtask subtask = save(parentId, "切换", Priority.MEDIUM, false);
+        Long version = subtask.getVersion();
+
+        assertThat(subtaskRepository.toggleCompleted(subtask.getId(), LocalDateTime.now())).isEqualTo(1);
+        Subtask toggled = subtaskRepository.findByIdForUpdate(subtask.getId()).orElseThrow(IllegalStateException::new);
+        assertThat(toggled.isCompleted()).isTrue();
+        assertThat(toggled.getVersion()).isEqualTo(version + 1);
+
+        assertThat(subtaskRepository.toggleCompleted(Long.MAX_VALUE, LocalDateTime.now())).isZero();
+    }
+
+    @Test
+    void deleteByParentTaskIdRemovesOnlyThatParentsSubtasks() {
+        save(parentId, "a", Priority.MEDIUM, false);
+        save(parentId, "b", Priority.MEDIUM, false);
+        Subtask kept = save(otherParentId, "c", Priority.MEDIUM, false);
+
+        assertThat(subtaskRepository.deleteByParentTaskId(parentId)).isEqualTo(2);
+        assertThat(subtaskRepository.findByParentTaskId(parentId)).isEmpty();
+        assertThat(ids(subtaskRepository.findByParentTaskId(otherParentId))).containsExactly(kept.getId());
+
+        assertThat(subtaskRepository.deleteByParentTaskIdIn(Arrays.asList(parentId, otherParentId))).isEqualTo(1);
+        assertThat(subtaskRepository.countByParentTaskId(otherParentId)).isZero();
+    }
+
+    private Todo saveTodo(String value) {
+        Todo todo = new Todo();
+        todo.setValue(value);
+        return todoRepository.saveAndFlush(todo);
+    }
+
+    private Subtask save(Long parentTaskId, String value, Priority priority, boolean completed) {
+        Subtask subtask = new Subtask();
+        subtask.setParentTaskId(parentTaskId);
+        subtask.setValue(value);
+        subtask.setPriority(priority);
+        subtask.setCompleted(completed);
+        return subtaskRepository.saveAndFlush(subtask);
+    }
+
+    private static List<Long> ids(List<Subtask> subtasks) {
+        return subtasks.stream().map(Subtask::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,128 @@
+package com.example.todolist.repository;
+
+import com.example.todolist.entity.Todo;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * TodoRepository测试：使用嵌入式存储配置（进程内H2文件数据库，表结构由Flyway创建），
+ * 每个测试在事务中执行并在结束后回滚
+ */
+@DataJpaTest(properties = "todo.embedded.data-dir=./target/embedded-repository-test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("embedded")
+class TodoRepositoryTest {
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Test
+    void findPageAfterPagesByIdAndFilters() {
+        Todo first = save("买菜", false);
+        Todo second = save("买书", true);
+        Todo third = save("写周报", false);
+        long afterId = first.getId() - 1;
+
+        assertThat(ids(todoRepository.findPageAfter(afterId, null, null, PageRequest.of(0, 2))))
+                .containsExactly(first.getId(), second.getId());
+        assertThat(ids(todoRepository.findPageAfter(second.getId(), null, null, PageRequest.of(0, 2))))
+                .containsExactly(third.getId());
+        assertThat(ids(todoRepository.findPageAfter(afterId, false, null, PageRequest.of(0, 10))))
+                .containsExactly(first.getId(), third.getId());
+        assertThat(ids(todoRepository.findPageAfter(afterId, null, "买%", PageRequest.of(0, 10))))
+                .containsExactly(first.getId(), second.getId());
+        assertThat(ids(todoRepository.findPageAfter(afterId, true, "买%", PageRequest.of(0, 10))))
+                .containsExactly(second.getId());
+    }
+
+    @Test
+    void findPageAfterEscapesLikeWildcards() {
+        Todo literal = save("100%完成", false);
+        save("100个任务", false);
+
+        // 前缀中的%由调用方转义为!%
+        assertThat(ids(todoRepository.findPageAfter(literal.getId() - 1, null, "100!%%", PageRequest.of(0, 10))))
+                .containsExactly(literal.getId());
+    }
+
+    @Test
+    void countByCompleted() {
+        long completedBefore = todoRepository.countByCompleted(true);
+        long activeBefore = todoRepository.countByCompleted(false);
+        save("a", true);
+        save("b", false);
+        save("c", false);
+
+        assertThat(todoRepository.countByCompleted(true)).isEqualTo(completedBefore + 1);
+        assertThat(todoRepository.countByCompleted(false)).isEqualTo(activeBefore + 2);
+    }
+
+    @Test
+    void toggleCompletedFlipsStateAndBumpsVersion() {
+        Todo todo = save("切换", false);
+        Long version = todo.getVersion();
+
+        assertThat(todoRepository.toggleCompleted(todo.getId(), LocalDateTime.now())).isEqualTo(1);
+        Todo toggled = todoRepository.findById(todo.getId()).orElseThrow(IllegalStateException::new);
+        assertThat(toggled.isCompleted()).isTrue();
+        assertThat(toggled.getVersion()).isEqualTo(version + 1);
+
+        assertThat(todoRepository.toggleCompleted(Long.MAX_VALUE, LocalDateTime.now())).isZero();
+    }
+
+    @Test
+    void findStatesByIdInReturnsOnlyExistingRows() {
+        Todo active = save("未完成", false);
+        Todo completed = save("已完成", true);
+
+        List<TodoRepository.TodoStateRow> rows =
+                todoRepository.findStatesByIdIn(Arrays.asList(active.getId(), completed.getId(), Long.MAX_VALUE));
+        assertThat(rows).extracting(TodoRepository.TodoStateRow::getId)
+                .containsExactlyInAnyOrder(active.getId(), completed.getId());
+        assertThat(rows).filteredOn(TodoRepository.TodoStateRow::isCompleted)
+                .extracting(TodoRepository.TodoStateRow::getId)
+                .containsExactly(completed.getId());
+        assertThat(rows).extracting(TodoRepository.TodoStateRow::getVersion)
+                .containsOnly(active.getVersion());
+    }
+
+    @Test
+    void findCompletedIdsAfterAndDeleteByIdIn() {
+        Todo first = save("完成1", true);
+        save("进行中", false);
+        Todo second = save("完成2", true);
+        long afterId = first.getId() - 1;
+
+        List<Long> chunk = todoRepository.findCompletedIdsAfter(afterId, PageRequest.of(0, 1));
+        assertThat(chunk).containsExactly(first.getId());
+        assertThat(todoRepository.findCompletedIdsAfter(first.getId(), PageRequest.of(0, 1)))
+                .containsExactly(second.getId());
+
+        assertThat(todoRepository.deleteByIdIn(Arrays.asList(first.getId(), second.getId()))).isEqualTo(2);
+        assertThat(todoRepository.findCompletedIdsAfter(afterId, PageRequest.of(0, 10))).isEmpty();
+        assertThat(todoRepository.deleteByIdIn(Collections.singletonList(first.getId()))).isZero();
+    }
+
+    private Todo save(String value, boolean completed) {
+        Todo todo = new Todo();
+        todo.setValue(value);
+        todo.setCompleted(completed);
+        return todoRepository.saveAndFlush(todo);
+    }
+
+    private static List<Long> ids(List<Todo> todos) {
+        return todos.stream().map(Todo::getId).collect(Collectors.toList());
+    }
+}
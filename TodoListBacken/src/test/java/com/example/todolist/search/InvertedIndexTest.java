@@ -0,0 +1,76 @@
+package com.example.todolist.search;
+
+import com.example.todolist.enums.Priority;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * InvertedIndex测试
+ */
+class InvertedIndexTest {
+
+    private static final InvertedIndex.SearchFilter NO_FILTER = new InvertedIndex.SearchFilter(null, null, null);
+
+    @Test
+    void prefixExpansionBeyondLimitIsReportedAsTruncated() {
+        InvertedIndex index = new InvertedIndex();
+        int documents = InvertedIndex.MAX_PREFIX_EXPANSIONS + 10;
+        for (int i = 0; i < documents; i++) {
+            index.put(todo(i, 0, String.format("task%04d", i)));
+        }
+
+        InvertedIndex.SearchPage broad = index.search("task", NO_FILTER, 0, 10);
+        assertThat(broad.isTruncated()).isTrue();
+        assertThat(broad.getTotal()).isEqualTo(InvertedIndex.MAX_PREFIX_EXPANSIONS);
+
+        InvertedIndex.SearchPage narrow = index.search("task000", NO_FILTER, 0, 10);
+        assertThat(narrow.isTruncated()).isFalse();
+        assertThat(narrow.getTotal()).isEqualTo(10);
+    }
+
+    @Test
+    void olderPutArrivingLateIsIgnored() {
+        InvertedIndex index = new InvertedIndex();
+        assertThat(index.put(todo(1, 2, "meeting notes"))).isTrue();
+        assertThat(index.put(todo(1, 1, "grocery list"))).isFalse();
+
+        assertThat(index.search("meeting", NO_FILTER, 0, 10).getTotal()).isEqualTo(1);
+        assertThat(index.search("grocery", NO_FILTER, 0, 10).getTotal()).isZero();
+        assertThat(index.search("meeting", NO_FILTER, 0, 10).getHits().get(0).getValue()).isEqualTo("meeting notes");
+    }
+
+    @Test
+    void putAfterDeleteDoesNotResurrectDocument() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(todo(1, 0, "meeting"));
+        index.remove(InvertedIndex.DocumentType.TODO, 1, 3);
+
+        // 删除前的更新事件迟到
+        assertThat(index.put(todo(1, 3, "meeting updated"))).isFalse();
+        assertThat(index.size()).isZero();
+
+        // 版本未知的删除：之后的任何写入都被忽略
+        index.put(subtask(7, 0, "review"));
+        index.remove(InvertedIndex.DocumentType.SUBTASK, 7, Long.MAX_VALUE);
+        assertThat(index.put(subtask(7, 5, "review"))).isFalse();
+        assertThat(index.search("review", NO_FILTER, 0, 10).getTotal()).isZero();
+    }
+
+    @Test
+    void todoAndSubtaskWithSameIdAreIndependent() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(todo(1, 4, "alpha"));
+        assertThat(index.put(subtask(1, 0, "beta"))).isTrue();
+        index.remove(InvertedIndex.DocumentType.SUBTASK, 1, 0);
+        assertThat(index.search("alpha", NO_FILTER, 0, 10).getTotal()).isEqualTo(1);
+    }
+
+    private static InvertedIndex.Document todo(long id, long version, String value) {
+        return new InvertedIndex.Document(InvertedIndex.DocumentType.TODO, id, version, null, value, false, null);
+    }
+
+    private static InvertedIndex.Document subtask(long id, long version, String value) {
+        return new InvertedIndex.Document(InvertedIndex.DocumentType.SUBTASK, id, version, 1L, value, false, Priority.MEDIUM);
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Todo;
+import com.example.todolist.repository.TodoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 变更日志加锁顺序测试：删除（延迟到flush的DELETE）与切换状态并发执行同一个待办事项，验证不会死锁或锁超时
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class ChangeLogLockOrderTest {
+
+    private static final int PAIRS = 20;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void concurrentDeleteAndToggleDoNotDeadlock() throws Exception {
+        for (int i = 0; i < PAIRS; i++) {
+            Todo todo = new Todo();
+            todo.setValue("加锁顺序" + i);
+            Long todoId = todoService.addTodo(todo).getId();
+            long versionBefore = syncService.getTreeVersion();
+
+            CountDownLatch start = new CountDownLatch(1);
+            Future<Void> delete = executor.submit(awaiting(start, () -> todoService.deleteTodo(todoId)));
+            Future<Void> toggle = executor.submit(awaiting(start, () -> todoService.updateTodoStatus(todoId)));
+            start.countDown();
+
+            long started = System.nanoTime();
+            // 删除先提交时切换找不到待办事项；切换先提交时删除的版本号校验失败：两者都属于正常结果
+            awaitAllowing(delete, ObjectOptimisticLockingFailureException.class);
+            awaitAllowing(toggle, EntityNotFoundException.class);
+            // 没有等待行锁超时（测试配置的LOCK_TIMEOUT为10秒）
+            assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)).isLessThan(5000);
+            assertThat(syncService.getTreeVersion()).isGreaterThan(versionBefore);
+
+            // 删除失败（切换先提交）时清理，测试库在测试类之间共用
+            if (todoRepository.existsById(todoId)) {
+                todoService.deleteTodo(todoId);
+            }
+        }
+    }
+
+    private static void awaitAllowing(Future<Void> future, Class<? extends Exception> expected) throws Exception {
+        try {
+            future.get(30, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(expected);
+        }
+    }
+
+    private static Callable<Void> awaiting(CountDownLatch start, Runnable task) {
+        return () -> {
+            start.await();
+            task.run();
+            return null;
+        };
+    }
+}
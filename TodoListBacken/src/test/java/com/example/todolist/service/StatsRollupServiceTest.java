@@ -0,0 +1,104 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 统计计数测试：增量维护的计数与从数据库重建的结果一致，父任务的计数归零或父任务删除后不再保留
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class StatsRollupServiceTest {
+
+    @Autowired
+    private StatsRollupService statsRollupService;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Test
+    void incrementalCountsMatchRebuild() {
+        StatsRollupService.DashboardStats before = statsRollupService.getDashboardStats();
+
+        Long kept = addTodo("计数保留");
+        Long removed = addTodo("计数删除");
+        todoService.updateTodoStatus(kept);
+        Long urgent = addSubtask(kept, Priority.URGENT);
+        Long low = addSubtask(kept, Priority.LOW);
+        subtaskService.toggleSubtaskStatus(urgent);
+        subtaskService.updateSubtaskPriority(low, Priority.HIGH);
+        addSubtask(removed, Priority.MEDIUM);
+        todoService.deleteTodo(removed);
+
+        StatsRollupService.DashboardStats incremental = statsRollupService.getDashboardStats();
+        assertThat(incremental.getTodoCount()).isEqualTo(before.getTodoCount() + 1);
+        assertThat(incremental.getCompletedTodoCount()).isEqualTo(before.getCompletedTodoCount() + 1);
+        assertThat(incremental.getSubtaskCount()).isEqualTo(before.getSubtaskCount() + 2);
+        assertThat(incremental.getCompletedSubtaskCount()).isEqualTo(before.getCompletedSubtaskCount() + 1);
+        assertThat(incremental.getSubtaskPriorityStats().get(Priority.HIGH))
+                .isEqualTo(before.getSubtaskPriorityStats().get(Priority.HIGH) + 1);
+        assertThat(incremental.getSubtaskPriorityStats().get(Priority.LOW))
+                .isEqualTo(before.getSubtaskPriorityStats().get(Priority.LOW));
+        StatsRollupService.SubtaskCount keptCount = statsRollupService.getSubtaskCount(kept);
+        assertThat(keptCount.getTotalCount()).isEqualTo(2);
+        assertThat(keptCount.getCompletedCount()).isEqualTo(1);
+
+        statsRollupService.rebuild();
+        assertThat(statsRollupService.getDashboardStats()).usingRecursiveComparison().isEqualTo(incremental);
+        assertThat(statsRollupService.getSubtaskCount(kept)).usingRecursiveComparison().isEqualTo(keptCount);
+        assertThat(parentCounters()).doesNotContainKey(removed);
+
+        todoService.deleteTodo(kept);
+    }
+
+    @Test
+    void parentCountersAreDroppedOnceEmpty() {
+        Long parent = addTodo("计数归零");
+        Long only = addSubtask(parent, Priority.LOW);
+        assertThat(parentCounters()).containsKey(parent);
+
+        subtaskService.deleteSubtask(only);
+        assertThat(parentCounters()).doesNotContainKey(parent);
+        assertThat(statsRollupService.getSubtaskCount(parent).getTotalCount()).isZero();
+
+        addSubtask(parent, Priority.HIGH);
+        addSubtask(parent, Priority.HIGH);
+        subtaskService.deleteSubtasksByParentId(parent);
+        assertThat(parentCounters()).doesNotContainKey(parent);
+
+        addSubtask(parent, Priority.MEDIUM);
+        todoService.deleteTodo(parent);
+        assertThat(parentCounters()).doesNotContainKey(parent);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, ?> parentCounters() {
+        return (Map<Long, ?>) ReflectionTestUtils.getField(statsRollupService, "subtaskCountersByParent");
+    }
+
+    private Long addTodo(String value) {
+        Todo todo = new Todo();
+        todo.setValue(value);
+        return todoService.addTodo(todo).getId();
+    }
+
+    private Long addSubtask(Long parentId, Priority priority) {
+        Subtask subtask = new Subtask();
+        subtask.setValue(priority.name());
+        subtask.setPriority(priority);
+        return subtaskService.addSubtask(parentId, subtask).getId();
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.repository.SubtaskRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 子任务并发写入测试：多个线程同时切换同一个子任务，验证没有丢失更新
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class SubtaskServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int TOGGLES_PER_THREAD = 25;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    private ExecutorService executor;
+
+    private Subtask subtask;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+
+        Todo todo = new Todo();
+        todo.setValue("并发切换");
+        Long todoId = todoService.addTodo(todo).getId();
+
+        Subtask newSubtask = new Subtask();
+        newSubtask.setValue("子任务");
+        newSubtask.setPriority(Priority.MEDIUM);
+        subtask = subtaskService.addSubtask(todoId, newSubtask);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void concurrentTogglesAreNotLost() throws Exception {
+        Long subtaskId = subtask.getId();
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < TOGGLES_PER_THREAD; i++) {
+                subtaskService.toggleSubtaskStatus(subtaskId);
+            }
+        });
+
+        int toggles = THREADS * TOGGLES_PER_THREAD;
+        Subtask result = subtaskRepository.findById(subtaskId).orElseThrow(IllegalStateException::new);
+        assertThat(result.isCompleted()).isEqualTo(toggles % 2 == 1);
+        assertThat(result.getVersion()).isEqualTo(subtask.getVersion() + toggles);
+    }
+
+    @Test
+    void concurrentTogglesAndPriorityChangesAreNotLost() throws Exception {
+        Long subtaskId = subtask.getId();
+        Priority[] priorities = Priority.values();
+        runConcurrently(THREADS, thread -> {
+            for (int i = 0; i < TOGGLES_PER_THREAD; i++) {
+                if (thread % 2 == 0) {
+                    subtaskService.toggleSubtaskStatus(subtaskId);
+                } else {
+                    subtaskService.updateSubtaskPriority(subtaskId, priorities[(thread + i) % priorities.length]);
+                }
+            }
+        });
+
+        int toggles = (THREADS + 1) / 2 * TOGGLES_PER_THREAD;
+        Subtask result = subtaskRepository.findById(subtaskId).orElseThrow(IllegalStateException::new);
+        assertThat(result.isCompleted()).isEqualTo(toggles % 2 == 1);
+        // 优先级与当前值相同时不产生更新，版本号至少增加切换的次数
+        assertThat(result.getVersion()).isGreaterThanOrEqualTo(subtask.getVersion() + toggles);
+    }
+
+    /**
+     * 所有线程就绪后同时开始执行，等待全部完成并重新抛出其中的异常
+     */
+    private void runConcurrently(int threads, ThreadTask task) throws Exception {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Callable<Void> worker = () -> {
+                ready.countDown();
+                start.await();
+                task.run(thread);
+                return null;
+            };
+            futures.add(executor.submit(worker));
+        }
+        ready.await();
+        start.countDown();
+        for (Future<Void> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
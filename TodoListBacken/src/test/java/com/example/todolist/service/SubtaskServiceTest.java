@@ -0,0 +1,102 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.metrics.QueryCounter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 子任务服务测试：批量统计
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class SubtaskServiceTest {
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private TodoService todoService;
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        if (!created.isEmpty()) {
+            todoService.deleteTodos(created);
+        }
+    }
+
+    @Test
+    void statsForManyParentsComeFromOneGroupedQuery() {
+        Long first = addTodo("统计1");
+        Long second = addTodo("统计2");
+        Long empty = addTodo("统计3");
+        addSubtask(first, Priority.URGENT, true);
+        addSubtask(first, Priority.HIGH, false);
+        addSubtask(first, Priority.HIGH, true);
+        addSubtask(second, Priority.LOW, false);
+
+        QueryCounter.begin("stats", Integer.MAX_VALUE, false);
+        Map<Long, SubtaskService.SubtaskStats> stats = subtaskService.getSubtaskStats(Arrays.asList(second, empty, first, second));
+        assertThat(QueryCounter.end()).isEqualTo(1);
+
+        // 顺序与入参一致，重复的ID只出现一次
+        assertThat(stats.keySet()).containsExactly(second, empty, first);
+        SubtaskService.SubtaskStats firstStats = stats.get(first);
+        assertThat(firstStats.getTotalCount()).isEqualTo(3);
+        assertThat(firstStats.getCompletedCount()).isEqualTo(2);
+        assertThat(firstStats.getUrgentCount()).isEqualTo(1);
+        assertThat(firstStats.getHighCount()).isEqualTo(2);
+        assertThat(firstStats.getMediumCount()).isZero();
+        assertThat(stats.get(second).getLowCount()).isEqualTo(1);
+        assertThat(stats.get(second).getCompletedCount()).isZero();
+        assertThat(stats.get(empty).getTotalCount()).isZero();
+        assertThat(stats.get(empty).getPriorityStats()).containsOnlyKeys(Priority.values()).doesNotContainValue(1L);
+
+        SubtaskService.SubtaskStats single = subtaskService.getSubtaskStats(first);
+        assertThat(single.getTotalCount()).isEqualTo(firstStats.getTotalCount());
+        assertThat(single.getPriorityStats()).isEqualTo(firstStats.getPriorityStats());
+    }
+
+    @Test
+    void statsBatchIsBounded() {
+        List<Long> tooMany = new ArrayList<>();
+        for (long id = 1; id <= SubtaskService.MAX_STATS_BATCH_SIZE + 1; id++) {
+            tooMany.add(id);
+        }
+        assertThatThrownBy(() -> subtaskService.getSubtaskStats(tooMany)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> subtaskService.getSubtaskStats(new ArrayList<>())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Long addTodo(String value) {
+        Todo todo = new Todo();
+        todo.setValue(value);
+        Long id = todoService.addTodo(todo).getId();
+        created.add(id);
+        return id;
+    }
+
+    private void addSubtask(Long parentId, Priority priority, boolean completed) {
+        Subtask subtask = new Subtask();
+        subtask.setValue(priority.name());
+        subtask.setPriority(priority);
+        Long id = subtaskService.addSubtask(parentId, subtask).getId();
+        if (completed) {
+            subtaskService.toggleSubtaskStatus(id);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.persistence.EntityNotFoundException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doCallRealMethod;
+
+/**
+ * 子任务写缓冲并发测试：缓冲的切换与整体更新、删除并发执行，以及写入失败后放回缓冲区重试
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "todo.write-behind.enabled=true",
+        "todo.write-behind.flush-interval-ms=20"
+})
+@ActiveProfiles("test")
+class SubtaskWriteBehindConcurrencyTest {
+
+    private static final int THREADS = 4;
+    private static final int TOGGLES_PER_THREAD = 50;
+    private static final int UPDATES = 30;
+
+    @Autowired
+    private SubtaskWriteBehindService writeBehindService;
+
+    @SpyBean
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    private ExecutorService executor;
+
+    private Long todoId;
+
+    private Subtask subtask;
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS + 1);
+
+        Todo todo = new Todo();
+        todo.setValue("写缓冲并发");
+        todoId = todoService.addTodo(todo).getId();
+
+        Subtask newSubtask = new Subtask();
+        newSubtask.setValue("子任务");
+        newSubtask.setPriority(Priority.MEDIUM);
+        subtask = subtaskService.addSubtask(todoId, newSubtask);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        awaitFlushed();
+        if (todoRepository.existsById(todoId)) {
+            todoService.deleteTodo(todoId);
+        }
+    }
+
+    @Test
+    void togglesInterleavedWithUpdatesAreNotLost() throws Exception {
+        Long subtaskId = subtask.getId();
+        AtomicInteger updated = new AtomicInteger();
+        runConcurrently(THREADS + 1, thread -> {
+            if (thread < THREADS) {
+                for (int i = 0; i < TOGGLES_PER_THREAD; i++) {
+                    writeBehindService.toggleSubtaskStatus(subtaskId);
+                }
+                return;
+            }
+            for (int i = 0; i < UPDATES; i++) {
+                // 以缓冲返回的预期状态为基础整体更新：完成状态不变，期间有新的切换时版本号不一致而被拒绝
+                Subtask projected = writeBehindService.updateSubtaskPriority(subtaskId, Priority.HIGH);
+                Subtask update = new Subtask();
+                update.setValue("更新" + i);
+                update.setCompleted(projected.isCompleted());
+                update.setPriority(Priority.HIGH);
+                update.setVersion(projected.getVersion());
+                try {
+                    writeBehindService.updateSubtask(subtaskId, update);
+                    updated.incrementAndGet();
+                } catch (OptimisticLockingFailureException e) {
+                    // 与切换冲突，属于正常结果
+                }
+            }
+        });
+        awaitFlushed();
+
+        int toggles = THREADS * TOGGLES_PER_THREAD;
+        Subtask result = subtaskRepository.findById(subtaskId).orElseThrow(IllegalStateException::new);
+        assertThat(result.isCompleted()).isEqualTo(toggles % 2 == 1);
+        assertThat(result.getPriority()).isEqualTo(Priority.HIGH);
+        assertThat(result.getVersion()).isGreaterThanOrEqualTo(subtask.getVersion() + updated.get());
+        assertThat(writeBehindService.getStats().getFlushFailures()).isZero();
+    }
+
+    @Test
+    void togglesRacingDeleteLeaveNothingBuffered() throws Exception {
+        Long subtaskId = subtask.getId();
+        AtomicInteger acknowledged = new AtomicInteger();
+        runConcurrently(THREADS + 1, thread -> {
+            if (thread == THREADS) {
+                writeBehindService.deleteSubtask(subtaskId);
+                return;
+            }
+            for (int i = 0; i < TOGGLES_PER_THREAD; i++) {
+                try {
+                    writeBehindService.toggleSubtaskStatus(subtaskId);
+                    acknowledged.incrementAndGet();
+                } catch (EntityNotFoundException e) {
+                    // 删除已提交
+                }
+            }
+        });
+        awaitFlushed();
+
+        assertThat(subtaskRepository.existsById(subtaskId)).isFalse();
+        assertThat(acknowledged.get()).isLessThanOrEqualTo(THREADS * TOGGLES_PER_THREAD);
+        assertThat(writeBehindService.getStats().getPendingCount()).isZero();
+        assertThat(writeBehindService.getStats().getFlushFailures()).isZero();
+    }
+
+    @Test
+    void failedFlushIsRequeuedAndUpdateWaitsForIt() {
+        Long subtaskId = subtask.getId();
+        long failuresBefore = writeBehindService.getStats().getFlushFailures();
+        // 定时写入也可能在此期间执行，失败一直持续到显式恢复为止，与谁先触发写入无关
+        AtomicBoolean failing = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            if (failing.get()) {
+                throw new QueryTimeoutException("模拟写入失败");
+            }
+            return invocation.callRealMethod();
+        }).when(subtaskService).applyBufferedChanges(any());
+
+        Subtask projected = writeBehindService.toggleSubtaskStatus(subtaskId);
+        assertThat(projected.isCompleted()).isTrue();
+
+        Subtask update = new Subtask();
+        update.setValue("写入失败后更新");
+        update.setCompleted(true);
+        update.setPriority(Priority.LOW);
+        update.setVersion(projected.getVersion());
+        // 第一次写入失败并放回缓冲区：更新不执行，也不越过尚未写入的切换
+        assertThatThrownBy(() -> writeBehindService.updateSubtask(subtaskId, update))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(writeBehindService.getStats().getFlushFailures()).isGreaterThan(failuresBefore);
+        Subtask unchanged = subtaskRepository.findById(subtaskId).orElseThrow(IllegalStateException::new);
+        assertThat(unchanged.getValue()).isEqualTo("子任务");
+
+        failing.set(false);
+        // 重试时先写入放回的切换，版本号与预期状态一致，更新成功
+        Subtask result = writeBehindService.updateSubtask(subtaskId, update);
+        assertThat(result.isCompleted()).isTrue();
+        assertThat(result.getValue()).isEqualTo("写入失败后更新");
+        assertThat(result.getVersion()).isEqualTo(projected.getVersion() + 1);
+        assertThat(writeBehindService.getStats().getPendingCount()).isZero();
+        doCallRealMethod().when(subtaskService).applyBufferedChanges(any());
+    }
+
+    /**
+     * 等待定时写入清空缓冲区
+     */
+    private void awaitFlushed() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (writeBehindService.getStats().getPendingCount() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(writeBehindService.getStats().getPendingCount()).isZero();
+    }
+
+    /**
+     * 所有线程就绪后同时开始执行，等待全部完成并重新抛出其中的异常
+     */
+    private void runConcurrently(int threads, ThreadTask task) throws Exception {
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Callable<Void> worker = () -> {
+                ready.countDown();
+                start.await();
+                task.run(thread);
+                return null;
+            };
+            futures.add(executor.submit(worker));
+        }
+        ready.await();
+        start.countDown();
+        for (Future<Void> future : futures) {
+            try {
+                future.get(60, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                throw new AssertionError(e.getCause());
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.metrics.QueryCounter;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 待办事项服务测试：游标分页与过滤、批量新增、级联删除、待办事项树
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class TodoServiceTest {
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    /**
+     * 本测试写入的待办事项都以此开头，下划线用于验证前缀中的通配符被转义
+     */
+    private final String prefix = "服务_" + System.nanoTime() + "-";
+
+    private final List<Long> created = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        for (int from = 0; from < created.size(); from += TodoService.MAX_BATCH_SIZE) {
+            todoService.deleteTodos(created.subList(from, Math.min(from + TodoService.MAX_BATCH_SIZE, created.size())));
+        }
+    }
+
+    @Test
+    void keysetPagesFollowCursorAndFilters() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(addTodo(prefix + i));
+        }
+        todoService.updateTodoStatus(ids.get(1));
+        todoService.updateTodoStatus(ids.get(3));
+        // 下划线若按通配符处理，会匹配到这一条
+        addTodo(prefix.replace("_", "X"));
+
+        List<Long> seen = new ArrayList<>();
+        Long cursor = null;
+        int pages = 0;
+        do {
+            TodoService.TodoPage page = todoService.listTodos(cursor, 2, null, prefix).getValue();
+            assertThat(page.getItems()).hasSizeLessThanOrEqualTo(2);
+            page.getItems().forEach(todo -> seen.add(todo.getId()));
+            cursor = page.getNextCursor();
+            assertThat(cursor == null).isEqualTo(!page.isHasMore());
+            pages++;
+        } while (cursor != null);
+        assertThat(seen).isEqualTo(ids);
+        assertThat(pages).isEqualTo(3);
+
+        TodoService.TodoPage completed = todoService.listTodos(null, 10, true, prefix).getValue();
+        assertThat(completed.getItems()).extracting(Todo::getId).containsExactly(ids.get(1), ids.get(3));
+        assertThat(completed.isHasMore()).isFalse();
+
+        TodoService.TodoPage active = todoService.listTodos(ids.get(0), 1, false, prefix).getValue();
+        assertThat(active.getItems()).extracting(Todo::getId).containsExactly(ids.get(2));
+        assertThat(active.getNextCursor()).isEqualTo(ids.get(2));
+    }
+
+    @Test
+    void invalidCursorOrLimitIsRejectedAndLimitIsCapped() {
+        assertThatThrownBy(() -> todoService.listTodos(-1L, null, null, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> todoService.listTodos(null, 0, null, null)).isInstanceOf(IllegalArgumentException.class);
+
+        for (int i = 0; i <= TodoService.MAX_PAGE_SIZE; i++) {
+            addTodo(prefix + i);
+        }
+        TodoService.TodoPage page = todoService.listTodos(null, TodoService.MAX_PAGE_SIZE * 2, null, prefix).getValue();
+        assertThat(page.getItems()).hasSize(TodoService.MAX_PAGE_SIZE);
+        assertThat(page.isHasMore()).isTrue();
+    }
+
+    @Test
+    void addTodosAcceptsUpToTheBatchLimitInOrder() {
+        List<Todo> todos = newTodos(TodoService.MAX_BATCH_SIZE);
+        List<Long> ids = todoService.addTodos(todos);
+        created.addAll(ids);
+
+        assertThat(ids).hasSize(TodoService.MAX_BATCH_SIZE).doesNotContainNull().doesNotHaveDuplicates();
+        List<Todo> saved = todoService.listTodos(ids.get(0) - 1, 2, null, prefix).getValue().getItems();
+        assertThat(saved).extracting(Todo::getValue).containsExactly(prefix + 0, prefix + 1);
+        assertThat(saved).extracting(Todo::getId).containsExactly(ids.get(0), ids.get(1));
+    }
+
+    @Test
+    void addTodosRejectsOversizedOrInvalidBatchesWithoutWriting() {
+        assertThatThrownBy(() -> todoService.addTodos(newTodos(TodoService.MAX_BATCH_SIZE + 1)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining(String.valueOf(TodoService.MAX_BATCH_SIZE));
+        List<Todo> withBlank = newTodos(3);
+        withBlank.get(2).setValue(" ");
+        assertThatThrownBy(() -> todoService.addTodos(withBlank)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> todoService.addTodos(new ArrayList<>())).isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(todoService.listTodos(null, 1, null, prefix).getValue().getItems()).isEmpty();
+    }
+
+    @Test
+    void deletingTodosRemovesSubtasksWithSetBasedStatements() {
+        Long few = addTodo(prefix + "少");
+        Long many = addTodo(prefix + "多");
+        addSubtasks(few, 1);
+        addSubtasks(many, 30);
+
+        // 子任务用一条DELETE删除：多出的语句只有每个子任务一条的变更日志墓碑（change_log使用IDENTITY主键，不能成批）
+        QueryCounter.begin("delete", Integer.MAX_VALUE, false);
+        todoService.deleteTodo(few);
+        int fewStatements = QueryCounter.end();
+        QueryCounter.begin("delete", Integer.MAX_VALUE, false);
+        todoService.deleteTodo(many);
+        assertThat(QueryCounter.end()).isEqualTo(fewStatements + 29);
+
+        assertThat(todoRepository.existsById(many)).isFalse();
+        assertThat(subtaskRepository.findByParentTaskIdIn(Arrays.asList(few, many))).isEmpty();
+
+        Long first = addTodo(prefix + "批量1");
+        Long second = addTodo(prefix + "批量2");
+        addSubtasks(first, 3);
+        assertThat(todoService.deleteTodos(Arrays.asList(first, second, first, Long.MAX_VALUE))).isEqualTo(2);
+        assertThat(todoRepository.existsById(second)).isFalse();
+        assertThat(subtaskRepository.findByParentTaskIdIn(Collections.singletonList(first))).isEmpty();
+    }
+
+    @Test
+    void purgeRemovesOnlyCompletedTodosAcrossChunks() {
+        List<Todo> todos = newTodos(TodoService.DELETE_CHUNK_SIZE + 1);
+        todos.forEach(todo -> todo.setCompleted(true));
+        List<Long> completed = new ArrayList<>(todoService.addTodos(todos.subList(0, TodoService.MAX_BATCH_SIZE)));
+        completed.addAll(todoService.addTodos(todos.subList(TodoService.MAX_BATCH_SIZE, todos.size())));
+        created.addAll(completed);
+        addSubtasks(completed.get(completed.size() - 1), 2);
+        Long active = addTodo(prefix + "未完成");
+        addSubtasks(active, 1);
+
+        assertThat(todoService.purgeCompletedTodos()).isGreaterThanOrEqualTo(completed.size());
+
+        assertThat(todoService.listTodos(null, TodoService.MAX_PAGE_SIZE, null, prefix).getValue().getItems())
+                .extracting(Todo::getId).containsExactly(active);
+        assertThat(subtaskRepository.findByParentTaskIdIn(completed.subList(completed.size() - 1, completed.size()))).isEmpty();
+        assertThat(subtaskRepository.findByParentTaskIdIn(Collections.singletonList(active))).hasSize(1);
+    }
+
+    @Test
+    void treePageUsesTwoQueriesRegardlessOfPageSize() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            Long id = addTodo(prefix + i);
+            ids.add(id);
+            Subtask low = new Subtask();
+            low.setValue("低" + i);
+            low.setPriority(Priority.LOW);
+            subtaskService.addSubtask(id, low);
+            Subtask urgent = new Subtask();
+            urgent.setValue("紧急" + i);
+            urgent.setPriority(Priority.URGENT);
+            subtaskService.toggleSubtaskStatus(subtaskService.addSubtask(id, urgent).getId());
+        }
+
+        for (int limit : new int[]{2, 12}) {
+            for (boolean includeSubtasks : new boolean[]{true, false}) {
+                QueryCounter.begin("tree", Integer.MAX_VALUE, false);
+                TodoService.TodoTreePage page = todoService.getTodoTree(null, limit, null, prefix, includeSubtasks);
+                assertThat(QueryCounter.end()).as("limit=%d, includeSubtasks=%s", limit, includeSubtasks).isEqualTo(2);
+                assertThat(page.getItems()).hasSize(limit);
+                assertThat(page.isHasMore()).isEqualTo(limit < ids.size());
+            }
+        }
+
+        TodoService.TodoTreePage page = todoService.getTodoTree(ids.get(9), 5, null, prefix, true);
+        assertThat(page.getItems()).extracting(node -> node.getTodo().getId()).containsExactly(ids.get(10), ids.get(11));
+        TodoService.TodoNode node = page.getItems().get(0);
+        assertThat(node.getSubtasks()).extracting(Subtask::getPriority).containsExactly(Priority.URGENT, Priority.LOW);
+        assertThat(node.getStats().getTotalCount()).isEqualTo(2);
+        assertThat(node.getStats().getCompletedCount()).isEqualTo(1);
+        assertThat(todoService.getTodoTree(ids.get(9), 5, null, prefix, false).getItems().get(0).getStats())
+                .usingRecursiveComparison().isEqualTo(node.getStats());
+    }
+
+    private void addSubtasks(Long parentId, int count) {
+        for (int i = 0; i < count; i++) {
+            Subtask subtask = new Subtask();
+            subtask.setValue("子任务" + i);
+            subtask.setPriority(Priority.MEDIUM);
+            subtaskService.addSubtask(parentId, subtask);
+        }
+    }
+
+    private List<Todo> newTodos(int count) {
+        List<Todo> todos = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Todo todo = new Todo();
+            todo.setValue(prefix + i);
+            todos.add(todo);
+        }
+        return todos;
+    }
+
+    private Long addTodo(String value) {
+        Todo todo = new Todo();
+        todo.setValue(value);
+        Long id = todoService.addTodo(todo).getId();
+        created.add(id);
+        return id;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 导出/导入测试：导出的数据再导入后内容一致，导入出错时错误信息中的已导入条数与实际提交的一致
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class TransferServiceTest {
+
+    @Autowired
+    private TransferService transferService;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private TodoRepository todoRepository;
+
+    @Autowired
+    private SubtaskRepository subtaskRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final String prefix = "导出导入" + System.nanoTime() + "-";
+
+    @AfterEach
+    void tearDown() {
+        findTodos().forEach(todo -> todoService.deleteTodo(todo.getId()));
+    }
+
+    @Test
+    void exportedRecordsImportBackUnchanged() throws Exception {
+        Todo first = new Todo();
+        first.setValue(prefix + "有子任务");
+        Long firstId = todoService.addTodo(first).getId();
+        todoService.updateTodoStatus(firstId);
+        subtaskService.addSubtask(firstId, subtask("高", Priority.HIGH));
+        Long lowId = subtaskService.addSubtask(firstId, subtask("低", Priority.LOW)).getId();
+        subtaskService.toggleSubtaskStatus(lowId);
+        Todo second = new Todo();
+        second.setValue(prefix + "无子任务");
+        Long secondId = todoService.addTodo(second).getId();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertThat(transferService.exportTo(output)).isGreaterThanOrEqualTo(2);
+        // 测试库由各测试共用，只取本测试写入的行
+        StringBuilder exported = new StringBuilder();
+        for (String line : output.toString(StandardCharsets.UTF_8.name()).split("\n")) {
+            if (objectMapper.readTree(line).get("value").asText().startsWith(prefix)) {
+                exported.append(line).append('\n');
+            }
+        }
+        todoService.deleteTodo(firstId);
+        todoService.deleteTodo(secondId);
+
+        TransferService.ImportProgress progress = transferService.importFrom(input(exported.toString()));
+        assertThat(progress.getTodoCount()).isEqualTo(2);
+        assertThat(progress.getSubtaskCount()).isEqualTo(2);
+        assertThat(progress.isFinished()).isTrue();
+
+        List<Todo> imported = findTodos();
+        assertThat(imported).extracting(Todo::getValue).containsExactly(prefix + "有子任务", prefix + "无子任务");
+        assertThat(imported).extracting(Todo::isCompleted).containsExactly(true, false);
+        assertThat(imported).extracting(Todo::getId).doesNotContain(firstId, secondId);
+        List<Subtask> subtasks = subtaskRepository.findByParentTaskIdIn(Collections.singletonList(imported.get(0).getId()));
+        assertThat(subtasks).extracting(Subtask::getValue).containsExactlyInAnyOrder("高", "低");
+        for (Subtask subtask : subtasks) {
+            assertThat(subtask.getPriority()).isEqualTo("高".equals(subtask.getValue()) ? Priority.HIGH : Priority.LOW);
+            assertThat(subtask.isCompleted()).isEqualTo("低".equals(subtask.getValue()));
+        }
+        assertThat(subtaskRepository.findByParentTaskIdIn(Collections.singletonList(imported.get(1).getId()))).isEmpty();
+    }
+
+    @Test
+    void malformedRecordReportsCommittedCount() throws Exception {
+        assertFailsAfterFirstChunk("{\"value\": ", "第3条记录格式错误（已导入1条待办事项）");
+    }
+
+    @Test
+    void invalidRecordReportsCommittedCount() throws Exception {
+        assertFailsAfterFirstChunk("{\"value\": \" \"}", "第3条记录待办事项内容为空或超过255个字符（已导入1条待办事项）");
+    }
+
+    @Test
+    void oversizedRecordIsRejected() throws Exception {
+        assertFailsAfterFirstChunk(record("过大", TransferService.MAX_SUBTASKS_PER_RECORD + 1),
+                "第3条记录格式错误（已导入1条待办事项）: 子任务超过" + TransferService.MAX_SUBTASKS_PER_RECORD + "个");
+    }
+
+    /**
+     * 第1条记录正好占满一块，第2条记录触发其提交，第3条记录出错：
+     * 第1条已写入且错误信息如实报告，第2条未提交
+     */
+    private void assertFailsAfterFirstChunk(String badLine, String expectedMessage) throws Exception {
+        String ndjson = record("满块", TransferService.MAX_SUBTASKS_PER_RECORD) + "\n"
+                + record("未提交", 1) + "\n"
+                + badLine + "\n";
+
+        assertThatThrownBy(() -> transferService.importFrom(input(ndjson)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith(expectedMessage);
+
+        List<Todo> imported = findTodos();
+        assertThat(imported).extracting(Todo::getValue).containsExactly(prefix + "满块");
+        assertThat(subtaskRepository.findByParentTaskIdIn(Collections.singletonList(imported.get(0).getId())))
+                .hasSize(TransferService.MAX_SUBTASKS_PER_RECORD);
+        assertThat(transferService.getRunningImports()).isEmpty();
+    }
+
+    private String record(String value, int subtaskCount) throws Exception {
+        List<Map<String, Object>> subtasks = new ArrayList<>();
+        for (int i = 0; i < subtaskCount; i++) {
+            subtasks.add(Collections.singletonMap("value", "子任务" + i));
+        }
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("value", prefix + value);
+        record.put("subtasks", subtasks);
+        return objectMapper.writeValueAsString(record);
+    }
+
+    private static Subtask subtask(String value, Priority priority) {
+        Subtask subtask = new Subtask();
+        subtask.setValue(value);
+        subtask.setPriority(priority);
+        return subtask;
+    }
+
+    private static ByteArrayInputStream input(String ndjson) {
+        return new ByteArrayInputStream(ndjson.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<Todo> findTodos() {
+        return todoRepository.findPageAfter(0, null, prefix + "%", PageRequest.of(0, TodoService.MAX_PAGE_SIZE));
+    }
+}
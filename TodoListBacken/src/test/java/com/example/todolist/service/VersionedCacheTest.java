@@ -0,0 +1,133 @@
+package com.example.todolist.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 缓存与ETag版本号一致性测试：提交之后、缓存失效之前读到的缓存项，其版本号与数据同属提交前的状态
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@ActiveProfiles("test")
+class VersionedCacheTest {
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private SyncService syncService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private ExecutorService reader;
+
+    @BeforeEach
+    void setUp() {
+        reader = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        reader.shutdownNow();
+        reader.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void todoPageReadBeforeEvictionKeepsItsOwnVersion() throws Exception {
+        Todo todo = new Todo();
+        todo.setValue("缓存版本");
+        Long todoId = todoService.addTodo(todo).getId();
+        SyncService.Versioned<TodoService.TodoPage> cached = todoService.listTodos(todoId - 1, 1, null, null);
+        assertThat(cached.getValue().getItems().get(0).isCompleted()).isFalse();
+
+        AtomicReference<SyncService.Versioned<TodoService.TodoPage>> inWindow = new AtomicReference<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            // 先于CacheService的提交后监听器注册，在缓存失效之前执行
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    inWindow.set(readOnOtherThread(() -> todoService.listTodos(todoId - 1, 1, null, null)));
+                }
+            });
+            todoService.updateTodoStatus(todoId);
+        });
+
+        // 窗口内命中旧缓存：数据与版本号都是提交前的，客户端不会带着新版本号得到旧数据
+        assertThat(inWindow.get().getVersion()).isEqualTo(cached.getVersion());
+        assertThat(inWindow.get().getValue().getItems().get(0).isCompleted()).isFalse();
+        assertThat(syncService.getTodosVersion()).isGreaterThan(cached.getVersion());
+
+        SyncService.Versioned<TodoService.TodoPage> fresh = todoService.listTodos(todoId - 1, 1, null, null);
+        assertThat(fresh.getVersion()).isEqualTo(syncService.getTodosVersion());
+        assertThat(fresh.getValue().getItems().get(0).isCompleted()).isTrue();
+
+        todoService.deleteTodo(todoId);
+    }
+
+    @Test
+    void subtaskListReadBeforeEvictionKeepsItsOwnVersion() throws Exception {
+        Todo todo = new Todo();
+        todo.setValue("子任务缓存版本");
+        Long todoId = todoService.addTodo(todo).getId();
+        SyncService.Versioned<List<Subtask>> cached = subtaskService.getSubtasksByParentId(todoId, true);
+        assertThat(cached.getValue()).isEmpty();
+
+        AtomicReference<SyncService.Versioned<List<Subtask>>> inWindow = new AtomicReference<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    inWindow.set(readOnOtherThread(() -> subtaskService.getSubtasksByParentId(todoId, true)));
+                }
+            });
+            Subtask subtask = new Subtask();
+            subtask.setValue("新子任务");
+            subtask.setPriority(Priority.HIGH);
+            subtaskService.addSubtask(todoId, subtask);
+        });
+
+        assertThat(inWindow.get().getVersion()).isEqualTo(cached.getVersion());
+        assertThat(inWindow.get().getValue()).isEmpty();
+
+        SyncService.Versioned<List<Subtask>> fresh = subtaskService.getSubtasksByParentId(todoId, true);
+        assertThat(fresh.getVersion()).isEqualTo(syncService.getSubtasksVersion(todoId)).isGreaterThan(cached.getVersion());
+        assertThat(fresh.getValue()).hasSize(1);
+
+        todoService.deleteTodo(todoId);
+    }
+
+    /**
+     * 在另一个线程中读取，不参与当前已提交的事务
+     */
+    private <T> T readOnOtherThread(Callable<T> read) {
+        try {
+            Future<T> future = reader.submit(read);
+            return future.get(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
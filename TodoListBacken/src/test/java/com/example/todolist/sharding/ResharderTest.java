@@ -0,0 +1,177 @@
+package com.example.todolist.sharding;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.service.SubtaskService;
+import com.example.todolist.service.TodoService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 在线重新分片测试：四个进程内H2分片（application-sharding.yml），从三个分片扩容到四个，
+ * 期间并发新增待办事项和切换待办事项、子任务状态，验证数据不丢失、不重复，且每条数据都在路由指向的分片上
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE,
+        properties = "todo.sharding.reshard-chunk-size=20")
+@ActiveProfiles({"test", "sharding"})
+class ResharderTest {
+
+    private static final int SEEDED_TODOS = 300;
+    private static final int ADDERS = 2;
+    private static final int TOGGLERS = 3;
+
+    @Autowired
+    private TodoService todoService;
+
+    @Autowired
+    private SubtaskService subtaskService;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private Resharder resharder;
+
+    private ExecutorService executor;
+
+    /**
+     * 待办事项ID -> 其子任务ID
+     */
+    private final Map<Long, Long> subtaskOf = new ConcurrentHashMap<>();
+
+    private final Map<Long, AtomicInteger> todoToggles = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicInteger> subtaskToggles = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        executor = Executors.newFixedThreadPool(ADDERS + TOGGLERS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void reshardWhileAddingAndTogglingLosesNothing() throws Exception {
+        assertThat(shardRouter.getRing().getMembers()).containsExactly("shard0", "shard1", "shard2");
+        List<Long> seeded = new ArrayList<>();
+        for (int i = 0; i < SEEDED_TODOS; i++) {
+            seeded.add(addWithSubtask("初始" + i));
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < ADDERS; i++) {
+            int adder = i;
+            workers.add(executor.submit(() -> {
+                for (int n = 0; running.get(); n++) {
+                    addWithSubtask("迁移期间" + adder + "-" + n);
+                }
+            }));
+        }
+        for (int i = 0; i < TOGGLERS; i++) {
+            workers.add(executor.submit(() -> {
+                while (running.get()) {
+                    Long todoId = seeded.get(ThreadLocalRandom.current().nextInt(seeded.size()));
+                    if (ThreadLocalRandom.current().nextBoolean()) {
+                        todoService.updateTodoStatus(todoId);
+                        todoToggles.computeIfAbsent(todoId, id -> new AtomicInteger()).incrementAndGet();
+                    } else {
+                        Long subtaskId = subtaskOf.get(todoId);
+                        subtaskService.toggleSubtaskStatus(subtaskId);
+                        subtaskToggles.computeIfAbsent(subtaskId, id -> new AtomicInteger()).incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        Resharder.ReshardStatus status = resharder.start(Arrays.asList("shard0", "shard1", "shard2", "shard3"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (status.getState() == Resharder.ReshardStatus.State.RUNNING && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        // 迁移完成后继续写入一会儿，覆盖切换哈希环之后的路由
+        Thread.sleep(200);
+        running.set(false);
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+
+        assertThat(status.getState()).isEqualTo(Resharder.ReshardStatus.State.COMPLETED);
+        assertThat(status.getMovedTodos()).isPositive();
+        assertThat(shardRouter.getRing().getMembers()).containsExactly("shard0", "shard1", "shard2", "shard3");
+        assertThat(subtaskOf.size()).isGreaterThan(SEEDED_TODOS);
+
+        Map<Long, String> todoShards = new HashMap<>();
+        Map<Long, Boolean> todoCompleted = new HashMap<>();
+        Map<Long, Long> subtaskParents = new HashMap<>();
+        Map<Long, Boolean> subtaskCompleted = new HashMap<>();
+        Set<String> usedShards = new HashSet<>();
+        for (String shard : shardRouter.getShardNames()) {
+            JdbcTemplate jdbc = new JdbcTemplate(shardRouter.getDataSource(shard));
+            for (Map<String, Object> row : jdbc.queryForList("SELECT id, is_completed FROM todo_list")) {
+                Long id = ((Number) row.get("id")).longValue();
+                // 每个待办事项只在一个分片上，且就是路由指向的分片
+                assertThat(todoShards.put(id, shard)).as("重复的待办事项%d", id).isNull();
+                assertThat(shardRouter.shardOfTodo(id)).as("待办事项%d的路由", id).isEqualTo(shard);
+                todoCompleted.put(id, (Boolean) row.get("is_completed"));
+                usedShards.add(shard);
+            }
+            for (Map<String, Object> row : jdbc.queryForList("SELECT id, parent_task_id, is_completed FROM subtask")) {
+                Long id = ((Number) row.get("id")).longValue();
+                Long parentId = ((Number) row.get("parent_task_id")).longValue();
+                assertThat(subtaskParents.put(id, parentId)).as("重复的子任务%d", id).isNull();
+                // 子任务与父任务在同一个分片
+                assertThat(shardRouter.shardOfTodo(parentId)).isEqualTo(shard);
+                subtaskCompleted.put(id, (Boolean) row.get("is_completed"));
+            }
+        }
+        assertThat(usedShards).contains("shard3");
+
+        assertThat(todoShards.keySet()).containsExactlyInAnyOrderElementsOf(subtaskOf.keySet());
+        assertThat(subtaskParents.keySet()).containsExactlyInAnyOrderElementsOf(subtaskOf.values());
+        subtaskOf.forEach((todoId, subtaskId) -> assertThat(subtaskParents.get(subtaskId)).isEqualTo(todoId));
+        // 迁移期间的切换都落在数据当时所在的分片上，没有被迁移覆盖
+        todoToggles.forEach((id, toggles) ->
+                assertThat(todoCompleted.get(id)).as("待办事项%d的完成状态", id).isEqualTo(toggles.get() % 2 == 1));
+        subtaskToggles.forEach((id, toggles) ->
+                assertThat(subtaskCompleted.get(id)).as("子任务%d的完成状态", id).isEqualTo(toggles.get() % 2 == 1));
+    }
+
+    private Long addWithSubtask(String value) {
+        Todo todo = new Todo();
+        todo.setValue(value);
+        Long todoId = todoService.addTodo(todo).getId();
+        Subtask subtask = new Subtask();
+        subtask.setValue(value + "的子任务");
+        subtask.setPriority(Priority.LOW);
+        subtaskOf.put(todoId, subtaskService.addSubtask(todoId, subtask).getId());
+        return todoId;
+    }
+}
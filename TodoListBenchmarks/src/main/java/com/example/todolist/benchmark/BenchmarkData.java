@@ -0,0 +1,53 @@
+package com.example.todolist.benchmark;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试数据构造
+ */
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static List<Todo> todos(int count, long firstId) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Todo> todos = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Todo todo = new Todo();
+            todo.setId(firstId + i);
+            todo.setValue("待办事项 todo item #" + i);
+            todo.setCompleted(i % 3 == 0);
+            todo.setVersion((long) (i % 5));
+            todo.setCreatedAt(now);
+            todo.setUpdatedAt(now);
+            todos.add(todo);
+        }
+        return todos;
+    }
+
+    static List<Subtask> subtasks(int count, long parentTaskId) {
+        LocalDateTime now = LocalDateTime.now();
+        Priority[] priorities = Priority.values();
+        List<Subtask> subtasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Subtask subtask = new Subtask();
+            subtask.setId((long) i + 1);
+            subtask.setValue("子任务 subtask #" + i);
+            subtask.setCompleted(i % 2 == 0);
+            subtask.setParentTaskId(parentTaskId);
+            subtask.setPriority(priorities[i % priorities.length]);
+            subtask.setVersion(0L);
+            subtask.setCreatedAt(now);
+            subtask.setUpdatedAt(now);
+            subtasks.add(subtask);
+        }
+        return subtasks;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.todolist.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 请求执行模式对比：用相同的负载参数依次压测Tomcat线程池模式（改动前）和虚拟线程模式（todo.execution.virtual-threads=true，改动后），
+ * 输出两者的吞吐量、延迟分位数和错误数（虚拟线程模式下并发超限返回503，计入错误）
+ * 运行：java -cp target/benchmarks.jar com.example.todolist.benchmark.ExecutionModeComparison --rate=1000 --duration=60
+ * 参数与LoadGenerator相同，--out 默认为 execution-mode-result.json
+ *
+ * 注意：
+ * 虚拟线程需要JDK 21及以上。在JDK 17等较低版本上应用会回退到线程池模式（且不注册并发限制过滤器），
+ * 两轮实际是同一种模式，结果中virtualThreadsAvailable为false，差异只是测量噪声
+ * 默认的内存数据库没有网络往返，请求几乎不阻塞，虚拟线程的优势不明显；
+ * 要观察阻塞I/O下的差异，可用 --spring.datasource.url 等参数指向真实的MySQL，并按需调小 --server.tomcat.threads.max；
+ * 驱动内部加锁是否钉住载体线程也只有连接MySQL时才能观察到，H2的驱动不走这条路径
+ */
+public class ExecutionModeComparison {
+
+    public static void main(String[] args) throws Exception {
+        String out = LoadGenerator.option(new SimpleCommandLinePropertySource(args), "out", "execution-mode-result.json");
+        boolean virtualThreadsAvailable = virtualThreadsAvailable();
+        if (!virtualThreadsAvailable) {
+            System.out.printf("当前JDK(%s)不支持虚拟线程，两轮都将使用线程池模式，对比结果没有意义%n",
+                    System.getProperty("java.version"));
+        }
+
+        System.out.println("== 线程池模式 ==");
+        Map<String, Object> threadPool = LoadGenerator.measure(withMode(args, false));
+        System.out.println("== 虚拟线程模式 ==");
+        Map<String, Object> virtualThreads = LoadGenerator.measure(withMode(args, true));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("javaVersion", System.getProperty("java.version"));
+        result.put("virtualThreadsAvailable", virtualThreadsAvailable);
+        result.put("threadPool", threadPool);
+        result.put("virtualThreads", virtualThreads);
+        printComparison(threadPool, virtualThreads);
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(out), result);
+        System.out.println("结果已写入 " + out);
+    }
+
+    /**
+     * 设置执行模式参数；未指定数据源时每轮使用单独的内存数据库，避免上一轮写入的数据影响下一轮
+     * 同名参数出现多次时Spring会把取值用逗号拼接，因此替换而不是追加
+     */
+    private static String[] withMode(String[] args, boolean virtualThreads) {
+        List<String> modeArgs = new ArrayList<>();
+        boolean dataSourceGiven = false;
+        for (String arg : args) {
+            if (arg.startsWith("--todo.execution.virtual-threads=")) {
+                continue;
+            }
+            dataSourceGiven |= arg.startsWith("--spring.datasource.url=");
+            modeArgs.add(arg);
+        }
+        if (!dataSourceGiven) {
+            modeArgs.add("--spring.datasource.url=jdbc:h2:mem:load-" + (virtualThreads ? "virtual" : "pool")
+                    + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE");
+        }
+        modeArgs.add("--todo.execution.virtual-threads=" + virtualThreads);
+        return modeArgs.toArray(new String[0]);
+    }
+
+    private static boolean virtualThreadsAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void printComparison(Map<String, Object> threadPool, Map<String, Object> virtualThreads) {
+        Map<String, Object> before = (Map<String, Object>) threadPool.get("total");
+        Map<String, Object> after = (Map<String, Object>) virtualThreads.get("total");
+        Map<String, Object> beforeLatency = (Map<String, Object>) before.get("latency");
+        Map<String, Object> afterLatency = (Map<String, Object>) after.get("latency");
+        System.out.printf("%n%-16s %12s %12s%n", "", "线程池", "虚拟线程");
+        System.out.printf("%-16s %12.1f %12.1f%n", "req/s", before.get("throughput"), after.get("throughput"));
+        for (String percentile : Arrays.asList("p50", "p99", "p999", "max")) {
+            System.out.printf("%-16s %12.3f %12.3f%n", percentile + "(ms)", beforeLatency.get(percentile), afterLatency.get(percentile));
+        }
+        System.out.printf("%-16s %12d %12d%n", "errors", before.get("errors"), after.get("errors"));
+        System.out.printf("%-16s %12d %12d%n", "dropped", before.get("dropped"), after.get("dropped"));
+    }
+}
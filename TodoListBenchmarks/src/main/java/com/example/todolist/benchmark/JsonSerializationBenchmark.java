@@ -0,0 +1,68 @@
+package com.example.todolist.benchmark;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Todo/Subtask列表的JSON序列化与反序列化
+ * ObjectMapper与Spring MVC消息转换器使用同样的构建方式
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    private static final TypeReference<List<Subtask>> SUBTASK_LIST = new TypeReference<List<Subtask>>() {
+    };
+
+    @Param({"10", "100", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<Todo> todos;
+    private List<Subtask> subtasks;
+    private byte[] subtasksJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        todos = BenchmarkData.todos(size, 1);
+        subtasks = BenchmarkData.subtasks(size, 1);
+        subtasksJson = objectMapper.writeValueAsBytes(subtasks);
+    }
+
+    @Benchmark
+    public byte[] serializeTodos() throws Exception {
+        return objectMapper.writeValueAsBytes(todos);
+    }
+
+    @Benchmark
+    public byte[] serializeSubtasks() throws Exception {
+        return objectMapper.writeValueAsBytes(subtasks);
+    }
+
+    @Benchmark
+    public List<Subtask> deserializeSubtasks() throws Exception {
+        return objectMapper.readValue(subtasksJson, SUBTASK_LIST);
+    }
+}
@@ -0,0 +1,508 @@
+package com.example.todolist.benchmark;
+
+import com.example.todolist.TodoListApplication;
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import com.example.todolist.service.StatsRollupService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 宏基准（负载生成器）：在内存数据库（H2，MySQL兼容模式）上启动完整应用（含Web服务），
+ * 写入指定数量的待办事项和子任务后，按目标速率通过真实HTTP接口发送混合请求，输出各接口的吞吐量和延迟分位数
+ * 运行：java -cp target/benchmarks.jar com.example.todolist.benchmark.LoadGenerator --rate=500 --duration=60
+ * 参数：--rate 目标请求数/秒，--duration/--warmup 测量/预热秒数，--todos/--subtasks 数据量（子任务为每个任务的数量），
+ * --threads 客户端线程数，--mix 请求比例（如 list:30,add:10,toggle:20,subtasks:30,stats:10），--out 结果JSON文件；
+ * 其余参数（如 --spring.cache.type=none、--todo.execution.virtual-threads=true）原样传给应用
+ *
+ * 开放模型：第i个请求的计划发送时间固定为 start + i/rate，不因前面的请求变慢而推迟；
+ * 延迟从计划发送时间算起（客户端排队时间计入延迟），避免协调遗漏（coordinated omission）低估尾延迟。
+ * 同时单独记录从实际发送开始的服务时间，两者差距大说明服务已跟不上目标速率。
+ * 计划结束后最多等待5分钟，届时仍在排队或执行的请求按错误计入，延迟为当时距计划发送时间的长度，并单独报告其数量
+ * 注意：客户端与服务端在同一进程内，结果适合同一台机器上不同提交之间的对比，不代表生产环境的绝对容量
+ */
+public class LoadGenerator {
+
+    /**
+     * 可记录的最大延迟（纳秒），超过时按最大值记录
+     */
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    private final String baseUrl;
+    private final List<Long> todoIds;
+    private final Map<Endpoint, EndpointStats> stats = new EnumMap<>(Endpoint.class);
+    private final Endpoint[] weightedEndpoints;
+    private final AtomicLong addSequence = new AtomicLong();
+
+    /**
+     * 已计划、尚未记录结果的测量请求
+     */
+    private final Set<Request> pending = ConcurrentHashMap.newKeySet();
+
+    LoadGenerator(String baseUrl, List<Long> todoIds, Map<Endpoint, Integer> mix) {
+        this.baseUrl = baseUrl;
+        this.todoIds = todoIds;
+        List<Endpoint> weighted = new ArrayList<>();
+        mix.forEach((endpoint, weight) -> {
+            stats.put(endpoint, new EndpointStats());
+            for (int i = 0; i < weight; i++) {
+                weighted.add(endpoint);
+            }
+        });
+        if (weighted.isEmpty()) {
+            throw new IllegalArgumentException("请求比例不能全部为0");
+        }
+        this.weightedEndpoints = weighted.toArray(new Endpoint[0]);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, Object> result = measure(args);
+        String out = option(new SimpleCommandLinePropertySource(args), "out", "load-result.json");
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(new File(out), result);
+        System.out.println("结果已写入 " + out);
+    }
+
+    /**
+     * 启动应用、写入初始数据并按参数压测一轮，打印并返回结果（不写文件）
+     * @param args 命令行参数，含义见类注释
+     * @return 压测结果
+     */
+    static Map<String, Object> measure(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        double rate = Double.parseDouble(option(options, "rate", "200"));
+        int durationSeconds = Integer.parseInt(option(options, "duration", "60"));
+        int warmupSeconds = Integer.parseInt(option(options, "warmup", "10"));
+        int todoCount = Integer.parseInt(option(options, "todos", "1000"));
+        int subtasksPerTodo = Integer.parseInt(option(options, "subtasks", "10"));
+        int threads = Integer.parseInt(option(options, "threads", "64"));
+        Map<Endpoint, Integer> mix = parseMix(option(options, "mix", "list:30,add:10,toggle:20,subtasks:30,stats:10"));
+        if (rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0 || todoCount <= 0 || subtasksPerTodo < 0 || threads <= 0) {
+            throw new IllegalArgumentException("rate、duration、todos、threads必须大于0，warmup、subtasks不能为负数");
+        }
+
+        // HttpURLConnection默认每个地址只保留5个空闲连接，按线程数放开以复用keep-alive连接
+        System.setProperty("http.maxConnections", String.valueOf(threads));
+
+        ConfigurableApplicationContext context = startApplication(args);
+        try {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            List<Long> todoIds = seed(context, todoCount, subtasksPerTodo);
+            System.out.printf("应用已启动（端口%s），已写入%d个待办事项、%d个子任务%n",
+                    port, todoIds.size(), (long) todoIds.size() * subtasksPerTodo);
+
+            LoadGenerator generator = new LoadGenerator("http://localhost:" + port + "/api", todoIds, mix);
+            Map<String, Object> result = generator.run(rate, warmupSeconds, durationSeconds, threads);
+            generator.print(result);
+            return result;
+        } finally {
+            context.close();
+        }
+    }
+
+    static String option(SimpleCommandLinePropertySource options, String name, String defaultValue) {
+        String value = options.getProperty(name);
+        return value == null ? defaultValue : value;
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String mix) {
+        Map<Endpoint, Integer> weights = new EnumMap<>(Endpoint.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split(":");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("请求比例格式应为 名称:权重，实际: " + part);
+            }
+            Endpoint endpoint = Endpoint.valueOf(pair[0].trim().toUpperCase());
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("请求权重不能为负数: " + part);
+            }
+            if (weight > 0) {
+                weights.put(endpoint, weight);
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * 在随机端口上启动应用，使用内存数据库；用户传入的同名参数代替默认值
+     * （同名参数出现多次时Spring会把取值用逗号拼接，不能靠排在后面覆盖）
+     */
+    private static ConfigurableApplicationContext startApplication(String[] args) {
+        List<String> defaults = Arrays.asList(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:load;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.example.todolist=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+        List<String> appArgs = new ArrayList<>();
+        for (String option : defaults) {
+            String key = option.substring(0, option.indexOf('=') + 1);
+            if (Arrays.stream(args).noneMatch(arg -> arg.startsWith(key))) {
+                appArgs.add(option);
+            }
+        }
+        appArgs.addAll(Arrays.asList(args));
+        return new SpringApplicationBuilder(TodoListApplication.class).run(appArgs.toArray(new String[0]));
+    }
+
+    /**
+     * 直接通过仓库批量写入初始数据（不计入测量），写完后重建内存统计
+     */
+    private static List<Long> seed(ConfigurableApplicationContext context, int todoCount, int subtasksPerTodo) {
+        TodoRepository todoRepository = context.getBean(TodoRepository.class);
+        SubtaskRepository subtaskRepository = context.getBean(SubtaskRepository.class);
+        List<Long> todoIds = new ArrayList<>(todoCount);
+        List<Todo> todos = BenchmarkData.todos(todoCount, 0);
+        for (Todo todo : todos) {
+            todo.setId(null);
+            todo.setVersion(null);
+        }
+        for (Todo todo : todoRepository.saveAll(todos)) {
+            todoIds.add(todo.getId());
+        }
+        if (subtasksPerTodo > 0) {
+            List<Subtask> subtasks = new ArrayList<>();
+            for (Long todoId : todoIds) {
+                for (Subtask subtask : BenchmarkData.subtasks(subtasksPerTodo, todoId)) {
+                    subtask.setId(null);
+                    subtask.setVersion(null);
+                    subtasks.add(subtask);
+                }
+                if (subtasks.size() >= 5000) {
+                    subtaskRepository.saveAll(subtasks);
+                    subtasks.clear();
+                }
+            }
+            subtaskRepository.saveAll(subtasks);
+        }
+        context.getBean(StatsRollupService.class).rebuild();
+        return todoIds;
+    }
+
+    /**
+     * 按开放模型发送请求：调度线程只负责按计划时间提交，请求由客户端线程池执行
+     * 线程池满时请求在队列中等待，等待时间计入延迟
+     */
+    Map<String, Object> run(double rate, int warmupSeconds, int durationSeconds, int threads) throws InterruptedException {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "load-client-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+        long scheduled = 0;
+        long maxLagNanos = 0;
+
+        System.out.printf("目标速率%.1f请求/秒，预热%d秒，测量%d秒，客户端线程%d%n", rate, warmupSeconds, durationSeconds, threads);
+        for (long i = 0; ; i++) {
+            long intended = start + i * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < intended) {
+                LockSupport.parkNanos(intended - now);
+            }
+            maxLagNanos = Math.max(maxLagNanos, now - intended);
+            Endpoint endpoint = weightedEndpoints[ThreadLocalRandom.current().nextInt(weightedEndpoints.length)];
+            Request request = new Request(endpoint, intended, intended >= measureStart);
+            if (request.measured) {
+                scheduled++;
+                pending.add(request);
+            }
+            executor.execute(() -> call(request));
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(5, TimeUnit.MINUTES)) {
+            executor.shutdownNow();
+            recordUnfinished();
+        }
+        // 吞吐量按测量开始到最后一个请求完成的时间计算，服务跟不上时会明显低于目标速率
+        long elapsedNanos = Math.max(System.nanoTime(), end) - measureStart;
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("targetRate", rate);
+        result.put("warmupSeconds", warmupSeconds);
+        result.put("durationSeconds", durationSeconds);
+        result.put("threads", threads);
+        result.put("todoCount", todoIds.size());
+        result.put("scheduledRequests", scheduled);
+        result.put("maxSchedulerLagMillis", toMillis(maxLagNanos));
+        Histogram total = new Histogram(MAX_LATENCY_NANOS, 3);
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        long dropped = 0;
+        for (Map.Entry<Endpoint, EndpointStats> entry : stats.entrySet()) {
+            EndpointStats endpointStats = entry.getValue();
+            Histogram latency = endpointStats.latency.getIntervalHistogram();
+            Histogram serviceTime = endpointStats.serviceTime.getIntervalHistogram();
+            total.add(latency);
+            dropped += endpointStats.dropped.sum();
+            Map<String, Object> summary = summarize(latency, endpointStats.dropped.sum(), elapsedNanos);
+            summary.put("errors", endpointStats.errors.sum());
+            summary.put("serviceTime", percentiles(serviceTime));
+            endpoints.put(entry.getKey().name().toLowerCase(), summary);
+        }
+        Map<String, Object> totalSummary = summarize(total, dropped, elapsedNanos);
+        totalSummary.put("errors", stats.values().stream().mapToLong(s -> s.errors.sum()).sum());
+        result.put("completedRequests", total.getTotalCount() - dropped);
+        result.put("droppedRequests", dropped);
+        result.put("total", totalSummary);
+        result.put("endpoints", endpoints);
+        return result;
+    }
+
+    private void call(Request request) {
+        long todoId = todoIds.get(ThreadLocalRandom.current().nextInt(todoIds.size()));
+        long sendNanos = System.nanoTime();
+        boolean success;
+        try {
+            int status = send(request.endpoint, todoId);
+            success = status < 400;
+        } catch (IOException e) {
+            success = false;
+        }
+        // 已被recordUnfinished按超时记录的请求不再重复记录
+        if (!request.measured || !request.finish()) {
+            return;
+        }
+        long doneNanos = System.nanoTime();
+        EndpointStats endpointStats = stats.get(request.endpoint);
+        endpointStats.latency.recordValue(Math.min(doneNanos - request.intendedNanos, MAX_LATENCY_NANOS));
+        endpointStats.serviceTime.recordValue(Math.min(doneNanos - sendNanos, MAX_LATENCY_NANOS));
+        if (!success) {
+            endpointStats.errors.increment();
+        }
+        pending.remove(request);
+    }
+
+    /**
+     * 等待超时后记录仍未完成（排队中或执行中）的测量请求：计为错误，延迟为当前时间减计划发送时间
+     * 若直接丢弃，结果中只剩较快完成的请求，与协调遗漏一样低估尾延迟；服务时间未知，不记录
+     */
+    private void recordUnfinished() {
+        long now = System.nanoTime();
+        for (Request request : pending) {
+            if (!request.finish()) {
+                continue;
+            }
+            EndpointStats endpointStats = stats.get(request.endpoint);
+            endpointStats.latency.recordValue(Math.min(now - request.intendedNanos, MAX_LATENCY_NANOS));
+            endpointStats.errors.increment();
+            endpointStats.dropped.increment();
+        }
+        pending.clear();
+    }
+
+    /**
+     * 发送一个请求并读完响应体（读完才能复用连接）
+     * @return HTTP状态码
+     */
+    private int send(Endpoint endpoint, long todoId) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + endpoint.path(todoId)).openConnection();
+        connection.setRequestMethod(endpoint.method);
+        connection.setConnectTimeout(10_000);
+        connection.setReadTimeout(60_000);
+        if (endpoint == Endpoint.ADD) {
+            byte[] body = ("{\"value\":\"压测任务 load item #" + addSequence.incrementAndGet() + "\"}")
+                    .getBytes(StandardCharsets.UTF_8);
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setFixedLengthStreamingMode(body.length);
+            try (OutputStream output = connection.getOutputStream()) {
+                output.write(body);
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream input = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (input != null) {
+            try (InputStream in = input) {
+                byte[] buffer = new byte[8192];
+                while (in.read(buffer) != -1) {
+                    // 丢弃响应体
+                }
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @param dropped 超时未完成、按错误计入延迟的请求数，不计入吞吐量
+     */
+    private static Map<String, Object> summarize(Histogram latency, long dropped, long elapsedNanos) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", latency.getTotalCount());
+        summary.put("dropped", dropped);
+        summary.put("throughput", (latency.getTotalCount() - dropped) * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+        summary.put("latency", percentiles(latency));
+        return summary;
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> percentiles = new LinkedHashMap<>();
+        percentiles.put("p50", toMillis(histogram.getValueAtPercentile(50)));
+        percentiles.put("p95", toMillis(histogram.getValueAtPercentile(95)));
+        percentiles.put("p99", toMillis(histogram.getValueAtPercentile(99)));
+        percentiles.put("p999", toMillis(histogram.getValueAtPercentile(99.9)));
+        percentiles.put("max", toMillis(histogram.getMaxValue()));
+        return percentiles;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void print(Map<String, Object> result) {
+        System.out.printf("%n%-10s %8s %7s %10s %9s %9s %9s %9s %9s %11s%n",
+                "endpoint", "count", "errors", "req/s", "p50(ms)", "p95(ms)", "p99(ms)", "p999(ms)", "max(ms)", "svc p99(ms)");
+        Map<String, Object> endpoints = (Map<String, Object>) result.get("endpoints");
+        endpoints.forEach((name, summary) -> printRow(name, (Map<String, Object>) summary));
+        printRow("total", (Map<String, Object>) result.get("total"));
+        System.out.printf("计划请求%d个，完成%d个，超时未完成%d个（计为错误），调度线程最大滞后%.3fms%n",
+                (Long) result.get("scheduledRequests"), (Long) result.get("completedRequests"),
+                (Long) result.get("droppedRequests"), (Double) result.get("maxSchedulerLagMillis"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void printRow(String name, Map<String, Object> summary) {
+        Map<String, Object> latency = (Map<String, Object>) summary.get("latency");
+        Map<String, Object> serviceTime = (Map<String, Object>) summary.get("serviceTime");
+        System.out.printf("%-10s %8d %7d %10.1f %9.3f %9.3f %9.3f %9.3f %9.3f %11s%n",
+                name, summary.get("count"), summary.get("errors"), summary.get("throughput"),
+                latency.get("p50"), latency.get("p95"), latency.get("p99"), latency.get("p999"), latency.get("max"),
+                serviceTime == null ? "-" : String.format("%.3f", (Double) serviceTime.get("p99")));
+    }
+
+    /**
+     * 压测覆盖的接口（TodoController）
+     */
+    enum Endpoint {
+        /**
+         * 分页列表 GET /api/todos，从随机游标开始取一页
+         */
+        LIST("GET") {
+            @Override
+            String path(long todoId) {
+                return "/todos?limit=50&cursor=" + todoId;
+            }
+        },
+        /**
+         * 新建待办事项 POST /api/add-todo
+         */
+        ADD("POST") {
+            @Override
+            String path(long todoId) {
+                return "/add-todo";
+            }
+        },
+        /**
+         * 切换完成状态 POST /api/update-todo/{id}
+         */
+        TOGGLE("POST") {
+            @Override
+            String path(long todoId) {
+                return "/update-todo/" + todoId;
+            }
+        },
+        /**
+         * 子任务列表 GET /api/tasks/{id}/subtasks
+         */
+        SUBTASKS("GET") {
+            @Override
+            String path(long todoId) {
+                return "/tasks/" + todoId + "/subtasks";
+            }
+        },
+        /**
+         * 全局统计 GET /api/stats
+         */
+        STATS("GET") {
+            @Override
+            String path(long todoId) {
+                return "/stats";
+            }
+        };
+
+        private final String method;
+
+        Endpoint(String method) {
+            this.method = method;
+        }
+
+        abstract String path(long todoId);
+    }
+
+    /**
+     * 单个接口的统计：从计划发送时间算起的延迟、从实际发送算起的服务时间、错误数（含超时未完成）及超时未完成数
+     */
+    private static class EndpointStats {
+        private final Recorder latency = new Recorder(MAX_LATENCY_NANOS, 3);
+        private final Recorder serviceTime = new Recorder(MAX_LATENCY_NANOS, 3);
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+    }
+
+    /**
+     * 一个计划发送的请求；结果只记录一次：由完成的请求记录，或在等待超时后按未完成记录
+     */
+    private static class Request {
+        private final Endpoint endpoint;
+        private final long intendedNanos;
+        private final boolean measured;
+        private final AtomicBoolean recorded = new AtomicBoolean();
+
+        private Request(Endpoint endpoint, long intendedNanos, boolean measured) {
+            this.endpoint = endpoint;
+            this.intendedNanos = intendedNanos;
+            this.measured = measured;
+        }
+
+        /**
+         * @return 是否由本次调用记录结果
+         */
+        private boolean finish() {
+            return recorded.compareAndSet(false, true);
+        }
+    }
+}
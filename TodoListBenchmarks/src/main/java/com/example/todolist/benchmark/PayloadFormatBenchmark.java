@@ -0,0 +1,101 @@
+package com.example.todolist.benchmark;
+
+import com.example.todolist.config.JacksonConfig;
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 列表响应在不同格式下的序列化/反序列化耗时（JSON、Smile、CBOR，是否启用Blackbird）
+ * 各格式的ObjectMapper与JacksonConfig中的消息转换器使用同样的构建方式
+ * 负载大小（原始字节数和gzip后字节数）在每组参数开始时打印到控制台
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadFormatBenchmark {
+
+    private static final TypeReference<List<Subtask>> SUBTASK_LIST = new TypeReference<List<Subtask>>() {
+    };
+
+    @Param({"json", "smile", "cbor"})
+    private String format;
+
+    @Param({"false", "true"})
+    private boolean blackbird;
+
+    @Param({"100", "1000"})
+    private int size;
+
+    private ObjectMapper objectMapper;
+    private List<Todo> todos;
+    private List<Subtask> subtasks;
+    private byte[] subtasksPayload;
+
+    @Setup
+    public void setUp() throws Exception {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if ("smile".equals(format)) {
+            builder.factory(JacksonConfig.newSmileFactory());
+        } else if ("cbor".equals(format)) {
+            builder.factory(new CBORFactory());
+        }
+        if (blackbird) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        objectMapper = builder.build();
+        todos = BenchmarkData.todos(size, 1);
+        subtasks = BenchmarkData.subtasks(size, 1);
+        subtasksPayload = objectMapper.writeValueAsBytes(subtasks);
+        byte[] todosPayload = objectMapper.writeValueAsBytes(todos);
+        System.out.printf("%n[payload] format=%s size=%d todos=%dB (gzip %dB) subtasks=%dB (gzip %dB)%n",
+                format, size, todosPayload.length, gzipSize(todosPayload),
+                subtasksPayload.length, gzipSize(subtasksPayload));
+    }
+
+    private static int gzipSize(byte[] payload) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+            gzip.write(payload);
+        }
+        return output.size();
+    }
+
+    @Benchmark
+    public byte[] serializeTodos() throws Exception {
+        return objectMapper.writeValueAsBytes(todos);
+    }
+
+    @Benchmark
+    public byte[] serializeSubtasks() throws Exception {
+        return objectMapper.writeValueAsBytes(subtasks);
+    }
+
+    @Benchmark
+    public List<Subtask> deserializeSubtasks() throws Exception {
+        return objectMapper.readValue(subtasksPayload, SUBTASK_LIST);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.todolist.benchmark;
+
+import com.example.todolist.enums.Priority;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Priority枚举的转换：按等级查找（数据库读取时）、按名称查找和JSON反序列化（请求参数/请求体）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriorityBenchmark {
+
+    private static final int[] LEVELS = {1, 2, 3, 4};
+    private static final String[] NAMES = {"LOW", "MEDIUM", "HIGH", "URGENT"};
+
+    private ObjectReader priorityReader;
+    private String[] jsonNames;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        priorityReader = objectMapper.readerFor(Priority.class);
+        jsonNames = new String[NAMES.length];
+        for (int i = 0; i < NAMES.length; i++) {
+            jsonNames[i] = "\"" + NAMES[i] + "\"";
+        }
+    }
+
+    @Benchmark
+    public void fromLevel(Blackhole blackhole) {
+        for (int level : LEVELS) {
+            blackhole.consume(Priority.fromLevel(level));
+        }
+    }
+
+    @Benchmark
+    public void valueOf(Blackhole blackhole) {
+        for (String name : NAMES) {
+            blackhole.consume(Priority.valueOf(name));
+        }
+    }
+
+    @Benchmark
+    public void jacksonDeserialize(Blackhole blackhole) throws Exception {
+        for (String json : jsonNames) {
+            blackhole.consume(priorityReader.readValue(json));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.todolist.benchmark;
+
+import com.example.todolist.TodoListApplication;
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.repository.SubtaskRepository;
+import com.example.todolist.repository.TodoRepository;
+import com.example.todolist.service.SubtaskService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务与仓库查询热点：在内存数据库（H2，MySQL兼容模式）上启动完整的Spring上下文（不启动Web服务）
+ * 缓存关闭，测量的是实际查询的开销
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"1000"})
+    private int todoCount;
+
+    @Param({"10"})
+    private int subtasksPerTodo;
+
+    private ConfigurableApplicationContext context;
+    private TodoRepository todoRepository;
+    private SubtaskRepository subtaskRepository;
+    private SubtaskService subtaskService;
+    private List<Long> todoIds;
+    private List<Long> statsBatch;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(TodoListApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:bench;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;NON_KEYWORDS=VALUE",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.cache.type=none",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.example.todolist=WARN",
+                        "--logging.level.org.hibernate.SQL=WARN",
+                        "--logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN");
+        todoRepository = context.getBean(TodoRepository.class);
+        subtaskRepository = context.getBean(SubtaskRepository.class);
+        subtaskService = context.getBean(SubtaskService.class);
+        seed();
+    }
+
+    private void seed() {
+        todoIds = new ArrayList<>(todoCount);
+        for (Todo todo : todoRepository.saveAll(newTodos())) {
+            todoIds.add(todo.getId());
+        }
+        List<Subtask> subtasks = new ArrayList<>();
+        for (Long todoId : todoIds) {
+            for (Subtask subtask : BenchmarkData.subtasks(subtasksPerTodo, todoId)) {
+                subtask.setId(null);
+                subtask.setVersion(null);
+                subtasks.add(subtask);
+            }
+        }
+        subtaskRepository.saveAll(subtasks);
+        statsBatch = todoIds.subList(0, Math.min(50, todoIds.size()));
+    }
+
+    private List<Todo> newTodos() {
+        List<Todo> todos = BenchmarkData.todos(todoCount, 0);
+        for (Todo todo : todos) {
+            todo.setId(null);
+            todo.setVersion(null);
+        }
+        return todos;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    private Long randomTodoId() {
+        return todoIds.get(ThreadLocalRandom.current().nextInt(todoIds.size()));
+    }
+
+    @Benchmark
+    public SubtaskService.SubtaskStats subtaskStats() {
+        return subtaskService.getSubtaskStats(randomTodoId());
+    }
+
+    @Benchmark
+    public Map<Long, SubtaskService.SubtaskStats> subtaskStatsBatch() {
+        return subtaskService.getSubtaskStats(statsBatch);
+    }
+
+    @Benchmark
+    public List<Subtask> subtasksByParentSortedByPriority() {
+        return subtaskRepository.findByParentTaskIdOrderByPriorityDesc(randomTodoId());
+    }
+
+    @Benchmark
+    public List<Todo> todoKeysetPage() {
+        return todoRepository.findPageAfter(randomTodoId(), null, null, PageRequest.of(0, 50));
+    }
+
+    @Benchmark
+    public List<Todo> todoKeysetPageFiltered() {
+        return todoRepository.findPageAfter(0L, Boolean.FALSE, "待办事项%", PageRequest.of(0, 50));
+    }
+}
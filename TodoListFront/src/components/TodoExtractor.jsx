@@ -11,7 +11,7 @@ const TodoExtractor = () => {
   const [loading, setLoading] = useState(false);
   const [error, setError] = useState(null);
   const [extractedTodos, setExtractedTodos] = useState([]);
-  const { addTodo } = useTodo();
+  const { addTodo, addTodos } = useTodo();
   const { language } = useLanguage();
 
   const extractTodos = async () => {
@@ -223,12 +223,29 @@ const TodoExtractor = () => {
           <AnimatePresence>
             {extractedTodos.length > 0 && (
               <Box className="space-y-3">
-                <Typography 
-                  variant="subtitle2" 
-                  className="text-gray-600 dark:text-gray-400 font-medium"
-                >
-                  {language === 'zh' ? '提取结果' : 'Extracted Results'}
-                </Typography>
+                <Box className="flex items-center justify-between">
+                  <Typography 
+                    variant="subtitle2" 
+                    className="text-gray-600 dark:text-gray-400 font-medium"
+                  >
+                    {language === 'zh' ? '提取结果' : 'Extracted Results'}
+                  </Typography>
+                  <Button
+                    size="small"
+                    variant="text"
+                    onClick={() => {
+                      addTodos(extractedTodos.map(todo => `${language}:${language === 'zh' ? todo.zh : todo.en}`));
+                      setExtractedTodos([]);
+                    }}
+                    sx={{
+                      borderRadius: '8px',
+                      textTransform: 'none',
+                      fontWeight: 600
+                    }}
+                  >
+                    {language === 'zh' ? '全部添加' : 'Add All'}
+                  </Button>
+                </Box>
                 {extractedTodos.map((todo, index) => (
                   <motion.div
                     key={index}
@@ -1,4 +1,4 @@
-import { createContext, useContext, useState, useEffect } from 'react';
+import { createContext, useContext, useState, useEffect, useRef } from 'react';
 
 export const TodoContext = createContext();
 
@@ -6,12 +6,41 @@ export const TodoContext = createContext();
 const API_URL = process.env.REACT_APP_API_URL || 'http://localhost:8080/api';
 console.log('🔧 当前使用的API地址:', API_URL);
 
+// 客户端标识：随每个请求发送，后端据此保证写后读一致（写入后一段时间内只读主库），
+// 保存在localStorage中，刷新页面后保持不变；没有该请求头时后端只能按来源地址区分，同一出口的用户会互相影响
+const CLIENT_ID_KEY = 'todoClientId';
+const getClientId = () => {
+  const generate = () => (window.crypto && window.crypto.randomUUID)
+    ? window.crypto.randomUUID()
+    : `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+  try {
+    let id = localStorage.getItem(CLIENT_ID_KEY);
+    if (!id) {
+      id = generate();
+      localStorage.setItem(CLIENT_ID_KEY, id);
+    }
+    return id;
+  } catch (e) {
+    // localStorage不可用（如隐私模式）时只在本页面内保持不变
+    return generate();
+  }
+};
+const CLIENT_ID = getClientId();
+
+// 推送事件触发的统计刷新最多每隔这么久请求一次（毫秒）
+const STATS_REFRESH_DELAY_MS = 1000;
+
 export const TodoProvider = ({ children }) => {
   const [todos, setTodos] = useState([]);
   const [filter, setFilter] = useState('all');
   const [loading, setLoading] = useState(false);
   const [error, setError] = useState(null);
   const [subtaskStats, setSubtaskStats] = useState({});
+  const [serverStats, setServerStats] = useState(null);
+  // 变更推送是否已连接：已连接时写操作后不再重新拉取列表，由推送事件更新
+  const feedConnected = useRef(false);
+  // 推送事件触发的统计刷新定时器：一段时间内的多个事件合并为一次请求
+  const statsRefreshTimer = useRef(null);
 
   // 添加错误处理函数
   const handleResponse = async (response) => {
@@ -72,39 +101,60 @@ export const TodoProvider = ({ children }) => {
     }
   };
 
-  // 获取所有待办事项 - 修改为匹配后端路径
+  // 后端子任务统计转换为前端使用的格式
+  const toLocalStats = (data) => ({
+    ...data,
+    total: data.totalCount,
+    completed: data.completedCount
+  });
+
+  // 获取待办事项树：每页待办事项内嵌子任务统计，一次请求代替逐个任务请求统计
+  // 按游标翻页，最多加载TREE_MAX_ITEMS条（与旧接口 /get-todo 的上限一致）
+  const TREE_PAGE_SIZE = 200;
+  const TREE_MAX_ITEMS = 1000;
   const fetchTodos = async () => {
     try {
       setLoading(true);
       console.log('🔍 开始获取待办事项，API地址:', API_URL);
-      
-      const response = await fetch(`${API_URL}/get-todo`, {
-        headers: {
-          'Accept': 'application/json',
-          'Content-Type': 'application/json'
+
+      const items = [];
+      let cursor = null;
+      do {
+        const query = `limit=${TREE_PAGE_SIZE}&subtasks=false` + (cursor !== null ? `&cursor=${cursor}` : '');
+        const response = await fetch(`${API_URL}/todos/tree?${query}`, {
+          headers: {
+            'Accept': 'application/json',
+            'Content-Type': 'application/json',
+            'X-Client-Id': CLIENT_ID
+          }
+        });
+        const data = await handleResponse(response);
+        if (!data || !Array.isArray(data.items)) {
+          console.warn('⚠️ 返回的数据格式不正确:', data);
+          return;
         }
+        items.push(...data.items);
+        cursor = data.hasMore ? data.nextCursor : null;
+      } while (cursor !== null && items.length < TREE_MAX_ITEMS);
+
+      const mappedTodos = items.map(todo => ({
+        id: todo.id,
+        text: {
+          zh: todo.value,
+          en: todo.value
+        },
+        completed: todo.completed
+      }));
+      console.log('✅ 映射后的待办事项:', mappedTodos);
+      setTodos(mappedTodos);
+      setSubtaskStats(prev => {
+        const next = { ...prev };
+        items.forEach(todo => {
+          next[todo.id] = toLocalStats(todo.stats);
+        });
+        return next;
       });
-      
-      console.log('📡 API响应状态:', response.status);
-      console.log('📡 API响应头:', response.headers);
-      
-      const data = await handleResponse(response);
-      console.log('📦 解析后的数据:', data);
-      
-      if (Array.isArray(data)) {
-        const mappedTodos = data.map(todo => ({
-          id: todo.id,
-          text: {
-            zh: todo.value,
-            en: todo.value
-          },
-          completed: todo.completed
-        }));
-        console.log('✅ 映射后的待办事项:', mappedTodos);
-        setTodos(mappedTodos);
-      } else {
-        console.warn('⚠️ 返回的数据不是数组:', data);
-      }
+      fetchStats();
     } catch (error) {
       console.error('❌ 获取待办事项失败:', error);
       setError(error.message);
@@ -113,6 +163,42 @@ export const TodoProvider = ({ children }) => {
     }
   };
 
+  // 获取全局统计（后端内存计数，列表只加载一页时仍然准确）
+  const fetchStats = async () => {
+    try {
+      const response = await fetch(`${API_URL}/stats`, {
+        headers: {
+          'Accept': 'application/json',
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
+        }
+      });
+      const data = await handleResponse(response);
+      if (data && typeof data.todoCount === 'number') {
+        setServerStats({
+          total: data.todoCount,
+          completed: data.completedTodoCount,
+          active: data.activeTodoCount,
+        });
+      }
+    } catch (error) {
+      console.error('Error getting stats:', error);
+      setServerStats(null);
+    }
+  };
+
+  // 合并刷新全局统计：批量写入会连续推送大量事件，每个事件都请求一次 /stats 会放大为同样多的请求，
+  // 这里在第一个事件后等待一段时间再统一刷新，期间的事件不再重复请求
+  const scheduleStatsRefresh = () => {
+    if (statsRefreshTimer.current !== null) {
+      return;
+    }
+    statsRefreshTimer.current = setTimeout(() => {
+      statsRefreshTimer.current = null;
+      fetchStats();
+    }, STATS_REFRESH_DELAY_MS);
+  };
+
   // 添加待办事项 - 修改为匹配后端路径
   const addTodo = async (text) => {
     try {
@@ -126,7 +212,8 @@ export const TodoProvider = ({ children }) => {
         method: 'POST',
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         },
         body: JSON.stringify({
           value,
@@ -134,7 +221,9 @@ export const TodoProvider = ({ children }) => {
         })
       });
       await handleResponse(response);
-      await fetchTodos();
+      if (!feedConnected.current) {
+        await fetchTodos();
+      }
     } catch (error) {
       setError(error.message);
       console.error('Error adding todo:', error);
@@ -143,6 +232,38 @@ export const TodoProvider = ({ children }) => {
     }
   };
 
+  // 批量添加待办事项 - 一次请求、一次刷新
+  const addTodos = async (texts) => {
+    try {
+      setLoading(true);
+      const items = texts.map(text => ({
+        value: (text.startsWith('en:') || text.startsWith('zh:')) ? text.slice(3) : text,
+        completed: false
+      }));
+
+      const response = await fetch(`${API_URL}/add-todos`, {
+        method: 'POST',
+        headers: {
+          'Accept': 'application/json',
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
+        },
+        body: JSON.stringify(items)
+      });
+      const ids = await handleResponse(response);
+      if (!feedConnected.current) {
+        await fetchTodos();
+      }
+      return Array.isArray(ids) ? ids : [];
+    } catch (error) {
+      setError(error.message);
+      console.error('Error adding todos:', error);
+      return [];
+    } finally {
+      setLoading(false);
+    }
+  };
+
   // 切换待办事项状态 - 修改为匹配后端路径
   const toggleTodo = async (id) => {
     try {
@@ -157,7 +278,8 @@ export const TodoProvider = ({ children }) => {
         method: 'POST',
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         },
         body: JSON.stringify({
           value: currentTodo.text.zh || currentTodo.text.en,
@@ -165,7 +287,9 @@ export const TodoProvider = ({ children }) => {
         })
       });
       await handleResponse(response);
-      await fetchTodos();
+      if (!feedConnected.current) {
+        await fetchTodos();
+      }
     } catch (error) {
       setError(error.message);
       console.error('Error toggling todo:', error);
@@ -182,11 +306,14 @@ export const TodoProvider = ({ children }) => {
         method: 'POST',
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         }
       });
       await handleResponse(response);
-      await fetchTodos();
+      if (!feedConnected.current) {
+        await fetchTodos();
+      }
     } catch (error) {
       setError(error.message);
       console.error('Error deleting todo:', error);
@@ -201,7 +328,8 @@ export const TodoProvider = ({ children }) => {
       const response = await fetch(`${API_URL}/tasks/${todoId}/subtasks`, {
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         }
       });
       const data = await handleResponse(response);
@@ -219,7 +347,8 @@ export const TodoProvider = ({ children }) => {
         method: 'POST',
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         },
         body: JSON.stringify(subtask)
       });
@@ -238,7 +367,8 @@ export const TodoProvider = ({ children }) => {
         method: 'PUT',
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         },
         body: JSON.stringify(subtask)
       });
@@ -257,7 +387,8 @@ export const TodoProvider = ({ children }) => {
         method: 'POST',
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         }
       });
       await handleResponse(response);
@@ -275,7 +406,8 @@ export const TodoProvider = ({ children }) => {
         method: 'DELETE',
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         }
       });
       await handleResponse(response);
@@ -292,14 +424,15 @@ export const TodoProvider = ({ children }) => {
       const response = await fetch(`${API_URL}/tasks/${todoId}/subtasks/stats`, {
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         }
       });
       const data = await handleResponse(response);
       if (data && typeof data === 'object') {
         setSubtaskStats(prev => ({
           ...prev,
-          [todoId]: data
+          [todoId]: toLocalStats(data)
         }));
       }
     } catch (error) {
@@ -318,7 +451,8 @@ export const TodoProvider = ({ children }) => {
       const response = await fetch(`${API_URL}/priorities`, {
         headers: {
           'Accept': 'application/json',
-          'Content-Type': 'application/json'
+          'Content-Type': 'application/json',
+          'X-Client-Id': CLIENT_ID
         }
       });
       const data = await handleResponse(response);
@@ -333,13 +467,60 @@ export const TodoProvider = ({ children }) => {
     fetchTodos();
   }, []);
 
+  // 订阅后端变更推送（SSE），根据事件增量更新本地列表
+  useEffect(() => {
+    if (typeof EventSource === 'undefined') {
+      return undefined;
+    }
+    const source = new EventSource(`${API_URL}/changes/stream`);
+    const toLocalTodo = (todo) => ({
+      id: todo.id,
+      text: {
+        zh: todo.value,
+        en: todo.value
+      },
+      completed: todo.completed
+    });
+
+    source.onopen = () => {
+      // 首次连接或断线重连后重新拉取一次，补齐断开期间的变更
+      feedConnected.current = true;
+      fetchTodos();
+    };
+    source.onerror = () => {
+      feedConnected.current = false;
+    };
+    source.addEventListener('TODO_CREATED', (e) => {
+      const { data } = JSON.parse(e.data);
+      setTodos(prev => prev.some(todo => todo.id === data.id) ? prev : [...prev, toLocalTodo(data)]);
+      scheduleStatsRefresh();
+    });
+    source.addEventListener('TODO_UPDATED', (e) => {
+      const { data } = JSON.parse(e.data);
+      setTodos(prev => prev.map(todo => todo.id === data.id ? toLocalTodo(data) : todo));
+      scheduleStatsRefresh();
+    });
+    source.addEventListener('TODO_DELETED', (e) => {
+      const { id } = JSON.parse(e.data);
+      setTodos(prev => prev.filter(todo => todo.id !== id));
+      scheduleStatsRefresh();
+    });
+
+    return () => {
+      feedConnected.current = false;
+      source.close();
+      clearTimeout(statsRefreshTimer.current);
+      statsRefreshTimer.current = null;
+    };
+  }, []);
+
   const filteredTodos = todos.filter(todo => {
     if (filter === 'completed') return todo.completed;
     if (filter === 'active') return !todo.completed;
     return true;
   });
 
-  const stats = {
+  const stats = serverStats || {
     total: todos.length,
     completed: todos.filter(t => t.completed).length,
     active: todos.filter(t => !t.completed).length,
@@ -354,6 +535,7 @@ export const TodoProvider = ({ children }) => {
       error,
       subtaskStats,
       addTodo,
+      addTodos,
       toggleTodo,
       deleteTodo,
       getSubtasks,
@@ -0,0 +1,24 @@
+package com.example.todolist.reactive;
+
+import com.example.todolist.exception.GlobalExceptionHandler;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+
+/**
+ * 响应式API模块的入口类
+ * 基于WebFlux + R2DBC，提供与TodoController相同的待办事项和子任务接口，全程非阻塞：
+ * 等待数据库响应时不占用线程，少量事件循环线程即可同时处理大量请求
+ * 复用后端模块的实体（Todo、Subtask）、Priority枚举、DTO和全局异常处理，错误响应格式保持一致
+ */
+@SpringBootApplication
+@Import(GlobalExceptionHandler.class)
+public class TodoListReactiveApplication {
+    /**
+     * 应用程序的主入口方法
+     * @param args 命令行参数
+     */
+    public static void main(String[] args) {
+        SpringApplication.run(TodoListReactiveApplication.class, args);
+    }
+}
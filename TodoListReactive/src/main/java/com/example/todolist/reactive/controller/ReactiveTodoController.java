@@ -0,0 +1,195 @@
+package com.example.todolist.reactive.controller;
+
+import com.example.todolist.controller.TodoController;
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.reactive.service.ReactiveSubtaskService;
+import com.example.todolist.reactive.service.ReactiveTodoService;
+import com.example.todolist.service.StatsRollupService;
+import com.example.todolist.service.SubtaskService;
+import com.example.todolist.service.TodoService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 待办事项和子任务的响应式REST接口，路径和请求/响应格式与后端模块的TodoController一致
+ * 变更推送、增量同步和全局统计等依赖后端进程内状态的接口不在此模块提供；
+ * 本模块的写入不会更新后端进程内的缓存、统计计数和搜索索引，影响见ReactiveTodoService
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(originPatterns = "*")
+public class ReactiveTodoController {
+
+    @Autowired
+    private ReactiveTodoService todoService;
+
+    @Autowired
+    private ReactiveSubtaskService subtaskService;
+
+    // ==================== Todo 相关接口 ====================
+
+    /**
+     * 获取待办事项（兼容旧接口，最多返回todo.list.legacy-limit条）
+     */
+    @GetMapping("/get-todo")
+    public Mono<List<Todo>> getAllTodos() {
+        return todoService.getAllTodos();
+    }
+
+    /**
+     * 游标分页获取待办事项
+     * GET /api/todos?cursor=&limit=50&completed=false&prefix=
+     */
+    @GetMapping("/todos")
+    public Mono<TodoService.TodoPage> listTodos(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Boolean completed,
+            @RequestParam(required = false) String prefix) {
+        return todoService.listTodos(cursor, limit, completed, prefix);
+    }
+
+    @PostMapping("/add-todo")
+    public Mono<Todo> addTodo(@RequestBody Todo todo) {
+        return todoService.addTodo(todo);
+    }
+
+    /**
+     * 批量添加待办事项
+     * @return 新建待办事项的ID列表
+     */
+    @PostMapping("/add-todos")
+    public Mono<List<Long>> addTodos(@RequestBody List<Todo> todos) {
+        return todoService.addTodos(todos);
+    }
+
+    @PostMapping("/update-todo/{id}")
+    public Mono<Todo> updateTodoStatus(@PathVariable Long id) {
+        return todoService.updateTodoStatus(id);
+    }
+
+    /**
+     * 删除待办事项（连同其子任务）
+     */
+    @PostMapping("/del-todo/{id}")
+    public Mono<Void> deleteTodo(@PathVariable Long id) {
+        return todoService.deleteTodo(id);
+    }
+
+    /**
+     * 批量删除待办事项（连同其子任务）
+     * @return 实际删除的数量
+     */
+    @PostMapping("/del-todos")
+    public Mono<Integer> deleteTodos(@RequestBody List<Long> ids) {
+        return todoService.deleteTodos(ids);
+    }
+
+    // ==================== Subtask 相关接口 ====================
+
+    /**
+     * 获取任务的所有子任务
+     * GET /api/tasks/{id}/subtasks?sortByPriority=true
+     */
+    @GetMapping("/tasks/{id}/subtasks")
+    public Mono<List<Subtask>> getSubtasks(
+            @PathVariable Long id,
+            @RequestParam(defaultValue = "true") boolean sortByPriority) {
+        return subtaskService.getSubtasksByParentId(id, sortByPriority);
+    }
+
+    /**
+     * 批量获取多个任务的子任务列表，各任务的查询并发执行
+     * GET /api/subtasks?parentIds=1,2,3&sortByPriority=true
+     * @return 父任务ID到子任务列表的映射
+     */
+    @GetMapping("/subtasks")
+    public Mono<Map<Long, List<Subtask>>> getSubtasksBatch(
+            @RequestParam List<Long> parentIds,
+            @RequestParam(defaultValue = "true") boolean sortByPriority) {
+        return subtaskService.getSubtasksByParentIds(parentIds, sortByPriority);
+    }
+
+    @GetMapping("/tasks/{id}/subtasks/status")
+    public Mono<List<Subtask>> getSubtasksByStatus(@PathVariable Long id, @RequestParam boolean completed) {
+        return subtaskService.getSubtasksByParentIdAndCompleted(id, completed);
+    }
+
+    @GetMapping("/tasks/{id}/subtasks/priority")
+    public Mono<List<Subtask>> getSubtasksByPriority(@PathVariable Long id, @RequestParam Priority priority) {
+        return subtaskService.getSubtasksByPriority(id, priority);
+    }
+
+    @PostMapping("/tasks/{id}/subtasks")
+    public Mono<Subtask> addSubtask(@PathVariable Long id, @RequestBody Subtask subtask) {
+        return subtaskService.addSubtask(id, subtask);
+    }
+
+    @PutMapping("/subtasks/{id}")
+    public Mono<Subtask> updateSubtask(@PathVariable Long id, @RequestBody Subtask subtask) {
+        return subtaskService.updateSubtask(id, subtask);
+    }
+
+    @PutMapping("/subtasks/{id}/priority")
+    public Mono<Subtask> updateSubtaskPriority(
+            @PathVariable Long id,
+            @RequestBody TodoController.PriorityUpdateRequest request) {
+        return subtaskService.updateSubtaskPriority(id, request.getPriority());
+    }
+
+    @PostMapping("/subtasks/{id}/toggle")
+    public Mono<Subtask> toggleSubtaskStatus(@PathVariable Long id) {
+        return subtaskService.toggleSubtaskStatus(id);
+    }
+
+    @DeleteMapping("/subtasks/{id}")
+    public Mono<Void> deleteSubtask(@PathVariable Long id) {
+        return subtaskService.deleteSubtask(id);
+    }
+
+    @GetMapping("/tasks/{id}/subtasks/stats")
+    public Mono<SubtaskService.SubtaskStats> getSubtaskStats(@PathVariable Long id) {
+        return subtaskService.getSubtaskStats(id);
+    }
+
+    /**
+     * 批量获取多个任务的子任务统计信息
+     * GET /api/subtasks/stats?parentIds=1,2,3
+     */
+    @GetMapping("/subtasks/stats")
+    public Mono<Map<Long, SubtaskService.SubtaskStats>> getSubtaskStatsBatch(@RequestParam List<Long> parentIds) {
+        return subtaskService.getSubtaskStats(parentIds);
+    }
+
+    @GetMapping("/tasks/{id}/subtasks/count")
+    public Mono<StatsRollupService.SubtaskCount> getSubtaskCount(@PathVariable Long id) {
+        return subtaskService.getSubtaskCount(id);
+    }
+
+    @DeleteMapping("/tasks/{id}/subtasks")
+    public Mono<Void> deleteAllSubtasks(@PathVariable Long id) {
+        return subtaskService.deleteSubtasksByParentId(id);
+    }
+
+    @GetMapping("/priorities")
+    public Mono<Priority[]> getPriorities() {
+        return Mono.just(Priority.values());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.todolist.reactive.repository;
+
+import com.example.todolist.entity.ChangeLog;
+import com.example.todolist.entity.ChangeLogCounter;
+import com.example.todolist.event.ChangeType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 追加变更日志（change_log表），与业务写入在同一事务中执行，且应是事务中的最后一步
+ * 后端模块的增量同步接口和ETag依赖这些记录，响应式模块的写操作同样需要记录
+ * 版本号的分配方式与后端模块的SyncService相同：对change_log_counter加行锁（SELECT ... FOR UPDATE），
+ * 递增current_version并为各条变更分配连续的版本号，行锁持有到提交，版本号的顺序即提交顺序；
+ * 业务行在加锁前已全部写完，加锁顺序与后端一致（先业务行后计数行），两个模块并发写入不会互相死锁
+ */
+@Repository
+public class ChangeLogWriter {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    /**
+     * 锁定版本计数并记录一批变更
+     * @param changes 变更（版本号由本方法分配）
+     */
+    public Mono<Void> record(List<ChangeLog> changes) {
+        if (changes.isEmpty()) {
+            return Mono.empty();
+        }
+        return databaseClient.sql("SELECT current_version FROM change_log_counter WHERE id = :id FOR UPDATE")
+                .bind("id", ChangeLogCounter.SINGLETON_ID)
+                .map(row -> row.get("current_version", Long.class))
+                .one()
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("变更日志版本计数未初始化")))
+                .flatMap(current -> databaseClient.sql("UPDATE change_log_counter SET current_version = :version WHERE id = :id")
+                        .bind("version", current + changes.size())
+                        .bind("id", ChangeLogCounter.SINGLETON_ID)
+                        .fetch()
+                        .rowsUpdated()
+                        .thenMany(Flux.range(0, changes.size())
+                                .concatMap(i -> insert(changes.get(i), current + 1 + i)))
+                        .then());
+    }
+
+    private Mono<Integer> insert(ChangeLog change, long version) {
+        return databaseClient.sql("INSERT INTO change_log (version, entity_type, entity_id, parent_task_id, change_type, changed_at) " +
+                        "VALUES (:version, :entityType, :entityId, :parentTaskId, :changeType, :changedAt)")
+                .bind("version", version)
+                .bind("entityType", change.getEntityType().name())
+                .bind("entityId", change.getEntityId())
+                .bind("parentTaskId", change.getParentTaskId())
+                .bind("changeType", change.getChangeType().name())
+                .bind("changedAt", change.getChangedAt())
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Void> recordTodo(Long todoId, ChangeType changeType) {
+        return record(Collections.singletonList(todoChange(todoId, changeType)));
+    }
+
+    public Mono<Void> recordSubtask(Long subtaskId, Long parentTaskId, ChangeType changeType) {
+        return record(Collections.singletonList(
+                ChangeLog.of(ChangeLog.EntityType.SUBTASK, subtaskId, parentTaskId, changeType)));
+    }
+
+    /**
+     * 为一批被删除的子任务记录墓碑，子任务以[子任务ID, 父任务ID]表示
+     */
+    public Mono<Void> recordSubtasksDeleted(Collection<Long[]> subtasks) {
+        return record(subtasksDeleted(subtasks));
+    }
+
+    public static ChangeLog todoChange(Long todoId, ChangeType changeType) {
+        return ChangeLog.of(ChangeLog.EntityType.TODO, todoId, todoId, changeType);
+    }
+
+    /**
+     * 被删除子任务的墓碑，子任务以[子任务ID, 父任务ID]表示
+     */
+    public static List<ChangeLog> subtasksDeleted(Collection<Long[]> subtasks) {
+        return subtasks.stream()
+                .map(row -> ChangeLog.of(ChangeLog.EntityType.SUBTASK, row[0], row[1], ChangeType.DELETED))
+                .collect(Collectors.toList());
+    }
+}
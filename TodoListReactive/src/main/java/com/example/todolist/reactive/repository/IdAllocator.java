@@ -0,0 +1,100 @@
+package com.example.todolist.reactive.repository;
+
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.ReactiveTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 主键分配器，与后端模块Hibernate的pooled-lo序列表（todo_id_seq、subtask_id_seq）协议一致：
+ * 每次在独立事务中把next_val加ALLOCATION_SIZE，取得[next_val, next_val + ALLOCATION_SIZE)一整块ID，块内在内存中分配
+ * 两个模块共用同一个数据库时分配的ID不会冲突
+ */
+@Component
+public class IdAllocator {
+
+    /**
+     * 每块的ID数量，必须与实体上@SequenceGenerator的allocationSize一致
+     */
+    public static final int ALLOCATION_SIZE = 50;
+
+    public static final String TODO_SEQUENCE = "todo_id_seq";
+    public static final String SUBTASK_SEQUENCE = "subtask_id_seq";
+
+    private final DatabaseClient databaseClient;
+
+    /**
+     * 取号段使用独立事务，不受调用方事务影响，也不会让序列表行锁持有到调用方提交
+     */
+    private final TransactionalOperator newTransaction;
+
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public IdAllocator(DatabaseClient databaseClient, ReactiveTransactionManager transactionManager) {
+        this.databaseClient = databaseClient;
+        this.newTransaction = TransactionalOperator.create(transactionManager,
+                new DefaultTransactionDefinition(TransactionDefinition.PROPAGATION_REQUIRES_NEW));
+    }
+
+    /**
+     * 分配一个ID
+     * @param sequence 序列表名（TODO_SEQUENCE或SUBTASK_SEQUENCE）
+     * @return 新ID
+     */
+    public Mono<Long> nextId(String sequence) {
+        return Mono.defer(() -> {
+            Block block = blocks.get(sequence);
+            long id = block == null ? -1 : block.take();
+            if (id >= 0) {
+                return Mono.just(id);
+            }
+            // 当前号段已用完：取新号段，第一个ID留给本次调用，其余放入内存
+            return fetchBlock(sequence).map(low -> {
+                blocks.put(sequence, new Block(low + 1, low + ALLOCATION_SIZE));
+                return low;
+            });
+        });
+    }
+
+    private Mono<Long> fetchBlock(String sequence) {
+        Mono<Long> fetch = databaseClient.sql("SELECT next_val FROM " + sequence + " FOR UPDATE")
+                .map(row -> row.get("next_val", Long.class))
+                .one()
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("序列表" + sequence + "未初始化")))
+                .flatMap(low -> databaseClient.sql("UPDATE " + sequence + " SET next_val = :next WHERE next_val = :low")
+                        .bind("next", low + ALLOCATION_SIZE)
+                        .bind("low", low)
+                        .fetch()
+                        .rowsUpdated()
+                        .thenReturn(low));
+        return newTransaction.transactional(fetch);
+    }
+
+    /**
+     * 号段：[next, limit)
+     */
+    private static class Block {
+        private final AtomicLong next;
+        private final long limit;
+
+        Block(long next, long limit) {
+            this.next = new AtomicLong(next);
+            this.limit = limit;
+        }
+
+        /**
+         * @return 下一个ID，号段用完时返回-1
+         */
+        long take() {
+            long id = next.getAndIncrement();
+            return id < limit ? id : -1;
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.todolist.reactive.repository;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.enums.Priority;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * 子任务的响应式数据访问（subtask表），SQL与后端模块SubtaskRepository的查询一一对应
+ * priority列保存优先级等级数值（见PriorityConverter）
+ */
+@Repository
+public class ReactiveSubtaskRepository {
+
+    private static final String COLUMNS =
+            "id, value, is_completed, parent_task_id, priority, version, created_at, updated_at";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    public Mono<Subtask> findById(Long id) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM subtask WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> mapRow(row))
+                .one();
+    }
+
+    public Flux<Subtask> findByParentTaskIdOrderByPriorityDesc(Long parentTaskId) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM subtask WHERE parent_task_id = :parentTaskId " +
+                        "ORDER BY priority DESC, created_at ASC")
+                .bind("parentTaskId", parentTaskId)
+                .map((row, metadata) -> mapRow(row))
+                .all();
+    }
+
+    public Flux<Subtask> findByParentTaskId(Long parentTaskId) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM subtask WHERE parent_task_id = :parentTaskId")
+                .bind("parentTaskId", parentTaskId)
+                .map((row, metadata) -> mapRow(row))
+                .all();
+    }
+
+    public Flux<Subtask> findByParentTaskIdAndCompletedOrderByPriority(Long parentTaskId, boolean completed) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM subtask " +
+                        "WHERE parent_task_id = :parentTaskId AND is_completed = :completed " +
+                        "ORDER BY priority DESC, created_at ASC")
+                .bind("parentTaskId", parentTaskId)
+                .bind("completed", completed)
+                .map((row, metadata) -> mapRow(row))
+                .all();
+    }
+
+    public Flux<Subtask> findByParentTaskIdAndPriority(Long parentTaskId, Priority priority) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM subtask " +
+                        "WHERE parent_task_id = :parentTaskId AND priority = :priority")
+                .bind("parentTaskId", parentTaskId)
+                .bind("priority", priority.getLevel())
+                .map((row, metadata) -> mapRow(row))
+                .all();
+    }
+
+    /**
+     * 查询多个父任务下所有子任务的ID及父任务ID，返回[子任务ID, 父任务ID]
+     */
+    public Flux<Long[]> findIdsByParentTaskIdIn(Collection<Long> parentTaskIds) {
+        return databaseClient.sql("SELECT id, parent_task_id FROM subtask WHERE parent_task_id IN (:parentTaskIds)")
+                .bind("parentTaskIds", parentTaskIds)
+                .map((row, metadata) -> new Long[]{row.get("id", Long.class), row.get("parent_task_id", Long.class)})
+                .all();
+    }
+
+    /**
+     * 按父任务、优先级、完成状态分组计数，返回[父任务ID, 优先级等级, 是否完成(0/1), 数量]
+     */
+    public Flux<long[]> countGroupedByParentTaskIds(Collection<Long> parentTaskIds) {
+        return databaseClient.sql("SELECT parent_task_id, priority, is_completed, COUNT(*) AS cnt FROM subtask " +
+                        "WHERE parent_task_id IN (:parentTaskIds) GROUP BY parent_task_id, priority, is_completed")
+                .bind("parentTaskIds", parentTaskIds)
+                .map((row, metadata) -> new long[]{
+                        row.get("parent_task_id", Long.class),
+                        row.get("priority", Integer.class),
+                        Boolean.TRUE.equals(row.get("is_completed", Boolean.class)) ? 1 : 0,
+                        row.get("cnt", Long.class)})
+                .all();
+    }
+
+    public Mono<Long> countByParentTaskId(Long parentTaskId) {
+        return databaseClient.sql("SELECT COUNT(*) AS cnt FROM subtask WHERE parent_task_id = :parentTaskId")
+                .bind("parentTaskId", parentTaskId)
+                .map((row, metadata) -> row.get("cnt", Long.class))
+                .one();
+    }
+
+    /**
+     * 插入子任务（ID已由IdAllocator分配）
+     */
+    public Mono<Subtask> insert(Subtask subtask) {
+        return databaseClient.sql("INSERT INTO subtask " +
+                        "(id, value, is_completed, parent_task_id, priority, version, created_at, updated_at) " +
+                        "VALUES (:id, :value, :completed, :parentTaskId, :priority, :version, :createdAt, :updatedAt)")
+                .bind("id", subtask.getId())
+                .bind("value", subtask.getValue())
+                .bind("completed", subtask.isCompleted())
+                .bind("parentTaskId", subtask.getParentTaskId())
+                .bind("priority", subtask.getPriority().getLevel())
+                .bind("version", subtask.getVersion())
+                .bind("createdAt", subtask.getCreatedAt())
+                .bind("updatedAt", subtask.getUpdatedAt())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(subtask);
+    }
+
+    /**
+     * 按版本号更新内容、完成状态和优先级（乐观锁），版本号加1
+     * @return 受影响的行数，0表示版本号不一致（已被他人修改）或子任务不存在
+     */
+    public Mono<Integer> updateIfVersion(Subtask subtask, long expectedVersion) {
+        return databaseClient.sql("UPDATE subtask SET value = :value, is_completed = :completed, priority = :priority, " +
+                        "version = version + 1, updated_at = :updatedAt WHERE id = :id AND version = :version")
+                .bind("value", subtask.getValue())
+                .bind("completed", subtask.isCompleted())
+                .bind("priority", subtask.getPriority().getLevel())
+                .bind("updatedAt", subtask.getUpdatedAt())
+                .bind("id", subtask.getId())
+                .bind("version", expectedVersion)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * 原子切换完成状态：单条UPDATE语句在数据库中取反，同时版本号加1
+     * @return 受影响的行数，0表示子任务不存在
+     */
+    public Mono<Integer> toggleCompleted(Long id, LocalDateTime now) {
+        return databaseClient.sql("UPDATE subtask SET is_completed = NOT is_completed, " +
+                        "version = version + 1, updated_at = :now WHERE id = :id")
+                .bind("now", now)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * 直接设置优先级（单条UPDATE，版本号加1）
+     * @return 受影响的行数，0表示子任务不存在
+     */
+    public Mono<Integer> updatePriority(Long id, Priority priority, LocalDateTime now) {
+        return databaseClient.sql("UPDATE subtask SET priority = :priority, " +
+                        "version = version + 1, updated_at = :now WHERE id = :id")
+                .bind("priority", priority.getLevel())
+                .bind("now", now)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    public Mono<Integer> deleteById(Long id) {
+        return databaseClient.sql("DELETE FROM subtask WHERE id = :id")
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * 删除多个父任务下的所有子任务（单条DELETE语句）
+     * @return 删除的行数
+     */
+    public Mono<Integer> deleteByParentTaskIdIn(Collection<Long> parentTaskIds) {
+        return databaseClient.sql("DELETE FROM subtask WHERE parent_task_id IN (:parentTaskIds)")
+                .bind("parentTaskIds", parentTaskIds)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    static Subtask mapRow(Row row) {
+        Subtask subtask = new Subtask();
+        subtask.setId(row.get("id", Long.class));
+        subtask.setValue(row.get("value", String.class));
+        subtask.setCompleted(Boolean.TRUE.equals(row.get("is_completed", Boolean.class)));
+        subtask.setParentTaskId(row.get("parent_task_id", Long.class));
+        Integer level = row.get("priority", Integer.class);
+        subtask.setPriority(level == null ? Priority.MEDIUM : Priority.fromLevel(level));
+        subtask.setVersion(row.get("version", Long.class));
+        subtask.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        subtask.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        return subtask;
+    }
+}
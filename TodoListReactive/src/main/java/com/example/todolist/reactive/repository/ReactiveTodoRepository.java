@@ -0,0 +1,131 @@
+package com.example.todolist.reactive.repository;
+
+import com.example.todolist.entity.Todo;
+import io.r2dbc.spi.Row;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+/**
+ * 待办事项的响应式数据访问（todo_list表），SQL与后端模块TodoRepository的查询一一对应
+ */
+@Repository
+public class ReactiveTodoRepository {
+
+    private static final String COLUMNS = "id, value, is_completed, version, created_at, updated_at";
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    public Mono<Todo> findById(Long id) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM todo_list WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> mapRow(row))
+                .one();
+    }
+
+    public Mono<Boolean> existsById(Long id) {
+        return databaseClient.sql("SELECT id FROM todo_list WHERE id = :id")
+                .bind("id", id)
+                .map((row, metadata) -> row.get("id", Long.class))
+                .first()
+                .hasElement();
+    }
+
+    /**
+     * 游标（keyset）分页查询：返回ID大于afterId的待办事项，按ID升序排列
+     * @param afterId 上一页最后一条记录的ID（首页传0）
+     * @param completed 完成状态过滤，为null时不过滤
+     * @param prefix 内容前缀的LIKE模式（已转义并以%结尾），为null时不过滤
+     * @param limit 最多返回的条数
+     * @return 待办事项
+     */
+    public Flux<Todo> findPageAfter(long afterId, Boolean completed, String prefix, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT " + COLUMNS + " FROM todo_list WHERE id > :afterId");
+        if (completed != null) {
+            sql.append(" AND is_completed = :completed");
+        }
+        if (prefix != null) {
+            sql.append(" AND value LIKE :prefix ESCAPE '!'");
+        }
+        sql.append(" ORDER BY id ASC LIMIT ").append(limit);
+
+        DatabaseClient.GenericExecuteSpec spec = databaseClient.sql(sql.toString()).bind("afterId", afterId);
+        if (completed != null) {
+            spec = spec.bind("completed", completed);
+        }
+        if (prefix != null) {
+            spec = spec.bind("prefix", prefix);
+        }
+        return spec.map((row, metadata) -> mapRow(row)).all();
+    }
+
+    /**
+     * 插入待办事项（ID已由IdAllocator分配）
+     */
+    public Mono<Todo> insert(Todo todo) {
+        return databaseClient.sql("INSERT INTO todo_list (id, value, is_completed, version, created_at, updated_at) " +
+                        "VALUES (:id, :value, :completed, :version, :createdAt, :updatedAt)")
+                .bind("id", todo.getId())
+                .bind("value", todo.getValue())
+                .bind("completed", todo.isCompleted())
+                .bind("version", todo.getVersion())
+                .bind("createdAt", todo.getCreatedAt())
+                .bind("updatedAt", todo.getUpdatedAt())
+                .fetch()
+                .rowsUpdated()
+                .thenReturn(todo);
+    }
+
+    /**
+     * 原子切换完成状态：单条UPDATE语句在数据库中取反，同时版本号加1
+     * @return 受影响的行数，0表示待办事项不存在
+     */
+    public Mono<Integer> toggleCompleted(Long id, LocalDateTime now) {
+        return databaseClient.sql("UPDATE todo_list SET is_completed = NOT is_completed, " +
+                        "version = version + 1, updated_at = :now WHERE id = :id")
+                .bind("now", now)
+                .bind("id", id)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    /**
+     * 查询一批待办事项并加行锁，用于删除前确认存在
+     * @param ids 待办事项ID集合
+     * @return 存在的待办事项
+     */
+    public Flux<Todo> findByIdInForUpdate(Collection<Long> ids) {
+        return databaseClient.sql("SELECT " + COLUMNS + " FROM todo_list WHERE id IN (:ids) FOR UPDATE")
+                .bind("ids", ids)
+                .map((row, metadata) -> mapRow(row))
+                .all();
+    }
+
+    /**
+     * 按ID批量删除待办事项（单条DELETE语句）
+     * @return 删除的行数
+     */
+    public Mono<Integer> deleteByIdIn(Collection<Long> ids) {
+        return databaseClient.sql("DELETE FROM todo_list WHERE id IN (:ids)")
+                .bind("ids", ids)
+                .fetch()
+                .rowsUpdated();
+    }
+
+    static Todo mapRow(Row row) {
+        Todo todo = new Todo();
+        todo.setId(row.get("id", Long.class));
+        todo.setValue(row.get("value", String.class));
+        todo.setCompleted(Boolean.TRUE.equals(row.get("is_completed", Boolean.class)));
+        todo.setVersion(row.get("version", Long.class));
+        todo.setCreatedAt(row.get("created_at", LocalDateTime.class));
+        todo.setUpdatedAt(row.get("updated_at", LocalDateTime.class));
+        return todo;
+    }
+}
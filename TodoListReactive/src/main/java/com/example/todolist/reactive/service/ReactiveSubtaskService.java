@@ -0,0 +1,314 @@
+package com.example.todolist.reactive.service;
+
+import com.example.todolist.entity.Subtask;
+import com.example.todolist.enums.Priority;
+import com.example.todolist.event.ChangeType;
+import com.example.todolist.reactive.repository.ChangeLogWriter;
+import com.example.todolist.reactive.repository.IdAllocator;
+import com.example.todolist.reactive.repository.ReactiveSubtaskRepository;
+import com.example.todolist.reactive.repository.ReactiveTodoRepository;
+import com.example.todolist.service.StatsRollupService;
+import com.example.todolist.service.SubtaskService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.persistence.EntityNotFoundException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 子任务业务逻辑（响应式版本），行为与后端模块的SubtaskService一致
+ * 批量读取多个任务的子任务列表时，各任务的查询并发执行（数量由todo.reactive.fan-out-concurrency限制），
+ * 等待数据库期间不占用线程
+ */
+@Slf4j
+@Service
+public class ReactiveSubtaskService {
+
+    @Autowired
+    private ReactiveSubtaskRepository subtaskRepository;
+
+    @Autowired
+    private ReactiveTodoRepository todoRepository;
+
+    @Autowired
+    private ChangeLogWriter changeLogWriter;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    /**
+     * 批量读取时同时执行的查询数
+     */
+    @Value("${todo.reactive.fan-out-concurrency:16}")
+    private int fanOutConcurrency;
+
+    /**
+     * 根据父任务ID获取所有子任务
+     * @param parentTaskId 父任务ID
+     * @param sortByPriority 是否按优先级排序
+     * @return 子任务列表
+     */
+    public Mono<List<Subtask>> getSubtasksByParentId(Long parentTaskId, boolean sortByPriority) {
+        log.debug("获取父任务ID为{}的所有子任务，优先级排序: {}", parentTaskId, sortByPriority);
+        return requireParent(parentTaskId)
+                .then(findByParent(parentTaskId, sortByPriority).collectList());
+    }
+
+    /**
+     * 批量获取多个父任务的子任务列表，各父任务的查询并发执行
+     * 不存在的父任务返回空列表
+     * @param parentTaskIds 父任务ID列表
+     * @param sortByPriority 是否按优先级排序
+     * @return 父任务ID到子任务列表的映射（与入参顺序一致）
+     */
+    public Mono<Map<Long, List<Subtask>>> getSubtasksByParentIds(Collection<Long> parentTaskIds, boolean sortByPriority) {
+        if (parentTaskIds == null || parentTaskIds.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("父任务ID列表不能为空"));
+        }
+        if (parentTaskIds.size() > SubtaskService.MAX_STATS_BATCH_SIZE) {
+            return Mono.error(new IllegalArgumentException(
+                    "单次最多查询" + SubtaskService.MAX_STATS_BATCH_SIZE + "个父任务，实际: " + parentTaskIds.size()));
+        }
+        Set<Long> ids = new LinkedHashSet<>(parentTaskIds);
+        log.debug("批量获取{}个父任务的子任务列表", ids.size());
+        return Flux.fromIterable(ids)
+                .flatMap(id -> findByParent(id, sortByPriority).collectList()
+                        .map(subtasks -> new Object[]{id, subtasks}), fanOutConcurrency)
+                .collectList()
+                .map(results -> {
+                    Map<Long, List<Subtask>> byParent = new HashMap<>();
+                    for (Object[] result : results) {
+                        @SuppressWarnings("unchecked")
+                        List<Subtask> subtasks = (List<Subtask>) result[1];
+                        byParent.put((Long) result[0], subtasks);
+                    }
+                    Map<Long, List<Subtask>> ordered = new LinkedHashMap<>();
+                    ids.forEach(id -> ordered.put(id, byParent.get(id)));
+                    return ordered;
+                });
+    }
+
+    private Flux<Subtask> findByParent(Long parentTaskId, boolean sortByPriority) {
+        return sortByPriority
+                ? subtaskRepository.findByParentTaskIdOrderByPriorityDesc(parentTaskId)
+                : subtaskRepository.findByParentTaskId(parentTaskId);
+    }
+
+    /**
+     * 根据完成状态获取子任务
+     */
+    public Mono<List<Subtask>> getSubtasksByParentIdAndCompleted(Long parentTaskId, boolean completed) {
+        log.debug("获取父任务ID为{}的子任务，完成状态: {}", parentTaskId, completed);
+        return subtaskRepository.findByParentTaskIdAndCompletedOrderByPriority(parentTaskId, completed).collectList();
+    }
+
+    /**
+     * 根据优先级获取子任务
+     */
+    public Mono<List<Subtask>> getSubtasksByPriority(Long parentTaskId, Priority priority) {
+        log.debug("获取父任务ID为{}的{}优先级子任务", parentTaskId, priority);
+        return subtaskRepository.findByParentTaskIdAndPriority(parentTaskId, priority).collectList();
+    }
+
+    /**
+     * 新增子任务
+     * @param parentTaskId 父任务ID
+     * @param subtask 子任务对象
+     * @return 保存后的子任务
+     */
+    @Transactional
+    public Mono<Subtask> addSubtask(Long parentTaskId, Subtask subtask) {
+        log.debug("为父任务ID{}添加子任务: {}，优先级: {}", parentTaskId, subtask.getValue(), subtask.getPriority());
+        return requireParent(parentTaskId)
+                .then(idAllocator.nextId(IdAllocator.SUBTASK_SEQUENCE))
+                .flatMap(id -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    // 忽略客户端传入的ID和版本号
+                    subtask.setId(id);
+                    subtask.setParentTaskId(parentTaskId);
+                    subtask.setVersion(0L);
+                    subtask.setCreatedAt(now);
+                    subtask.setUpdatedAt(now);
+                    if (subtask.getPriority() == null) {
+                        subtask.setPriority(Priority.MEDIUM);
+                    }
+                    return subtaskRepository.insert(subtask);
+                })
+                .flatMap(saved -> changeLogWriter.recordSubtask(saved.getId(), parentTaskId, ChangeType.CREATED)
+                        .thenReturn(saved));
+    }
+
+    /**
+     * 更新子任务，按版本号做乐观锁校验
+     * @param subtaskId 子任务ID
+     * @param updatedSubtask 更新的子任务信息，携带version时按该版本校验
+     * @return 更新后的子任务
+     */
+    @Transactional
+    public Mono<Subtask> updateSubtask(Long subtaskId, Subtask updatedSubtask) {
+        log.debug("更新子任务，ID: {}", subtaskId);
+        return requireSubtask(subtaskId)
+                .flatMap(existing -> {
+                    long expectedVersion = updatedSubtask.getVersion() != null
+                            ? updatedSubtask.getVersion() : existing.getVersion();
+                    if (updatedSubtask.getValue() != null) {
+                        existing.setValue(updatedSubtask.getValue());
+                    }
+                    existing.setCompleted(updatedSubtask.isCompleted());
+                    if (updatedSubtask.getPriority() != null) {
+                        existing.setPriority(updatedSubtask.getPriority());
+                    }
+                    existing.setUpdatedAt(LocalDateTime.now());
+                    return subtaskRepository.updateIfVersion(existing, expectedVersion)
+                            .flatMap(updated -> updated == 0
+                                    ? Mono.<Subtask>error(new OptimisticLockingFailureException(
+                                            "子任务已被修改，ID: " + subtaskId))
+                                    : subtaskRepository.findById(subtaskId));
+                })
+                .flatMap(saved -> changeLogWriter.recordSubtask(subtaskId, saved.getParentTaskId(), ChangeType.UPDATED)
+                        .thenReturn(saved));
+    }
+
+    /**
+     * 更新子任务优先级
+     */
+    @Transactional
+    public Mono<Subtask> updateSubtaskPriority(Long subtaskId, Priority priority) {
+        log.debug("更新子任务优先级，ID: {}，新优先级: {}", subtaskId, priority);
+        return subtaskRepository.updatePriority(subtaskId, priority, LocalDateTime.now())
+                .flatMap(updated -> updated == 0 ? notFound(subtaskId) : requireSubtask(subtaskId))
+                .flatMap(saved -> changeLogWriter.recordSubtask(subtaskId, saved.getParentTaskId(), ChangeType.UPDATED)
+                        .thenReturn(saved));
+    }
+
+    /**
+     * 切换子任务完成状态（单条UPDATE原子取反）
+     */
+    @Transactional
+    public Mono<Subtask> toggleSubtaskStatus(Long subtaskId) {
+        log.debug("切换子任务状态，ID: {}", subtaskId);
+        return subtaskRepository.toggleCompleted(subtaskId, LocalDateTime.now())
+                .flatMap(updated -> updated == 0 ? notFound(subtaskId) : requireSubtask(subtaskId))
+                .flatMap(saved -> changeLogWriter.recordSubtask(subtaskId, saved.getParentTaskId(), ChangeType.UPDATED)
+                        .thenReturn(saved));
+    }
+
+    /**
+     * 删除子任务
+     */
+    @Transactional
+    public Mono<Void> deleteSubtask(Long subtaskId) {
+        log.debug("删除子任务，ID: {}", subtaskId);
+        return requireSubtask(subtaskId)
+                .flatMap(subtask -> subtaskRepository.deleteById(subtaskId)
+                        .then(changeLogWriter.recordSubtask(subtaskId, subtask.getParentTaskId(), ChangeType.DELETED)));
+    }
+
+    /**
+     * 删除某个父任务的所有子任务（单条DELETE语句）
+     */
+    @Transactional
+    public Mono<Void> deleteSubtasksByParentId(Long parentTaskId) {
+        log.debug("删除父任务ID为{}的所有子任务", parentTaskId);
+        List<Long> parentIds = Collections.singletonList(parentTaskId);
+        return subtaskRepository.findIdsByParentTaskIdIn(parentIds)
+                .collectList()
+                .flatMap(subtasks -> subtaskRepository.deleteByParentTaskIdIn(parentIds)
+                        .then(changeLogWriter.recordSubtasksDeleted(subtasks)));
+    }
+
+    /**
+     * 获取某个父任务的子任务统计信息
+     */
+    public Mono<SubtaskService.SubtaskStats> getSubtaskStats(Long parentTaskId) {
+        log.debug("获取父任务ID为{}的子任务统计信息", parentTaskId);
+        return computeSubtaskStats(Collections.singletonList(parentTaskId))
+                .map(statsByParent -> statsByParent.get(parentTaskId));
+    }
+
+    /**
+     * 批量获取多个父任务的子任务统计信息（一次GROUP BY查询）
+     */
+    public Mono<Map<Long, SubtaskService.SubtaskStats>> getSubtaskStats(Collection<Long> parentTaskIds) {
+        if (parentTaskIds == null || parentTaskIds.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("父任务ID列表不能为空"));
+        }
+        if (parentTaskIds.size() > SubtaskService.MAX_STATS_BATCH_SIZE) {
+            return Mono.error(new IllegalArgumentException("单次最多查询" + SubtaskService.MAX_STATS_BATCH_SIZE
+                    + "个父任务的统计，实际: " + parentTaskIds.size()));
+        }
+        log.debug("批量获取{}个父任务的子任务统计信息", parentTaskIds.size());
+        return computeSubtaskStats(new LinkedHashSet<>(parentTaskIds));
+    }
+
+    /**
+     * 获取某个父任务的子任务数量
+     */
+    public Mono<StatsRollupService.SubtaskCount> getSubtaskCount(Long parentTaskId) {
+        return getSubtaskStats(parentTaskId)
+                .map(stats -> new StatsRollupService.SubtaskCount(parentTaskId,
+                        stats.getTotalCount(), stats.getCompletedCount()));
+    }
+
+    private Mono<Map<Long, SubtaskService.SubtaskStats>> computeSubtaskStats(Collection<Long> parentTaskIds) {
+        return subtaskRepository.countGroupedByParentTaskIds(parentTaskIds)
+                .collectList()
+                .map(rows -> {
+                    Map<Long, long[]> totals = new LinkedHashMap<>();
+                    Map<Long, Map<Priority, Long>> priorityStatsByParent = new HashMap<>();
+                    for (Long parentTaskId : parentTaskIds) {
+                        // totals数组：[0]总数，[1]已完成数
+                        totals.put(parentTaskId, new long[2]);
+                        Map<Priority, Long> priorityStats = new EnumMap<>(Priority.class);
+                        for (Priority priority : Priority.values()) {
+                            priorityStats.put(priority, 0L);
+                        }
+                        priorityStatsByParent.put(parentTaskId, priorityStats);
+                    }
+                    // 行：[父任务ID, 优先级等级, 是否完成(0/1), 数量]
+                    for (long[] row : rows) {
+                        long[] counts = totals.get(row[0]);
+                        counts[0] += row[3];
+                        if (row[2] == 1) {
+                            counts[1] += row[3];
+                        }
+                        priorityStatsByParent.get(row[0]).merge(Priority.fromLevel((int) row[1]), row[3], Long::sum);
+                    }
+                    Map<Long, SubtaskService.SubtaskStats> result = new LinkedHashMap<>();
+                    totals.forEach((parentTaskId, counts) -> result.put(parentTaskId,
+                            new SubtaskService.SubtaskStats(counts[0], counts[1], priorityStatsByParent.get(parentTaskId))));
+                    return result;
+                });
+    }
+
+    private Mono<Void> requireParent(Long parentTaskId) {
+        return todoRepository.existsById(parentTaskId)
+                .flatMap(exists -> exists
+                        ? Mono.<Void>empty()
+                        : Mono.error(new EntityNotFoundException("父任务不存在，ID: " + parentTaskId)));
+    }
+
+    private Mono<Subtask> requireSubtask(Long subtaskId) {
+        return subtaskRepository.findById(subtaskId)
+                .switchIfEmpty(notFound(subtaskId));
+    }
+
+    private static Mono<Subtask> notFound(Long subtaskId) {
+        return Mono.error(new EntityNotFoundException("子任务不存在，ID: " + subtaskId));
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.todolist.reactive.service;
+
+import com.example.todolist.entity.ChangeLog;
+import com.example.todolist.entity.Todo;
+import com.example.todolist.event.ChangeType;
+import com.example.todolist.reactive.repository.ChangeLogWriter;
+import com.example.todolist.reactive.repository.IdAllocator;
+import com.example.todolist.reactive.repository.ReactiveSubtaskRepository;
+import com.example.todolist.reactive.repository.ReactiveTodoRepository;
+import com.example.todolist.service.TodoService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.persistence.EntityNotFoundException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 待办事项业务逻辑（响应式版本），行为与后端模块的TodoService一致
+ * 写操作在同一个响应式事务中完成业务写入和变更日志记录
+ * 与后端服务共用数据库时，本模块的写入只到达数据库，不会到达后端进程内的状态（后端靠本进程的事务事件维护它们）：
+ * <ul>
+ *     <li>后端的Caffeine缓存（todoPages、subtasks、subtaskStats）不会失效，后端最长在expireAfterWrite（60秒）后才返回新数据</li>
+ *     <li>StatsRollupService的计数（/api/stats、子任务计数）不会更新，与数据库的偏差保持到后端重启重新汇总</li>
+ *     <li>搜索索引（/api/search）不包含本模块新增或修改的内容，本模块删除的内容仍可搜到，直到后端重启重建索引</li>
+ *     <li>变更推送（/api/changes）不会推送这些变更</li>
+ * </ul>
+ * 增量同步（/api/sync）读取change_log，能看到本模块的全部写入；需要上述状态保持准确时，写请求应只发给后端服务
+ */
+@Slf4j
+@Service
+public class ReactiveTodoService {
+
+    @Autowired
+    private ReactiveTodoRepository todoRepository;
+
+    @Autowired
+    private ReactiveSubtaskRepository subtaskRepository;
+
+    @Autowired
+    private ChangeLogWriter changeLogWriter;
+
+    @Autowired
+    private IdAllocator idAllocator;
+
+    /**
+     * 旧接口 /api/get-todo 最多返回的条数
+     */
+    @Value("${todo.list.legacy-limit:1000}")
+    private int legacyLimit;
+
+    /**
+     * 获取待办事项（兼容旧接口），最多返回legacyLimit条
+     * @return 待办事项列表
+     */
+    public Mono<List<Todo>> getAllTodos() {
+        log.debug("获取所有待办事项，最多{}条", legacyLimit);
+        return queryPage(0L, legacyLimit, null, null)
+                .doOnNext(page -> {
+                    if (page.isHasMore()) {
+                        log.warn("待办事项数量超过{}条，旧接口只返回第一页，请改用 /api/todos 分页接口", legacyLimit);
+                    }
+                })
+                .map(TodoService.TodoPage::getItems);
+    }
+
+    /**
+     * 游标分页获取待办事项
+     * @param cursor 上一页返回的nextCursor，首页传null
+     * @param limit 页大小，为null时使用默认值，超过上限时截断
+     * @param completed 完成状态过滤，为null时不过滤
+     * @param prefix 内容前缀过滤，为空时不过滤
+     * @return 当前页数据及下一页游标
+     */
+    public Mono<TodoService.TodoPage> listTodos(Long cursor, Integer limit, Boolean completed, String prefix) {
+        if (cursor != null && cursor < 0) {
+            return Mono.error(new IllegalArgumentException("游标不能为负数: " + cursor));
+        }
+        if (limit != null && limit <= 0) {
+            return Mono.error(new IllegalArgumentException("页大小必须大于0: " + limit));
+        }
+        int pageSize = limit == null ? TodoService.DEFAULT_PAGE_SIZE : Math.min(limit, TodoService.MAX_PAGE_SIZE);
+        log.debug("分页获取待办事项，cursor: {}，limit: {}，completed: {}，prefix: {}", cursor, pageSize, completed, prefix);
+        return queryPage(cursor == null ? 0L : cursor, pageSize, completed, prefix);
+    }
+
+    /**
+     * 执行keyset分页查询，多取一条用于判断是否还有下一页
+     */
+    private Mono<TodoService.TodoPage> queryPage(long afterId, int pageSize, Boolean completed, String prefix) {
+        String pattern = (prefix == null || prefix.isEmpty()) ? null : escapeLike(prefix) + "%";
+        return todoRepository.findPageAfter(afterId, completed, pattern, pageSize + 1)
+                .collectList()
+                .map(rows -> {
+                    boolean hasMore = rows.size() > pageSize;
+                    List<Todo> items = hasMore ? rows.subList(0, pageSize) : rows;
+                    Long nextCursor = hasMore ? items.get(items.size() - 1).getId() : null;
+                    return new TodoService.TodoPage(items, nextCursor, hasMore);
+                });
+    }
+
+    /**
+     * 转义LIKE模式中的通配符，转义字符为'!'
+     */
+    private static String escapeLike(String text) {
+        return text.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    /**
+     * 添加新的待办事项
+     * @param todo 待添加的待办事项
+     * @return 添加后的待办事项（包含ID）
+     */
+    @Transactional
+    public Mono<Todo> addTodo(Todo todo) {
+        log.debug("添加新的待办事项: {}", todo.getValue());
+        return insert(todo);
+    }
+
+    /**
+     * 批量添加待办事项，在同一个事务中保存
+     * @param todos 待添加的待办事项列表
+     * @return 新建待办事项的ID列表（与入参顺序一致）
+     */
+    @Transactional
+    public Mono<List<Long>> addTodos(List<Todo> todos) {
+        if (todos == null || todos.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("待办事项列表不能为空"));
+        }
+        if (todos.size() > TodoService.MAX_BATCH_SIZE) {
+            return Mono.error(new IllegalArgumentException(
+                    "单次最多添加" + TodoService.MAX_BATCH_SIZE + "条待办事项，实际: " + todos.size()));
+        }
+        for (Todo todo : todos) {
+            if (todo == null || todo.getValue() == null || todo.getValue().trim().isEmpty()) {
+                return Mono.error(new IllegalArgumentException("待办事项内容不能为空"));
+            }
+        }
+        log.debug("批量添加{}条待办事项", todos.size());
+        return Flux.fromIterable(todos)
+                .concatMap(this::insertRow)
+                .map(Todo::getId)
+                .collectList()
+                .flatMap(ids -> changeLogWriter.record(ids.stream()
+                                .map(id -> ChangeLogWriter.todoChange(id, ChangeType.CREATED))
+                                .collect(Collectors.toList()))
+                        .thenReturn(ids));
+    }
+
+    private Mono<Todo> insert(Todo todo) {
+        return insertRow(todo)
+                .flatMap(saved -> changeLogWriter.recordTodo(saved.getId(), ChangeType.CREATED).thenReturn(saved));
+    }
+
+    /**
+     * 写入待办事项（不记录变更日志，由调用方在全部写入之后统一记录）
+     */
+    private Mono<Todo> insertRow(Todo todo) {
+        return idAllocator.nextId(IdAllocator.TODO_SEQUENCE)
+                .flatMap(id -> {
+                    LocalDateTime now = LocalDateTime.now();
+                    // 忽略客户端传入的ID和版本号，始终新建
+                    todo.setId(id);
+                    todo.setVersion(0L);
+                    todo.setCreatedAt(now);
+                    todo.setUpdatedAt(now);
+                    return todoRepository.insert(todo);
+                });
+    }
+
+    /**
+     * 切换待办事项的完成状态（单条UPDATE原子取反）
+     * @param id 待办事项ID
+     * @return 更新后的待办事项
+     */
+    @Transactional
+    public Mono<Todo> updateTodoStatus(Long id) {
+        log.debug("更新待办事项状态, id: {}", id);
+        return todoRepository.toggleCompleted(id, LocalDateTime.now())
+                .flatMap(updated -> updated == 0
+                        ? Mono.<Todo>error(new EntityNotFoundException("待办事项未找到"))
+                        : todoRepository.findById(id))
+                .flatMap(saved -> changeLogWriter.recordTodo(id, ChangeType.UPDATED).thenReturn(saved));
+    }
+
+    /**
+     * 删除待办事项及其所有子任务
+     * @param id 待删除的待办事项ID
+     */
+    @Transactional
+    public Mono<Void> deleteTodo(Long id) {
+        log.debug("删除待办事项, id: {}", id);
+        return deleteChunk(Collections.singletonList(id))
+                .flatMap(deleted -> deleted == 0
+                        ? Mono.<Void>error(new EntityNotFoundException("待办事项未找到"))
+                        : Mono.<Void>empty());
+    }
+
+    /**
+     * 批量删除待办事项及其所有子任务，在同一个事务中执行
+     * @param ids 待删除的待办事项ID列表，不存在的ID会被忽略
+     * @return 实际删除的待办事项数量
+     */
+    @Transactional
+    public Mono<Integer> deleteTodos(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("待删除的ID列表不能为空"));
+        }
+        if (ids.size() > TodoService.MAX_BATCH_SIZE) {
+            return Mono.error(new IllegalArgumentException(
+                    "单次最多删除" + TodoService.MAX_BATCH_SIZE + "条待办事项，实际: " + ids.size()));
+        }
+        if (ids.contains(null)) {
+            return Mono.error(new IllegalArgumentException("待删除的ID不能为空"));
+        }
+        log.debug("批量删除{}条待办事项", ids.size());
+        return deleteChunk(new ArrayList<>(new LinkedHashSet<>(ids)));
+    }
+
+    /**
+     * 在当前事务中删除一批待办事项及其子任务，并记录变更日志
+     * 先对待办事项加行锁再删除；子任务和待办事项各用一条DELETE语句，全部删除之后一次记录所有墓碑
+     */
+    private Mono<Integer> deleteChunk(List<Long> ids) {
+        return todoRepository.findByIdInForUpdate(ids)
+                .map(Todo::getId)
+                .collectList()
+                .flatMap(existingIds -> {
+                    if (existingIds.isEmpty()) {
+                        return Mono.just(0);
+                    }
+                    return subtaskRepository.findIdsByParentTaskIdIn(existingIds)
+                            .collectList()
+                            .flatMap(subtasks -> (subtasks.isEmpty()
+                                    ? Mono.just(0)
+                                    : subtaskRepository.deleteByParentTaskIdIn(existingIds))
+                                    .then(todoRepository.deleteByIdIn(existingIds))
+                                    .flatMap(deleted -> {
+                                        List<ChangeLog> changes = new ArrayList<>(ChangeLogWriter.subtasksDeleted(subtasks));
+                                        existingIds.forEach(todoId ->
+                                                changes.add(ChangeLogWriter.todoChange(todoId, ChangeType.DELETED)));
+                                        return changeLogWriter.record(changes).thenReturn(deleted);
+                                    }));
+                });
+    }
+}
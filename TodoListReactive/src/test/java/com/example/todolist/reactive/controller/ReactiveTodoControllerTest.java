@@ -0,0 +1,179 @@
+package com.example.todolist.reactive.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 响应式接口测试：memory配置（H2内存库，表结构由后端模块的Flyway迁移脚本创建），
+ * 覆盖待办事项的新增/切换/删除、子任务的增删改和统计，并校验每次写入都追加了带版本号的变更日志
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("memory")
+class ReactiveTodoControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Test
+    void addAndToggleTodoRecordVersionedChanges() {
+        long before = currentVersion();
+        JsonNode todo = post("/api/add-todo", Collections.singletonMap("value", "响应式新增"));
+        long todoId = todo.get("id").asLong();
+        assertThat(todo.get("completed").asBoolean()).isFalse();
+
+        JsonNode toggled = post("/api/update-todo/" + todoId, null);
+        assertThat(toggled.get("completed").asBoolean()).isTrue();
+        assertThat(toggled.get("version").asLong()).isEqualTo(todo.get("version").asLong() + 1);
+
+        assertThat(changes("TODO", todoId)).containsExactly("CREATED", "UPDATED");
+        assertThat(currentVersion()).isEqualTo(before + 2);
+        assertVersionsMatchCounter();
+    }
+
+    @Test
+    void batchAddAndDeleteTodos() {
+        long before = currentVersion();
+        JsonNode ids = post("/api/add-todos", Arrays.asList(
+                Collections.singletonMap("value", "批量1"), Collections.singletonMap("value", "批量2")));
+        assertThat(ids).hasSize(2);
+        long firstId = ids.get(0).asLong();
+        JsonNode subtask = post("/api/tasks/" + firstId + "/subtasks", subtask("批量子任务", "LOW"));
+
+        JsonNode deleted = post("/api/del-todos", Arrays.asList(firstId, ids.get(1).asLong(), Long.MAX_VALUE));
+        assertThat(deleted.asInt()).isEqualTo(2);
+
+        webTestClient.get().uri("/api/tasks/" + firstId + "/subtasks").exchange()
+                .expectStatus().isNotFound();
+        assertThat(changes("TODO", firstId)).containsExactly("CREATED", "DELETED");
+        assertThat(changes("SUBTASK", subtask.get("id").asLong())).containsExactly("CREATED", "DELETED");
+        // 2条新增 + 1条子任务新增 + 2条待办事项墓碑 + 1条子任务墓碑
+        assertThat(currentVersion()).isEqualTo(before + 6);
+        assertVersionsMatchCounter();
+    }
+
+    @Test
+    void subtaskCrudAndStats() {
+        long parentId = post("/api/add-todo", Collections.singletonMap("value", "父任务")).get("id").asLong();
+        JsonNode high = post("/api/tasks/" + parentId + "/subtasks", subtask("高", "HIGH"));
+        JsonNode low = post("/api/tasks/" + parentId + "/subtasks", subtask("低", "LOW"));
+        long highId = high.get("id").asLong();
+        long lowId = low.get("id").asLong();
+
+        Map<String, Object> update = subtask("高（已修改）", "HIGH");
+        update.put("version", high.get("version").asLong());
+        JsonNode updated = put("/api/subtasks/" + highId, update);
+        assertThat(updated.get("value").asText()).isEqualTo("高（已修改）");
+
+        // 旧版本号的更新被拒绝
+        webTestClient.put().uri("/api/subtasks/" + highId).bodyValue(update).exchange()
+                .expectStatus().isEqualTo(HttpStatus.CONFLICT);
+
+        assertThat(post("/api/subtasks/" + lowId + "/toggle", null).get("completed").asBoolean()).isTrue();
+        assertThat(put("/api/subtasks/" + lowId + "/priority", Collections.singletonMap("priority", "URGENT"))
+                .get("priority").asText()).isEqualTo("URGENT");
+
+        JsonNode list = get("/api/tasks/" + parentId + "/subtasks");
+        assertThat(list).extracting(node -> node.get("id").asLong()).containsExactly(lowId, highId);
+
+        JsonNode stats = get("/api/tasks/" + parentId + "/subtasks/stats");
+        assertThat(stats.get("totalCount").asLong()).isEqualTo(2);
+        assertThat(stats.get("completedCount").asLong()).isEqualTo(1);
+        assertThat(stats.get("priorityStats").get("URGENT").asLong()).isEqualTo(1);
+        assertThat(stats.get("priorityStats").get("HIGH").asLong()).isEqualTo(1);
+        assertThat(get("/api/subtasks/stats?parentIds=" + parentId + "," + Long.MAX_VALUE)
+                .get(String.valueOf(Long.MAX_VALUE)).get("totalCount").asLong()).isZero();
+
+        webTestClient.delete().uri("/api/subtasks/" + highId).exchange().expectStatus().isOk();
+        assertThat(get("/api/tasks/" + parentId + "/subtasks/count").get("totalCount").asLong()).isEqualTo(1);
+        webTestClient.delete().uri("/api/tasks/" + parentId + "/subtasks").exchange().expectStatus().isOk();
+        assertThat(get("/api/tasks/" + parentId + "/subtasks")).isEmpty();
+
+        assertThat(changes("SUBTASK", highId)).containsExactly("CREATED", "UPDATED", "DELETED");
+        assertThat(changes("SUBTASK", lowId)).containsExactly("CREATED", "UPDATED", "UPDATED", "DELETED");
+        assertVersionsMatchCounter();
+    }
+
+    @Test
+    void missingEntitiesReturnNotFound() {
+        webTestClient.post().uri("/api/update-todo/" + Long.MAX_VALUE).exchange().expectStatus().isNotFound();
+        webTestClient.post().uri("/api/subtasks/" + Long.MAX_VALUE + "/toggle").exchange().expectStatus().isNotFound();
+        webTestClient.post().uri("/api/tasks/" + Long.MAX_VALUE + "/subtasks").bodyValue(subtask("孤儿", "LOW"))
+                .exchange().expectStatus().isNotFound();
+    }
+
+    private static Map<String, Object> subtask(String value, String priority) {
+        Map<String, Object> subtask = new LinkedHashMap<>();
+        subtask.put("value", value);
+        subtask.put("priority", priority);
+        return subtask;
+    }
+
+    private JsonNode get(String path) {
+        return webTestClient.get().uri(path).exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+    }
+
+    private JsonNode post(String path, Object body) {
+        WebTestClient.RequestBodySpec request = webTestClient.post().uri(path);
+        WebTestClient.ResponseSpec response = body == null ? request.exchange() : request.bodyValue(body).exchange();
+        return response.expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+    }
+
+    private JsonNode put(String path, Object body) {
+        return webTestClient.put().uri(path).bodyValue(body).exchange()
+                .expectStatus().isOk()
+                .expectBody(JsonNode.class).returnResult().getResponseBody();
+    }
+
+    /**
+     * 某个实体按版本号排序的变更类型
+     */
+    private List<String> changes(String entityType, long entityId) {
+        return databaseClient.sql("SELECT change_type FROM change_log WHERE entity_type = :type AND entity_id = :id ORDER BY version")
+                .bind("type", entityType)
+                .bind("id", entityId)
+                .map(row -> row.get("change_type", String.class))
+                .all()
+                .collectList()
+                .block();
+    }
+
+    private long currentVersion() {
+        return databaseClient.sql("SELECT current_version FROM change_log_counter WHERE id = 1")
+                .map(row -> row.get("current_version", Long.class))
+                .one()
+                .block();
+    }
+
+    /**
+     * 版本号各不相同，且最大的版本号等于版本计数
+     */
+    private void assertVersionsMatchCounter() {
+        List<Long> versions = databaseClient.sql("SELECT version FROM change_log ORDER BY version")
+                .map(row -> row.get("version", Long.class))
+                .all()
+                .collectList()
+                .block();
+        assertThat(versions).doesNotContainNull().doesNotHaveDuplicates();
+        assertThat(versions.get(versions.size() - 1)).isEqualTo(currentVersion());
+    }
+}